@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write the audit records on a background thread. The exchange complete listener hands the audit map over to a
+ * bounded ring buffer, and the writer thread serializes the records and writes them to the sinks in batches, so a
+ * slow appender no longer adds to the response time.
+ *
+ * When the ring buffer is full, the back pressure decides whether the oldest record or the new record is dropped,
+ * or whether the caller waits for the writer. The dropped records are counted, and the counters are registered
+ * with the AuditHandler in the server info. The records submitted after the writer is closed are dropped too.
+ *
+ * The sinks are closed by the writer thread once the records in the ring buffer are written, so a sink that is
+ * still writing when close times out is not closed under it.
+ */
+public class AsyncAuditWriter {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncAuditWriter.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * What to do with a record when the ring buffer is full.
+     */
+    public enum BackPressure {
+        /** Drop the oldest record in the buffer to make room for the new record. */
+        DROP_OLDEST,
+        /** Drop the new record. */
+        DROP_NEW,
+        /** Wait until the writer has made room for the new record. */
+        BLOCK;
+
+        /**
+         * @param value dropOldest, dropNew or block
+         * @return BackPressure
+         */
+        public static BackPressure of(String value) {
+            if (value == null) return DROP_OLDEST;
+            switch (value.trim()) {
+                case "dropNew":
+                    return DROP_NEW;
+                case "block":
+                    return BLOCK;
+                case "dropOldest":
+                case "":
+                    return DROP_OLDEST;
+                default:
+                    throw new IllegalArgumentException("Unknown asyncBackPressure " + value + ". It must be dropOldest, dropNew or block.");
+            }
+        }
+    }
+
+    private final AuditRingBuffer<Map<String, Object>> buffer;
+    private final List<AuditSink> sinks;
+    private final ObjectMapper mapper;
+    private final BackPressure backPressure;
+    private final int batchSize;
+    private final Thread thread;
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean running = true;
+    private volatile boolean stopped;
+    private volatile boolean waiting;
+
+    /**
+     * @param queueSize the capacity of the ring buffer
+     * @param batchSize the maximum number of records written before the sinks are flushed
+     * @param backPressure what to do when the ring buffer is full
+     * @param mapper the mapper to serialize the audit maps
+     * @param sinks the sinks of the records
+     */
+    public AsyncAuditWriter(int queueSize, int batchSize, BackPressure backPressure, ObjectMapper mapper, List<AuditSink> sinks) {
+        this.buffer = new AuditRingBuffer<>(queueSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.backPressure = backPressure;
+        this.mapper = mapper;
+        this.sinks = sinks;
+        this.thread = new Thread(this::run, "audit-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Hand an audit map over to the writer. The map must not be changed after it is submitted.
+     *
+     * @param auditMap the audit map
+     * @return false if the record is dropped
+     */
+    public boolean submit(Map<String, Object> auditMap) {
+        submitted.increment();
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        boolean accepted = buffer.offer(auditMap);
+        if (!accepted) {
+            accepted = handleFull(auditMap);
+        }
+        if (stopped) {
+            // the writer might have drained the buffer for the last time before the record was offered.
+            while (buffer.poll() != null) dropped.increment();
+            return false;
+        }
+        if (waiting) LockSupport.unpark(thread);
+        return accepted;
+    }
+
+    private boolean handleFull(Map<String, Object> auditMap) {
+        switch (backPressure) {
+            case DROP_NEW:
+                dropped.increment();
+                return false;
+            case DROP_OLDEST:
+                do {
+                    if (buffer.poll() != null) dropped.increment();
+                } while (!buffer.offer(auditMap));
+                return true;
+            default:
+                while (!buffer.offer(auditMap)) {
+                    if (!running) {
+                        dropped.increment();
+                        return false;
+                    }
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+                return true;
+        }
+    }
+
+    private void run() {
+        while (running || !buffer.isEmpty()) {
+            int count = 0;
+            Map<String, Object> auditMap;
+            while (count < batchSize && (auditMap = buffer.poll()) != null) {
+                write(auditMap);
+                count++;
+            }
+            if (count > 0) {
+                flush();
+                continue;
+            }
+            waiting = true;
+            // the tail is checked after the flag is set, so a record offered before the producer sees the flag is not missed.
+            if (running && buffer.isEmpty()) LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            waiting = false;
+        }
+        stopped = true;
+        // a record offered while the writer was stopping is written before the sinks are closed.
+        Map<String, Object> auditMap;
+        while ((auditMap = buffer.poll()) != null) {
+            write(auditMap);
+        }
+        flush();
+        for (AuditSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (Throwable e) {
+                logger.error("Failed to close the audit sink", e);
+            }
+        }
+    }
+
+    private void write(Map<String, Object> auditMap) {
+        try {
+            String record = mapper.writeValueAsString(auditMap);
+            for (AuditSink sink : sinks) {
+                sink.write(record);
+            }
+            written.increment();
+        } catch (Throwable e) {
+            failed.increment();
+            logger.error("Failed to write the audit record", e);
+        }
+    }
+
+    private void flush() {
+        for (AuditSink sink : sinks) {
+            try {
+                sink.flush();
+            } catch (Throwable e) {
+                logger.error("Failed to flush the audit sink", e);
+            }
+        }
+    }
+
+    /**
+     * Stop the writer and wait until the records in the ring buffer are written and the sinks are closed. If the
+     * writer takes longer than the timeout, it goes on in the background and closes the sinks when it is done.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("The audit writer has " + buffer.size() + " records left after " + CLOSE_TIMEOUT_MILLIS + "ms. The sinks are closed when they are written.");
+        }
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getQueued() {
+        return buffer.size();
+    }
+
+    public int getQueueSize() {
+        return buffer.capacity();
+    }
+
+    public String getBackPressure() {
+        return backPressure.name();
+    }
+}
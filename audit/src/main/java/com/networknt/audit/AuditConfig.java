@@ -48,6 +48,14 @@ class AuditConfig {
     private static final String ENABLED = "enabled";
     private static final String REQUEST_BODY_MAX_SIZE = "requestBodyMaxSize";
     private static final String RESPONSE_BODY_MAX_SIZE = "responseBodyMaxSize";
+    private static final String ASYNC_ENABLED = "asyncEnabled";
+    private static final String ASYNC_QUEUE_SIZE = "asyncQueueSize";
+    private static final String ASYNC_BATCH_SIZE = "asyncBatchSize";
+    private static final String ASYNC_BACK_PRESSURE = "asyncBackPressure";
+    private static final String AUDIT_LOGGER = "auditLogger";
+    private static final String AUDIT_FILE = "auditFile";
+    private static final String AUDIT_FILE_SIZE = "auditFileSize";
+    private static final String AUDIT_FILE_BACKUPS = "auditFileBackups";
 
     private  Map<String, Object> mappedConfig;
     public static final String CONFIG_NAME = "audit";
@@ -65,6 +73,14 @@ class AuditConfig {
     private int requestBodyMaxSize;
     private int responseBodyMaxSize;
     private boolean enabled;
+    private boolean asyncEnabled;
+    private int asyncQueueSize = 8192;
+    private int asyncBatchSize = 256;
+    private String asyncBackPressure;
+    private boolean auditLogger = true;
+    private String auditFile;
+    private int auditFileSize = 64 * 1024 * 1024;
+    private int auditFileBackups = 5;
 
     private AuditConfig() {
         this(CONFIG_NAME);
@@ -145,6 +161,22 @@ class AuditConfig {
 
     public int getResponseBodyMaxSize() { return responseBodyMaxSize; }
 
+    public boolean isAsyncEnabled() { return asyncEnabled; }
+
+    public int getAsyncQueueSize() { return asyncQueueSize; }
+
+    public int getAsyncBatchSize() { return asyncBatchSize; }
+
+    public String getAsyncBackPressure() { return asyncBackPressure; }
+
+    public boolean isAuditLogger() { return auditLogger; }
+
+    public String getAuditFile() { return auditFile; }
+
+    public int getAuditFileSize() { return auditFileSize; }
+
+    public int getAuditFileBackups() { return auditFileBackups; }
+
     Config getConfig() {
         return config;
     }
@@ -214,5 +246,19 @@ class AuditConfig {
         object = getMappedConfig().get(ENABLED);
         if(object != null) enabled = Config.loadBooleanValue(ENABLED, object);
         timestampFormat = (String)getMappedConfig().get(TIMESTAMP_FORMAT);
+        object = getMappedConfig().get(ASYNC_ENABLED);
+        if(object != null) asyncEnabled = Config.loadBooleanValue(ASYNC_ENABLED, object);
+        object = getMappedConfig().get(ASYNC_QUEUE_SIZE);
+        if(object != null) asyncQueueSize = Config.loadIntegerValue(ASYNC_QUEUE_SIZE, object);
+        object = getMappedConfig().get(ASYNC_BATCH_SIZE);
+        if(object != null) asyncBatchSize = Config.loadIntegerValue(ASYNC_BATCH_SIZE, object);
+        asyncBackPressure = (String)getMappedConfig().get(ASYNC_BACK_PRESSURE);
+        object = getMappedConfig().get(AUDIT_LOGGER);
+        if(object != null) auditLogger = Config.loadBooleanValue(AUDIT_LOGGER, object);
+        auditFile = (String)getMappedConfig().get(AUDIT_FILE);
+        object = getMappedConfig().get(AUDIT_FILE_SIZE);
+        if(object != null) auditFileSize = Config.loadIntegerValue(AUDIT_FILE_SIZE, object);
+        object = getMappedConfig().get(AUDIT_FILE_BACKUPS);
+        if(object != null) auditFileBackups = Config.loadIntegerValue(AUDIT_FILE_BACKUPS, object);
     }
 }
@@ -18,6 +18,7 @@ package com.networknt.audit;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.networknt.config.Config;
+import com.networknt.handler.BuffersUtils;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.httpstring.AttachmentConstants;
@@ -33,6 +34,8 @@ import io.undertow.util.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -46,7 +49,8 @@ import java.util.*;
  *
  * This handler can be used on production but be aware that it will impact the overall performance.
  * Turning off statusCode and responseTime can make it faster as these have to be captured on the
- * response chain instead of request chain.
+ * response chain instead of request chain. With asyncEnabled in audit.yml, the records are serialized
+ * and written by a background writer so that a slow appender does not add to the response time.
  *
  * For most business and the majority of microservices, you don't need to enable this handler due to
  * performance reason. The default audit log will be the audit.log configured in the default logback.xml;
@@ -95,6 +99,10 @@ public class AuditHandler implements MiddlewareHandler {
 
     private DateTimeFormatter DATE_TIME_FORMATTER;
 
+    private volatile List<AuditSink> sinks;
+
+    private volatile AsyncAuditWriter writer;
+
     public AuditHandler() {
         if (logger.isInfoEnabled()) logger.info("AuditHandler is loaded.");
         config = AuditConfig.load();
@@ -112,6 +120,7 @@ public class AuditHandler implements MiddlewareHandler {
 
             }
         }
+        initWriter();
     }
 
     @Override
@@ -164,16 +173,9 @@ public class AuditHandler implements MiddlewareHandler {
                         auditResponseBody(exchange, auditMap);
                     }
 
-                    try {
-                        // audit entries only is it is an error, if auditOnError flag is set
-                        if (config.isAuditOnError()) {
-                            if (exchange1.getStatusCode() >= 400)
-                                config.getAuditFunc().accept(Config.getInstance().getMapper().writeValueAsString(auditMap));
-                        } else {
-                            config.getAuditFunc().accept(Config.getInstance().getMapper().writeValueAsString(auditMap));
-                        }
-                    } catch (JsonProcessingException e) {
-                        throw new RuntimeException(e);
+                    // audit entries only is it is an error, if auditOnError flag is set
+                    if (!config.isAuditOnError() || exchange1.getStatusCode() >= 400) {
+                        audit(auditMap);
                     }
                 } catch (Throwable e) {
                     logger.error("ExchangeListener Throwable", e);
@@ -182,12 +184,65 @@ public class AuditHandler implements MiddlewareHandler {
                 }
             });
         } else {
-            config.getAuditFunc().accept(config.getConfig().getMapper().writeValueAsString(auditMap));
+            audit(auditMap);
         }
         if(logger.isDebugEnabled()) logger.debug("AuditHandler.handleRequest ends.");
         next(exchange);
     }
 
+    /**
+     * Write the audit record to the sinks, or hand it over to the writer thread if asyncEnabled is true.
+     *
+     * @param auditMap the audit record that is not changed after this call
+     * @throws IOException if the record cannot be serialized or written
+     */
+    private void audit(Map<String, Object> auditMap) throws IOException {
+        AsyncAuditWriter writer = this.writer;
+        if (writer != null) {
+            writer.submit(auditMap);
+        } else {
+            String record = config.getConfig().getMapper().writeValueAsString(auditMap);
+            for (AuditSink sink : sinks) {
+                sink.write(record);
+            }
+        }
+    }
+
+    /**
+     * Create the sinks and the writer from the config. The previous writer is closed after the records in its
+     * queue are written.
+     */
+    private synchronized void initWriter() {
+        List<AuditSink> newSinks = new ArrayList<>();
+        if (config.isAuditLogger()) {
+            // the auditFunc is changed if the logLevelIsError is changed by a reload.
+            newSinks.add(record -> config.getAuditFunc().accept(record));
+        }
+        if (!StringUtils.isBlank(config.getAuditFile())) {
+            try {
+                newSinks.add(new MappedFileAuditSink(Paths.get(config.getAuditFile()), config.getAuditFileSize(), config.getAuditFileBackups()));
+            } catch (IOException e) {
+                logger.error("Failed to open the audit file " + config.getAuditFile(), e);
+            }
+        }
+        AsyncAuditWriter oldWriter = writer;
+        List<AuditSink> oldSinks = sinks;
+        writer = config.isAsyncEnabled() ? new AsyncAuditWriter(config.getAsyncQueueSize(), config.getAsyncBatchSize(),
+                AsyncAuditWriter.BackPressure.of(config.getAsyncBackPressure()), config.getConfig().getMapper(), newSinks) : null;
+        sinks = newSinks;
+        if (oldWriter != null) {
+            oldWriter.close();
+        } else if (oldSinks != null) {
+            for (AuditSink sink : oldSinks) {
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    logger.error("Failed to close the audit sink", e);
+                }
+            }
+        }
+    }
+
     private void auditHeader(HttpServerExchange exchange, Map<String, Object> auditMap) {
         for (String name : config.getHeaderList()) {
             String value = exchange.getRequestHeaders().getFirst(name);
@@ -236,7 +291,7 @@ public class AuditHandler implements MiddlewareHandler {
     // Audit request body automatically if body handler enabled
     private void auditRequestBody(HttpServerExchange exchange, Map<String, Object> auditMap) {
         // Try to get BodyHandler cached request body string first to prevent unnecessary decoding
-        String requestBodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+        String requestBodyString = BuffersUtils.getRequestBodyString(exchange);
         if (requestBodyString == null && exchange.getAttachment(AttachmentConstants.REQUEST_BODY) != null) {
             // try to convert the request body to JSON if possible. Fallback to to String().
             try {
@@ -362,13 +417,25 @@ public class AuditHandler implements MiddlewareHandler {
 
     @Override
     public void register() {
-        ModuleRegistry.registerModule(AuditHandler.class.getName(), config.getMappedConfig(), null);
+        registerModule();
     }
 
     @Override
     public void reload() {
         config.reload();
-        ModuleRegistry.registerModule(AuditHandler.class.getName(), config.getMappedConfig(), null);
+        initWriter();
+        registerModule();
         if(logger.isInfoEnabled()) logger.info("AuditHandler is reloaded.");
     }
+
+    private void registerModule() {
+        Map<String, Object> moduleInfo = config.getMappedConfig();
+        AsyncAuditWriter writer = this.writer;
+        if (writer != null) {
+            // the counters of the submitted, written and dropped records are serialized from the writer.
+            moduleInfo = new LinkedHashMap<>(moduleInfo);
+            moduleInfo.put("asyncStats", writer);
+        }
+        ModuleRegistry.registerModule(AuditHandler.class.getName(), moduleInfo, null);
+    }
 }
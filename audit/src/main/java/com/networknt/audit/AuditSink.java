@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import java.io.IOException;
+
+/**
+ * The destination of the serialized audit records. The default sink is the audit logger defined in the logback.xml,
+ * and the records can also be written to a memory mapped file with the MappedFileAuditSink.
+ *
+ * When the audit records are written asynchronously, the sink is only called by the writer thread, and flush is
+ * called after each batch of records.
+ */
+@FunctionalInterface
+public interface AuditSink {
+    /**
+     * Write an audit record.
+     *
+     * @param record the audit record in JSON
+     * @throws IOException if the record cannot be written
+     */
+    void write(String record) throws IOException;
+
+    /**
+     * Flush the records that have been written.
+     *
+     * @throws IOException if the records cannot be flushed
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Release the resources of the sink. No record is written after the sink is closed.
+     *
+     * @throws IOException if the sink cannot be closed
+     */
+    default void close() throws IOException {
+    }
+}
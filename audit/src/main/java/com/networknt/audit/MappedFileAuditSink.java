@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write the audit records, one JSON per line, to a memory mapped file. A record is copied into the mapped region,
+ * so there is no system call per record and the records survive a crash of the process. When the region is full,
+ * the file is truncated to its content and rolled to file.1, the older files are shifted, and a new region is mapped.
+ * Only the given number of rolled files are kept.
+ *
+ * An existing file is rolled when the sink is opened, as its content may end with the unused part of a region
+ * that was mapped by a process that has crashed.
+ */
+public class MappedFileAuditSink implements AuditSink {
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileAuditSink.class);
+    private static final byte NEW_LINE = '\n';
+
+    private final Path file;
+    private final int fileSize;
+    private final int maxBackups;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param file the path of the audit file
+     * @param fileSize the size of the mapped region, which is the maximum size of a file
+     * @param maxBackups the number of rolled files to keep
+     * @throws IOException if the file cannot be mapped
+     */
+    public MappedFileAuditSink(Path file, int fileSize, int maxBackups) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.fileSize = fileSize;
+        this.maxBackups = maxBackups;
+        if (this.file.getParent() != null) Files.createDirectories(this.file.getParent());
+        if (Files.exists(this.file) && Files.size(this.file) > 0) {
+            shift();
+        }
+        open();
+    }
+
+    @Override
+    public synchronized void write(String record) throws IOException {
+        if (channel == null) throw new IOException("The audit file " + file + " is closed.");
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length + 1 > fileSize) {
+            logger.error("The audit record of " + bytes.length + " bytes is bigger than the auditFileSize " + fileSize + " and it is dropped.");
+            return;
+        }
+        if (bytes.length + 1 > buffer.remaining()) {
+            roll();
+        }
+        buffer.put(bytes).put(NEW_LINE);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        release();
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+    }
+
+    private void roll() throws IOException {
+        release();
+        shift();
+        open();
+    }
+
+    /**
+     * Truncate the file to its content and close it.
+     */
+    private void release() throws IOException {
+        int length = buffer.position();
+        buffer = null;
+        try {
+            channel.truncate(length);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Move the file to file.1 after moving file.n to file.n+1, and delete the file beyond maxBackups.
+     */
+    private void shift() throws IOException {
+        if (maxBackups <= 0) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.deleteIfExists(backup(maxBackups));
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            Path backup = backup(i);
+            if (Files.exists(backup)) {
+                Files.move(backup, backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path backup(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
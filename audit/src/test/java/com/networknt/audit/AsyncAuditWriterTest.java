@@ -0,0 +1,194 @@
+package com.networknt.audit;
+
+import com.networknt.config.Config;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+public class AsyncAuditWriterTest {
+
+    @Test
+    public void testRecordsAreWrittenInOrder() {
+        List<String> records = Collections.synchronizedList(new ArrayList<>());
+        AsyncAuditWriter writer = writer(16, AsyncAuditWriter.BackPressure.BLOCK, records::add);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(writer.submit(record(i)));
+        }
+        writer.close();
+        Assert.assertEquals(1000, records.size());
+        Assert.assertEquals("{\"index\":0}", records.get(0));
+        Assert.assertEquals("{\"index\":999}", records.get(999));
+        Assert.assertEquals(1000, writer.getWritten());
+        Assert.assertEquals(0, writer.getDropped());
+    }
+
+    @Test
+    public void testDropNew() throws Exception {
+        List<String> records = Collections.synchronizedList(new ArrayList<>());
+        GatedSink sink = new GatedSink(records);
+        AsyncAuditWriter writer = writer(4, AsyncAuditWriter.BackPressure.DROP_NEW, sink);
+        // the writer takes the first record and waits in the sink, then the queue is filled up.
+        writer.submit(record(0));
+        sink.entered.await(5, TimeUnit.SECONDS);
+        for (int i = 1; i <= 4; i++) {
+            Assert.assertTrue(writer.submit(record(i)));
+        }
+        Assert.assertFalse(writer.submit(record(5)));
+        Assert.assertFalse(writer.submit(record(6)));
+        sink.open.countDown();
+        writer.close();
+        Assert.assertEquals(2, writer.getDropped());
+        Assert.assertEquals(Arrays.asList("{\"index\":0}", "{\"index\":1}", "{\"index\":2}", "{\"index\":3}", "{\"index\":4}"), records);
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        List<String> records = Collections.synchronizedList(new ArrayList<>());
+        GatedSink sink = new GatedSink(records);
+        AsyncAuditWriter writer = writer(4, AsyncAuditWriter.BackPressure.DROP_OLDEST, sink);
+        writer.submit(record(0));
+        sink.entered.await(5, TimeUnit.SECONDS);
+        for (int i = 1; i <= 6; i++) {
+            Assert.assertTrue(writer.submit(record(i)));
+        }
+        sink.open.countDown();
+        writer.close();
+        Assert.assertEquals(2, writer.getDropped());
+        Assert.assertEquals(Arrays.asList("{\"index\":0}", "{\"index\":3}", "{\"index\":4}", "{\"index\":5}", "{\"index\":6}"), records);
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        List<String> records = Collections.synchronizedList(new ArrayList<>());
+        GatedSink sink = new GatedSink(records);
+        AsyncAuditWriter writer = writer(4, AsyncAuditWriter.BackPressure.BLOCK, sink);
+        writer.submit(record(0));
+        sink.entered.await(5, TimeUnit.SECONDS);
+        for (int i = 1; i <= 4; i++) {
+            writer.submit(record(i));
+        }
+        AtomicBoolean submitted = new AtomicBoolean();
+        Thread producer = new Thread(() -> submitted.set(writer.submit(record(5))));
+        producer.start();
+        producer.join(200);
+        // the producer waits for the writer as the queue is full.
+        Assert.assertTrue(producer.isAlive());
+        sink.open.countDown();
+        producer.join(5000);
+        Assert.assertTrue(submitted.get());
+        writer.close();
+        Assert.assertEquals(0, writer.getDropped());
+        Assert.assertEquals(6, records.size());
+    }
+
+    @Test
+    public void testSubmitAfterClose() {
+        List<String> records = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean closed = new AtomicBoolean();
+        AsyncAuditWriter writer = writer(16, AsyncAuditWriter.BackPressure.BLOCK, new AuditSink() {
+            @Override
+            public void write(String record) {
+                records.add(record);
+            }
+
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        });
+        Assert.assertTrue(writer.submit(record(0)));
+        writer.close();
+        Assert.assertTrue(closed.get());
+        // the record is counted as dropped instead of being left in the buffer.
+        Assert.assertFalse(writer.submit(record(1)));
+        Assert.assertEquals(1, writer.getDropped());
+        Assert.assertEquals(Collections.singletonList("{\"index\":0}"), records);
+    }
+
+    /**
+     * The latency of the exchange complete listener with a sink that takes 200us per record, which is written on the
+     * request thread without asyncEnabled and handed over to the writer with asyncEnabled.
+     */
+    @Ignore
+    @Test
+    public void testSlowSinkLatency() throws Exception {
+        // initialize the mapper before the measurement.
+        Config.getInstance().getMapper().writeValueAsString(record(0));
+        AuditSink slowSink = record -> LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+        int loop = 2000;
+        long[] sync = new long[loop];
+        for (int i = 0; i < loop; i++) {
+            long start = System.nanoTime();
+            slowSink.write(Config.getInstance().getMapper().writeValueAsString(record(i)));
+            sync[i] = System.nanoTime() - start;
+        }
+        AsyncAuditWriter writer = writer(8192, AsyncAuditWriter.BackPressure.DROP_OLDEST, slowSink);
+        long[] async = new long[loop];
+        for (int i = 0; i < loop; i++) {
+            long start = System.nanoTime();
+            writer.submit(record(i));
+            async[i] = System.nanoTime() - start;
+        }
+        writer.close();
+        Assert.assertEquals(loop, writer.getWritten());
+        System.out.println("sync  " + percentiles(sync));
+        System.out.println("async " + percentiles(async));
+        Arrays.sort(sync);
+        Arrays.sort(async);
+        Assert.assertTrue(async[loop / 2] < sync[loop / 2]);
+    }
+
+    private static String percentiles(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return "p50 " + sorted[sorted.length / 2] / 1000 + " us, p99 " + sorted[sorted.length * 99 / 100] / 1000
+                + " us, max " + sorted[sorted.length - 1] / 1000 + " us";
+    }
+
+    private static AsyncAuditWriter writer(int queueSize, AsyncAuditWriter.BackPressure backPressure, AuditSink sink) {
+        return new AsyncAuditWriter(queueSize, 256, backPressure, Config.getInstance().getMapper(), Collections.singletonList(sink));
+    }
+
+    private static Map<String, Object> record(int index) {
+        Map<String, Object> auditMap = new LinkedHashMap<>();
+        auditMap.put("index", index);
+        return auditMap;
+    }
+
+    /**
+     * A sink that holds the writer on the first record until it is opened.
+     */
+    private static class GatedSink implements AuditSink {
+        private final List<String> records;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch open = new CountDownLatch(1);
+
+        GatedSink(List<String> records) {
+            this.records = records;
+        }
+
+        @Override
+        public void write(String record) throws IOException {
+            entered.countDown();
+            try {
+                open.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            records.add(record);
+        }
+    }
+}
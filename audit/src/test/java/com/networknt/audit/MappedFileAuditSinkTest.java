@@ -0,0 +1,55 @@
+package com.networknt.audit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class MappedFileAuditSinkTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFileIsTruncatedOnClose() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("audit.log");
+        MappedFileAuditSink sink = new MappedFileAuditSink(file, 4096, 2);
+        sink.write("{\"a\":1}");
+        sink.write("{\"b\":\"é\"}");
+        sink.close();
+        Assert.assertEquals(List.of("{\"a\":1}", "{\"b\":\"é\"}"), Files.readAllLines(file, StandardCharsets.UTF_8));
+        try {
+            sink.write("{}");
+            Assert.fail("The closed sink should not be written");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().contains("closed"));
+        }
+    }
+
+    @Test
+    public void testRolling() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("audit.log");
+        // each record is 10 bytes with the new line, so a file holds 3 records.
+        MappedFileAuditSink sink = new MappedFileAuditSink(file, 32, 2);
+        for (int i = 0; i < 10; i++) {
+            sink.write("{\"i\":" + (100 + i) + "}");
+        }
+        sink.close();
+        Assert.assertEquals(List.of("{\"i\":109}"), Files.readAllLines(file));
+        Assert.assertEquals(List.of("{\"i\":106}", "{\"i\":107}", "{\"i\":108}"), Files.readAllLines(file.resolveSibling("audit.log.1")));
+        Assert.assertEquals(List.of("{\"i\":103}", "{\"i\":104}", "{\"i\":105}"), Files.readAllLines(file.resolveSibling("audit.log.2")));
+        Assert.assertFalse(Files.exists(file.resolveSibling("audit.log.3")));
+
+        // the file of the previous run is rolled when the sink is opened again.
+        sink = new MappedFileAuditSink(file, 32, 2);
+        sink.write("{\"i\":110}");
+        sink.close();
+        Assert.assertEquals(List.of("{\"i\":110}"), Files.readAllLines(file));
+        Assert.assertEquals(List.of("{\"i\":109}"), Files.readAllLines(file.resolveSibling("audit.log.1")));
+    }
+}
@@ -21,6 +21,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * To obtain maximum scalability, microservices allow Y-Axis scale to break up big
@@ -33,20 +35,29 @@ import java.util.List;
  * or one user always to be routed to one service instance. However, this key can be a
  * combination of multiple fields from the request.
  *
+ * The urls are placed on a consistent hash ring with virtual nodes, so adding or removing
+ * an instance only moves about 1/n of the keys to other instances and the rest of the keys
+ * stay on the instance that has cached their data. The ring is cached per serviceId and tag,
+ * and it is updated when the urls of the service change.
  *
  * Created by steve on 07/05/17.
  */
 public class ConsistentHashLoadBalance implements LoadBalance {
     static Logger logger = LoggerFactory.getLogger(ConsistentHashLoadBalance.class);
+    // the number of virtual nodes of each url on the ring. It is the same as the ketama.
+    static final int DEFAULT_VIRTUAL_NODES = 160;
 
-    // TODO need to keep a lookup table to map the hash to host:ip, using index in the
-    // urls is not reliable as the sequence will be changed after service restart.
-    // maybe we need somehow to have an instanceId for each service instance. UUID will
-    // do the job. It will be registered as extra parameter like public key and public
-    // key certificate of the service.
+    // cache the ring for each service so that it is only updated when the urls change.
+    Map<String, HashRing> serviceRings = new ConcurrentHashMap<>();
+    private final int virtualNodes;
 
     public ConsistentHashLoadBalance() {
-        if(logger.isInfoEnabled()) logger.info("A ConsistentHashLoadBalance instance is started");
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashLoadBalance(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+        if(logger.isInfoEnabled()) logger.info("A ConsistentHashLoadBalance instance is started with " + virtualNodes + " virtual nodes");
     }
 
 
@@ -54,27 +65,21 @@ public class ConsistentHashLoadBalance implements LoadBalance {
     public URL select(List<URL> urls, String serviceId, String tag, String requestKey) {
         URL url = null;
         if (urls.size() > 1) {
-            url = doSelect(urls, requestKey);
+            String key = tag == null ? serviceId : serviceId + "|" + tag;
+            url = doSelect(urls, key, requestKey);
         } else if (urls.size() == 1) {
             url = urls.get(0);
         }
         return url;
     }
 
-    private URL doSelect(List<URL> urls, String requestKey) {
-        int hash = getHash(requestKey);
-        // convert hash to an index in urls. This assumes there are the same number
-        // This will be changed later on.
-        return urls.get(hash % urls.size());
-    }
-
-    private int getHash(String hashKey) {
-        int hashcode;
-        if(hashKey != null) {
-            hashcode = hashKey.hashCode();
-        } else {
-            hashcode = 0;
+    private URL doSelect(List<URL> urls, String key, String requestKey) {
+        HashRing ring = serviceRings.get(key);
+        HashRing updated = ring == null ? HashRing.build(urls, virtualNodes) : ring.update(urls);
+        if (updated != ring) {
+            if(logger.isDebugEnabled()) logger.debug("The hash ring of " + key + " is updated with " + urls.size() + " urls");
+            serviceRings.put(key, updated);
         }
-        return getPositive(hashcode);
+        return updated.select(requestKey);
     }
 }
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+import com.networknt.utility.HashUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable consistent hash ring of the urls of a service. Each url is a node identified by its host and port, and
+ * it is placed on the ring with a number of virtual nodes hashed with murmur3. A key is routed to the first virtual
+ * node at or after the hash of the key, so adding or removing a node only moves the keys of its own virtual nodes.
+ *
+ * When the urls change, the ring is updated from the previous one. The virtual nodes of the nodes that are kept are
+ * reused and merged with the virtual nodes of the new nodes, so only the new nodes are hashed.
+ */
+final class HashRing {
+    private final int virtualNodes;
+    private final URL[] urls;
+    private final String[] nodes;
+    // the sorted hash of the virtual nodes and the index of the url that owns each of them.
+    private final long[] points;
+    private final int[] owners;
+    // the sorted hash of the virtual nodes of each node.
+    private final Map<String, long[]> nodePoints;
+
+    private HashRing(int virtualNodes, URL[] urls, String[] nodes, long[] points, int[] owners, Map<String, long[]> nodePoints) {
+        this.virtualNodes = virtualNodes;
+        this.urls = urls;
+        this.nodes = nodes;
+        this.points = points;
+        this.owners = owners;
+        this.nodePoints = nodePoints;
+    }
+
+    static HashRing build(List<URL> urls, int virtualNodes) {
+        return new HashRing(virtualNodes, new URL[0], new String[0], new long[0], new int[0], new HashMap<>()).update(urls);
+    }
+
+    /**
+     * @param key the request key
+     * @return the url of the first virtual node at or after the hash of the key, or null if the ring is empty
+     */
+    URL select(String key) {
+        if (points.length == 0) return null;
+        long hash = HashUtil.murmur3(key == null ? "" : key);
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) i = -i - 1;
+        if (i == points.length) i = 0;
+        return urls[owners[i]];
+    }
+
+    /**
+     * @param urls the urls of the service
+     * @return this ring if the urls are the same objects in the same order, otherwise the ring of the urls
+     */
+    HashRing update(List<URL> urls) {
+        if (isSame(urls)) return this;
+        URL[] newUrls = urls.toArray(new URL[0]);
+        String[] newNodes = new String[newUrls.length];
+        Map<String, Integer> indexes = new HashMap<>();
+        Map<String, long[]> newNodePoints = new HashMap<>();
+        for (int i = 0; i < newUrls.length; i++) {
+            newNodes[i] = node(newUrls[i]);
+            // the same host and port listed twice is one node.
+            if (indexes.putIfAbsent(newNodes[i], i) != null) continue;
+            long[] nodeHashes = nodePoints.get(newNodes[i]);
+            if (nodeHashes == null) nodeHashes = hash(newNodes[i], virtualNodes);
+            newNodePoints.put(newNodes[i], nodeHashes);
+        }
+        // keep the virtual nodes of the nodes that are still in the ring with the index of their new url.
+        int total = 0;
+        for (long[] nodeHashes : newNodePoints.values()) total += nodeHashes.length;
+        long[] newPoints = new long[total];
+        int[] newOwners = new int[total];
+        int[] remap = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            Integer index = indexes.get(nodes[i]);
+            remap[i] = index == null ? -1 : index;
+        }
+        int count = 0;
+        for (int i = 0; i < points.length; i++) {
+            int index = remap[owners[i]];
+            if (index >= 0) {
+                newPoints[count] = points[i];
+                newOwners[count++] = index;
+            }
+        }
+        // merge the virtual nodes of each new node into the ring.
+        for (Map.Entry<String, Integer> entry : indexes.entrySet()) {
+            if (nodePoints.containsKey(entry.getKey())) continue;
+            long[] nodeHashes = newNodePoints.get(entry.getKey());
+            merge(newPoints, newOwners, count, nodeHashes, entry.getValue());
+            count += nodeHashes.length;
+        }
+        return new HashRing(virtualNodes, newUrls, newNodes, newPoints, newOwners, newNodePoints);
+    }
+
+    int size() {
+        return points.length;
+    }
+
+    private boolean isSame(List<URL> urls) {
+        if (urls.size() != this.urls.length) return false;
+        for (int i = 0; i < this.urls.length; i++) {
+            if (urls.get(i) != this.urls[i]) return false;
+        }
+        return true;
+    }
+
+    private static String node(URL url) {
+        return url.getHost() + ":" + url.getPort();
+    }
+
+    private static long[] hash(String node, int virtualNodes) {
+        // each hash gives two virtual nodes from the 128 bits.
+        long[] hashes = new long[(virtualNodes + 1) / 2 * 2];
+        long[] out = new long[2];
+        for (int i = 0; i < hashes.length; i += 2) {
+            HashUtil.murmur3((node + "-" + i / 2).getBytes(StandardCharsets.UTF_8), 0, out);
+            hashes[i] = out[0];
+            hashes[i + 1] = out[1];
+        }
+        Arrays.sort(hashes);
+        return hashes;
+    }
+
+    // merge the sorted hashes of a node into the sorted points at the start of the arrays from the end.
+    private static void merge(long[] points, int[] owners, int count, long[] hashes, int owner) {
+        int i = count - 1;
+        int j = hashes.length - 1;
+        for (int k = count + hashes.length - 1; j >= 0; k--) {
+            if (i >= 0 && points[i] > hashes[j]) {
+                points[k] = points[i];
+                owners[k] = owners[i--];
+            } else {
+                points[k] = hashes[j--];
+                owners[k] = owner;
+            }
+        }
+    }
+}
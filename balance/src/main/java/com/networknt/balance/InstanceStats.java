@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The load of a service instance seen by the clients in this process. It is fed by the outbound clients, the
+ * Http2Client and the router, which call start before a request is sent to the instance and complete when the
+ * response is received, and it is used by the latency aware load balances to pick an instance.
+ *
+ * It keeps the number of outstanding requests and the peak EWMA of the response time. A response that is slower
+ * than the average replaces it at once, and a faster one is averaged in with a weight that depends on the time since
+ * the last response, so a degraded instance is avoided immediately and it is tried again gradually as it recovers.
+ * The average also decays while the instance is not used. The stats are updated without locks, and a racing update
+ * may only be averaged with a slightly different weight.
+ *
+ * The instances are identified by host and port, so the same stats are shared by the URL from the registry and the
+ * URI that is called. A URI or URL without a port uses the default port of its scheme.
+ *
+ * The stats of an instance that has no outstanding request and has not responded for the expiry are removed, so the
+ * instances that are dropped by the registry don't stay in memory. The response time has decayed to nothing by then,
+ * so the stats that are created again for the instance are the same as the removed ones.
+ */
+public final class InstanceStats {
+    // the time constant of the moving average.
+    static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // the response time recorded for a failed request, so that an instance that fails fast is not preferred.
+    static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    // the cost of an instance without response time that has outstanding requests already.
+    private static final double PENALTY = Double.MAX_VALUE / 2;
+    // the idle time after which the stats of an instance are removed, and the interval to look for them.
+    static final long EXPIRE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static final Map<String, InstanceStats> STATS = new ConcurrentHashMap<>();
+    private static final AtomicLong nextExpire = new AtomicLong(System.nanoTime() + EXPIRE_NANOS);
+
+    private final LongSupplier clock;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    // the double bits of the average response time in nanoseconds.
+    private final AtomicLong ewma = new AtomicLong();
+    private volatile long stamp;
+
+    InstanceStats(LongSupplier clock) {
+        this.clock = clock;
+        this.stamp = clock.getAsLong();
+    }
+
+    public static InstanceStats get(URL url) {
+        return get(url.getHost(), port(url.getProtocol(), url.getPort()));
+    }
+
+    public static InstanceStats get(URI uri) {
+        return get(uri.getHost(), port(uri.getScheme(), uri.getPort()));
+    }
+
+    public static InstanceStats get(String host, int port) {
+        long now = System.nanoTime();
+        long next = nextExpire.get();
+        if (now - next >= 0 && nextExpire.compareAndSet(next, now + EXPIRE_NANOS)) expire(now);
+        return STATS.computeIfAbsent(host + ":" + port, k -> new InstanceStats(System::nanoTime));
+    }
+
+    /**
+     * Remove the stats of the instances that have no outstanding request and have not responded for the expiry.
+     *
+     * @param now the current time of System.nanoTime
+     */
+    static void expire(long now) {
+        STATS.entrySet().removeIf(entry -> entry.getValue().isExpired(now));
+    }
+
+    private static int port(String scheme, int port) {
+        if (port > 0) return port;
+        return "https".equalsIgnoreCase(scheme) ? 443 : 80;
+    }
+
+    private boolean isExpired(long now) {
+        return outstanding.get() <= 0 && now - stamp > EXPIRE_NANOS;
+    }
+
+    /**
+     * Called before a request is sent to the instance.
+     *
+     * @return the start time to pass to complete
+     */
+    public long start() {
+        outstanding.incrementAndGet();
+        return clock.getAsLong();
+    }
+
+    /**
+     * Called when the response of a request is received or the request has failed.
+     *
+     * @param start the start time returned by start
+     * @param success false if the request has failed or the instance has returned a server error
+     */
+    public void complete(long start, boolean success) {
+        outstanding.decrementAndGet();
+        long now = clock.getAsLong();
+        double rtt = Math.max(now - start, 0);
+        if (!success) rtt = Math.max(rtt, FAILURE_PENALTY_NANOS);
+        long last = stamp;
+        stamp = now;
+        double weight = Math.exp(-Math.max(now - last, 0) / (double) DECAY_NANOS);
+        while (true) {
+            long bits = ewma.get();
+            double average = Double.longBitsToDouble(bits);
+            double next = rtt > average ? rtt : average * weight + rtt * (1 - weight);
+            if (ewma.compareAndSet(bits, Double.doubleToRawLongBits(next))) return;
+        }
+    }
+
+    /**
+     * @return the number of requests sent to the instance that have not completed
+     */
+    public int getOutstanding() {
+        return Math.max(outstanding.get(), 0);
+    }
+
+    /**
+     * @return the peak EWMA of the response time in nanoseconds, decayed by the time since the last response
+     */
+    public double getLatency() {
+        double average = Double.longBitsToDouble(ewma.get());
+        if (average == 0) return 0;
+        long idle = Math.max(clock.getAsLong() - stamp, 0);
+        return average * Math.exp(-idle / (double) DECAY_NANOS);
+    }
+
+    /**
+     * The expected latency of a new request, the average response time multiplied by the outstanding requests plus
+     * this one. An instance that has not responded yet is tried first, but not while it has outstanding requests.
+     *
+     * @return the cost to send a request to the instance
+     */
+    public double getCost() {
+        int pending = getOutstanding();
+        double latency = getLatency();
+        if (latency == 0) return pending == 0 ? 0 : PENALTY + pending;
+        return latency * (pending + 1);
+    }
+}
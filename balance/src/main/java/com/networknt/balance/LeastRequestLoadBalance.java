@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Least request load balance sends a request to the instance with fewer outstanding requests of two instances
+ * picked at random. A slow instance holds its requests longer, so it gets fewer new requests without measuring
+ * the response time.
+ */
+public class LeastRequestLoadBalance extends PowerOfTwoChoicesLoadBalance {
+    static Logger logger = LoggerFactory.getLogger(LeastRequestLoadBalance.class);
+
+    public LeastRequestLoadBalance() {
+        if(logger.isInfoEnabled()) logger.info("A LeastRequestLoadBalance instance is started");
+    }
+
+    @Override
+    protected double cost(InstanceStats stats) {
+        return stats.getOutstanding();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Peak EWMA load balance sends a request to the instance with the lower expected latency of two instances picked
+ * at random. The expected latency is the peak EWMA of the response time multiplied by the outstanding requests, so
+ * an instance that becomes slow is avoided at once and it gets its share of the requests again as it recovers.
+ *
+ * It is the load balance to use when the instances of a service can be degraded independently, for example when a
+ * pod is on a busy node, so that a slow instance doesn't drag down the tail latency of all the requests.
+ */
+public class PeakEwmaLoadBalance extends PowerOfTwoChoicesLoadBalance {
+    static Logger logger = LoggerFactory.getLogger(PeakEwmaLoadBalance.class);
+
+    public PeakEwmaLoadBalance() {
+        if(logger.isInfoEnabled()) logger.info("A PeakEwmaLoadBalance instance is started");
+    }
+
+    @Override
+    protected double cost(InstanceStats stats) {
+        return stats.getCost();
+    }
+}
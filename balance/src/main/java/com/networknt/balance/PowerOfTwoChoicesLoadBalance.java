@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Power of two choices picks two different urls at random and sends the request to the one with the lower
+ * cost. It avoids the slow or overloaded instances almost as well as picking the best of all urls, but
+ * it doesn't send all the concurrent requests to the same instance and it doesn't need to look at every
+ * url for each request.
+ *
+ * The cost of an instance comes from the InstanceStats that are fed by the Http2Client and the router
+ * with the requests sent to the instance.
+ */
+public abstract class PowerOfTwoChoicesLoadBalance implements LoadBalance {
+    // the stats of each url. It can be replaced to simulate the instances in the tests.
+    Function<URL, InstanceStats> stats = InstanceStats::get;
+
+    /**
+     * The requestKey is not used as the url is selected by the load of the instances.
+     *
+     * @param urls List
+     * @param serviceId String
+     * @param tag String
+     * @param requestKey String
+     * @return URL
+     */
+    @Override
+    public URL select(List<URL> urls, String serviceId, String tag, String requestKey) {
+        int size = urls.size();
+        if (size == 0) return null;
+        if (size == 1) return urls.get(0);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        // the second is one of the other urls.
+        int second = random.nextInt(size - 1);
+        if (second >= first) second++;
+        URL a = urls.get(first);
+        URL b = urls.get(second);
+        double costA = cost(stats.apply(a));
+        double costB = cost(stats.apply(b));
+        if (costA == costB) return random.nextBoolean() ? a : b;
+        return costA < costB ? a : b;
+    }
+
+    /**
+     * @param stats the stats of an instance
+     * @return the cost to send a request to the instance, the lower the better
+     */
+    protected abstract double cost(InstanceStats stats);
+}
@@ -18,13 +18,15 @@ package com.networknt.balance;
 
 import com.networknt.registry.URL;
 import com.networknt.registry.URLImpl;
-import com.networknt.service.SingletonServiceFactory;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created by steve on 08/05/17.
@@ -34,27 +36,110 @@ public class ConsitentHashLoadBalanceTest {
 
     @Test
     public void testSelect() throws Exception {
-        List<URL> urls = new ArrayList<>();
+        List<URL> urls = urls(4);
+        URL url1 = loadBalance.select(urls, "serviceId", "tag", "user1");
+        URL url2 = loadBalance.select(urls, "serviceId", "tag", "user1");
+        Assert.assertEquals(url1, url2);
 
-        //TODO complete the test cases when the class is completed. Need implementation.
-        /*
-        urls.add(new URLImpl("http", "127.0.0.1", 8081, "v1", new HashMap<String, String>()));
-        urls.add(new URLImpl("http", "127.0.0.1", 8082, "v1", new HashMap<String, String>()));
-        urls.add(new URLImpl("http", "127.0.0.1", 8083, "v1", new HashMap<String, String>()));
-        urls.add(new URLImpl("http", "127.0.0.1", 8084, "v1", new HashMap<String, String>()));
+        // the same urls in another order or in new objects select the same url.
+        List<URL> reversed = urls(4);
+        Collections.reverse(reversed);
+        Assert.assertEquals(url1, loadBalance.select(reversed, "serviceId", "tag", "user1"));
 
-        URL url1 = loadBalance.select(urls, "user1");
-        URL url2 = loadBalance.select(urls, "user1");
-        Assert.assertEquals(url1, url2);
+        // the keys are spread on all the urls.
+        Map<URL, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            counts.merge(loadBalance.select(urls, "serviceId", "tag", "user" + i), 1, Integer::sum);
+        }
+        Assert.assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            Assert.assertTrue("count = " + count, count > 1500 && count < 3500);
+        }
+    }
+
+    @Test
+    public void testSelectWithEmptyList() throws Exception {
+        Assert.assertNull(loadBalance.select(new ArrayList<>(), "serviceId", "tag", "user1"));
+        List<URL> urls = urls(1);
+        Assert.assertEquals(urls.get(0), loadBalance.select(urls, "serviceId", "tag", null));
+    }
+
+    /**
+     * Adding a url to n urls should only move about 1/(n + 1) of the keys, and all of them to the new url. Removing
+     * it again should move the keys back.
+     */
+    @Test
+    public void testKeysMovedWhenNodeAdded() throws Exception {
+        int keys = 20000;
+        for (int n : new int[]{4, 10}) {
+            List<URL> urls = urls(n);
+            URL[] before = new URL[keys];
+            for (int i = 0; i < keys; i++) before[i] = loadBalance.select(urls, "moved" + n, null, "key" + i);
+            List<URL> added = urls(n + 1);
+            URL newUrl = added.get(n);
+            int moved = 0;
+            for (int i = 0; i < keys; i++) {
+                URL url = loadBalance.select(added, "moved" + n, null, "key" + i);
+                if (!url.equals(before[i])) {
+                    moved++;
+                    Assert.assertEquals(newUrl, url);
+                }
+            }
+            double expected = (double) keys / (n + 1);
+            System.out.println("n = " + n + " moved = " + moved + " expected = " + (int) expected);
+            Assert.assertTrue("moved = " + moved, moved > expected * 0.7 && moved < expected * 1.3);
+
+            for (int i = 0; i < keys; i++) {
+                Assert.assertEquals(before[i], loadBalance.select(urls, "moved" + n, null, "key" + i));
+            }
+        }
+    }
 
-        URL url3 = loadBalance.select(urls, "user1");
-        Assert.assertEquals(url1, url3);
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        List<URL> urls = urls(5);
+        HashRing ring = HashRing.build(urls, 160);
+        Assert.assertEquals(800, ring.size());
+        Assert.assertSame(ring, ring.update(urls));
+        HashRing removed = ring.update(urls.subList(1, 5));
+        Assert.assertEquals(640, removed.size());
+        HashRing full = HashRing.build(urls.subList(1, 5), 160);
+        HashRing added = removed.update(urls(6).subList(1, 6));
+        HashRing rebuilt = HashRing.build(urls(6).subList(1, 6), 160);
+        for (int i = 0; i < 5000; i++) {
+            Assert.assertEquals(full.select("key" + i), removed.select("key" + i));
+            Assert.assertEquals(rebuilt.select("key" + i), added.select("key" + i));
+        }
+    }
 
+    @Ignore
+    @Test
+    public void testLookupPerf() throws Exception {
+        List<URL> urls = urls(50);
+        String[] keys = new String[1024];
+        for (int i = 0; i < keys.length; i++) keys[i] = "client" + i;
+        int loop = 2000000;
+        // warm up before the measurement.
+        for (int i = 0; i < loop; i++) loadBalance.select(urls, "perf", null, keys[i & 1023]);
+        long start = System.nanoTime();
+        for (int i = 0; i < loop; i++) loadBalance.select(urls, "perf", null, keys[i & 1023]);
+        System.out.println("consistent hash select of 50 urls " + (System.nanoTime() - start) / loop + " ns/op");
+        for (int i = 0; i < 100; i++) HashRing.build(urls, 160);
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) HashRing.build(urls, 160);
+        System.out.println("build ring of 50 urls " + (System.nanoTime() - start) / 100 / 1000 + " us");
+        HashRing ring = HashRing.build(urls, 160);
+        List<URL> added = urls(51);
+        start = System.nanoTime();
+        for (int i = 0; i < 100; i++) ring.update(added);
+        System.out.println("update ring with 1 url added " + (System.nanoTime() - start) / 100 / 1000 + " us");
+    }
 
-        URL url4 = loadBalance.select(urls, "user2");
-        Assert.assertNotEquals(url1, url4);
-        URL url5 = loadBalance.select(urls, "user3");
-        Assert.assertNotEquals(url4, url5);
-        */
+    private static List<URL> urls(int n) {
+        List<URL> urls = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            urls.add(new URLImpl("http", "127.0.0.1", 8081 + i, "v1", new HashMap<String, String>()));
+        }
+        return urls;
     }
 }
@@ -0,0 +1,86 @@
+package com.networknt.balance;
+
+import com.networknt.registry.URLImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class InstanceStatsTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testPeakEwma() {
+        AtomicLong clock = new AtomicLong();
+        InstanceStats stats = new InstanceStats(clock::get);
+        Assert.assertEquals(0, stats.getCost(), 0);
+        long start = stats.start();
+        Assert.assertEquals(1, stats.getOutstanding());
+        // an instance without response time is not picked again while it has a request outstanding.
+        Assert.assertTrue(stats.getCost() > 1e300);
+        clock.addAndGet(10 * MS);
+        stats.complete(start, true);
+        Assert.assertEquals(10 * MS, stats.getLatency(), 1);
+
+        // a slower response replaces the average at once.
+        start = stats.start();
+        clock.addAndGet(100 * MS);
+        stats.complete(start, true);
+        Assert.assertEquals(100 * MS, stats.getLatency(), 1);
+
+        // a faster response is averaged in with the time since the last response.
+        start = stats.start();
+        clock.addAndGet(10 * MS);
+        stats.complete(start, true);
+        double expected = 100 * MS * Math.exp(-0.001) + 10 * MS * (1 - Math.exp(-0.001));
+        Assert.assertEquals(expected, stats.getLatency(), 1);
+
+        // the average decays while the instance is not used and the outstanding requests add to the cost.
+        clock.addAndGet(InstanceStats.DECAY_NANOS);
+        Assert.assertEquals(expected / Math.E, stats.getLatency(), 1);
+        stats.start();
+        Assert.assertEquals(2 * expected / Math.E, stats.getCost(), 1);
+    }
+
+    @Test
+    public void testFailure() {
+        AtomicLong clock = new AtomicLong();
+        InstanceStats stats = new InstanceStats(clock::get);
+        long start = stats.start();
+        clock.addAndGet(MS);
+        stats.complete(start, false);
+        Assert.assertEquals(InstanceStats.FAILURE_PENALTY_NANOS, stats.getLatency(), 1);
+        Assert.assertEquals(0, stats.getOutstanding());
+    }
+
+    @Test
+    public void testSharedByHostAndPort() throws Exception {
+        Assert.assertSame(InstanceStats.get(new URI("https://10.1.1.1:8443")),
+                InstanceStats.get(new URLImpl("https", "10.1.1.1", 8443, "v1", new HashMap<String, String>())));
+        Assert.assertNotSame(InstanceStats.get("10.1.1.1", 8443), InstanceStats.get("10.1.1.1", 8444));
+    }
+
+    @Test
+    public void testDefaultPort() throws Exception {
+        Assert.assertSame(InstanceStats.get("10.1.1.2", 443), InstanceStats.get(new URI("https://10.1.1.2/v1/pets")));
+        Assert.assertSame(InstanceStats.get("10.1.1.2", 80), InstanceStats.get(new URI("http://10.1.1.2")));
+        Assert.assertSame(InstanceStats.get("10.1.1.2", 443), InstanceStats.get(new URLImpl("https", "10.1.1.2", 0, "v1", new HashMap<String, String>())));
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        InstanceStats idle = InstanceStats.get("10.1.1.3", 8443);
+        idle.complete(idle.start(), true);
+        InstanceStats busy = InstanceStats.get("10.1.1.3", 8444);
+        busy.start();
+        InstanceStats.expire(System.nanoTime() + InstanceStats.EXPIRE_NANOS + 1);
+        // the stats of the idle instance are created again, and an instance with a request outstanding is kept.
+        Assert.assertNotSame(idle, InstanceStats.get("10.1.1.3", 8443));
+        Assert.assertSame(busy, InstanceStats.get("10.1.1.3", 8444));
+        InstanceStats.expire(System.nanoTime());
+        Assert.assertSame(busy, InstanceStats.get("10.1.1.3", 8444));
+    }
+}
@@ -0,0 +1,152 @@
+package com.networknt.balance;
+
+import com.networknt.registry.URL;
+import com.networknt.registry.URLImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulate a service with a degraded instance on a virtual clock and compare the tail latency of the requests
+ * routed by each load balance. Each instance serves a number of requests concurrently and queues the others.
+ * The healthy instances take 10ms on average and the degraded one takes 30ms, so it is close to saturation with
+ * its share of the requests from the load balances that don't look at the load.
+ */
+public class LoadBalanceSimulationTest {
+    private static final int INSTANCES = 5;
+    private static final int WORKERS = 8;
+    private static final long HEALTHY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long DEGRADED_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+    private static final int REQUESTS = 60000;
+    private static final double REQUESTS_PER_SECOND = 1200;
+
+    @Test
+    public void testTailLatency() {
+        Map<String, LoadBalance> loadBalances = new LinkedHashMap<>();
+        loadBalances.put("round robin", new RoundRobinLoadBalance());
+        loadBalances.put("local first", new LocalFirstLoadBalance());
+        loadBalances.put("consistent hash", new ConsistentHashLoadBalance());
+        loadBalances.put("least request", new LeastRequestLoadBalance());
+        loadBalances.put("peak ewma", new PeakEwmaLoadBalance());
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, LoadBalance> entry : loadBalances.entrySet()) {
+            long[] latencies = new Simulation(entry.getValue()).run();
+            results.put(entry.getKey(), latencies);
+            System.out.println(String.format("%-16s p50 %7.1f ms p99 %8.1f ms p999 %8.1f ms", entry.getKey(),
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999)));
+        }
+        // the requests queued on the degraded instance are the tail of the load balances that don't look at the load.
+        double roundRobin = percentile(results.get("round robin"), 0.99);
+        Assert.assertTrue(percentile(results.get("least request"), 0.99) < roundRobin * 0.75);
+        Assert.assertTrue(percentile(results.get("peak ewma"), 0.99) < roundRobin * 0.75);
+    }
+
+    private static double percentile(long[] latencies, double percentile) {
+        return latencies[(int) Math.min(latencies.length - 1, latencies.length * percentile)] / 1000000.0;
+    }
+
+    /**
+     * A discrete event simulation of the instances. The stats of the instances are kept on the virtual clock.
+     */
+    private static class Simulation {
+        final LoadBalance loadBalance;
+        final Random random = new Random(42);
+        final List<URL> urls = new ArrayList<>();
+        final Map<URL, Instance> instances = new HashMap<>();
+        final PriorityQueue<Request> completions = new PriorityQueue<>((a, b) -> Long.compare(a.end, b.end));
+        long now;
+
+        Simulation(LoadBalance loadBalance) {
+            this.loadBalance = loadBalance;
+            for (int i = 0; i < INSTANCES; i++) {
+                URL url = new URLImpl("http", "10.0.0." + (i + 1), 8443, "v1", new HashMap<String, String>());
+                urls.add(url);
+                instances.put(url, new Instance(i == 0 ? DEGRADED_NANOS : HEALTHY_NANOS, new InstanceStats(() -> now)));
+            }
+            if (loadBalance instanceof PowerOfTwoChoicesLoadBalance) {
+                ((PowerOfTwoChoicesLoadBalance) loadBalance).stats = url -> instances.get(url).stats;
+            }
+        }
+
+        long[] run() {
+            long[] latencies = new long[REQUESTS];
+            int completed = 0;
+            long arrival = 0;
+            for (int i = 0; i < REQUESTS; i++) {
+                arrival += exponential(TimeUnit.SECONDS.toNanos(1) / REQUESTS_PER_SECOND);
+                while (!completions.isEmpty() && completions.peek().end <= arrival) {
+                    latencies[completed++] = complete(completions.poll());
+                }
+                now = arrival;
+                URL url = loadBalance.select(urls, "simulation", null, "client" + random.nextInt(1000));
+                Instance instance = instances.get(url);
+                Request request = new Request(instance, arrival, instance.stats.start());
+                if (instance.busy < WORKERS) {
+                    serve(request);
+                } else {
+                    instance.queue.add(request);
+                }
+            }
+            while (!completions.isEmpty()) {
+                latencies[completed++] = complete(completions.poll());
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        }
+
+        void serve(Request request) {
+            request.instance.busy++;
+            request.end = now + exponential(request.instance.meanNanos);
+            completions.add(request);
+        }
+
+        long complete(Request request) {
+            now = request.end;
+            Instance instance = request.instance;
+            instance.busy--;
+            instance.stats.complete(request.start, true);
+            Request next = instance.queue.poll();
+            if (next != null) serve(next);
+            return request.end - request.arrival;
+        }
+
+        long exponential(double mean) {
+            return (long) (-Math.log(1 - random.nextDouble()) * mean);
+        }
+    }
+
+    private static class Instance {
+        final long meanNanos;
+        final InstanceStats stats;
+        final ArrayDeque<Request> queue = new ArrayDeque<>();
+        int busy;
+
+        Instance(long meanNanos, InstanceStats stats) {
+            this.meanNanos = meanNanos;
+            this.stats = stats;
+        }
+    }
+
+    private static class Request {
+        final Instance instance;
+        final long arrival;
+        final long start;
+        long end;
+
+        Request(Instance instance, long arrival, long start) {
+            this.instance = instance;
+            this.arrival = arrival;
+            this.start = start;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.networknt.body;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
 import com.networknt.handler.BuffersUtils;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.handler.RequestInterceptor;
@@ -14,7 +18,10 @@ import io.undertow.util.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Note: With RequestInterceptorInjectionHandler implemented, this handler is changed from a
@@ -43,6 +50,8 @@ import java.nio.charset.StandardCharsets;
  */
 public class RequestBodyInterceptor implements RequestInterceptor {
     private static final Logger LOG = LoggerFactory.getLogger(RequestBodyInterceptor.class);
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    private static final TypeReference<List<Object>> LIST_TYPE = new TypeReference<>() {};
 
     public BodyConfig config;
 
@@ -80,17 +89,17 @@ public class RequestBodyInterceptor implements RequestInterceptor {
                 if (LOG.isTraceEnabled())
                     LOG.trace("Attach request body requirement is met and the byte buffer pool exists.");
 
-                var completeBody = BuffersUtils.toString(existing, StandardCharsets.UTF_8);
                 var contentType = exchange.getRequestHeaders().getFirst(Headers.CONTENT_TYPE);
 
                 if (LOG.isTraceEnabled()) {
+                    var completeBody = BuffersUtils.toString(existing, StandardCharsets.UTF_8);
                     // this config flag should only be enabled on non-production environment for troubleshooting purpose.
                     if(config.isLogFullRequestBody())
                         LOG.trace("contentType = " + contentType + " request body = " + completeBody);
                     else
                         LOG.trace("contentType = " + contentType + " request body = " + (completeBody.length() > 16384 ? completeBody.substring(0, 16384) : completeBody));
                 }
-                boolean attached = this.handleBody(exchange, completeBody, contentType);
+                boolean attached = this.handleBody(exchange, existing, contentType);
 
                 if (!attached && LOG.isErrorEnabled())
                     LOG.error("Failed to attach the request body to the exchange!");
@@ -107,21 +116,58 @@ public class RequestBodyInterceptor implements RequestInterceptor {
 
     }
 
-    private boolean handleBody(final HttpServerExchange ex, String body, String contentType) {
+    private boolean handleBody(final HttpServerExchange ex, PooledByteBuffer[] buffers, String contentType) throws IOException {
 
         if (this.isJsonData(contentType))
-            return this.attachJsonBody(ex, body);
+            return this.attachJsonBody(ex, buffers);
 
         else if (this.isXmlData(contentType))
-            return this.attachXmlBody(ex, body);
+            return this.attachXmlBody(ex, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
 
         else if (this.isFormData(contentType))
-            return this.attachFormDataBody(ex, body);
+            return this.attachFormDataBody(ex, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
 
         else
             return false;
     }
 
+    /**
+     * Method used to parse the buffered body into a Map or a List and attach it into exchange. The body is parsed
+     * with the streaming parser straight from the pooled buffers. If the request body is cached, the raw body is
+     * copied once, parsed from the copy and attached as the REQUEST_BODY_STRING for the handlers that read it.
+     *
+     * @param ex - current exchange
+     * @param buffers - the pooled buffers of the body
+     * @return - true if successful
+     * @throws IOException - if the body exceeds the maximum content size
+     */
+    public boolean attachJsonBody(final HttpServerExchange ex, PooledByteBuffer[] buffers) throws IOException {
+        var mapper = Config.getInstance().getMapper();
+        var bytes = this.config.isCacheRequestBody() ? BuffersUtils.toByteArray(buffers) : null;
+
+        try (var parser = bytes != null ? mapper.createParser(bytes) : mapper.createParser(BuffersUtils.asInputStream(buffers))) {
+            var token = parser.nextToken();
+
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+
+                if (bytes != null)
+                    ex.putAttachment(AttachmentConstants.REQUEST_BODY_STRING, new String(bytes, StandardCharsets.UTF_8).trim());
+
+                ex.putAttachment(AttachmentConstants.REQUEST_BODY, token == JsonToken.START_OBJECT
+                        ? mapper.readValue(parser, MAP_TYPE)
+                        : mapper.readValue(parser, LIST_TYPE));
+                return true;
+            }
+
+        } catch (JsonProcessingException e) {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Failed to parse the request body", e);
+        }
+
+        setExchangeStatus(ex, CONTENT_TYPE_MISMATCH, ContentType.APPLICATION_JSON.value());
+        return false;
+    }
+
     /**
      * Method used to parse the body into a Map or a List and attach it into exchange.
      *
@@ -0,0 +1,126 @@
+package com.networknt.body;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.networknt.config.Config;
+import com.networknt.handler.BuffersUtils;
+import com.networknt.httpstring.AttachmentConstants;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.server.HttpServerExchange;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse the buffered request body with the streaming parser straight from the pooled buffers.
+ */
+public class RequestBodyStreamingTest {
+    private static final ByteBufferPool POOL = new DefaultByteBufferPool(true, 16 * 1024);
+
+    @Test
+    public void testParseMapWithoutCache() throws Exception {
+        var interceptor = new RequestBodyInterceptor();
+        var body = json(100 * 1024);
+        var buffers = buffer(body);
+        var exchange = new HttpServerExchange(null);
+        Assert.assertTrue(interceptor.attachJsonBody(exchange, buffers));
+        var map = (Map<String, Object>) exchange.getAttachment(AttachmentConstants.REQUEST_BODY);
+        Assert.assertEquals(Config.getInstance().getMapper().readValue(body, Map.class), map);
+        Assert.assertNull(exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING));
+        // the pooled buffers can be read again by the next handler.
+        Assert.assertEquals(body.length(), BuffersUtils.remaining(buffers));
+        close(buffers);
+    }
+
+    @Test
+    public void testCachedBodyString() throws Exception {
+        var interceptor = new RequestBodyInterceptor();
+        interceptor.config = BodyConfig.load("body-cache");
+        var body = "  [{\"key1\":\"value1\"}, {\"key2\":\"é\"}]\n";
+        var buffers = buffer(body);
+        var exchange = new HttpServerExchange(null);
+        Assert.assertTrue(interceptor.attachJsonBody(exchange, buffers));
+        Assert.assertEquals(2, ((List<Object>) exchange.getAttachment(AttachmentConstants.REQUEST_BODY)).size());
+        close(buffers);
+        // the string is attached for the handlers that read it directly from the exchange.
+        Assert.assertEquals(body.trim(), exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING));
+        Assert.assertEquals(body.trim(), BuffersUtils.getRequestBodyString(exchange));
+    }
+
+    /**
+     * Compare the string based parsing with the streaming parsing for 1KB, 100KB and 5MB bodies.
+     */
+    @Ignore
+    @Test
+    public void testParsePerf() throws Exception {
+        var mapper = Config.getInstance().getMapper();
+        var cachingInterceptor = new RequestBodyInterceptor();
+        cachingInterceptor.config = BodyConfig.load("body-cache");
+        var interceptor = new RequestBodyInterceptor();
+        for (int size : new int[]{1024, 100 * 1024, 5 * 1024 * 1024}) {
+            var buffers = buffer(json(size));
+            int loop = Math.max(5, 20 * 1024 * 1024 / size);
+            measure(size, "string", loop, () -> {
+                var s = BuffersUtils.toString(buffers, StandardCharsets.UTF_8).trim();
+                var exchange = new HttpServerExchange(null);
+                exchange.putAttachment(AttachmentConstants.REQUEST_BODY_STRING, s);
+                exchange.putAttachment(AttachmentConstants.REQUEST_BODY, mapper.readValue(s, new TypeReference<Map<String, Object>>() {}));
+            });
+            measure(size, "streaming", loop, () -> interceptor.attachJsonBody(new HttpServerExchange(null), buffers));
+            measure(size, "streaming cached", loop, () -> cachingInterceptor.attachJsonBody(new HttpServerExchange(null), buffers));
+            close(buffers);
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static void measure(int size, String name, int loop, Task task) throws Exception {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // warm up before the measurement.
+        for (int i = 0; i < loop; i++) task.run();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < loop; i++) task.run();
+        long elapsed = System.nanoTime() - start;
+        allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.println(size / 1024 + "KB " + name + " " + elapsed / loop / 1000 + " us/op " + allocated / loop / 1024 + " KB/op");
+    }
+
+    private static String json(int size) {
+        var sb = new StringBuilder("{\"id\":\"body\",\"items\":[");
+        for (int i = 0; sb.length() < size - 64; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"index\":").append(i).append(",\"name\":\"item").append(i).append("\",\"active\":true}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static PooledByteBuffer[] buffer(String body) {
+        var buffers = new PooledByteBuffer[BuffersUtils.config.getMaxBuffers()];
+        var src = ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; src.hasRemaining(); i++) {
+            buffers[i] = POOL.allocate();
+            var dst = buffers[i].getBuffer();
+            int n = Math.min(dst.remaining(), src.remaining());
+            dst.put(src.slice().limit(n));
+            src.position(src.position() + n);
+            dst.flip();
+        }
+        return buffers;
+    }
+
+    private static void close(PooledByteBuffer[] buffers) {
+        for (PooledByteBuffer buffer : buffers)
+            if (buffer != null) buffer.close();
+    }
+}
@@ -1,6 +1,7 @@
 package com.networknt.client;
 
 import com.networknt.config.Config;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.util.Map;
@@ -84,6 +85,7 @@ public final class ClientConfig {
     private Map<String, Object> derefConfig;
     private Map<String, Object> signConfig;
     private Map<String, String> pathPrefixServices;
+    private PathPrefixTrie<String> pathPrefixServicesTrie = PathPrefixTrie.empty();
     private static volatile ClientConfig instance;
 
     private ClientConfig() {
@@ -206,10 +208,16 @@ public final class ClientConfig {
     private void setPathPrefixServices() {
         if (mappedConfig.get(PATH_PREFIX_SERVICES) != null && mappedConfig.get(PATH_PREFIX_SERVICES) instanceof Map) {
             pathPrefixServices = (Map)mappedConfig.get(PATH_PREFIX_SERVICES);
+            pathPrefixServicesTrie = PathPrefixTrie.of(pathPrefixServices);
         }
     }
     public Map<String, String> getPathPrefixServices() { return pathPrefixServices; }
 
+    /**
+     * @return the trie of the pathPrefixServices to find the serviceId of the longest prefix of a request path.
+     */
+    public PathPrefixTrie<String> getPathPrefixServicesTrie() { return pathPrefixServicesTrie; }
+
     private void setOAuthConfig() {
         oauthConfig = (Map<String, Object>)mappedConfig.get(OAUTH);
         if (oauthConfig != null) {
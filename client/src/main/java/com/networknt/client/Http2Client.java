@@ -31,6 +31,7 @@ import com.networknt.client.simplepool.undertow.SimpleClientConnectionMaker;
 import com.networknt.client.ssl.ClientX509ExtendedTrustManager;
 import com.networknt.client.ssl.CompositeX509TrustManager;
 import com.networknt.client.ssl.TLSConfig;
+import com.networknt.balance.InstanceStats;
 import com.networknt.cluster.Cluster;
 import com.networknt.config.Config;
 import com.networknt.config.JsonMapper;
@@ -85,6 +86,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import static io.undertow.client.http.HttpClientProvider.DISABLE_HTTPS_ENDPOINT_IDENTIFICATION_PROPERTY;
 
 /**
@@ -1298,7 +1300,8 @@ public class Http2Client {
                 logger.error("Failed to discover service with serviceID: {}, and tag: {}", serviceId, envTag);
                 throw new ClientException(String.format("Failed to discover service with serviceID: %s, and tag: %s", serviceId, envTag));
             }
-            return callService(new URI(url), request, requestBody);
+            URI uri = new URI(url);
+            return observe(uri, () -> callService(uri, request, requestBody));
         } catch (Exception e) {
             logger.error("Failed to call service: {}", serviceId);
             throw new RuntimeException("Failed to call service: " + serviceId, e);
@@ -1324,13 +1327,35 @@ public class Http2Client {
                 logger.error("Failed to discover service with serviceID: {}, and tag: {}", serviceId, envTag);
                 throw new ClientException(String.format("Failed to discover service with serviceID: %s, and tag: %s", serviceId, envTag));
             }
-            return callService(new URI(url), request, requestBody, isHttp2);
+            URI uri = new URI(url);
+            return observe(uri, () -> callService(uri, request, requestBody, isHttp2));
         } catch (Exception e) {
             logger.error("Failed to call service: {}", serviceId);
             throw new RuntimeException("Failed to call service: " + serviceId, e);
         }
     }
 
+    /**
+     * Record the request to the discovered instance in its InstanceStats, so that the latency aware
+     * load balances can avoid the instances that are slow or have too many outstanding requests.
+     * @param uri URI of the instance
+     * @param call the call to the instance
+     * @return client response
+     */
+    private CompletableFuture<ClientResponse> observe(URI uri, Supplier<CompletableFuture<ClientResponse>> call) {
+        InstanceStats stats = InstanceStats.get(uri);
+        long start = stats.start();
+        CompletableFuture<ClientResponse> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            stats.complete(start, false);
+            throw e;
+        }
+        future.whenComplete((response, e) -> stats.complete(start, e == null && response.getResponseCode() < 500));
+        return future;
+    }
+
     /**
      * Create async connection with default config value
      * @param uri URI
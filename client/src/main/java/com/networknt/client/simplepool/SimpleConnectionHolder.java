@@ -31,7 +31,9 @@ import java.net.URI;
 import java.util.Set;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /***
  * A SimpleConnectionHolder is a simplified interface for a connection, that also keeps track of the connection's state.
@@ -89,10 +91,22 @@ import java.util.concurrent.ConcurrentHashMap;
  *   This is important when calculating an aggregate state based on the values of 2 or more time-dependent states.
  *
  *   Not doing so (i.e.: not freezing the time) may allow inconsistent states to be reached.
+ *
+ * Thread Safety
+ *   The state transitions are lock-free. The number of borrowed tokens is an atomic counter that is incremented
+ *   with a compare-and-set up to MAX_BORROWS, so an HTTP/2 connection keeps the count of its concurrent streams
+ *   and an HTTP/1.1 connection can never be borrowed twice. Closing the connection swaps the counter from 0 to
+ *   CLOSED, so a connection can never be borrowed and closed at the same time.
  */
 public final class SimpleConnectionHolder {
     private static final Logger logger = LoggerFactory.getLogger(SimpleConnectionHolder.class);
 
+    // the value of the borrow counter once the connection has been closed by the connection pool
+    private static final int CLOSED = -1;
+
+    private static final AtomicIntegerFieldUpdater<ConnectionToken> RESTORED =
+            AtomicIntegerFieldUpdater.newUpdater(ConnectionToken.class, "restored");
+
     // how long a connection can be eligible to be borrowed
     private final long EXPIRE_TIME;
 
@@ -119,8 +133,8 @@ public final class SimpleConnectionHolder {
     private final SimpleConnectionMaker connectionMaker;
     private final SimpleConnection connection;
 
-    /** a Set containing all borrowed connection tokens */
-    private final Set<ConnectionToken> borrowedTokens = ConcurrentHashMap.newKeySet();
+    /** the number of borrowed connection tokens, or CLOSED once the connection has been closed by the pool */
+    private final AtomicInteger borrows = new AtomicInteger();
 
     /***
      * Connections and ConnectionHolders are paired 1-1. For every connection there is a single ConnectionHolder and
@@ -184,7 +198,7 @@ public final class SimpleConnectionHolder {
         }
     }
 
-    private volatile boolean firstUse = true;
+    private final AtomicBoolean firstUse = new AtomicBoolean(true);
     /**
      * State Transition - Borrow
      *
@@ -193,49 +207,59 @@ public final class SimpleConnectionHolder {
      * @return returns a ConnectionToken representing this borrow of the connection
      * @throws RuntimeException if connection closed or attempt to borrow after pool is full
      */
-    public synchronized ConnectionToken borrow(long connectionCreateTimeout, long now) throws RuntimeException {
+    public ConnectionToken borrow(long connectionCreateTimeout, long now) throws RuntimeException {
         /***
          * Connections can only be borrowed when the connection is in a BORROWABLE state.
          *
          * This will throw an IllegalStateException if borrow is called when the connection is not borrowable.
-         * This means that users need to check the state of the connection (i.e.: the state of the ConnectionHolder)
-         * before using it, e.g.:
-         *
-         *     ConnectionToken connectionToken = null;
-         *     long now = System.currentTimeMillis();
-         *
-         *     if(connectionHolder.borrowable(now))
-         *         connectionToken = connectionHolder.borrow(connectionCreateTimeout, now);
-         *
-         * Also note the use of a single consistent value for the current time ('now'). This ensures
-         * that the state returned in the 'if' statement will still be true in the 'borrow' statement
-         * (as long as the connection does not close between the 'if' and 'borrow').
-         *
+         * Since other threads can borrow the connection between a check of its state and the borrow, the connection
+         * pool uses tryBorrow(), which returns null instead of throwing an exception.
          */
-        ConnectionToken connectionToken;
+        ConnectionToken connectionToken = tryBorrow(connectionCreateTimeout, now);
+        if(connectionToken != null)
+            return connectionToken;
+
+        if(closed())
+            throw new RuntimeException("Connection was unexpectedly closed");
+        else
+            throw new IllegalStateException("Attempt made to borrow connection outside of BORROWABLE state");
+    }
+
+    /**
+     * State Transition - Borrow
+     *
+     * Atomically reserves one of the MAX_BORROWS borrows of the connection.
+     *
+     * @param connectionCreateTimeout the amount of time to wait for a connection to be created before throwing an exception
+     * @param now the time at which to evaluate whether the connection is borrowable or not
+     * @return a ConnectionToken representing this borrow of the connection, or null if the connection is not BORROWABLE
+     * @throws RuntimeException if the connection cannot be reused
+     */
+    ConnectionToken tryBorrow(long connectionCreateTimeout, long now) throws RuntimeException {
+        int borrowed;
+        do {
+            borrowed = borrows.get();
+            if(borrowed == CLOSED || borrowed >= MAX_BORROWS || expired(now) || closed())
+                return null;
+        } while(!borrows.compareAndSet(borrowed, borrowed + 1));
 
-        if(borrowable(now)) {
-            if (firstUse) {
-                firstUse = false;
+        ConnectionToken connectionToken;
+        try {
+            if (firstUse.compareAndSet(true, false)) {
                 connectionToken = new ConnectionToken(connection);
             } else {
                 SimpleConnection reusedConnection = connectionMaker.reuseConnection(connectionCreateTimeout, connection);
                 connectionToken = new ConnectionToken(reusedConnection);
             }
+        } catch(RuntimeException e) {
+            borrows.decrementAndGet();
+            throw e;
+        }
 
-            // add connectionToken to the Set of borrowed tokens
-            borrowedTokens.add(connectionToken);
-
-            logger.debug("{} borrow - connection now has {} borrows", logLabel(connection, now), borrowedTokens.size());
+        if(logger.isDebugEnabled())
+            logger.debug("{} borrow - connection now has {} borrows", logLabel(connection, now), borrowed + 1);
 
-            return connectionToken;
-        }
-        else {
-            if(closed())
-                throw new RuntimeException("Connection was unexpectedly closed");
-            else
-                throw new IllegalStateException("Attempt made to borrow connection outside of BORROWABLE state");
-        }
+        return connectionToken;
     }
 
     /**
@@ -246,11 +270,14 @@ public final class SimpleConnectionHolder {
      *
      * @param connectionToken the ConnectionToken representing the borrow of the connection
      */
-    public synchronized void restore(ConnectionToken connectionToken) {
-        borrowedTokens.remove(connectionToken);
-
-        long now = System.currentTimeMillis();
-        logger.debug("{} restore - connection now has {} borrows", logLabel(connection, now), borrowedTokens.size());
+    public void restore(ConnectionToken connectionToken) {
+        // a token can only be restored once, and only to the connection it was borrowed from
+        if(connectionToken.holder != this || !RESTORED.compareAndSet(connectionToken, 0, 1))
+            return;
+
+        int borrowed = borrows.decrementAndGet();
+        if(logger.isDebugEnabled())
+            logger.debug("{} restore - connection now has {} borrows", logLabel(connection, System.currentTimeMillis()), borrowed);
     }
 
     /**
@@ -259,9 +286,27 @@ public final class SimpleConnectionHolder {
      * @param now the time at which to evaluate whether this connection is closable or not
      * @return true if the connection was closed and false otherwise
      */
-    public synchronized boolean safeClose(long now) {
-        logger.debug("{} close - closing connection with {} borrows...", logLabel(connection, now), borrowedTokens.size());
+    public boolean safeClose(long now) {
+        if(logger.isDebugEnabled())
+            logger.debug("{} close - closing connection with {} borrows...", logLabel(connection, now), borrows());
+
+        /**
+        Ensures that a connection is never closed unless the connection is in the NOT_BORROWED_EXPIRED state
+        This is vital to ensure that connections are never closed until after all processes that
+        borrowed them are no longer using them
+        */
+        if(!tryClose(now))
+            throw new IllegalStateException();
+        return true;
+    }
 
+    /**
+     * State Transition - Close
+     *
+     * @param now the time at which to evaluate whether this connection is closable or not
+     * @return true if the connection is closed and false if it is not in the NOT_BORROWED_EXPIRED state
+     */
+    boolean tryClose(long now) {
         /**
         Connection may still be open even if closed == true
         However, for consistency, we treat the connection as closed as soon as closed == true,
@@ -270,18 +315,13 @@ public final class SimpleConnectionHolder {
         if(closed())
             return true;
 
-        /**
-        Ensures that a connection is never closed unless the connection is in the NOT_BORROWED_EXPIRED state
-        This is vital to ensure that connections are never closed until after all processes that
-        borrowed them are no longer using them
-        */
-        boolean notBorrowedExpired = !borrowed() && expired(now);
-        if(notBorrowedExpired != true)
-            throw new IllegalStateException();
+        // the counter is swapped to CLOSED only if there are no borrows, so no borrow can happen after this point
+        if(!expired(now) || !borrows.compareAndSet(0, CLOSED))
+            return false;
 
         closed = true;
         connection.safeClose();
-        return closed;
+        return true;
     }
 
     /**
@@ -289,7 +329,7 @@ public final class SimpleConnectionHolder {
      *
      * @return true if the connection is closed and false otherwise
      */
-    public synchronized boolean closed() {
+    public boolean closed() {
         if(closed)
             return closed;
 
@@ -305,7 +345,7 @@ public final class SimpleConnectionHolder {
      * @param now the time at which to evaluate whether this connection has expired or not
      * @return true if the connection has expired and false otherwise
      */
-    public synchronized boolean expired(long now) {
+    public boolean expired(long now) {
         return now - startTime >= EXPIRE_TIME;
     }
 
@@ -314,8 +354,19 @@ public final class SimpleConnectionHolder {
      *
      * @return true if the connection is currently borrowed and false otherwise
      */
-    public synchronized boolean borrowed() {
-        return borrowedTokens.size() > 0;
+    public boolean borrowed() {
+        return borrows.get() > 0;
+    }
+
+    /**
+     * State Property - borrows
+     *
+     * For HTTP/2 connections this is the number of concurrent streams of the connection.
+     *
+     * @return the number of borrowed tokens of the connection
+     */
+    public int borrows() {
+        return Math.max(borrows.get(), 0);
     }
 
     /**
@@ -323,8 +374,8 @@ public final class SimpleConnectionHolder {
      * 
      * @return true if the connection is at its maximum number of borrows, and false otherwise
      */
-    public synchronized boolean maxBorrowed() {
-        return borrowedTokens.size() >= MAX_BORROWS;
+    public boolean maxBorrowed() {
+        return borrows.get() >= MAX_BORROWS;
     }
 
     /**
@@ -333,8 +384,9 @@ public final class SimpleConnectionHolder {
      * @param now the time at which to evaluate the borrowability of this connection
      * @return true if the connection is borrowable and false otherwise
      */
-    public synchronized boolean borrowable(long now) {
-        return connection.isOpen() && !expired(now) && !maxBorrowed();
+    public boolean borrowable(long now) {
+        int borrowed = borrows.get();
+        return borrowed != CLOSED && borrowed < MAX_BORROWS && connection.isOpen() && !expired(now);
     }
 
     /**
@@ -348,6 +400,7 @@ public final class SimpleConnectionHolder {
         private final SimpleConnection connection;
         private final SimpleConnectionHolder holder;
         private final URI uri;
+        volatile int restored;
 
         ConnectionToken(SimpleConnection connection) {
             this.connection = connection;
@@ -363,10 +416,6 @@ public final class SimpleConnectionHolder {
 
     /***
      * For logging
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
      */
     private String logLabel(SimpleConnection connection, long now) {
         return "[" + port(connection) + ": " + state(now) + "]";
@@ -374,10 +423,6 @@ public final class SimpleConnectionHolder {
 
     /***
      * For logging
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
      */
     private static String port(SimpleConnection connection) {
         if(connection == null) return "NULL";
@@ -389,10 +434,6 @@ public final class SimpleConnectionHolder {
 
     /***
      * For logging
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
      */
     private enum State { CLOSED, BORROWABLE, NOT_BORROWABLE, NOT_BORROWED, VALID, BORROWED, EXPIRED }
     private String state(long now) {
@@ -23,7 +23,6 @@ import io.undertow.connector.ByteBufferPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.OptionMap;
-import org.xnio.XnioIoThread;
 import org.xnio.XnioWorker;
 import org.xnio.ssl.XnioSsl;
 
@@ -32,19 +31,29 @@ import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /***
     A connection pool for a single URI.
-    Connection pool contains 4 Sets of ConnectionHolders:
 
-        1. allCreatedConnections    all connections created by connection makers are added to this set
-        2. allKnownConnections:     the set of all connections tracked by the connection pool
-        3. Borrowable:              connection that can be borrowed from
-        4. Borrowed:                connections that have borrowed tokens
-        5. notBorrowedExpired:      connections that have no borrowed tokens -- only these can be closed by the pool
+    Borrowing and restoring a connection do not take a lock. The connection holders are kept in a copy-on-write
+    array that is only replaced when a connection is created or removed, and a borrow tries the holders starting
+    from a random one until one of them atomically accepts the borrow (see SimpleConnectionHolder). An HTTP/2
+    connection accepts the borrow on the first try, so a borrow is O(1) as long as the pool has a live connection.
+
+    The housekeeping of the pool is amortised. It is run by a single thread at most once every HOUSEKEEPING_INTERVAL
+    from borrow() or restore(), or immediately when a borrow finds no borrowable connection. It:
+
+        1. stops tracking the connections that have been closed
+        2. closes the connections that are expired and not borrowed -- only these can be closed by the pool
+        3. closes the connections that were created by connection makers but are not tracked by the pool (leaks)
 */
 public final class SimpleURIConnectionPool {
     private static final Logger logger = LoggerFactory.getLogger(SimpleURIConnectionPool.class);
+    // the minimum time in ms between two runs of the housekeeping of the pool
+    private static final long HOUSEKEEPING_INTERVAL = 1000;
+    private static final SimpleConnectionHolder[] EMPTY = new SimpleConnectionHolder[0];
     private final SimpleConnectionMaker connectionMaker;
     private final long EXPIRY_TIME;
     private final int poolSize;
@@ -56,20 +65,18 @@ public final class SimpleURIConnectionPool {
     private OptionMap options;
 
 
-    /** Connection Pool Sets
-     *  These sets determine the mutable state of the connection pool
-     */
     /** The set of all connections created by the SimpleConnectionMaker for this uri */
     private final Set<SimpleConnection> allCreatedConnections = ConcurrentHashMap.newKeySet();
-    /** The set containing all connections known to this connection pool (It is not considered a state set) */
-    private final Set<SimpleConnectionHolder> allKnownConnections = new HashSet<>();
-    /**
-     * State Sets
-     * The existence or non-existence of a connection in one of these sets means that the connection is or is not in
-     * one of these states. A connection can be in multiple state sets at a time (e.g.: a connection can be both borrowed and borrowable) */
-    private final Set<SimpleConnectionHolder> borrowable = new HashSet<>();
-    private final Set<SimpleConnectionHolder> borrowed = new HashSet<>();
-    private final Set<SimpleConnectionHolder> notBorrowedExpired = new HashSet<>();
+    /** All connections known to this connection pool. The array is never modified, only replaced while holding the lock */
+    private volatile SimpleConnectionHolder[] allKnownConnections = EMPTY;
+    /** The number of known connections plus the connections that are being created, it is never more than poolSize */
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    /** The number of connections that are being created but are not known to the pool yet */
+    private final AtomicInteger pendingConnections = new AtomicInteger();
+    /** The time of the next housekeeping run */
+    private final AtomicLong nextHousekeeping = new AtomicLong();
+    /** Guards the replacement of allKnownConnections and the housekeeping */
+    private final Object lock = new Object();
 
     public SimpleURIConnectionPool(URI uri, long expireTime, int poolSize, SimpleConnectionMaker connectionMaker) {
         EXPIRY_TIME = expireTime;
@@ -96,26 +103,21 @@ public final class SimpleURIConnectionPool {
      * @return a connection token that represents the borrowing of a connection by a thread
      * @throws RuntimeException if an attempt is made to exceed the maximum size of the connection pool
      */
-    public synchronized SimpleConnectionHolder.ConnectionToken borrow(long createConnectionTimeout) throws RuntimeException {
+    public SimpleConnectionHolder.ConnectionToken borrow(long createConnectionTimeout) throws RuntimeException {
         long now = System.currentTimeMillis();
-        final SimpleConnectionHolder holder;
-
-        readAllConnectionHolders(now);
-
-        if(borrowable.size() > 0) {
-            holder = borrowable.toArray(new SimpleConnectionHolder[0])[ThreadLocalRandom.current().nextInt(borrowable.size())];
-        } else {
-            if (allKnownConnections.size() < poolSize) {
-                holder = new SimpleConnectionHolder(EXPIRY_TIME, createConnectionTimeout, uri, bindAddress, worker, bufferPool, ssl, options, allCreatedConnections, connectionMaker);
-                allKnownConnections.add(holder);
-            } else
-                throw new RuntimeException("An attempt was made to exceed the maximum size was of the " + uri.toString() + " connection pool");
+        maybeHousekeeping(now);
+
+        SimpleConnectionHolder.ConnectionToken connectionToken = borrowKnown(createConnectionTimeout, now);
+        if(connectionToken == null) {
+            // reclaim the closed and expired connections before a new connection is created
+            housekeeping(now);
+            connectionToken = borrowKnown(createConnectionTimeout, now);
+            if(connectionToken == null)
+                connectionToken = borrowNew(createConnectionTimeout, now);
         }
 
-        SimpleConnectionHolder.ConnectionToken connectionToken = holder.borrow(createConnectionTimeout, now);
-        readConnectionHolder(holder, now, () -> allKnownConnections.remove(holder));
-
-        logger.debug(showConnections("borrow"));
+        if(logger.isDebugEnabled())
+            logger.debug(showConnections("borrow", now));
 
         return connectionToken;
     }
@@ -129,7 +131,7 @@ public final class SimpleURIConnectionPool {
      *
      * @param connectionToken the connection token that represents the borrowing of a connection by a thread
      */
-    public synchronized void restore(SimpleConnectionHolder.ConnectionToken connectionToken) {
+    public void restore(SimpleConnectionHolder.ConnectionToken connectionToken) {
         if(connectionToken == null)
             return;
 
@@ -137,124 +139,123 @@ public final class SimpleURIConnectionPool {
         long now = System.currentTimeMillis();
 
         holder.restore(connectionToken);
-        readAllConnectionHolders(now);
+        maybeHousekeeping(now);
 
-        logger.debug(showConnections("restore"));
+        if(logger.isDebugEnabled())
+            logger.debug(showConnections("restore", now));
     }
 
     /**
-     * A key method that orchestrates the update of the connection pool's state
-     * It is guaranteed to run every time a transition method is called on SimpleURIConnectionPool
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
-     *
-     * Note:
-     *     'knownConnectionHolders::remove' is just Java syntactic sugar for '() -> knownConnectionHolders.remove()'
+     * Try to borrow one of the known connections, starting from a random one so that the borrows are spread
+     * over the connections of the pool.
      *
+     * @param createConnectionTimeout the maximum time to wait for a connection to be reused
      * @param now the current time in ms
+     * @return a connection token, or null if none of the known connections is borrowable
      */
-    private void readAllConnectionHolders(long now)
-    {
-        /**
-         * Sweep all known connections and update sets
-         *
-         * Remove any connections that have unexpectedly closed
-         * Move all remaining connections to appropriate sets based on their properties
-         */
-        final Iterator<SimpleConnectionHolder> knownConnectionHolders = allKnownConnections.iterator();
-        while (knownConnectionHolders.hasNext()) {
-            SimpleConnectionHolder connection = knownConnectionHolders.next();
-
-            // remove connections that have unexpectedly closed
-            if (connection.closed()) {
-                logger.debug("[{}: CLOSED]: Connection unexpectedly closed - Removing from known-connections set", port(connection.connection()));
-                readConnectionHolder(connection, now, knownConnectionHolders::remove);
-            }
-            // else, move connections to correct sets
-            else {
-                readConnectionHolder(connection, now, knownConnectionHolders::remove);
-
-                // close and remove connections if they are in a closeable set
-                if (notBorrowedExpired.contains(connection)) {
-                    connection.safeClose(now);
-                    readConnectionHolder(connection, now, knownConnectionHolders::remove);
-                }
-            }
+    private SimpleConnectionHolder.ConnectionToken borrowKnown(long createConnectionTimeout, long now) {
+        SimpleConnectionHolder[] holders = allKnownConnections;
+        int size = holders.length;
+        if(size == 0)
+            return null;
+
+        int start = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+        for(int i = 0; i < size; i++) {
+            SimpleConnectionHolder.ConnectionToken connectionToken = holders[(start + i) % size].tryBorrow(createConnectionTimeout, now);
+            if(connectionToken != null)
+                return connectionToken;
         }
-
-        // find and close any leaked connections
-        findAndCloseLeakedConnections();
+        return null;
     }
 
-    private interface RemoveFromAllKnownConnections { void remove(); }
-    /***
-     * This method reads a connection and moves it to the correct sets based on its properties.
-     * It will also remove a connection from all sets (i.e.: stop tracking the connection) if it is closed.
-     *
-     * NOTE: Closing connections and modifying sets
-     *     readConnectionHolder() and findAndCloseLeakedConnections() are the only two methods that close connections
-     *     and modify sets. This can be helpful to know for debugging since the sets comprise the entirety of the
-     *     mutable state of this SimpleURIConnectionPool objects
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
+    /**
+     * Create a new connection and borrow it. The creation happens outside of the lock, and the slot of the new
+     * connection is reserved before it is created so that the size of the pool is never exceeded.
      *
-     * @param connection
-     * @param now
-     * @param knownConnections a lambda expression to remove a closed-connection from allKnownConnections, either using
-     *                         an Iterator of allKnownConnections, or directly using allKnownConnections.remove()
+     * @param createConnectionTimeout the maximum time to wait for a connection to be created
+     * @param now the current time in ms
+     * @return a connection token of the new connection
+     * @throws RuntimeException if the pool is full or the connection cannot be created
      */
-    private void readConnectionHolder(SimpleConnectionHolder connection, long now, RemoveFromAllKnownConnections knownConnections) {
-
-        /**
-         * Remove all references to closed connections
-         * After the connection is removed, the only reference to it will be in any unrestored ConnectionTokens,
-         * however, ConnectionTokens restored after the connection is closed will not be re-added to any sets
-         * (and will therefore be garbage collected)
-         */
-        if(connection.closed()) {
-            logger.debug("[{}: CLOSED]: Connection closed - Stopping connection tracking", port(connection.connection()));
-
-            allCreatedConnections.remove(connection.connection());  // connection.connection() returns a SimpleConnection
-            knownConnections.remove();  // this will remove the connection from allKnownConnections directly, or via Iterator
-
-            borrowable.remove(connection);
-            borrowed.remove(connection);
-            notBorrowedExpired.remove(connection);
-            return;
+    private SimpleConnectionHolder.ConnectionToken borrowNew(long createConnectionTimeout, long now) throws RuntimeException {
+        int count;
+        do {
+            count = connectionCount.get();
+            if(count >= poolSize)
+                throw new RuntimeException("An attempt was made to exceed the maximum size was of the " + uri.toString() + " connection pool");
+        } while(!connectionCount.compareAndSet(count, count + 1));
+
+        pendingConnections.incrementAndGet();
+        try {
+            SimpleConnectionHolder holder = new SimpleConnectionHolder(EXPIRY_TIME, createConnectionTimeout, uri, bindAddress, worker, bufferPool, ssl, options, allCreatedConnections, connectionMaker);
+
+            // the new connection is borrowed before it is published so that no other thread can take its first use
+            SimpleConnectionHolder.ConnectionToken connectionToken = holder.borrow(createConnectionTimeout, now);
+            synchronized (lock) {
+                SimpleConnectionHolder[] holders = Arrays.copyOf(allKnownConnections, allKnownConnections.length + 1);
+                holders[holders.length - 1] = holder;
+                allKnownConnections = holders;
+            }
+            return connectionToken;
+        } catch(RuntimeException e) {
+            // a connection that was created but not published is closed as a leak by the housekeeping
+            connectionCount.decrementAndGet();
+            throw e;
+        } finally {
+            pendingConnections.decrementAndGet();
         }
+    }
 
-        // if connection is open, move it to the correct state-sets based on its properties
-        boolean isExpired =             connection.expired(now);
-        boolean isBorrowed =            connection.borrowed();
-        boolean isBorrowable =          connection.borrowable(now);
-        boolean isNotBorrowedExpired =  !isBorrowed && isExpired;
-
-        updateSet(borrowable, isBorrowable, connection);
-        updateSet(borrowed, isBorrowed, connection);
-        updateSet(notBorrowedExpired, isNotBorrowedExpired, connection);
+    /**
+     * Run the housekeeping if it has not been run for HOUSEKEEPING_INTERVAL. Only the thread that wins the update of
+     * the next housekeeping time runs it, so the other threads never wait for it.
+     *
+     * @param now the current time in ms
+     */
+    private void maybeHousekeeping(long now) {
+        long next = nextHousekeeping.get();
+        if(now >= next && nextHousekeeping.compareAndSet(next, now + HOUSEKEEPING_INTERVAL))
+            housekeeping(now);
     }
 
-    /***
-     * Takes a Set, a boolean, and a connectionHolder
-     * If the boolean is true, it will add the connectionHolder to the Set, otherwise, it will remove it from the Set
+    /**
+     * A key method that orchestrates the update of the connection pool's state. It removes the closed connections,
+     * closes the connections that are expired and not borrowed, and closes the leaked connections.
      *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
+     * NOTE: Closing connections and modifying state
+     *     housekeeping() and findAndCloseLeakedConnections() are the only two methods that close connections and
+     *     remove them from the pool. This can be helpful to know for debugging.
      *
-     * @param set the set to potentially add or remove the connectionHolder from
-     * @param isMember if true, it will add connectionHolder to set, otherwise, it will remove connectionHolder from set
-     * @param connectionHolder the connectionHolder to add or remove from the set
+     * @param now the current time in ms
      */
-    private void updateSet(Set<SimpleConnectionHolder> set, boolean isMember, SimpleConnectionHolder connectionHolder) {
-        if(isMember)
-            set.add(connectionHolder);
-        else
-            set.remove(connectionHolder);
+    private void housekeeping(long now) {
+        synchronized (lock) {
+            SimpleConnectionHolder[] holders = allKnownConnections;
+            List<SimpleConnectionHolder> remaining = new ArrayList<>(holders.length);
+            for(SimpleConnectionHolder holder : holders) {
+                if(holder.closed()) {
+                    logger.debug("[{}: CLOSED]: Connection unexpectedly closed - Stopping connection tracking", port(holder.connection()));
+                } else if(!holder.tryClose(now)) {
+                    remaining.add(holder);
+                    continue;
+                } else {
+                    logger.debug("[{}: CLOSED]: Connection expired - Stopping connection tracking", port(holder.connection()));
+                }
+                /**
+                 * After the connection is removed, the only reference to it will be in any unrestored ConnectionTokens,
+                 * however, ConnectionTokens restored after the connection is closed will not make it borrowable again
+                 * (and it will therefore be garbage collected)
+                 */
+                allCreatedConnections.remove(holder.connection());
+                connectionCount.decrementAndGet();
+            }
+            if(remaining.size() != holders.length)
+                allKnownConnections = remaining.toArray(EMPTY);
+
+            // a connection that is being created is in allCreatedConnections before it is known to the pool
+            if(pendingConnections.get() == 0)
+                findAndCloseLeakedConnections();
+        }
     }
 
     /**
@@ -267,10 +268,9 @@ public final class SimpleURIConnectionPool {
      *     1) the connection-creation callback thread finishes creating the connection after a timeout has occurred
      *     2) the raw connection unexpectedly closes during the creation of its SimpleConnectionHolder
      *
-     * NOTE: Closing connection and modifying sets
-     *     readConnectionHolder() and findAndCloseLeakedConnections() are the only two methods that close connections
-     *     and modify sets. This can be helpful to know for debugging since the sets comprise the entirety of the
-     *     mutable state of this SimpleURIConnectionPool objects
+     * NOTE: Thread Safety
+     *     This method is private, and is only called from housekeeping() while holding the lock and while no
+     *     connection is being created.
      */
     private void findAndCloseLeakedConnections()
     {
@@ -297,34 +297,33 @@ public final class SimpleURIConnectionPool {
         }
     }
 
-
     /***
      * For logging
      *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
-     *
-     * NOTE: Iteration Safety
-     *     This method should not be used inside loops that iterate through elements of borrowable, borrowed,
-     *     notBorrowedExpired, or allKnownConnections sets
+     * The states are read from a snapshot of the known connections, and they can change while they are read.
      */
-    private String showConnections(String transitionName) {
+    private String showConnections(String transitionName, long now) {
+        List<SimpleConnectionHolder> borrowable = new ArrayList<>();
+        List<SimpleConnectionHolder> borrowed = new ArrayList<>();
+        List<SimpleConnectionHolder> notBorrowedExpired = new ArrayList<>();
+        SimpleConnectionHolder[] holders = allKnownConnections;
+        for(SimpleConnectionHolder holder : holders) {
+            boolean isBorrowed = holder.borrowed();
+            if(holder.borrowable(now)) borrowable.add(holder);
+            if(isBorrowed) borrowed.add(holder);
+            if(!isBorrowed && holder.expired(now)) notBorrowedExpired.add(holder);
+        }
         return "After " + transitionName + " - " +
                 showConnections("BORROWABLE", borrowable) +
                 showConnections("BORROWED", borrowed) +
                 showConnections("NOT_BORROWED_EXPIRED", notBorrowedExpired) +
-                showConnections("TRACKED", allKnownConnections);
+                showConnections("TRACKED", Arrays.asList(holders));
     }
 
     /***
      * For logging
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
      */
-    private static String showConnections(String name, Set<SimpleConnectionHolder> set) {
+    private static String showConnections(String name, Collection<SimpleConnectionHolder> set) {
         StringBuilder sb = new StringBuilder();
         sb.append("[").append(name).append(": ");
         if(set.size() == 0)
@@ -333,6 +332,7 @@ public final class SimpleURIConnectionPool {
             int numCons = set.size();
             for (SimpleConnectionHolder holder : set) {
                 sb.append(port(holder.connection()));
+                if (holder.borrows() > 1) sb.append("(").append(holder.borrows()).append(")");
                 if (--numCons > 0) sb.append(" ");
             }
         }
@@ -342,10 +342,6 @@ public final class SimpleURIConnectionPool {
 
     /***
      * For logging
-     *
-     * NOTE: Thread Safety
-     *     This method is private, and is only called either directly or transitively by synchronized
-     *     methods in this class.
      */
     private static String port(SimpleConnection connection) {
         if(connection == null) return "NULL";
@@ -0,0 +1,176 @@
+package com.networknt.client.oauth;
+
+import com.networknt.client.ClientConfig;
+import com.networknt.config.Config;
+import com.networknt.monad.Result;
+import io.undertow.Handlers;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Get the client credentials tokens from a stub token endpoint that takes 50ms to issue a token that expires in one
+ * second, so the tokens are renewed a few times during the test.
+ */
+public class TokenRefresherTest {
+    private static final int PORT = 7781;
+    private static final long TOKEN_DELAY = 50;
+    private static final long RENEW_BEFORE_EXPIRED = 700;
+
+    private static final AtomicInteger requests = new AtomicInteger();
+    private static volatile boolean failing;
+    private static Undertow server;
+
+    @BeforeClass
+    public static void setUp() {
+        // the other tests may have loaded a client.yml with the proxy of the token service.
+        ClientConfig.get(ClientConfig.CONFIG_NAME);
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(Handlers.path().addPrefixPath("/oauth2/token", exchange -> {
+                    if(exchange.isInIoThread()) {
+                        exchange.dispatch(TokenRefresherTest::issue);
+                        return;
+                    }
+                    issue(exchange);
+                }))
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if(server != null) server.stop();
+    }
+
+    @Test
+    public void testRenewAhead() throws Exception {
+        TokenRefresher refresher = new TokenRefresher(10, RENEW_BEFORE_EXPIRED, 100, 200);
+        Jwt.Key key = new Jwt.Key("com.networknt.renew-1.0.0");
+        Map<String, Object> ccConfig = ccConfig();
+        // the first request waits for the token.
+        Assert.assertTrue(refresher.getJwt(key, ccConfig).isSuccess());
+        int start = requests.get();
+        long duration = TimeUnit.SECONDS.toMillis(3);
+        long[][] latencies = new long[4][500000];
+        int[] counts = new int[latencies.length];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < latencies.length; i++) {
+            int t = i;
+            Thread thread = new Thread(() -> {
+                long end = System.currentTimeMillis() + duration;
+                int n = 0;
+                while (System.currentTimeMillis() < end && n < latencies[t].length) {
+                    long begin = System.nanoTime();
+                    Result<Jwt> result = refresher.getJwt(key, ccConfig);
+                    latencies[t][n++] = System.nanoTime() - begin;
+                    if(result.isFailure()) Assert.fail(result.getError().toString());
+                    LockSupport.parkNanos(20000);
+                }
+                counts[t] = n;
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) thread.join();
+        long[] all = merge(latencies, counts);
+        int renewals = requests.get() - start;
+        System.out.println(String.format("%d calls p50 %.1f us p99 %.1f us max %.1f ms with %d token requests", all.length,
+                all[all.length / 2] / 1000.0, all[(int)(all.length * 0.99)] / 1000.0, all[all.length - 1] / 1000000.0, renewals));
+        // the requests don't wait for the renewal of the token.
+        Assert.assertTrue(all[(int)(all.length * 0.99)] < TimeUnit.MILLISECONDS.toNanos(TOKEN_DELAY));
+        // the token is renewed about every 300ms and the concurrent renewals are coalesced.
+        Assert.assertTrue(renewals >= 5 && renewals <= 15);
+    }
+
+    @Test
+    public void testRetryWithValidToken() throws Exception {
+        TokenRefresher refresher = new TokenRefresher(10, RENEW_BEFORE_EXPIRED, 100, 200);
+        Jwt.Key key = new Jwt.Key("com.networknt.retry-1.0.0");
+        Map<String, Object> ccConfig = ccConfig();
+        Result<Jwt> first = refresher.getJwt(key, ccConfig);
+        Assert.assertTrue(first.isSuccess());
+        failing = true;
+        try {
+            int start = requests.get();
+            long end = first.getResult().getExpire();
+            // the valid token is used while the renewal fails.
+            while (System.currentTimeMillis() < end - 20) {
+                Result<Jwt> result = refresher.getJwt(key, ccConfig);
+                Assert.assertTrue(result.isSuccess());
+                Assert.assertSame(first.getResult(), result.getResult());
+                Thread.sleep(1);
+            }
+            int retries = requests.get() - start;
+            Assert.assertTrue(retries >= 1 && retries <= 5);
+            Thread.sleep(50);
+            // the token is expired, so the error is returned until the next retry.
+            start = requests.get();
+            for (int i = 0; i < 100; i++) Assert.assertTrue(refresher.getJwt(key, ccConfig).isFailure());
+            Assert.assertTrue(requests.get() - start <= 2);
+        } finally {
+            failing = false;
+        }
+        Thread.sleep(1000);
+        Assert.assertTrue(refresher.getJwt(key, ccConfig).isSuccess());
+    }
+
+    @Test
+    public void testCapacity() {
+        TokenRefresher refresher = new TokenRefresher(2, RENEW_BEFORE_EXPIRED, 100, 200);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(refresher.getJwt(new Jwt.Key("com.networknt.capacity" + i + "-1.0.0"), ccConfig()).isSuccess());
+        }
+        Assert.assertTrue(refresher.size() <= 2);
+    }
+
+    private static void issue(HttpServerExchange exchange) throws Exception {
+        requests.incrementAndGet();
+        Thread.sleep(TOKEN_DELAY);
+        if(failing) {
+            exchange.setStatusCode(500);
+            exchange.getResponseSender().send("{\"error\":\"server_error\"}");
+            return;
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("access_token", "eyJraWQiOiIxMDAiLCJhbGciOiJSUzI1NiJ9." + requests.get());
+        map.put("token_type", "bearer");
+        map.put("expires_in", 1);
+        map.put("scope", "read:pets");
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+        exchange.getResponseSender().send(Config.getInstance().getMapper().writeValueAsString(map));
+    }
+
+    private static Map<String, Object> ccConfig() {
+        Map<String, Object> ccConfig = new HashMap<>();
+        ccConfig.put(ClientConfig.SERVER_URL, "http://localhost:" + PORT);
+        ccConfig.put(ClientConfig.URI, "/oauth2/token");
+        ccConfig.put(ClientConfig.CLIENT_ID, "test_client");
+        ccConfig.put(ClientConfig.CLIENT_SECRET, "test_secret");
+        return ccConfig;
+    }
+
+    private static long[] merge(long[][] latencies, int[] counts) {
+        long[] all = new long[Arrays.stream(counts).sum()];
+        int i = 0;
+        for (int t = 0; t < latencies.length; t++) {
+            System.arraycopy(latencies[t], 0, all, i, counts[t]);
+            i += counts[t];
+        }
+        Arrays.sort(all);
+        return all;
+    }
+}
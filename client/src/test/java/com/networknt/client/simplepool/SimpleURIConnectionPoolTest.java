@@ -0,0 +1,234 @@
+package com.networknt.client.simplepool;
+
+import ch.qos.logback.classic.Level;
+import io.undertow.connector.ByteBufferPool;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.xnio.OptionMap;
+import org.xnio.XnioWorker;
+import org.xnio.ssl.XnioSsl;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SimpleURIConnectionPoolTest {
+    private static final URI URI = java.net.URI.create("https://mock-uri.com");
+    private static final long EXPIRE_TIME = 60000;
+    private static Level poolLevel;
+    private static Level holderLevel;
+
+    @BeforeClass
+    public static void setUp() {
+        // the trace logging of every borrow and restore would be measured in the concurrent tests.
+        poolLevel = logger(SimpleURIConnectionPool.class).getLevel();
+        holderLevel = logger(SimpleConnectionHolder.class).getLevel();
+        logger(SimpleURIConnectionPool.class).setLevel(Level.INFO);
+        logger(SimpleConnectionHolder.class).setLevel(Level.INFO);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        logger(SimpleURIConnectionPool.class).setLevel(poolLevel);
+        logger(SimpleConnectionHolder.class).setLevel(holderLevel);
+    }
+
+    private static ch.qos.logback.classic.Logger logger(Class<?> clazz) {
+        return (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(clazz);
+    }
+
+    @Test
+    public void testHttp11ConnectionIsBorrowedOnce() {
+        SimpleURIConnectionPool pool = new SimpleURIConnectionPool(URI, EXPIRE_TIME, 2, new MockConnectionMaker(false));
+        SimpleConnectionHolder.ConnectionToken token1 = pool.borrow(5);
+        SimpleConnectionHolder.ConnectionToken token2 = pool.borrow(5);
+        Assert.assertNotSame(token1.connection(), token2.connection());
+        try {
+            pool.borrow(5);
+            Assert.fail("The pool size should not be exceeded");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("maximum size"));
+        }
+        pool.restore(token1);
+        SimpleConnectionHolder.ConnectionToken token3 = pool.borrow(5);
+        Assert.assertSame(token1.connection(), token3.connection());
+    }
+
+    @Test
+    public void testHttp2StreamCount() {
+        SimpleURIConnectionPool pool = new SimpleURIConnectionPool(URI, EXPIRE_TIME, 1, new MockConnectionMaker(true));
+        List<SimpleConnectionHolder.ConnectionToken> tokens = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tokens.add(pool.borrow(5));
+        }
+        SimpleConnectionHolder holder = tokens.get(0).holder();
+        for (SimpleConnectionHolder.ConnectionToken token : tokens) {
+            Assert.assertSame(holder, token.holder());
+        }
+        Assert.assertEquals(10, holder.borrows());
+        // a token can only be restored once.
+        pool.restore(tokens.get(0));
+        pool.restore(tokens.get(0));
+        Assert.assertEquals(9, holder.borrows());
+    }
+
+    @Test
+    public void testExpiredConnectionIsClosed() throws Exception {
+        SimpleURIConnectionPool pool = new SimpleURIConnectionPool(URI, 50, 1, new MockConnectionMaker(false));
+        SimpleConnectionHolder.ConnectionToken token = pool.borrow(5);
+        Thread.sleep(100);
+        // a borrowed connection is never closed.
+        Assert.assertFalse(token.holder().tryClose(System.currentTimeMillis()));
+        pool.restore(token);
+        SimpleConnectionHolder.ConnectionToken newToken = pool.borrow(5);
+        Assert.assertFalse(token.connection().isOpen());
+        Assert.assertNotSame(token.connection(), newToken.connection());
+        Assert.assertTrue(newToken.connection().isOpen());
+    }
+
+    @Test
+    public void testClosedConnectionIsReplaced() {
+        SimpleURIConnectionPool pool = new SimpleURIConnectionPool(URI, EXPIRE_TIME, 1, new MockConnectionMaker(true));
+        SimpleConnectionHolder.ConnectionToken token = pool.borrow(5);
+        pool.restore(token);
+        token.connection().safeClose();
+        SimpleConnectionHolder.ConnectionToken newToken = pool.borrow(5);
+        Assert.assertNotSame(token.connection(), newToken.connection());
+    }
+
+    @Test
+    public void testConcurrentHttp11Borrows() throws Exception {
+        SimpleURIConnectionPool pool = new SimpleURIConnectionPool(URI, EXPIRE_TIME, 64, new MockConnectionMaker(false));
+        AtomicInteger overflows = new AtomicInteger();
+        run(64, 640000, () -> {
+            SimpleConnectionHolder.ConnectionToken token;
+            try {
+                token = pool.borrow(5);
+            } catch (RuntimeException e) {
+                overflows.incrementAndGet();
+                return;
+            }
+            MockConnection connection = (MockConnection) token.connection();
+            // an HTTP/1.1 connection is never used by two threads at the same time.
+            Assert.assertEquals(1, connection.users.incrementAndGet());
+            connection.users.decrementAndGet();
+            pool.restore(token);
+        });
+        System.out.println("HTTP/1.1 overflows " + overflows.get());
+    }
+
+    /**
+     * Borrow and restore from 64 threads, with the same pool guarded by a lock to compare.
+     */
+    @Ignore
+    @Test
+    public void testContentionPerf() throws Exception {
+        int loop = 6400000;
+        for (boolean isHttp2 : new boolean[]{true, false}) {
+            SimpleURIConnectionPool pool = new SimpleURIConnectionPool(URI, EXPIRE_TIME, 64, new MockConnectionMaker(isHttp2));
+            Runnable task = () -> pool.restore(pool.borrow(5));
+            // warm up before the measurement.
+            run(64, loop, task);
+            System.out.println((isHttp2 ? "HTTP/2" : "HTTP/1.1") + " lock free 64 threads " + run(64, loop, task));
+            Object lock = new Object();
+            System.out.println((isHttp2 ? "HTTP/2" : "HTTP/1.1") + " synchronized 64 threads " + run(64, loop, () -> {
+                synchronized (lock) {
+                    task.run();
+                }
+            }));
+        }
+    }
+
+    private long run(int threads, int loop, Runnable task) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < loop / threads; i++) task.run();
+                return null;
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (Future<Object> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        executorService.shutdown();
+        return elapsed;
+    }
+
+    private static class MockConnectionMaker implements SimpleConnectionMaker {
+        private final boolean isHttp2;
+
+        MockConnectionMaker(boolean isHttp2) {
+            this.isHttp2 = isHttp2;
+        }
+
+        @Override
+        public SimpleConnection makeConnection(long createConnectionTimeout, boolean isHttp2, URI uri, Set<SimpleConnection> allCreatedConnections) {
+            SimpleConnection connection = new MockConnection(isHttp2);
+            allCreatedConnections.add(connection);
+            return connection;
+        }
+
+        @Override
+        public SimpleConnection makeConnection(long createConnectionTimeout, InetSocketAddress bindAddress, URI uri, XnioWorker worker, XnioSsl ssl, ByteBufferPool bufferPool, OptionMap options, Set<SimpleConnection> allCreatedConnections) {
+            return makeConnection(createConnectionTimeout, isHttp2, uri, allCreatedConnections);
+        }
+
+        @Override
+        public SimpleConnection reuseConnection(long createConnectionTimeout, SimpleConnection connection) {
+            if (!connection.isOpen())
+                throw new RuntimeException("Reused-connection has been unexpectedly closed");
+            return connection;
+        }
+    }
+
+    private static class MockConnection implements SimpleConnection {
+        private static final AtomicInteger PORT = new AtomicInteger(32768);
+        private final boolean isHttp2;
+        private final String address = "MOCK_HOST_IP:" + PORT.getAndIncrement();
+        private final AtomicInteger users = new AtomicInteger();
+        private volatile boolean closed;
+
+        MockConnection(boolean isHttp2) {
+            this.isHttp2 = isHttp2;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public Object getRawConnection() {
+            throw new RuntimeException("Mock connection has no raw connection");
+        }
+
+        @Override
+        public boolean isMultiplexingSupported() {
+            return isHttp2;
+        }
+
+        @Override
+        public String getLocalAddress() {
+            return address;
+        }
+
+        @Override
+        public void safeClose() {
+            closed = true;
+        }
+    }
+}
@@ -48,8 +48,8 @@ public class ConsulRegistry extends AbstractRegistry {
     private ConcurrentHashMap<String, List<URL>> serviceCache = new ConcurrentHashMap<String, List<URL>>();
     // keep all subscribe urls, so that it won't double subscribe.
     private static Set<URL> subscribedSet = new ConcurrentHashSet<>();
-    // record lookup service thread, ensure each serviceName start only one thread, <serviceName, lastConsulIndexId>
-    private ConcurrentHashMap<String, Long> lookupServices = new ConcurrentHashMap<String, Long>();
+    // watch the subscribed services with the blocking queries, each serviceName is only watched once.
+    private ConsulWatcher watcher;
 
     // TODO: 2016/6/17 clientUrl support multiple listener
     // record subscribers service callback listeners, listener was called when corresponding service changes
@@ -72,6 +72,8 @@ public class ConsulRegistry extends AbstractRegistry {
 
         ArrayBlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<Runnable>(20000);
         notifyExecutor = new ThreadPoolExecutor(10, 30, 30 * 1000, TimeUnit.MILLISECONDS, workQueue);
+        watcher = new ConsulWatcher(client, this::getConsulToken, lookupInterval, reconnectInterval, reconnectJitter,
+                (protocol, serviceName, services) -> updateServiceCache(serviceName, buildServiceUrls(protocol, serviceName, services), true));
         logger.info("ConsulRegistry init finish.");
         ModuleRegistry.registerModule(ConsulRegistry.class.getName(), Config.getInstance().getJsonMapConfigNoCache(ConsulConfig.CONFIG_NAME), List.of(MASK_KEY_CONSUL_TOKEN));
     }
@@ -121,10 +123,11 @@ public class ConsulRegistry extends AbstractRegistry {
      */
     @Override
     protected void doSubscribe(URL url, final NotifyListener listener) {
-        // you only need to subscribe once.
+        // a listener subscribed after the url, like the router after the cluster discovery, is notified as well.
+        if(listener != null) addNotifyListener(url, listener);
+        // you only need to watch once.
         if(!subscribedSet.contains(url)) {
-            addNotifyListener(url, listener);
-            startListenerThreadIfNewService(url);
+            watchIfNewService(url);
             subscribedSet.add(url);
         }
     }
@@ -150,7 +153,7 @@ public class ConsulRegistry extends AbstractRegistry {
             synchronized (serviceName.intern()) {
                 urls = serviceCache.get(serviceName);
                 if (urls == null || urls.isEmpty()) {
-                    ConcurrentHashMap<String, List<URL>> serviceUrls = lookupServiceUpdate(protocol, serviceName, false);
+                    ConcurrentHashMap<String, List<URL>> serviceUrls = lookupServiceUpdate(protocol, serviceName);
                     updateServiceCache(serviceName, serviceUrls, false);
                     urls = serviceCache.get(serviceName);
                 }
@@ -160,27 +163,19 @@ public class ConsulRegistry extends AbstractRegistry {
     }
 
     /**
-     * if new service registered, start a new lookup thread
-     * each serviceName start a lookup thread to discover service
+     * if new service registered, start to watch it
+     * each serviceName is watched with its own blocking query, but no thread is waiting for the query
      *
      * @param url
      */
-    private void startListenerThreadIfNewService(URL url) {
+    private void watchIfNewService(URL url) {
         String serviceName = url.getPath();
 
-        // Do NOT start a listener thread if serviceName is blank
+        // Do NOT watch if serviceName is blank
         if(StringUtils.isBlank(serviceName))
             return;
 
-        String protocol = url.getProtocol();
-        if (!lookupServices.containsKey(serviceName)) {
-            Long value = lookupServices.putIfAbsent(serviceName, 0L);
-            if (value == null) {
-                ServiceLookupThread lookupThread = new ServiceLookupThread(protocol, serviceName);
-                lookupThread.setDaemon(true);
-                lookupThread.start();
-            }
-        }
+        watcher.watch(url.getProtocol(), serviceName);
     }
 
     private void addNotifyListener(URL url, NotifyListener listener) {
@@ -195,14 +190,12 @@ public class ConsulRegistry extends AbstractRegistry {
         }
     }
 
-    private ConcurrentHashMap<String, List<URL>> lookupServiceUpdate(String protocol, String serviceName) {
-        return lookupServiceUpdate(protocol, serviceName, true);
-    }
     /***
+     * Look up the service without blocking. The blocking queries of the subscribed services are sent by the
+     * ConsulWatcher, and the index of this lookup is passed to it so that its next query waits for a change.
      *
      * @param   protocol
      * @param   serviceName
-     * @param   isBlockQuery
      * @return if:
      *           - There is a Consul connection issue
      *         then:
@@ -211,8 +204,7 @@ public class ConsulRegistry extends AbstractRegistry {
      *           This result indicates to updateServiceCache() to leave local registry cache unchanged
      *
      *         if:
-     *           - Consul index was stale, or
-     *           - Consul reported no updates since last query
+     *           - Consul didn't return an index
      *         then:
      *           - serviceUrls.size() == 0 (e.g.: Map has no k/v pairs)
      *
@@ -229,16 +221,9 @@ public class ConsulRegistry extends AbstractRegistry {
      *
      */
 
-    private ConcurrentHashMap<String, List<URL>> lookupServiceUpdate(String protocol, String serviceName, boolean isBlockQuery) {
-        // get Consul index if blocking query
-        Long lastConsulIndexId = 0L;
-        if (isBlockQuery) {
-            lastConsulIndexId = lookupServices.get(serviceName) == null ? 0L : lookupServices.get(serviceName);
-        }
-        if(logger.isDebugEnabled()) logger.debug("serviceName = {} lastConsulIndexId = {}", serviceName, lastConsulIndexId);
-
+    private ConcurrentHashMap<String, List<URL>> lookupServiceUpdate(String protocol, String serviceName) {
         // response should be null iff there was an error connecting to Consul
-        ConsulResponse<List<ConsulService>> response = lookupConsulService(serviceName, lastConsulIndexId);
+        ConsulResponse<List<ConsulService>> response = lookupConsulService(serviceName, 0L);
 
         if(logger.isTraceEnabled()) {
             try {
@@ -246,77 +231,43 @@ public class ConsulRegistry extends AbstractRegistry {
             } catch (Exception e) {}
         }
 
-        // initialize serviceUrls such that serviceUrls.size() == 0
-        // this indicates to updateServiceCache() to leave cache unchanged
-        ConcurrentHashMap<String, List<URL>> serviceUrls = new ConcurrentHashMap<>();
-        if (response != null) {
-            List<ConsulService> services = response.getValue();
-            if(logger.isDebugEnabled()) try {logger.debug("services = " + Config.getInstance().getMapper().writeValueAsString(services));} catch (Exception e) {}
-            /***
-             * Since response != null, and services = response.getValue(), we know (from the specification for
-             * ConsulClient.lookupHealthService()) that:
-             *
-             *      - Consul connection was successful, and
-             *      - services != null, and
-             *      - services.size() == number of IPs registered for serviceName in Consul
-             */
-            // if (services != null && !services.isEmpty() && response.getConsulIndex() > lastConsulIndexId) {
-            if (response.getConsulIndex() > lastConsulIndexId) {
-                if(logger.isDebugEnabled()) logger.debug("Got updated urls from Consul: {} instances of service {} found", services.size(), serviceName);
-
-                // - Update has occurred: Ensure that the serviceUrls Map has at least one (possibly empty List)
-                //   entry for the serviceName key.
-                //   This will ensure that updateServiceCache() will do an update.
-                if(services.size() == 0)
-                    serviceUrls.put(serviceName, new ArrayList<>());
-
-                for (ConsulService service : services) {
-                    try {
-
-                        URL url = ConsulUtils.buildUrl(protocol, service);
-                        List<URL> urlList = serviceUrls.get(serviceName);
-
-                        if (urlList == null) {
-                            urlList = new ArrayList<>();
-                            serviceUrls.put(serviceName, urlList);
-                        }
-
-                        if(logger.isTraceEnabled()) logger.trace("Consul lookupServiceUpdate url = " + url);
-
-                        urlList.add(url);
-
-                    } catch (Exception e) {
-                        logger.error("Failed to convert Consul service to url! service: " + service, e);
-                    }
-                }
-
-                lookupServices.put(serviceName, response.getConsulIndex());
-                if(logger.isDebugEnabled()) logger.debug("Consul index put into lookupServices for service: {}, index={}", serviceName, response.getConsulIndex());
-
-                return serviceUrls;
-
-            } else if (response.getConsulIndex() < lastConsulIndexId) {
-                if(logger.isDebugEnabled()) logger.debug("Consul returned stale index: Index reset to 0 for service {} - Consul response index < last Consul index: {} < {}", serviceName, response.getConsulIndex(), lastConsulIndexId);
-
-                // force a fresh list of services from Consul
-                lookupServices.put(serviceName, 0L);
-
-                // Indicate to updateServiceCache() to leave cache unchanged for now:
-                // - serviceUrls.isEmpty() == true && serviceUrls.get(serviceName) != null && serviceUrls.get(serviceName).size() == 0
-            } else {
-                if(logger.isDebugEnabled()) logger.debug("Consul returned no service updates: No need to update local Consul discovery cache for service {}, lastIndex={}", serviceName, lastConsulIndexId);
-
-                // Indicate to updateServiceCache() to leave cache unchanged for now:
-                // - serviceUrls.isEmpty() == true && serviceUrls.get(serviceName) != null && serviceUrls.get(serviceName).size() == 0
-            }
-        } else {
+        if (response == null) {
             logger.error("Local service cache may be out of date for {} - Consul connection failed", serviceName);
 
-            // Indicate to updateServiceCache() to leave cache unchanged for now, and
-            // Indicate to ServiceLookupThread.run() that Consul connection failed
+            // Indicate to updateServiceCache() to leave cache unchanged for now
             return null;
         }
+        watcher.updateIndex(serviceName, response.getConsulIndex());
+        if (response.getConsulIndex() > 0) {
+            return buildServiceUrls(protocol, serviceName, response.getValue());
+        }
+        // Indicate to updateServiceCache() to leave cache unchanged for now
+        return new ConcurrentHashMap<>();
+    }
 
+    /**
+     * Convert the services returned by Consul to the urls of the service.
+     *
+     * @param protocol the protocol of the service
+     * @param serviceName the name of the service
+     * @param services the services returned by Consul
+     * @return the map with at least one (possibly empty List) entry for the serviceName key,
+     *         so that updateServiceCache() will do an update
+     */
+    private ConcurrentHashMap<String, List<URL>> buildServiceUrls(String protocol, String serviceName, List<ConsulService> services) {
+        if(logger.isDebugEnabled()) try {logger.debug("services = " + Config.getInstance().getMapper().writeValueAsString(services));} catch (Exception e) {}
+        ConcurrentHashMap<String, List<URL>> serviceUrls = new ConcurrentHashMap<>();
+        List<URL> urlList = new ArrayList<>();
+        serviceUrls.put(serviceName, urlList);
+        for (ConsulService service : services) {
+            try {
+                URL url = ConsulUtils.buildUrl(protocol, service);
+                if(logger.isTraceEnabled()) logger.trace("Consul lookupServiceUpdate url = " + url);
+                urlList.add(url);
+            } catch (Exception e) {
+                logger.error("Failed to convert Consul service to url! service: " + service, e);
+            }
+        }
         return serviceUrls;
     }
 
@@ -381,69 +332,6 @@ public class ConsulRegistry extends AbstractRegistry {
         }
     }
 
-    private class ServiceLookupThread extends Thread {
-       private String protocol;
-       private String serviceName;
-
-        public ServiceLookupThread(String protocol, String serviceName) {
-            this.protocol = protocol;
-            this.serviceName = serviceName;
-        }
-
-        @Override
-        public void run() {
-            ConsulRecoveryManager consulRecovery = new ConsulRecoveryManager(serviceName);
-
-            if(logger.isDebugEnabled()) logger.debug("Start Consul ServiceLookupThread thread - Lookup interval: {}ms, service {}", lookupInterval, serviceName);
-            while (true) {
-                // check in with the recovery manager
-                consulRecovery.checkin();
-
-                try {
-                    if(logger.isDebugEnabled()) logger.debug("Consul ServiceLookupThread Thread - SLEEP: Start to sleep {}ms for service {}", lookupInterval, serviceName);
-                    sleep(lookupInterval);
-                    if(logger.isDebugEnabled()) logger.debug("Consul ServiceLookupThread Thread - WAKE UP: Woke up from sleep for service {}", serviceName);
-                    ConcurrentHashMap<String, List<URL>> serviceUrls = lookupServiceUpdate(protocol, serviceName);
-
-                    // lookupServiceUpdate returns null iff Consul connection has failed - attempt to recover
-                    if(serviceUrls == null)
-                    {
-                        while(serviceUrls == null)
-                        {
-                            // check in with the recovery manager
-                            consulRecovery.checkin();
-
-                            // if max connection reattempts have been reached, shut down the host application
-                            boolean moreAttemptsPermitted = consulRecovery.newFailedAttempt();
-                            if(!moreAttemptsPermitted)
-                                ConsulRecoveryManager.gracefulShutdown();
-
-                            long randomJitter = ThreadLocalRandom.current().nextLong(0, reconnectJitter);
-                            Thread.sleep(reconnectInterval + randomJitter);
-                            serviceUrls = lookupServiceUpdate(protocol, serviceName);
-                        }
-                        consulRecovery.exitRecoveryMode();
-                    }
-
-                    if(serviceUrls.size() == 0)
-                        if(logger.isDebugEnabled()) logger.debug("No service URL updates from Consul lookupServiceUpdate for service {}", serviceName);
-                    else
-                        if(logger.isDebugEnabled()) logger.debug("Got service URLs from Consul lookupServiceUpdate: {} service URLs found for service {} ({})",
-                                serviceUrls.getOrDefault(serviceName, Collections.emptyList()).size(), serviceName, protocol);
-
-                    updateServiceCache(serviceName, serviceUrls, true);
-
-                } catch (Throwable e) {
-                    logger.error("ServiceLookupThread fail!", e);
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException ignored) {
-                    }
-                }
-            }
-        }
-    }
-
     private class NotifyService implements Runnable {
         private String service;
         private List<URL> urls;
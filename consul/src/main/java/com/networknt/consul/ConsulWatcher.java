@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.consul;
+
+import com.networknt.consul.client.ConsulClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Watch the services in Consul with blocking queries that are sent without a thread waiting for each of them.
+ * The queries are sent with the lookupHealthServiceAsync of the ConsulClient, so all of them are outstanding on
+ * the connection to Consul at the same time and the responses are received by the IO threads. The connection is
+ * borrowed by the client off the watch thread, so the watch thread doesn't wait for a connection to Consul to be
+ * created either. The responses are handled and the next queries are scheduled on one watch thread.
+ *
+ * For each service, the watcher keeps the last Consul index to send the next blocking query with. When Consul
+ * returns a higher index, the services are passed to the listener. When it returns a lower index, the index is
+ * reset to 0 so that the next query returns the current services at once. When the connection fails, the query
+ * is retried after the reconnect interval plus a random jitter, so the queries of all the services don't hit
+ * Consul at the same time when it is back, and the host is shut down after the max attempts of the recovery.
+ */
+class ConsulWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(ConsulWatcher.class);
+
+    /**
+     * The listener of the services that have changed in Consul.
+     */
+    interface Listener {
+        /**
+         * Called on the watch thread when Consul has returned a new index for the service.
+         *
+         * @param protocol the protocol of the service
+         * @param serviceName the name of the service
+         * @param services the instances of the service that are passing the health check
+         */
+        void onUpdate(String protocol, String serviceName, List<ConsulService> services);
+    }
+
+    private final ConsulClient client;
+    private final Supplier<String> token;
+    private final long lookupInterval;
+    private final long reconnectInterval;
+    private final long reconnectJitter;
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Watch> watches = new ConcurrentHashMap<>();
+
+    /**
+     * @param client the Consul client
+     * @param token the supplier of the Consul token
+     * @param lookupInterval the time in ms between the blocking queries of a service
+     * @param reconnectInterval the time in ms to wait before a failed query is retried
+     * @param reconnectJitter the max random time in ms added to the reconnect interval
+     * @param listener the listener of the services that have changed
+     */
+    ConsulWatcher(ConsulClient client, Supplier<String> token, long lookupInterval, long reconnectInterval, long reconnectJitter, Listener listener) {
+        this.client = client;
+        this.token = token;
+        this.lookupInterval = lookupInterval;
+        this.reconnectInterval = reconnectInterval;
+        this.reconnectJitter = reconnectJitter;
+        this.listener = listener;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "consul-watch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        this.scheduler = executor;
+    }
+
+    /**
+     * Start to watch the service if it is not watched yet. The first blocking query is sent after the lookup
+     * interval, as the services are looked up by the discovery when the service is subscribed.
+     *
+     * @param protocol the protocol of the service
+     * @param serviceName the name of the service
+     * @return true if the service was not watched yet
+     */
+    boolean watch(String protocol, String serviceName) {
+        Watch watch = new Watch(protocol, serviceName);
+        if (watches.putIfAbsent(serviceName, watch) != null) return false;
+        if(logger.isDebugEnabled()) logger.debug("Start to watch service {} - Lookup interval: {}ms", serviceName, lookupInterval);
+        schedule(watch, lookupInterval);
+        return true;
+    }
+
+    boolean isWatched(String serviceName) {
+        return watches.containsKey(serviceName);
+    }
+
+    int size() {
+        return watches.size();
+    }
+
+    /**
+     * @param serviceName the name of the service
+     * @return the last Consul index of the service, or 0 if the service is not watched or it is reset
+     */
+    long getIndex(String serviceName) {
+        Watch watch = watches.get(serviceName);
+        return watch == null ? 0L : watch.index;
+    }
+
+    /**
+     * Record the index returned by a lookup of the service outside of the watcher, so that the next blocking
+     * query only returns when the service has changed after the lookup.
+     *
+     * @param serviceName the name of the service
+     * @param index the Consul index of the lookup
+     */
+    void updateIndex(String serviceName, long index) {
+        Watch watch = watches.get(serviceName);
+        if (watch != null) {
+            scheduler.execute(() -> {
+                if (index > watch.index) watch.index = index;
+            });
+        }
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void schedule(Watch watch, long delay) {
+        try {
+            scheduler.schedule(() -> query(watch), delay, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // the watcher is shut down.
+            logger.debug("Stop to watch service {}", watch.serviceName);
+        }
+    }
+
+    private void query(Watch watch) {
+        // check in with the recovery manager, so that a watch that doesn't get a response is detected.
+        watch.recovery.checkin();
+        long index = watch.index;
+        if(logger.isDebugEnabled()) logger.debug("serviceName = {} lastConsulIndexId = {}", watch.serviceName, index);
+        try {
+            client.lookupHealthServiceAsync(watch.serviceName, null, index, token.get())
+                    .whenCompleteAsync((response, e) -> handle(watch, index, e == null ? response : null), scheduler);
+        } catch (Throwable e) {
+            logger.error("Consul lookup failed for service " + watch.serviceName, e);
+            handle(watch, index, null);
+        }
+    }
+
+    private void handle(Watch watch, long index, ConsulResponse<List<ConsulService>> response) {
+        try {
+            if (response == null) {
+                // the Consul connection has failed - retry until it is recovered.
+                watch.recovery.checkin();
+                if (!watch.recovery.newFailedAttempt()) ConsulRecoveryManager.gracefulShutdown();
+                logger.error("Local service cache may be out of date for {} - Consul connection failed", watch.serviceName);
+                schedule(watch, reconnectInterval + (reconnectJitter > 0 ? ThreadLocalRandom.current().nextLong(0, reconnectJitter) : 0));
+                return;
+            }
+            if (watch.recovery.isRecoveryMode()) watch.recovery.exitRecoveryMode();
+            long consulIndex = response.getConsulIndex();
+            if (consulIndex > index) {
+                watch.index = consulIndex;
+                if(logger.isDebugEnabled()) logger.debug("Got updated urls from Consul: {} instances of service {} found, index={}", response.getValue().size(), watch.serviceName, consulIndex);
+                listener.onUpdate(watch.protocol, watch.serviceName, response.getValue());
+            } else if (consulIndex < index) {
+                if(logger.isDebugEnabled()) logger.debug("Consul returned stale index: Index reset to 0 for service {} - Consul response index < last Consul index: {} < {}", watch.serviceName, consulIndex, index);
+                // force a fresh list of services from Consul at once.
+                watch.index = 0L;
+                schedule(watch, 0);
+                return;
+            } else {
+                if(logger.isDebugEnabled()) logger.debug("Consul returned no service updates for service {}, lastIndex={}", watch.serviceName, index);
+            }
+        } catch (Throwable e) {
+            logger.error("Failed to handle the Consul response for service " + watch.serviceName, e);
+        }
+        schedule(watch, lookupInterval);
+    }
+
+    /**
+     * The state of a watched service. It is only changed on the watch thread.
+     */
+    private static class Watch {
+        final String protocol;
+        final String serviceName;
+        final ConsulRecoveryManager recovery;
+        volatile long index;
+
+        Watch(String protocol, String serviceName) {
+            this.protocol = protocol;
+            this.serviceName = serviceName;
+            this.recovery = new ConsulRecoveryManager(serviceName);
+        }
+    }
+}
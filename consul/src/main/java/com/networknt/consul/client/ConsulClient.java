@@ -17,6 +17,7 @@
 package com.networknt.consul.client;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import com.networknt.consul.ConsulResponse;
 import com.networknt.consul.ConsulService;
@@ -75,4 +76,21 @@ public interface ConsulClient {
 	 */
 	ConsulResponse<List<ConsulService>> lookupHealthService(String serviceName, String tag, long lastConsulIndex, String token);
 
+	/**
+	 * get latest service list with a tag filter and a security token without blocking the caller. It is the
+	 * same query as the lookupHealthService, and the future is completed when Consul responds to the query.
+	 *
+	 * The default implementation runs the blocking lookup in the calling thread.
+	 *
+	 * @param serviceName service name (service_id)
+	 * @param tag tag that is used for filtering (env_tag)
+	 * @param lastConsulIndex last consul index
+	 * @param token Consul token for security (Consul ACL)
+	 * @return a future of the same response as the lookupHealthService, completed with null if the Consul
+	 * 			connection fails
+	 */
+	default CompletableFuture<ConsulResponse<List<ConsulService>>> lookupHealthServiceAsync(String serviceName, String tag, long lastConsulIndex, String token) {
+		return CompletableFuture.completedFuture(lookupHealthService(serviceName, tag, lastConsulIndex, token));
+	}
+
 }
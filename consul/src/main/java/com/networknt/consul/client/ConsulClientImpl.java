@@ -19,6 +19,7 @@ package com.networknt.consul.client;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.client.ClientConfig;
 import com.networknt.client.Http2Client;
+import com.networknt.client.http.Http2ClientCompletableFutureNoRequest;
 import com.networknt.config.Config;
 import com.networknt.consul.*;
 import com.networknt.httpstring.HttpStringConstants;
@@ -33,6 +34,7 @@ import io.undertow.util.Methods;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.IoUtils;
+import org.xnio.XnioExecutor;
 import org.xnio.OptionMap;
 
 import java.io.IOException;
@@ -41,8 +43,11 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -65,6 +70,15 @@ public class ConsulClientImpl implements ConsulClient {
 	private static ConsulConfig config;
 	private static final int UNUSUAL_STATUS_CODE = 300;
 	private final Http2Client client = Http2Client.getInstance();
+	/**
+	 * The thread to borrow the connections of the async lookups on. The borrow waits for the connection to be
+	 * created, and the TLS handshake of the connection needs the task threads of the client worker.
+	 */
+	private final ExecutorService borrowExecutor = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "consul-borrow");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	private final OptionMap optionMap;
 	private final URI uri;
@@ -72,11 +86,19 @@ public class ConsulClientImpl implements ConsulClient {
 	private String timeoutBuffer = "5s";
 
 	/**
-	 * Construct ConsulClient with all parameters from consul.yml config file. The other two constructors are
-	 * just for backward compatibility.
+	 * Construct ConsulClient with all parameters from consul.yml config file.
 	 */
 	public ConsulClientImpl() {
-		config = ConsulConfig.load();
+		this(ConsulConfig.load());
+	}
+
+	/**
+	 * Construct ConsulClient with the parameters of the config.
+	 *
+	 * @param consulConfig the Consul config
+	 */
+	public ConsulClientImpl(ConsulConfig consulConfig) {
+		config = consulConfig;
 		String consulUrl = config.getConsulUrl().toLowerCase();
 		optionMap =  isHttp2() ? OptionMap.create(UndertowOptions.ENABLE_HTTP2, true) : OptionMap.EMPTY;
 		if(logger.isDebugEnabled()) logger.debug("consulUrl = {}", consulUrl);
@@ -197,11 +219,7 @@ public class ConsulClientImpl implements ConsulClient {
 		}
 
 		ClientConnection connection = null;
-		String path = "/v1/health/service/" + serviceName + "?passing&wait="+wait+"&index=" + lastConsulIndex;
-		if(tag != null) {
-			path = path + "&tag=" + tag;
-		}
-		logger.trace("Consul health service path = {}", path);
+		String path = healthServicePath(serviceName, tag, lastConsulIndex);
 
 		SimpleConnectionHolder.ConnectionToken connectionToken = null;
 		try {
@@ -218,37 +236,7 @@ public class ConsulClientImpl implements ConsulClient {
 
 			if(logger.isDebugEnabled()) logger.debug("Consul connection is OK for service {}", serviceName);
 
-			int statusCode = reference.get().getResponseCode();
-			if(logger.isDebugEnabled()) logger.debug("Got Consul Query status code: {}", statusCode);
-
-			if(statusCode >= UNUSUAL_STATUS_CODE){
-				throw new Exception("Consul Query returned an error: " + statusCode);
-			} else {
-				String body = reference.get().getAttachment(Http2Client.RESPONSE_BODY);
-				logger.debug("Got Consul Query response body: {}", body);
-
-				// Convert the service instances of serviceName to Java objects
-				List<Map<String, Object>> services = Config.getInstance().getMapper().readValue(body, new TypeReference<List<Map<String, Object>>>(){});
-				// consulServices guaranteed to be created if Consul connection successful
-				List<ConsulService> consulServices = new ArrayList<>(services.size());
-
-				for (Map<String, Object> service : services) {
-					ConsulService newService = convertToConsulService((Map<String,Object>)service.get("Service"));
-					consulServices.add(newService);
-				}
-
-				// - Previously, consulServices.isEmpty() == true caused this method to return null ** even on a
-				//   successful Consul request ** (when an empty JSON list '[]' of IPs are returned from Consul)
-				// - We now guarantee that newResponse is non-null unless there is a Consul connection failure
-
-				//if (!consulServices.isEmpty()) {
-				newResponse = new ConsulResponse<>();	// newResponse guaranteed to be non-null if Consul connection successful
-				newResponse.setValue(consulServices);	// newResponse.getValue() guaranteed to be non-null if Consul connection successful
-				newResponse.setConsulIndex(Long.parseLong(reference.get().getResponseHeaders().getFirst("X-Consul-Index")));
-				newResponse.setConsulLastContact(Long.parseLong(reference.get().getResponseHeaders().getFirst("X-Consul-Lastcontact")));
-				newResponse.setConsulKnownLeader(Boolean.parseBoolean(reference.get().getResponseHeaders().getFirst("X-Consul-Knownleader")));
-				//}
-			}
+			newResponse = toConsulResponse(reference.get());
 		} catch (ConsulRequestException e) {
 			// This should only return null if Consul connection fails
 			logger.error("Exception:", e);
@@ -280,6 +268,126 @@ public class ConsulClientImpl implements ConsulClient {
 		return newResponse;
 	}
 
+	/**
+	 * to lookup health services based on serviceName without blocking the caller. The connection is borrowed
+	 * from the pool on a thread of the client, as the borrow waits for the connection to be created when there
+	 * is no open one. The request is sent on the connection and the future is completed by the IO
+	 * thread of the connection when Consul responds, so many blocking queries can be outstanding on one HTTP/2
+	 * connection without a thread waiting for each of them.
+	 *
+	 * If Consul doesn't respond within the wait and the timeout buffer, the connection is closed and the future
+	 * is completed with null like the blocking lookup.
+	 *
+	 * @param serviceName service name (service_id)
+	 * @param tag tag that is used for filtering (env_tag)
+	 * @param lastConsulIndex last consul index
+	 * @param token Consul token for security (Consul ACL)
+	 * @return a future of the same response as the lookupHealthService
+	 */
+	@Override
+	public CompletableFuture<ConsulResponse<List<ConsulService>>> lookupHealthServiceAsync(String serviceName, String tag, long lastConsulIndex, String token) {
+		if(StringUtils.isBlank(serviceName)) {
+			return CompletableFuture.completedFuture(null);
+		}
+		String path = healthServicePath(serviceName, tag, lastConsulIndex);
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return client.borrow(uri, Http2Client.WORKER, client.getDefaultXnioSsl(), Http2Client.BUFFER_POOL, optionMap);
+			} catch (Exception e) {
+				logger.error("Failed to get a Consul connection for service " + serviceName, e);
+				return null;
+			}
+		}, borrowExecutor).thenCompose(connectionToken -> connectionToken == null
+				? CompletableFuture.completedFuture(null)
+				: lookupHealthServiceAsync(connectionToken, serviceName, path, token));
+	}
+
+	private CompletableFuture<ConsulResponse<List<ConsulService>>> lookupHealthServiceAsync(SimpleConnectionHolder.ConnectionToken connectionToken, String serviceName, String path, String token) {
+		final ClientConnection connection = (ClientConnection) connectionToken.getRawConnection();
+		final Http2ClientCompletableFutureNoRequest future = new Http2ClientCompletableFutureNoRequest();
+		int timeoutInSecond = ConsulUtils.getWaitInSecond(wait) + ConsulUtils.getTimeoutBufferInSecond(timeoutBuffer);
+		XnioExecutor.Key timeoutKey = connection.getIoThread().executeAfter(() -> {
+			if(future.completeExceptionally(new ConsulRequestException(String.format("The request to Consul timed out after %d seconds to: %s", timeoutInSecond, uri)))) {
+				// it is not known whether Consul is still alive, so close the connection to force reconnect.
+				IoUtils.safeClose(connection);
+			}
+		}, timeoutInSecond, TimeUnit.SECONDS);
+		try {
+			connection.sendRequest(newRequest(Methods.GET, path, token), future);
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+		}
+		return future.handle((response, e) -> {
+			timeoutKey.remove();
+			client.restore(connectionToken);
+			if(e == null) {
+				try {
+					return toConsulResponse(response);
+				} catch (Exception ex) {
+					e = ex;
+				}
+			}
+			logger.error("Consul connection or request failed for service " + serviceName, e);
+			// an error returned by Consul doesn't close the connection shared by the other blocking queries.
+			if(!(e instanceof ConsulQueryException) && connection.isOpen()) IoUtils.safeClose(connection);
+			return null;
+		});
+	}
+
+	private String healthServicePath(String serviceName, String tag, long lastConsulIndex) {
+		String path = "/v1/health/service/" + serviceName + "?passing&wait="+wait+"&index=" + lastConsulIndex;
+		if(tag != null) {
+			path = path + "&tag=" + tag;
+		}
+		logger.trace("Consul health service path = {}", path);
+		return path;
+	}
+
+	/**
+	 * Convert the response of a health service query to the service instances and the Consul index.
+	 *
+	 * @param response the response from Consul
+	 * @return the ConsulResponse that is guaranteed to be non-null with a non-null value
+	 * @throws Exception if Consul has returned an error or the body cannot be parsed
+	 */
+	private ConsulResponse<List<ConsulService>> toConsulResponse(ClientResponse response) throws Exception {
+		int statusCode = response.getResponseCode();
+		if(logger.isDebugEnabled()) logger.debug("Got Consul Query status code: {}", statusCode);
+
+		if(statusCode >= UNUSUAL_STATUS_CODE){
+			throw new ConsulQueryException("Consul Query returned an error: " + statusCode);
+		}
+		String body = response.getAttachment(Http2Client.RESPONSE_BODY);
+		logger.debug("Got Consul Query response body: {}", body);
+
+		// Convert the service instances of serviceName to Java objects
+		List<Map<String, Object>> services = Config.getInstance().getMapper().readValue(body, new TypeReference<List<Map<String, Object>>>(){});
+		// consulServices guaranteed to be created if Consul connection successful
+		List<ConsulService> consulServices = new ArrayList<>(services.size());
+
+		for (Map<String, Object> service : services) {
+			ConsulService newService = convertToConsulService((Map<String,Object>)service.get("Service"));
+			consulServices.add(newService);
+		}
+
+		// - Previously, consulServices.isEmpty() == true caused this method to return null ** even on a
+		//   successful Consul request ** (when an empty JSON list '[]' of IPs are returned from Consul)
+		// - We now guarantee that newResponse is non-null unless there is a Consul connection failure
+		ConsulResponse<List<ConsulService>> newResponse = new ConsulResponse<>();	// newResponse guaranteed to be non-null if Consul connection successful
+		newResponse.setValue(consulServices);	// newResponse.getValue() guaranteed to be non-null if Consul connection successful
+		newResponse.setConsulIndex(Long.parseLong(response.getResponseHeaders().getFirst("X-Consul-Index")));
+		newResponse.setConsulLastContact(Long.parseLong(response.getResponseHeaders().getFirst("X-Consul-Lastcontact")));
+		newResponse.setConsulKnownLeader(Boolean.parseBoolean(response.getResponseHeaders().getFirst("X-Consul-Knownleader")));
+		return newResponse;
+	}
+
+	private static class ConsulQueryException extends Exception
+	{
+		public ConsulQueryException(String message) {
+			super(message);
+		}
+	}
+
 	private static class ConsulRequestException extends RuntimeException
 	{
 		public ConsulRequestException(String message) {
@@ -309,10 +417,7 @@ public class ConsulClientImpl implements ConsulClient {
 	AtomicReference<ClientResponse> send(ClientConnection connection, HttpString method, String path, String token, String json) throws InterruptedException {
 		final CountDownLatch latch = new CountDownLatch(1);
 		final AtomicReference<ClientResponse> reference = new AtomicReference<>();
-		// construct request
-		ClientRequest request = new ClientRequest().setMethod(method).setPath(path);
-		request.getRequestHeaders().put(Headers.HOST, "localhost");
-		if (token != null) request.getRequestHeaders().put(HttpStringConstants.CONSUL_TOKEN, token);
+		ClientRequest request = newRequest(method, path, token);
 		if(logger.isTraceEnabled()) logger.trace("The request sent to Consul URI {} - request header: {}, request body is empty", uri.toString(), request.toString());
 		if(StringUtils.isBlank(json)) {
 			connection.sendRequest(request, client.createClientCallback(reference, latch));
@@ -341,6 +446,13 @@ public class ConsulClientImpl implements ConsulClient {
 		return reference;
 	}
 
+	private ClientRequest newRequest(HttpString method, String path, String token) {
+		ClientRequest request = new ClientRequest().setMethod(method).setPath(path);
+		request.getRequestHeaders().put(Headers.HOST, "localhost");
+		if (token != null) request.getRequestHeaders().put(HttpStringConstants.CONSUL_TOKEN, token);
+		return request;
+	}
+
 	/**
 	 * As the Consul server is built with Go and HTTP/2 is supported by default when HTTPS is used, we need to leverage
 	 * the multiplexing of HTTP/2 whenever possible. In the scenario that the user miss the enableHttp2 flag in the
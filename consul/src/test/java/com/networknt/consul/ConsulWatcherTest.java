@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.consul;
+
+import com.networknt.config.Config;
+import com.networknt.consul.client.ConsulClient;
+import com.networknt.consul.client.ConsulClientImpl;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.HttpString;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.SocketAddress;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Watch the services of a fake Consul that holds the blocking queries until the services are changed. The fake
+ * Consul is called with HTTPS like the Consul server, so all the blocking queries share one HTTP/2 connection.
+ */
+public class ConsulWatcherTest {
+    private static final int PORT = 18500;
+    private static final int SERVICES = 300;
+
+    private static Undertow server;
+    private static FakeConsul consul;
+    private static ConsulClient client;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        consul = new FakeConsul();
+        server = Undertow.builder()
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .addHttpsListener(PORT, "localhost", createSSLContext())
+                .setHandler(consul::handleRequest)
+                .build();
+        server.start();
+        ConsulConfig config = ConsulConfig.load();
+        config.setConsulUrl("https://localhost:" + PORT);
+        config.setWait("30s");
+        client = new ConsulClientImpl(config);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void testWatchManyServices() throws Exception {
+        Map<String, List<ConsulService>> updates = new ConcurrentHashMap<>();
+        ConsulWatcher watcher = new ConsulWatcher(client, () -> null, 10, 100, 50,
+                (protocol, serviceName, services) -> updates.put(serviceName, services));
+        try {
+            for (int i = 0; i < SERVICES; i++) consul.update("many" + i, 1);
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            for (int i = 0; i < SERVICES; i++) Assert.assertTrue(watcher.watch("http", "many" + i));
+            Assert.assertFalse(watcher.watch("http", "many0"));
+            Assert.assertEquals(SERVICES, watcher.size());
+            await(() -> countInstances(updates, 1) == SERVICES);
+            // the services are not changed, so all the queries are held by Consul.
+            await(() -> consul.waiting() == SERVICES);
+            // no thread is waiting for each of the queries.
+            Assert.assertTrue(ManagementFactory.getThreadMXBean().getThreadCount() - threads < 10);
+
+            consul.clients.clear();
+            long start = System.nanoTime();
+            for (int i = 0; i < SERVICES; i++) consul.update("many" + i, 3);
+            await(() -> countInstances(updates, 3) == SERVICES);
+            System.out.println(String.format("%d services updated in %d ms", SERVICES, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            // all the queries are sent on one connection.
+            await(() -> consul.waiting() == SERVICES);
+            Assert.assertEquals(1, consul.clients.size());
+            Assert.assertEquals(consul.index("many7"), watcher.getIndex("many7"));
+        } finally {
+            watcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testStaleIndexReset() throws Exception {
+        Map<String, List<ConsulService>> updates = new ConcurrentHashMap<>();
+        ConsulWatcher watcher = new ConsulWatcher(client, () -> null, 10, 100, 50,
+                (protocol, serviceName, services) -> updates.put(serviceName, services));
+        try {
+            consul.update("stale", 2);
+            watcher.watch("http", "stale");
+            await(() -> updates.containsKey("stale") && updates.get("stale").size() == 2);
+            long index = watcher.getIndex("stale");
+            Assert.assertTrue(index > 1);
+            // Consul is restored from a snapshot and its index goes back.
+            consul.reset("stale", 1, 4);
+            await(() -> updates.get("stale").size() == 4);
+            Assert.assertEquals(1L, watcher.getIndex("stale"));
+        } finally {
+            watcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testReconnectAfterError() throws Exception {
+        Map<String, List<ConsulService>> updates = new ConcurrentHashMap<>();
+        ConsulWatcher watcher = new ConsulWatcher(client, () -> null, 10, 100, 50,
+                (protocol, serviceName, services) -> updates.put(serviceName, services));
+        try {
+            consul.update("error", 1);
+            consul.fail("error", 3);
+            watcher.watch("http", "error");
+            await(() -> updates.containsKey("error"));
+            Assert.assertEquals(0, consul.failures("error"));
+            Assert.assertEquals(1, updates.get("error").size());
+        } finally {
+            watcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testUpdateIndex() throws Exception {
+        Map<String, List<ConsulService>> updates = new ConcurrentHashMap<>();
+        ConsulWatcher watcher = new ConsulWatcher(client, () -> null, 200, 100, 50,
+                (protocol, serviceName, services) -> updates.put(serviceName, services));
+        try {
+            consul.update("seeded", 1);
+            watcher.watch("http", "seeded");
+            // the services have been looked up by the discovery, so the first query waits for a change.
+            watcher.updateIndex("seeded", consul.index("seeded"));
+            await(() -> consul.waiting() > 0 && watcher.getIndex("seeded") == consul.index("seeded"));
+            Assert.assertTrue(updates.isEmpty());
+            consul.update("seeded", 2);
+            await(() -> updates.containsKey("seeded"));
+            Assert.assertEquals(2, updates.get("seeded").size());
+        } finally {
+            watcher.shutdown();
+        }
+    }
+
+    private static SSLContext createSSLContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream stream = Config.getInstance().getInputStreamFromFile("server.keystore")) {
+            keyStore.load(stream, "password".toCharArray());
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "password".toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private static long countInstances(Map<String, List<ConsulService>> updates, int instances) {
+        return updates.values().stream().filter(services -> services.size() == instances).count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) Assert.fail("condition is not met in 30 seconds");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * The health service endpoint of Consul. A query with the current index of the service is held until the
+     * service is changed, and the other queries are answered at once.
+     */
+    private static class FakeConsul {
+        private static final String PATH = "/v1/health/service/";
+        private final AtomicLong raftIndex = new AtomicLong();
+        private final Map<String, Service> services = new ConcurrentHashMap<>();
+        // the addresses of the clients that have sent a query.
+        final Set<SocketAddress> clients = ConcurrentHashMap.newKeySet();
+
+        void handleRequest(HttpServerExchange exchange) {
+            clients.add(exchange.getConnection().getPeerAddress());
+            String name = exchange.getRelativePath().substring(PATH.length());
+            long index = Long.parseLong(exchange.getQueryParameters().get("index").getFirst());
+            Service service = services.computeIfAbsent(name, k -> new Service());
+            synchronized (service) {
+                if (service.failures > 0) {
+                    service.failures--;
+                    exchange.setStatusCode(500);
+                    exchange.getResponseSender().send("rpc error");
+                } else if (index == service.index) {
+                    service.waiting.add(exchange);
+                    exchange.dispatch();
+                } else {
+                    send(exchange, name, service);
+                }
+            }
+        }
+
+        void update(String name, int instances) {
+            change(name, raftIndex.incrementAndGet(), instances);
+        }
+
+        void reset(String name, long index, int instances) {
+            change(name, index, instances);
+        }
+
+        void fail(String name, int failures) {
+            Service service = services.computeIfAbsent(name, k -> new Service());
+            synchronized (service) {
+                service.failures = failures;
+            }
+        }
+
+        int failures(String name) {
+            Service service = services.get(name);
+            synchronized (service) {
+                return service.failures;
+            }
+        }
+
+        long index(String name) {
+            Service service = services.get(name);
+            synchronized (service) {
+                return service.index;
+            }
+        }
+
+        int waiting() {
+            int waiting = 0;
+            for (Service service : services.values()) {
+                synchronized (service) {
+                    waiting += service.waiting.size();
+                }
+            }
+            return waiting;
+        }
+
+        private void change(String name, long index, int instances) {
+            Service service = services.computeIfAbsent(name, k -> new Service());
+            synchronized (service) {
+                service.index = index;
+                service.instances = instances;
+                for (HttpServerExchange exchange : service.waiting) {
+                    exchange.getIoThread().execute(() -> {
+                        synchronized (service) {
+                            send(exchange, name, service);
+                        }
+                    });
+                }
+                service.waiting.clear();
+            }
+        }
+
+        private static void send(HttpServerExchange exchange, String name, Service service) {
+            List<Map<String, Object>> body = new ArrayList<>();
+            for (int i = 0; i < service.instances; i++) {
+                Map<String, Object> instance = new HashMap<>();
+                instance.put("ID", name + "-10.0.0." + i + "-8443");
+                instance.put("Service", name);
+                instance.put("Address", "10.0.0." + i);
+                instance.put("Port", 8443);
+                instance.put("Tags", List.of("dev"));
+                body.add(Map.of("Service", instance));
+            }
+            exchange.getResponseHeaders().put(new HttpString("X-Consul-Index"), service.index);
+            exchange.getResponseHeaders().put(new HttpString("X-Consul-Lastcontact"), 0);
+            exchange.getResponseHeaders().put(new HttpString("X-Consul-Knownleader"), "true");
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            try {
+                exchange.getResponseSender().send(Config.getInstance().getMapper().writeValueAsString(body));
+            } catch (Exception e) {
+                exchange.setStatusCode(500);
+                exchange.endExchange();
+            }
+        }
+    }
+
+    private static class Service {
+        long index;
+        int instances;
+        int failures;
+        final List<HttpServerExchange> waiting = new ArrayList<>();
+    }
+}
@@ -1,5 +1,6 @@
 package com.networknt.router.middleware;
 
+import com.networknt.utility.PathPrefixTrie;
 import com.networknt.utility.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,7 +20,9 @@ public class HandlerUtils {
      * @param searchKey search key
      * @param mapping a map of prefix and service id
      * @return pathPrefix and serviceId in an array that is found
+     * @deprecated use the path prefix trie that is built when the config is loaded
      */
+    @Deprecated
     public static String[] findServiceEntry(String searchKey, Map<String, String> mapping) {
         if(logger.isDebugEnabled()) logger.debug("findServiceEntry for " + searchKey);
         String[] result = null;
@@ -46,6 +49,30 @@ public class HandlerUtils {
         return result;
     }
 
+    /**
+     * Looks up the serviceId of the longest path prefix of the requestPath in the path prefix trie that is built
+     * from the mapping when the config is loaded. Returns null if the path does not map to a configured service,
+     * otherwise, an array will be returned with the first element the path prefix and the second element the serviceId.
+     *
+     * @param searchKey search key
+     * @param mapping a path prefix trie of prefix and service id
+     * @return pathPrefix and serviceId in an array that is found
+     */
+    public static String[] findServiceEntry(String searchKey, PathPrefixTrie<String> mapping) {
+        if(logger.isDebugEnabled()) logger.debug("findServiceEntry for " + searchKey);
+        if(mapping == null) {
+            if(logger.isDebugEnabled()) logger.debug("mapping is empty in the configuration.");
+            return null;
+        }
+        Map.Entry<String, String> entry = mapping.matchEntry(searchKey);
+        if(entry == null) {
+            if(logger.isDebugEnabled()) logger.debug("serviceEntry not found!");
+            return null;
+        }
+        if(logger.isDebugEnabled()) logger.debug("prefix = " + entry.getKey() + " serviceId = " + entry.getValue());
+        return new String[] {entry.getKey(), entry.getValue()};
+    }
+
     public static String normalisePath(String requestPath) {
         if(!requestPath.startsWith("/")) {
             return "/" + requestPath;
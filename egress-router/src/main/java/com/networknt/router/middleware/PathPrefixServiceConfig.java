@@ -3,6 +3,7 @@ package com.networknt.router.middleware;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
 import com.networknt.config.JsonMapper;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,7 @@ public class PathPrefixServiceConfig {
     // variables
     private  Map<String, Object> mappedConfig;
     private Map<String, String> mapping;
+    private PathPrefixTrie<String> mappingTrie;
     private boolean enabled;
 
     // the config object
@@ -40,6 +42,7 @@ public class PathPrefixServiceConfig {
         config = Config.getInstance();
         mappedConfig = config.getJsonMapConfigNoCache(configName);
         setMap();
+        mappingTrie = mapping == null ? null : PathPrefixTrie.of(mapping);
         setConfigData();
     }
 
@@ -54,6 +57,7 @@ public class PathPrefixServiceConfig {
     public void reload() {
         mappedConfig = config.getJsonMapConfigNoCache(CONFIG_NAME);
         setMap();
+        mappingTrie = mapping == null ? null : PathPrefixTrie.of(mapping);
         setConfigData();
     }
 
@@ -61,6 +65,10 @@ public class PathPrefixServiceConfig {
         return mapping;
     }
 
+    public PathPrefixTrie<String> getMappingTrie() {
+        return mappingTrie;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -2,6 +2,7 @@ package com.networknt.router.middleware;
 
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +29,7 @@ public class ServiceDictConfig {
     // variables
     private Map<String, Object> mappedConfig;
     private Map<String, String> mapping;
+    private PathPrefixTrie<String> mappingTrie;
     private boolean enabled;
 
     // the config object
@@ -41,6 +43,7 @@ public class ServiceDictConfig {
         config = Config.getInstance();
         mappedConfig = config.getJsonMapConfigNoCache(configName);
         setMap();
+        mappingTrie = mapping == null ? null : PathPrefixTrie.of(mapping);
         setConfigData();
     }
 
@@ -55,6 +58,7 @@ public class ServiceDictConfig {
     public void reload() {
         mappedConfig = config.getJsonMapConfigNoCache(CONFIG_NAME);
         setMap();
+        mappingTrie = mapping == null ? null : PathPrefixTrie.of(mapping);
         setConfigData();
     }
 
@@ -62,6 +66,10 @@ public class ServiceDictConfig {
         return mapping;
     }
 
+    public PathPrefixTrie<String> getMappingTrie() {
+        return mappingTrie;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
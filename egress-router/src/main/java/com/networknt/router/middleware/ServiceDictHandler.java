@@ -45,7 +45,7 @@ public class ServiceDictHandler implements MiddlewareHandler {
     protected void serviceDict(HttpServerExchange exchange) throws Exception {
         String requestPath = exchange.getRequestURI();
         String httpMethod = exchange.getRequestMethod().toString().toLowerCase();
-        String[] serviceEntry = HandlerUtils.findServiceEntry(HandlerUtils.toInternalKey(httpMethod, requestPath), config.getMapping());
+        String[] serviceEntry = HandlerUtils.findServiceEntry(HandlerUtils.toInternalKey(httpMethod, requestPath), config.getMappingTrie());
 
         HeaderValues serviceIdHeader = exchange.getRequestHeaders().get(HttpStringConstants.SERVICE_ID);
         String serviceId = serviceIdHeader != null ? serviceIdHeader.peekFirst() : null;
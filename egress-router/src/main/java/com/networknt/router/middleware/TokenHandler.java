@@ -18,15 +18,14 @@ package com.networknt.router.middleware;
 
 import com.networknt.client.ClientConfig;
 import com.networknt.client.oauth.Jwt;
-import com.networknt.client.oauth.OauthHelper;
 import com.networknt.client.oauth.TokenKeyRequest;
+import com.networknt.client.oauth.TokenManager;
 import com.networknt.config.Config;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.httpstring.HttpStringConstants;
 import com.networknt.monad.Failure;
 import com.networknt.monad.Result;
-import com.networknt.monad.Success;
 import com.networknt.status.Status;
 import com.networknt.utility.ConcurrentHashSet;
 import com.networknt.utility.ModuleRegistry;
@@ -51,10 +50,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * be encrypted or set as an environment variable. In Kubernetes cluster, you can create a
  * sealed secret for it.
  *
- * This handler will also responsible for checking if the cached token is about expired
- * or not. In which case, it will renew the token in another thread. When request comes and
- * the cached token is already expired, then it will block the request and go to the OAuth
- * provider to get a new token and then resume the request to the next handler in the chain.
+ * The tokens are cached by the TokenManager, which renews the cached token in the background
+ * before it is about expired, so the requests don't wait for the OAuth provider. When request
+ * comes and there is no valid token, then it will block the request until the token is retrieved
+ * from the OAuth provider and then resume the request to the next handler in the chain. The
+ * concurrent requests for the same serviceId share one request to the OAuth provider.
  *
  * The logic is very similar with client module in light-4j but this is implemented in a
  * handler instead. Multiple OAuth 2.0 providers are supported and the token cache strategy
@@ -79,8 +79,8 @@ public class TokenHandler implements MiddlewareHandler {
     private static TokenConfig config;
     static Logger logger = LoggerFactory.getLogger(TokenHandler.class);
     protected volatile HttpHandler next;
-    // Cached jwt token for this handler on behalf of a client by serviceId as the key
-    public final static Map<String, Jwt> cache = new ConcurrentHashMap();
+    // Client credentials config of the auth server for each serviceId as the key
+    private final static Map<String, Map<String, Object>> ccConfigs = new ConcurrentHashMap<>();
     public TokenHandler() {
         if(logger.isInfoEnabled()) logger.info("TokenHandler is loaded.");
         config = TokenConfig.load();
@@ -136,49 +136,37 @@ public class TokenHandler implements MiddlewareHandler {
     }
 
     public static Result<Jwt> getJwtToken(String serviceId) {
+        Map<String, Object> ccConfig = ccConfigs.computeIfAbsent(serviceId, TokenHandler::getCcConfig);
+        return TokenManager.getInstance().getJwt(new Jwt.Key(serviceId), ccConfig);
+    }
+
+    private static Map<String, Object> getCcConfig(String serviceId) {
         ClientConfig clientConfig = ClientConfig.get();
         Map<String, Object> tokenConfig = clientConfig.getTokenConfig();
         Map<String, Object> ccConfig = (Map<String, Object>)tokenConfig.get(ClientConfig.CLIENT_CREDENTIALS);
-        Result<Jwt> result;
-        Jwt cachedJwt = cache.get(serviceId);
-        // get a new token if cachedJwt is null or the jwt is about expired.
-        if(cachedJwt == null || cachedJwt.getExpire() - Long.valueOf((Integer)tokenConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED)) < System.currentTimeMillis()) {
-            Jwt.Key key = new Jwt.Key(serviceId);
-            cachedJwt = new Jwt(key); // create a new instance if the cache is empty for the serviceId.
-
-            if(clientConfig.isMultipleAuthServers()) {
-                // get the right client credentials configuration based on the serviceId
-                Map<String, Object> serviceIdAuthServers = (Map<String, Object>)ccConfig.get(ClientConfig.SERVICE_ID_AUTH_SERVERS);
-                if(serviceIdAuthServers == null) {
-                    throw new RuntimeException("serviceIdAuthServers property is missing in the token client credentials configuration");
-                }
-                Map<String, Object> authServerConfig = (Map<String, Object>)serviceIdAuthServers.get(serviceId);
-                // overwrite some elements in the auth server config if it is not defined.
-                if(authServerConfig.get(ClientConfig.PROXY_HOST) == null) authServerConfig.put(ClientConfig.PROXY_HOST, tokenConfig.get(ClientConfig.PROXY_HOST));
-                if(authServerConfig.get(ClientConfig.PROXY_PORT) == null) authServerConfig.put(ClientConfig.PROXY_PORT, tokenConfig.get(ClientConfig.PROXY_PORT));
-                if(authServerConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED) == null) authServerConfig.put(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED, tokenConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED));
-                if(authServerConfig.get(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY) == null) authServerConfig.put(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY));
-                if(authServerConfig.get(ClientConfig.EARLY_REFRESH_RETRY_DELAY) == null) authServerConfig.put(ClientConfig.EARLY_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EARLY_REFRESH_RETRY_DELAY));
-                cachedJwt.setCcConfig(authServerConfig);
-            } else {
-                // only one client credentials configuration, populate some common elements to the ccConfig from tokenConfig.
-                ccConfig.put(ClientConfig.PROXY_HOST, tokenConfig.get(ClientConfig.PROXY_HOST));
-                ccConfig.put(ClientConfig.PROXY_PORT, tokenConfig.get(ClientConfig.PROXY_PORT));
-                ccConfig.put(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED, tokenConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED));
-                ccConfig.put(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY));
-                ccConfig.put(ClientConfig.EARLY_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EARLY_REFRESH_RETRY_DELAY));
-                cachedJwt.setCcConfig(ccConfig);
-            }
-            result = OauthHelper.populateCCToken(cachedJwt);
-            if(result.isSuccess()) {
-                // put the cachedJwt to the cache.
-                cache.put(serviceId, cachedJwt);
+        if(clientConfig.isMultipleAuthServers()) {
+            // get the right client credentials configuration based on the serviceId
+            Map<String, Object> serviceIdAuthServers = (Map<String, Object>)ccConfig.get(ClientConfig.SERVICE_ID_AUTH_SERVERS);
+            if(serviceIdAuthServers == null) {
+                throw new RuntimeException("serviceIdAuthServers property is missing in the token client credentials configuration");
             }
+            Map<String, Object> authServerConfig = (Map<String, Object>)serviceIdAuthServers.get(serviceId);
+            // overwrite some elements in the auth server config if it is not defined.
+            if(authServerConfig.get(ClientConfig.PROXY_HOST) == null) authServerConfig.put(ClientConfig.PROXY_HOST, tokenConfig.get(ClientConfig.PROXY_HOST));
+            if(authServerConfig.get(ClientConfig.PROXY_PORT) == null) authServerConfig.put(ClientConfig.PROXY_PORT, tokenConfig.get(ClientConfig.PROXY_PORT));
+            if(authServerConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED) == null) authServerConfig.put(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED, tokenConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED));
+            if(authServerConfig.get(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY) == null) authServerConfig.put(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY));
+            if(authServerConfig.get(ClientConfig.EARLY_REFRESH_RETRY_DELAY) == null) authServerConfig.put(ClientConfig.EARLY_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EARLY_REFRESH_RETRY_DELAY));
+            return authServerConfig;
         } else {
-            // the cached jwt is not null and still valid.
-            result = Success.of(cachedJwt);
+            // only one client credentials configuration, populate some common elements to the ccConfig from tokenConfig.
+            ccConfig.put(ClientConfig.PROXY_HOST, tokenConfig.get(ClientConfig.PROXY_HOST));
+            ccConfig.put(ClientConfig.PROXY_PORT, tokenConfig.get(ClientConfig.PROXY_PORT));
+            ccConfig.put(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED, tokenConfig.get(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED));
+            ccConfig.put(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY));
+            ccConfig.put(ClientConfig.EARLY_REFRESH_RETRY_DELAY, tokenConfig.get(ClientConfig.EARLY_REFRESH_RETRY_DELAY));
+            return ccConfig;
         }
-        return result;
     }
 
     @Override
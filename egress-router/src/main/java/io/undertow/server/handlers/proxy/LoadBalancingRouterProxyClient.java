@@ -18,12 +18,17 @@
 
 package io.undertow.server.handlers.proxy;
 
+import com.networknt.balance.InstanceStats;
 import com.networknt.client.ClientConfig;
 import com.networknt.client.ServerExchangeCarrier;
 import com.networknt.cluster.Cluster;
 import com.networknt.config.ConfigException;
 import com.networknt.httpstring.AttachmentConstants;
 import com.networknt.httpstring.HttpStringConstants;
+import com.networknt.registry.NotifyListener;
+import com.networknt.registry.Registry;
+import com.networknt.registry.URL;
+import com.networknt.registry.URLImpl;
 import com.networknt.router.HostWhitelist;
 import com.networknt.router.RouterConfig;
 import com.networknt.service.SingletonServiceFactory;
@@ -47,10 +52,15 @@ import org.xnio.ssl.XnioSsl;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.undertow.server.handlers.proxy.ProxyConnectionPool.AvailabilityType.*;
@@ -64,7 +74,9 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
     private static Logger logger = LoggerFactory.getLogger(LoadBalancingRouterProxyClient.class);
     private static final RouterConfig config = RouterConfig.load();
     private static final AttachmentKey<AttachmentList<Host>> ATTEMPTED_HOSTS = AttachmentKey.createList(Host.class);
+    private static final AttachmentKey<Attempt> CURRENT_ATTEMPT = AttachmentKey.create(Attempt.class);
     private static Cluster cluster = SingletonServiceFactory.getBean(Cluster.class);
+    private static Registry registry = SingletonServiceFactory.getBean(Registry.class);
     private static final HostWhitelist HOST_WHITELIST = new HostWhitelist();
 
     /**
@@ -81,10 +93,16 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
     private volatile int ttl = -1;
 
     /**
-     * The service hosts list map
+     * The service hosts list map. The host arrays are never changed once they are put into the map, so the hosts
+     * are selected from a snapshot without locking while the hosts of a service are updated.
      */
     private volatile Map<String, Host[]> hosts = new CopyOnWriteMap<>();
 
+    /**
+     * The registry listeners of the services, so that each service is only subscribed once.
+     */
+    final Map<String, NotifyListener> listeners = new ConcurrentHashMap<>();
+
     private final HostSelector hostSelector;
     private final UndertowClient client;
 
@@ -162,28 +180,83 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
         return this;
     }
 
+    /**
+     * Discover the service and update its hosts. The service is subscribed to the registry the first time, so that
+     * the hosts are updated when the registry notifies the changes of the service instances afterwards.
+     *
+     * @param serviceId the service id
+     * @param envTag the environment tag or null
+     */
     public synchronized void addHosts(final String serviceId, final String envTag) {
         if(logger.isTraceEnabled()) logger.trace("addHosts serviceId {} envTag {} for cluster.services discovery.", serviceId, envTag);
         String key = envTag == null ? serviceId : serviceId + "|" + envTag;
-        List<URI> uris = cluster.services(ssl == null ? "http" : "https", serviceId, envTag);
+        String protocol = ssl == null ? "http" : "https";
+        if(registry != null && !listeners.containsKey(key)) {
+            NotifyListener listener = (registryUrl, urls) -> {
+                if(logger.isTraceEnabled()) logger.trace("registry notified key {} with urls {}", key, urls);
+                List<URI> uris = new ArrayList<>();
+                if(urls != null) {
+                    for (URL url : urls) uris.add(toUri(protocol, url));
+                }
+                updateHosts(key, serviceId, uris);
+            };
+            listeners.put(key, listener);
+            URL subscribeUrl = URLImpl.valueOf(protocol + "://localhost/" + serviceId);
+            if(envTag != null) subscribeUrl.addParameter(Constants.TAG_ENVIRONMENT, envTag);
+            registry.subscribe(subscribeUrl, listener);
+        }
+        updateHosts(key, serviceId, cluster.services(protocol, serviceId, envTag));
+    }
+
+    /**
+     * Replace the hosts of the service with the hosts of the uris. The hosts of the uris that have not changed are
+     * kept with their connection pools, so that the warm connections are reused, and the connection pools of the
+     * hosts that are removed are closed.
+     *
+     * @param key the service id and the environment tag
+     * @param serviceId the service id
+     * @param uris the uris of the service instances
+     */
+    synchronized void updateHosts(final String key, final String serviceId, List<URI> uris) {
+        if(uris == null) uris = new ArrayList<>();
         // If there is only one entry, duplicated to ensure that retry will be enabled.
-        if(uris != null && uris.size() == 1) {
+        if(uris.size() == 1) {
             if(logger.isTraceEnabled()) logger.trace("Only one uri found in the service.yml, so duplicated it to enable retry.");
-            uris.add(uris.get(0));
+            uris = List.of(uris.get(0), uris.get(0));
+        }
+        Map<URI, Deque<Host>> current = new HashMap<>();
+        Host[] oldHosts = hosts.get(key);
+        if(oldHosts != null) {
+            for (Host h : oldHosts) current.computeIfAbsent(h.uri, k -> new ArrayDeque<>()).add(h);
         }
-        // hosts.remove(key);
         Host[] newHosts = new Host[uris.size()];
+        int kept = 0;
         for (int i = 0; i < uris.size(); i++) {
-            Host h = null;
-            if (config.isPreResolveFQDN2IP()) {
-                h = new Host(serviceId, bindAddress, NetUtils.resolveUriHost2Address(uris.get(i)), ssl, options);
+            URI uri = config.isPreResolveFQDN2IP() ? NetUtils.resolveUriHost2Address(uris.get(i)) : uris.get(i);
+            Deque<Host> same = current.get(uri);
+            Host h = same == null ? null : same.poll();
+            if (h == null) {
+                h = new Host(serviceId, bindAddress, uri, ssl, options);
             } else {
-                h = new Host(serviceId, bindAddress, uris.get(i), ssl, options);
+                kept++;
             }
             newHosts[i] = h;
         }
-        if(logger.isTraceEnabled()) logger.trace("put a new key {} into the hosts with size {}", key, newHosts.length);
+        if(logger.isTraceEnabled()) logger.trace("put a new key {} into the hosts with size {} and {} hosts kept", key, newHosts.length, kept);
         hosts.put(key, newHosts);
+        // the connections in use are closed when they are returned to the pool.
+        for (Deque<Host> removed : current.values()) {
+            for (Host h : removed) h.connectionPool.close();
+        }
+    }
+
+    private static URI toUri(String protocol, URL url) {
+        try {
+            return new URI(protocol, null, url.getHost(), url.getPort(), null, null, null);
+        } catch (URISyntaxException e) {
+            logger.error("URISyntaxException:", e);
+            throw new RuntimeException(e);
+        }
     }
 
     @Override
@@ -206,7 +279,7 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
                 if(logger.isTraceEnabled()) logger.trace("callback could not resolve backend.");
             } else {
                 exchange.addToAttachmentList(ATTEMPTED_HOSTS, host);
-                host.connectionPool.connect(target, exchange, callback, timeout, timeUnit, false);
+                host.connectionPool.connect(target, exchange, observe(exchange, host, callback), timeout, timeUnit, false);
                 if(logger.isTraceEnabled()) logger.trace("got connection from the connection pool");
             }
         } catch (Exception ex) {
@@ -310,6 +383,53 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
         return null;
     }
 
+    /**
+     * Record the attempt to send the request to the host in the InstanceStats of the instance, so that the latency
+     * aware load balances can avoid the instances that are slow or overloaded. The attempt fails when there is no
+     * connection to the host or the request is sent to another host, otherwise it is completed with the status of
+     * the response when the exchange is completed.
+     *
+     * @return the callback that completes the attempt when the connection fails
+     */
+    private ProxyCallback<ProxyConnection> observe(HttpServerExchange exchange, Host host, ProxyCallback<ProxyConnection> callback) {
+        Attempt previous = exchange.getAttachment(CURRENT_ATTEMPT);
+        if (previous == null) {
+            exchange.addExchangeCompleteListener((completed, nextListener) -> {
+                completed.getAttachment(CURRENT_ATTEMPT).complete(completed.getStatusCode() < 500);
+                nextListener.proceed();
+            });
+        } else {
+            // the request is retried with another host after the previous attempt has failed.
+            previous.complete(false);
+        }
+        Attempt attempt = new Attempt(InstanceStats.get(host.uri));
+        exchange.putAttachment(CURRENT_ATTEMPT, attempt);
+        return new ProxyCallback<ProxyConnection>() {
+            @Override
+            public void completed(HttpServerExchange exchange, ProxyConnection result) {
+                callback.completed(exchange, result);
+            }
+
+            @Override
+            public void failed(HttpServerExchange exchange) {
+                attempt.complete(false);
+                callback.failed(exchange);
+            }
+
+            @Override
+            public void couldNotResolveBackend(HttpServerExchange exchange) {
+                attempt.complete(false);
+                callback.couldNotResolveBackend(exchange);
+            }
+
+            @Override
+            public void queuedRequestFailed(HttpServerExchange exchange) {
+                attempt.complete(false);
+                callback.queuedRequestFailed(exchange);
+            }
+        };
+    }
+
     private void injectTracer(HttpServerExchange exchange, Host host) {
         if(ClientConfig.get().isInjectOpenTracing()) {
             Tracer tracer = exchange.getAttachment(AttachmentConstants.EXCHANGE_TRACER);
@@ -408,4 +528,23 @@ public class LoadBalancingRouterProxyClient implements ProxyClient {
         }
     }
 
+    /**
+     * A request sent to an instance that is recorded in its InstanceStats once.
+     */
+    private static final class Attempt {
+        private final InstanceStats stats;
+        private final long start;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        Attempt(InstanceStats stats) {
+            this.stats = stats;
+            this.start = stats.start();
+        }
+
+        void complete(boolean success) {
+            if (completed.compareAndSet(false, true)) {
+                stats.complete(start, success);
+            }
+        }
+    }
 }
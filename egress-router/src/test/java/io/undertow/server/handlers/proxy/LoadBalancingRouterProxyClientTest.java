@@ -0,0 +1,134 @@
+package io.undertow.server.handlers.proxy;
+
+import com.networknt.balance.InstanceStats;
+import com.networknt.httpstring.HttpStringConstants;
+import com.networknt.registry.NotifyListener;
+import com.networknt.registry.URL;
+import com.networknt.registry.URLImpl;
+import io.undertow.Undertow;
+import io.undertow.server.handlers.ResponseCodeHandler;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.OptionMap;
+
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route the requests to the instances of a service discovered from the service.yml and updated by the registry
+ * notifications, and count the connections that are opened to each instance. The failed attempts are recorded in
+ * the InstanceStats of the instance.
+ */
+public class LoadBalancingRouterProxyClientTest {
+    private static final String SERVICE_ID = "com.networknt.test-1.0.0";
+    private static final String ENV_TAG = "dev";
+    private static final int ROUTER_PORT = 7090;
+    // the instance in the service.yml and the one that is added by the registry.
+    private static final int[] PORTS = {8082, 8083};
+    private static final int DEAD_PORT = 8089;
+
+    private static final Map<Integer, Set<SocketAddress>> connections = new ConcurrentHashMap<>();
+    private static final List<Undertow> servers = new ArrayList<>();
+    private static LoadBalancingRouterProxyClient proxyClient;
+
+    @BeforeClass
+    public static void setUp() {
+        for (int port : PORTS) {
+            Set<SocketAddress> peers = ConcurrentHashMap.newKeySet();
+            connections.put(port, peers);
+            Undertow server = Undertow.builder()
+                    .addHttpListener(port, "localhost")
+                    .setHandler(exchange -> {
+                        peers.add(exchange.getConnection().getPeerAddress());
+                        exchange.getResponseSender().send(String.valueOf(port));
+                    })
+                    .build();
+            server.start();
+            servers.add(server);
+        }
+        proxyClient = new LoadBalancingRouterProxyClient();
+        proxyClient.setOptionMap(OptionMap.EMPTY);
+        Undertow router = Undertow.builder()
+                .addHttpListener(ROUTER_PORT, "localhost")
+                .setHandler(ProxyHandler.builder().setProxyClient(proxyClient).setNext(ResponseCodeHandler.HANDLE_404).build())
+                .build();
+        router.start();
+        servers.add(router);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        for (Undertow server : servers) server.stop();
+    }
+
+    @Test
+    public void testConnectionReuseAcrossDiscoveryUpdates() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int i = 0; i < 20; i++) Assert.assertEquals("8082", send(client));
+        int warm = connections.get(8082).size();
+        Assert.assertTrue(warm > 0);
+
+        // the registry notifies a new instance of the service.
+        NotifyListener listener = proxyClient.listeners.get(SERVICE_ID + "|" + ENV_TAG);
+        Assert.assertNotNull(listener);
+        listener.notify(null, List.of(url(8082), url(8083)));
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 20; i++) counts.merge(send(client), 1, Integer::sum);
+        Assert.assertEquals(10, (int) counts.get("8082"));
+        Assert.assertEquals(10, (int) counts.get("8083"));
+        // the connections to the instance that is kept are reused.
+        Assert.assertEquals(warm, connections.get(8082).size());
+
+        // the order of the instances is changed and then an instance is removed.
+        listener.notify(null, List.of(url(8083), url(8082)));
+        listener.notify(null, List.of(url(8083)));
+        int added = connections.get(8083).size();
+        for (int i = 0; i < 20; i++) Assert.assertEquals("8083", send(client));
+        // only the host that duplicates the single instance for retry opens a connection.
+        Assert.assertEquals(added + 1, connections.get(8083).size());
+    }
+
+    @Test
+    public void testFailedAttemptIsScoredAsFailure() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        send(client);
+        NotifyListener listener = proxyClient.listeners.get(SERVICE_ID + "|" + ENV_TAG);
+        // an instance that doesn't accept connections, the request is retried with the other instance.
+        listener.notify(null, List.of(url(DEAD_PORT), url(8082)));
+        try {
+            for (int i = 0; i < 4; i++) Assert.assertEquals("8082", send(client));
+            InstanceStats dead = InstanceStats.get("localhost", DEAD_PORT);
+            Assert.assertEquals(0, dead.getOutstanding());
+            // the failed connection is scored with the failure penalty, not with the response of the retry.
+            Assert.assertTrue(dead.getLatency() > TimeUnit.MILLISECONDS.toNanos(500));
+        } finally {
+            listener.notify(null, List.of(url(8082)));
+        }
+    }
+
+    private static String send(HttpClient client) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + ROUTER_PORT + "/v1/pets"))
+                .header(HttpStringConstants.SERVICE_ID.toString(), SERVICE_ID)
+                .header(HttpStringConstants.ENV_TAG.toString(), ENV_TAG)
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return response.body();
+    }
+
+    private static URL url(int port) {
+        return new URLImpl("http", "localhost", port, SERVICE_ID, new HashMap<>());
+    }
+}
@@ -19,6 +19,7 @@
  */
 package com.networknt.handler;
 
+import com.networknt.httpstring.AttachmentConstants;
 import io.undertow.connector.PooledByteBuffer;
 import io.undertow.server.HttpServerExchange;
 import org.slf4j.Logger;
@@ -26,8 +27,12 @@ import org.slf4j.LoggerFactory;
 import org.xnio.Buffers;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 /**
  *
@@ -40,43 +45,107 @@ public class BuffersUtils {
     private static final Logger LOG = LoggerFactory.getLogger(BuffersUtils.class);
 
     /**
-     * @param srcs
-     * @return
-     * @throws IOException
+     * @param srcs the pooled buffers, the null entries are skipped
+     * @return the number of bytes remaining in the pooled buffers
+     */
+    public static int remaining(final PooledByteBuffer[] srcs) {
+        int remaining = 0;
+
+        if (srcs != null)
+            for (PooledByteBuffer src : srcs)
+                if (src != null)
+                    remaining += src.getBuffer().remaining();
+
+        return remaining;
+    }
+
+    /**
+     * Read-only views of the pooled buffers that have content. The content is not copied and the positions of
+     * the pooled buffers are not changed by reading the views.
+     *
+     * @param srcs the pooled buffers
+     * @return the read-only views in order
+     */
+    public static ByteBuffer[] asReadOnlyBuffers(final PooledByteBuffer[] srcs) {
+        if (srcs == null)
+            return null;
+
+        int count = 0;
+        for (PooledByteBuffer src : srcs)
+            if (src != null && src.getBuffer().hasRemaining())
+                count++;
+
+        var views = new ByteBuffer[count];
+        int i = 0;
+        for (PooledByteBuffer src : srcs)
+            if (src != null && src.getBuffer().hasRemaining())
+                views[i++] = src.getBuffer().asReadOnlyBuffer();
+
+        return views;
+    }
+
+    /**
+     * @param srcs the pooled buffers
+     * @return an InputStream that reads the content of the pooled buffers without copying it
+     */
+    public static InputStream asInputStream(final PooledByteBuffer[] srcs) {
+        return srcs == null ? null : new PooledByteBufferInputStream(srcs);
+    }
+
+    /**
+     * @param srcs the pooled buffers
+     * @param cs the charset of the content
+     * @return a Reader that decodes the content of the pooled buffers as it is read
+     */
+    public static Reader asReader(final PooledByteBuffer[] srcs, Charset cs) {
+        return srcs == null ? null : new InputStreamReader(new PooledByteBufferInputStream(srcs), cs);
+    }
+
+    /**
+     * Copy the content of the pooled buffers into a heap buffer of the size of the content.
+     *
+     * @param srcs the pooled buffers
+     * @return the heap buffer ready to be read
+     * @throws IOException if the content exceeds MAX_CONTENT_SIZE
      */
     public static ByteBuffer toByteBuffer(final PooledByteBuffer[] srcs) throws IOException {
         if (srcs == null)
             return null;
 
-        var dst = ByteBuffer.allocate(MAX_CONTENT_SIZE);
+        return ByteBuffer.wrap(toByteArray(srcs));
+    }
 
-        for (PooledByteBuffer src : srcs) {
+    public static byte[] toByteArray(final PooledByteBuffer[] srcs) throws IOException {
+        if (srcs == null)
+            return null;
 
-            if (src != null) {
-                final var srcBuffer = src.getBuffer();
+        int size = remaining(srcs);
 
-                if (srcBuffer.remaining() > dst.remaining()) {
+        if (size > MAX_CONTENT_SIZE) {
 
-                    if (LOG.isErrorEnabled())
-                        LOG.error("Request content exceeeded {} bytes limit", MAX_CONTENT_SIZE);
+            if (LOG.isErrorEnabled())
+                LOG.error("Request content exceeeded {} bytes limit", MAX_CONTENT_SIZE);
 
-                    throw new IOException("Request content exceeded " + MAX_CONTENT_SIZE + " bytes limit");
-                }
+            throw new IOException("Request content exceeded " + MAX_CONTENT_SIZE + " bytes limit");
+        }
 
-                if (srcBuffer.hasRemaining()) {
-                    Buffers.copy(dst, srcBuffer);
-                    srcBuffer.flip();
-                }
+        byte[] ret = new byte[size];
+        int offset = 0;
+
+        for (PooledByteBuffer src : srcs) {
+
+            if (src != null) {
+                final var srcBuffer = src.getBuffer();
+                final int position = srcBuffer.position();
+                final int length = srcBuffer.remaining();
+
+                // read and restore the position so that the buffered content can be read again.
+                srcBuffer.get(ret, offset, length);
+                srcBuffer.position(position);
+                offset += length;
             }
         }
 
-        return dst.flip();
-    }
-
-    public static byte[] toByteArray(final PooledByteBuffer[] srcs) throws IOException {
-        ByteBuffer content = toByteBuffer(srcs);
-        byte[] ret = new byte[content.limit()];
-        content.get(ret);
         return ret;
     }
 
@@ -84,6 +153,16 @@ public class BuffersUtils {
         return new String(toByteArray(srcs), cs);
     }
 
+    /**
+     * Get the request body string cached by the body interceptor.
+     *
+     * @param exchange the current exchange
+     * @return the request body string, or null if the request body is not cached
+     */
+    public static String getRequestBodyString(final HttpServerExchange exchange) {
+        return exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+    }
+
     public static String toString(final byte[] src, Charset cs) throws IOException {
         return new String(src, cs);
     }
@@ -156,7 +235,29 @@ public class BuffersUtils {
     }
 
     /**
-     * append the src data to the pooled buffers
+     * Make room in the pooled buffers for the content of the given length. The array is doubled as the content grows
+     * up to the maxBuffers, so it is not preallocated for the largest content.
+     *
+     * @param dest the pooled buffers, the content is in the first buffers
+     * @param length the length of the content after it is appended or transferred to the pooled buffers
+     * @param maxBuffers the max length of the array
+     * @param exchange the current exchange
+     * @return the pooled buffers if there is enough room, otherwise a larger array with the same buffers that must
+     * replace the attached one
+     */
+    public static PooledByteBuffer[] ensureCapacity(final PooledByteBuffer[] dest, final long length, final int maxBuffers, final HttpServerExchange exchange) {
+        final int bufferSize = exchange.getConnection().getByteBufferPool().getBufferSize();
+        final long needed = (length + bufferSize - 1) / bufferSize;
+
+        if (needed <= dest.length || dest.length >= maxBuffers)
+            return dest;
+
+        return Arrays.copyOf(dest, (int) Math.min(maxBuffers, Math.max(needed, dest.length * 2L)));
+    }
+
+    /**
+     * append the src data to the pooled buffers, the free space of the last buffer is filled before the next one
+     * is allocated.
      *
      * @param src
      * @param dest
@@ -167,7 +268,6 @@ public class BuffersUtils {
         int copied = 0;
         int pidx = 0;
 
-        src.rewind();
         while (src.hasRemaining() && pidx < dest.length) {
             ByteBuffer _dest;
 
@@ -177,6 +277,7 @@ public class BuffersUtils {
             } else {
                 _dest = dest[pidx].getBuffer();
                 _dest.position(_dest.limit());
+                _dest.limit(_dest.capacity());
             }
 
             copied += Buffers.copy(_dest, src);
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.handler;
+
+import io.undertow.server.HttpHandler;
+
+import java.util.List;
+
+/**
+ * An immutable, array-backed handler chain compiled from the handler.yml paths, chains and
+ * default handlers. A plan is shared by all the requests that match it, and each request
+ * walks it with its own {@link Cursor} so that moving to the next handler is only an array
+ * read and a primitive increment.
+ */
+final class ExecutionPlan {
+    private final String id;
+    private final HttpHandler[] handlers;
+
+    ExecutionPlan(String id, List<HttpHandler> handlers) {
+        this.id = id;
+        this.handlers = handlers.toArray(new HttpHandler[0]);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    int size() {
+        return handlers.length;
+    }
+
+    /**
+     * The position of a single exchange within an execution plan. It is attached to the
+     * exchange once when the chain is started and is only accessed by the thread that is
+     * currently handling the exchange.
+     */
+    static final class Cursor {
+        private final ExecutionPlan plan;
+        private int seq;
+
+        Cursor(ExecutionPlan plan) {
+            this.plan = plan;
+        }
+
+        /**
+         * @return the next handler in the plan or null if the end of the plan has been reached.
+         */
+        HttpHandler next() {
+            var handlers = plan.handlers;
+            return seq < handlers.length ? handlers[seq++] : null;
+        }
+    }
+}
@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -48,8 +49,8 @@ import static io.undertow.Handlers.websocket;
  */
 public class Handler {
 
-    private static final AttachmentKey<Integer> CHAIN_SEQ = AttachmentKey.create(Integer.class);
-    private static final AttachmentKey<String> CHAIN_ID = AttachmentKey.create(String.class);
+    private static final AttachmentKey<ExecutionPlan.Cursor> CHAIN_CURSOR = AttachmentKey.create(ExecutionPlan.Cursor.class);
+    private static final String DEFAULT_HANDLERS = "defaultHandlers";
     private static final Logger LOG = LoggerFactory.getLogger(Handler.class);
     private static final String CONFIG_NAME = "handler";
     private static String configName = CONFIG_NAME;
@@ -58,11 +59,8 @@ public class Handler {
     public static HandlerConfig config = (HandlerConfig) Config.getInstance().getJsonObjectConfig(CONFIG_NAME,
             HandlerConfig.class);
 
-    // each handler keyed by a name.
-    static final Map<String, HttpHandler> handlers = new HashMap<>();
-    static final Map<String, List<HttpHandler>> handlerListById = new HashMap<>();
-    static final Map<HttpString, PathTemplateMatcher<String>> methodToMatcherMap = new HashMap<>();
-    static List<HttpHandler> defaultHandlers;
+    // the handlers, chains and paths of the config. They are built for a config and replaced as a whole.
+    static volatile HandlerMaps maps = new HandlerMaps();
     // this is the last handler that need to be called when OrchestratorHandler is injected into the beginning of the chain
     static HttpHandler lastHandler;
 
@@ -70,20 +68,53 @@ public class Handler {
         lastHandler = handler;
     }
 
-    public static void init() {
-        initHandlers();
-        initChains();
-        initPaths();
-        initDefaultHandlers();
+    public static synchronized void init() {
+        maps = build(new HandlerMaps());
         ModuleRegistry.registerModule(Handler.class.getName(), Config.getInstance().getJsonMapConfigNoCache(CONFIG_NAME), null);
     }
 
+    /**
+     * Reload the handler.yml and rebuild the chains and paths. The handler instances that have
+     * been created already with the same class and parameters are reused so that their state is
+     * kept, and the requests in flight continue to use the execution plan they have started with.
+     * The new handlers, chains and paths are only visible to the requests that start after they
+     * are all built, and they are not used at all if the new config fails to build.
+     */
+    public static synchronized void reload() {
+        var previousConfig = config;
+        config = (HandlerConfig) Config.getInstance().getJsonObjectConfigNoCache(configName, HandlerConfig.class);
+        try {
+            maps = build(maps);
+        } catch (RuntimeException e) {
+            config = previousConfig;
+            throw e;
+        }
+        ModuleRegistry.registerModule(Handler.class.getName(), Config.getInstance().getJsonMapConfigNoCache(configName), null);
+        if (LOG.isInfoEnabled()) LOG.info("Handler is reloaded.");
+    }
+
+    /**
+     * Build the handlers, chains and paths of the config into new maps.
+     *
+     * @param previous the maps of the previous config, their handlers are reused if they are not changed.
+     * @return the new maps with the compiled execution plans
+     */
+    private static HandlerMaps build(HandlerMaps previous) {
+        var built = new HandlerMaps();
+        initHandlers(built, previous);
+        initChains(built);
+        initPaths(built);
+        initDefaultHandlers(built);
+        compilePlans(built);
+        return built;
+    }
+
     /**
      * Construct the named map of handlers. Note: All handlers in use for this
      * microservice should be listed in this handlers list.
      */
     @SuppressWarnings("unchecked")
-    static void initHandlers() {
+    static void initHandlers(HandlerMaps maps, HandlerMaps previous) {
         if (config != null && config.getHandlers() != null) {
 
             // initialize handlers
@@ -92,10 +123,10 @@ public class Handler {
                 // If the handler is configured as just a string, it's a fully qualified class
                 // name with a default constructor.
                 if (handler instanceof String)
-                    initStringDefinedHandler((String) handler);
+                    initStringDefinedHandler(maps, previous, (String) handler);
 
                 else if (handler instanceof Map)
-                    initMapDefinedHandler((Map<String, Object>) handler);
+                    initMapDefinedHandler(maps, previous, (Map<String, Object>) handler);
             }
         }
     }
@@ -104,7 +135,7 @@ public class Handler {
      * Construct chains of handlers, if any are configured NOTE: It is recommended
      * to define reusable chains of handlers
      */
-    static void initChains() {
+    static void initChains(HandlerMaps maps) {
 
         if (config != null && config.getChains() != null) {
 
@@ -114,14 +145,14 @@ public class Handler {
                 var handlerChain = new ArrayList<HttpHandler>();
 
                 for (var chainItemName : chain) {
-                    var chainItem = handlers.get(chainItemName);
+                    var chainItem = maps.handlers.get(chainItemName);
 
                     if (chainItem == null)
                         throw new RuntimeException("Chain " + chainName + " uses Unknown handler: " + chainItemName);
 
                     handlerChain.add(chainItem);
                 }
-                handlerListById.put(chainName, handlerChain);
+                maps.handlerListById.put(chainName, handlerChain);
             }
         }
     }
@@ -129,7 +160,7 @@ public class Handler {
     /**
      * Build "handlerListById" and "reqTypeMatcherMap" from the paths in the config.
      */
-    static void initPaths() {
+    static void initPaths(HandlerMaps maps) {
 
         if (config != null && config.getPaths() != null) {
 
@@ -137,9 +168,9 @@ public class Handler {
                 pathChain.validate(configName + " config"); // raises exception on misconfiguration
 
                 if (pathChain.getPath() == null)
-                    addSourceChain(pathChain);
+                    addSourceChain(maps, pathChain);
 
-                else addPathChain(pathChain);
+                else addPathChain(maps, pathChain);
             }
         }
     }
@@ -147,18 +178,43 @@ public class Handler {
     /**
      * Build "defaultHandlers" from the defaultHandlers in the config.
      */
-    static void initDefaultHandlers() {
+    static void initDefaultHandlers(HandlerMaps maps) {
 
         if (config != null && config.getDefaultHandlers() != null) {
-            defaultHandlers = getHandlersFromExecList(config.getDefaultHandlers());
-            handlerListById.put("defaultHandlers", defaultHandlers);
+            maps.defaultHandlers = getHandlersFromExecList(maps, config.getDefaultHandlers());
+            maps.handlerListById.put(DEFAULT_HANDLERS, maps.defaultHandlers);
         }
     }
 
+    /**
+     * Compile "handlerListById" and "methodToMatcherMap" into immutable execution plans for the
+     * request path.
+     */
+    static void compilePlans(HandlerMaps maps) {
+        var plansById = new HashMap<String, ExecutionPlan>();
+
+        for (var entry : maps.handlerListById.entrySet())
+            plansById.put(entry.getKey(), new ExecutionPlan(entry.getKey(), entry.getValue()));
+
+        var matchers = new HashMap<HttpString, PathTemplateMatcher<ExecutionPlan>>();
+
+        for (var entry : maps.methodToMatcherMap.entrySet()) {
+            var matcher = new PathTemplateMatcher<ExecutionPlan>();
+
+            for (var template : entry.getValue().getPathTemplates())
+                matcher.add(template, plansById.get(entry.getValue().get(template.getTemplateString())));
+
+            matchers.put(entry.getKey(), matcher);
+        }
+
+        var defaultPlan = maps.defaultHandlers != null && maps.defaultHandlers.size() > 0 ? plansById.get(DEFAULT_HANDLERS) : null;
+        maps.plans = new CompiledPlans(plansById, matchers, defaultPlan);
+    }
+
     /**
      * Add PathChains crated from the EndpointSource given in sourceChain
      */
-    private static void addSourceChain(PathChain sourceChain) {
+    private static void addSourceChain(HandlerMaps maps, PathChain sourceChain) {
         try {
             var sourceClass = Class.forName(sourceChain.getSource());
             var source = (EndpointSource) (sourceClass.getDeclaredConstructor().newInstance());
@@ -169,7 +225,7 @@ public class Handler {
                 sourcedPath.setMethod(endpoint.getMethod());
                 sourcedPath.setExec(sourceChain.getExec());
                 sourcedPath.validate(sourceChain.getSource());
-                addPathChain(sourcedPath);
+                addPathChain(maps, sourcedPath);
             }
         } catch (Exception e) {
 
@@ -186,31 +242,31 @@ public class Handler {
     /**
      * Add a PathChain (having a non-null path) to the handler data structures.
      */
-    private static void addPathChain(PathChain pathChain) {
+    private static void addPathChain(HandlerMaps maps, PathChain pathChain) {
         var method = new HttpString(pathChain.getMethod());
 
         // Use a random integer as the id for a given path.
         int randInt = new Random().nextInt();
 
-        while (handlerListById.containsKey(Integer.toString(randInt)))
+        while (maps.handlerListById.containsKey(Integer.toString(randInt)))
             randInt = new Random().nextInt();
 
         // Flatten out the execution list from a mix of middleware chains and handlers.
-        var handlers = getHandlersFromExecList(pathChain.getExec());
+        var handlers = getHandlersFromExecList(maps, pathChain.getExec());
 
         if (handlers.size() > 0) {
 
             // If a matcher already exists for the given type, at to that instead of
             // creating a new one.
-            PathTemplateMatcher<String> pathTemplateMatcher = methodToMatcherMap.containsKey(method)
-                    ? methodToMatcherMap.get(method)
+            PathTemplateMatcher<String> pathTemplateMatcher = maps.methodToMatcherMap.containsKey(method)
+                    ? maps.methodToMatcherMap.get(method)
                     : new PathTemplateMatcher<>();
 
             if (pathTemplateMatcher.get(pathChain.getPath()) == null)
                 pathTemplateMatcher.add(pathChain.getPath(), Integer.toString(randInt));
 
-            methodToMatcherMap.put(method, pathTemplateMatcher);
-            handlerListById.put(Integer.toString(randInt), handlers);
+            maps.methodToMatcherMap.put(method, pathTemplateMatcher);
+            maps.handlerListById.put(Integer.toString(randInt), handlers);
         }
     }
 
@@ -258,18 +314,20 @@ public class Handler {
      * @throws Exception exception
      */
     public static void next(HttpServerExchange ex, String execName, Boolean returnToOrigFlow) throws Exception {
-        var currentChainId = ex.getAttachment(CHAIN_ID);
-        var currentNextIndex = ex.getAttachment(CHAIN_SEQ);
+        var plan = maps.plans.plansById.get(execName);
+
+        if (plan == null)
+            throw new RuntimeException("Unknown handler or chain: " + execName);
 
-        ex.putAttachment(CHAIN_ID, execName);
-        ex.putAttachment(CHAIN_SEQ, 0);
+        // the current cursor keeps its own position so that it can be restored as it is.
+        var currentCursor = ex.getAttachment(CHAIN_CURSOR);
+        ex.putAttachment(CHAIN_CURSOR, new ExecutionPlan.Cursor(plan));
 
         next(ex);
 
         // return to current flow.
         if (returnToOrigFlow) {
-            ex.putAttachment(CHAIN_ID, currentChainId);
-            ex.putAttachment(CHAIN_SEQ, currentNextIndex);
+            ex.putAttachment(CHAIN_CURSOR, currentCursor);
             next(ex);
         }
     }
@@ -282,17 +340,10 @@ public class Handler {
      * @return The HttpHandler that should be executed next.
      */
     public static HttpHandler getNext(HttpServerExchange httpServerExchange) {
-        var chainId = httpServerExchange.getAttachment(CHAIN_ID);
-        var handlersForId = handlerListById.get(chainId);
-        var nextIndex = httpServerExchange.getAttachment(CHAIN_SEQ);
-
-        // Check if we've reached the end of the chain.
-        if (nextIndex < handlersForId.size()) {
-            httpServerExchange.putAttachment(CHAIN_SEQ, nextIndex + 1);
-            return handlersForId.get(nextIndex);
-        }
+        var cursor = httpServerExchange.getAttachment(CHAIN_CURSOR);
 
-        return null;
+        // The cursor returns null once we've reached the end of the chain.
+        return cursor == null ? null : cursor.next();
     }
 
     /**
@@ -322,7 +373,7 @@ public class Handler {
     public static boolean start(HttpServerExchange ex) {
 
         // Get the matcher corresponding to the current request type.
-        var pathTemplateMatcher = methodToMatcherMap.get(ex.getRequestMethod());
+        var pathTemplateMatcher = maps.plans.matchers.get(ex.getRequestMethod());
 
         if (pathTemplateMatcher != null) {
 
@@ -344,9 +395,7 @@ public class Handler {
                     ex.addPathParam(entry.getKey(), entry.getValue());
                 }
 
-                var id = result.getValue();
-                ex.putAttachment(CHAIN_ID, id);
-                ex.putAttachment(CHAIN_SEQ, 0);
+                ex.putAttachment(CHAIN_CURSOR, new ExecutionPlan.Cursor(result.getValue()));
                 return true;
             }
         }
@@ -365,9 +414,10 @@ public class Handler {
     public static boolean startDefaultHandlers(HttpServerExchange ex) {
 
         // check if defaultHandlers is empty
-        if (defaultHandlers != null && defaultHandlers.size() > 0) {
-            ex.putAttachment(CHAIN_ID, "defaultHandlers");
-            ex.putAttachment(CHAIN_SEQ, 0);
+        var defaultPlan = maps.plans.defaultPlan;
+
+        if (defaultPlan != null) {
+            ex.putAttachment(CHAIN_CURSOR, new ExecutionPlan.Cursor(defaultPlan));
             return true;
         }
         return false;
@@ -380,13 +430,13 @@ public class Handler {
      * @param execs The list of names of chains and handlers.
      * @return A list containing references to the instantiated handlers
      */
-    private static List<HttpHandler> getHandlersFromExecList(List<String> execs) {
+    private static List<HttpHandler> getHandlersFromExecList(HandlerMaps maps, List<String> execs) {
         var handlersFromExecList = new ArrayList<HttpHandler>();
 
         if (execs != null) {
 
             for (var exec : execs) {
-                var handlerList = handlerListById.get(exec);
+                var handlerList = maps.handlerListById.get(exec);
 
                 if (handlerList == null)
                     throw new RuntimeException("Unknown handler or chain: " + exec);
@@ -428,10 +478,14 @@ public class Handler {
      *
      * @param handler
      */
-    private static void initStringDefinedHandler(String handler) {
+    private static void initStringDefinedHandler(HandlerMaps maps, HandlerMaps previous, String handler) {
 
         // split the class name and its label, if defined
         Tuple<String, Class> namedClass = splitClassAndName(handler);
+        List<Object> definition = Arrays.asList(handler, null);
+
+        if (reuseHandler(maps, previous, namedClass.first, definition))
+            return;
 
         // create an instance of the handler
         Object handlerOrProviderObject = null;
@@ -457,8 +511,7 @@ public class Handler {
         else throw new RuntimeException("Unsupported type of handler provided: " + handlerOrProviderObject);
 
         registerMiddlewareHandler(resolvedHandler);
-        handlers.put(namedClass.first, resolvedHandler);
-        handlerListById.put(namedClass.first, Collections.singletonList(resolvedHandler));
+        maps.put(namedClass.first, resolvedHandler, definition);
     }
 
     /**
@@ -468,11 +521,15 @@ public class Handler {
      *
      * @param handler
      */
-    private static void initMapDefinedHandler(Map<String, Object> handler) {
+    private static void initMapDefinedHandler(HandlerMaps maps, HandlerMaps previous, Map<String, Object> handler) {
         // If the handler is a map, the keys are the class name, values are the
         // parameters.
         for (Map.Entry<String, Object> entry : handler.entrySet()) {
             Tuple<String, Class> namedClass = splitClassAndName(entry.getKey());
+            List<Object> definition = Arrays.asList(entry.getKey(), entry.getValue());
+
+            if (reuseHandler(maps, previous, namedClass.first, definition))
+                continue;
 
             // If the values in the config are a map, construct the object using named
             // parameters.
@@ -486,8 +543,7 @@ public class Handler {
                             "Could not construct a handler with values provided as a map: " + namedClass.second);
                 }
                 registerMiddlewareHandler(httpHandler);
-                handlers.put(namedClass.first, httpHandler);
-                handlerListById.put(namedClass.first, Collections.singletonList(httpHandler));
+                maps.put(namedClass.first, httpHandler, definition);
             } else if (entry.getValue() instanceof List) {
 
                 // If the values in the config are a list, call the constructor of the handler
@@ -501,12 +557,31 @@ public class Handler {
                             "Could not construct a handler with values provided as a list: " + namedClass.second);
                 }
                 registerMiddlewareHandler(httpHandler);
-                handlers.put(namedClass.first, httpHandler);
-                handlerListById.put(namedClass.first, Collections.singletonList(httpHandler));
+                maps.put(namedClass.first, httpHandler, definition);
             }
         }
     }
 
+    /**
+     * Put the handler that has been created already with the given name into the new maps if it
+     * is defined with the same class and parameters.
+     *
+     * @param maps The new maps
+     * @param previous The maps of the previous config
+     * @param name The name of the handler
+     * @param definition The class label and the parameters of the handler in the config
+     * @return true if the handler exists and doesn't need to be created again.
+     */
+    private static boolean reuseHandler(HandlerMaps maps, HandlerMaps previous, String name, List<Object> definition) {
+        var existing = previous.handlers.get(name);
+
+        if (existing == null || !definition.equals(previous.definitions.get(name)))
+            return false;
+
+        maps.put(name, existing, definition);
+        return true;
+    }
+
     /**
      * To support multiple instances of the same class, support a naming
      *
@@ -539,11 +614,48 @@ public class Handler {
     static void setConfig(String configName) throws Exception {
         Handler.configName = configName;
         config = (HandlerConfig) Config.getInstance().getJsonObjectConfig(configName, HandlerConfig.class);
-        initHandlers();
-        initPaths();
+        maps = build(new HandlerMaps());
     }
 
     public static Map<String, HttpHandler> getHandlers() {
-        return handlers;
+        return maps.handlers;
+    }
+
+    /**
+     * The handlers keyed by a name, the chains and paths of a config and their execution plans.
+     * They are only changed while they are built and they are replaced as a whole.
+     */
+    static final class HandlerMaps {
+        final Map<String, HttpHandler> handlers = new HashMap<>();
+        final Map<String, List<HttpHandler>> handlerListById = new HashMap<>();
+        final Map<HttpString, PathTemplateMatcher<String>> methodToMatcherMap = new HashMap<>();
+        // the class label and the parameters of each handler in the config to reuse the unchanged handlers.
+        final Map<String, List<Object>> definitions = new HashMap<>();
+        List<HttpHandler> defaultHandlers;
+        CompiledPlans plans = CompiledPlans.EMPTY;
+
+        void put(String name, HttpHandler handler, List<Object> definition) {
+            handlers.put(name, handler);
+            handlerListById.put(name, Collections.singletonList(handler));
+            definitions.put(name, definition);
+        }
+    }
+
+    /**
+     * An immutable snapshot of all the execution plans so that a reload is visible to
+     * the request path all at once.
+     */
+    private static final class CompiledPlans {
+        static final CompiledPlans EMPTY = new CompiledPlans(Collections.emptyMap(), Collections.emptyMap(), null);
+
+        final Map<String, ExecutionPlan> plansById;
+        final Map<HttpString, PathTemplateMatcher<ExecutionPlan>> matchers;
+        final ExecutionPlan defaultPlan;
+
+        CompiledPlans(Map<String, ExecutionPlan> plansById, Map<HttpString, PathTemplateMatcher<ExecutionPlan>> matchers, ExecutionPlan defaultPlan) {
+            this.plansById = plansById;
+            this.matchers = matchers;
+            this.defaultPlan = defaultPlan;
+        }
     }
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.handler;
+
+import io.undertow.connector.PooledByteBuffer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream over the pooled buffers of a buffered request or response body. The content is read from read-only
+ * views of the buffers, so nothing is copied and the positions of the pooled buffers are not changed. The buffers
+ * are still owned by the exchange, and the stream must not be used after the exchange is completed.
+ */
+public class PooledByteBufferInputStream extends InputStream {
+    private final PooledByteBuffer[] srcs;
+    private int index;
+    private ByteBuffer current;
+
+    public PooledByteBufferInputStream(final PooledByteBuffer[] srcs) {
+        this.srcs = srcs;
+    }
+
+    @Override
+    public int read() {
+        var buffer = next();
+        return buffer == null ? -1 : buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0)
+            return 0;
+
+        var buffer = next();
+        if (buffer == null)
+            return -1;
+
+        int read = 0;
+        while (buffer != null && read < len) {
+            int n = Math.min(len - read, buffer.remaining());
+            buffer.get(b, off + read, n);
+            read += n;
+            if (read < len)
+                buffer = next();
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = 0;
+        ByteBuffer buffer;
+        while (skipped < n && (buffer = next()) != null) {
+            int step = (int) Math.min(n - skipped, buffer.remaining());
+            buffer.position(buffer.position() + step);
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        int available = current == null ? 0 : current.remaining();
+        for (int i = index; i < srcs.length; i++) {
+            if (srcs[i] != null)
+                available += srcs[i].getBuffer().remaining();
+        }
+        return available;
+    }
+
+    /**
+     * @return the view of the buffer that has remaining content, or null at the end of the content.
+     */
+    private ByteBuffer next() {
+        while (current == null || !current.hasRemaining()) {
+            if (index >= srcs.length)
+                return null;
+            var src = srcs[index++];
+            current = src == null ? null : src.getBuffer().asReadOnlyBuffer();
+        }
+        return current;
+    }
+}
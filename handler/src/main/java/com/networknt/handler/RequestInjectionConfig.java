@@ -3,6 +3,7 @@ package com.networknt.handler;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +20,7 @@ public class RequestInjectionConfig {
     private static final String MAX_BUFFERS = "maxBuffers";
     private boolean enabled;
     private List<String> appliedBodyInjectionPathPrefixes;
+    private PathPrefixTrie<String> appliedBodyInjectionPathPrefixTrie = PathPrefixTrie.empty();
     private int maxBuffers;
     private Map<String, Object> mappedConfig;
     private final Config config;
@@ -67,6 +69,13 @@ public class RequestInjectionConfig {
         return appliedBodyInjectionPathPrefixes;
     }
 
+    /**
+     * @return the trie of the appliedBodyInjectionPathPrefixes that is rebuilt when the config is loaded.
+     */
+    public PathPrefixTrie<String> getAppliedBodyInjectionPathPrefixTrie() {
+        return appliedBodyInjectionPathPrefixTrie;
+    }
+
     Map<String, Object> getMappedConfig() {
         return mappedConfig;
     }
@@ -109,6 +118,7 @@ public class RequestInjectionConfig {
 
             } else throw new ConfigException("appliedBodyInjectionPathPrefixes must be a string or a list of strings.");
         }
+        this.appliedBodyInjectionPathPrefixTrie = PathPrefixTrie.of(this.appliedBodyInjectionPathPrefixes);
     }
 
 }
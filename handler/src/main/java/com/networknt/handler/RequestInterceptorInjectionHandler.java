@@ -321,6 +321,6 @@ public class RequestInterceptorInjectionHandler implements MiddlewareHandler {
     }
 
     private boolean isAppliedBodyInjectionPathPrefix(String requestPath) {
-        return config.getAppliedBodyInjectionPathPrefixes() != null && config.getAppliedBodyInjectionPathPrefixes().stream().anyMatch(requestPath::startsWith);
+        return config.getAppliedBodyInjectionPathPrefixTrie().matches(requestPath);
     }
 }
@@ -3,6 +3,7 @@ package com.networknt.handler;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +23,7 @@ public class ResponseInjectionConfig {
     private static final String APPLIED_BODY_INJECTION_PATH_PREFIXES = "appliedBodyInjectionPathPrefixes";
     private boolean enabled;
     private List<String> appliedBodyInjectionPathPrefixes;
+    private PathPrefixTrie<String> appliedBodyInjectionPathPrefixTrie = PathPrefixTrie.empty();
 
     private Map<String, Object> mappedConfig;
     private final Config config;
@@ -68,6 +70,13 @@ public class ResponseInjectionConfig {
         return appliedBodyInjectionPathPrefixes;
     }
 
+    /**
+     * @return the trie of the appliedBodyInjectionPathPrefixes that is rebuilt when the config is loaded.
+     */
+    public PathPrefixTrie<String> getAppliedBodyInjectionPathPrefixTrie() {
+        return appliedBodyInjectionPathPrefixTrie;
+    }
+
     Map<String, Object> getMappedConfig() {
         return mappedConfig;
     }
@@ -109,6 +118,7 @@ public class ResponseInjectionConfig {
 
             } else throw new ConfigException("appliedBodyInjectionPathPrefixes must be a string or a list of strings.");
         }
+        appliedBodyInjectionPathPrefixTrie = PathPrefixTrie.of(appliedBodyInjectionPathPrefixes);
     }
 
 }
@@ -1,9 +1,12 @@
 package com.networknt.handler;
 
+import com.networknt.handler.conduit.ModifiableContentSinkConduit;
 import com.networknt.httpstring.AttachmentConstants;
 import io.undertow.connector.PooledByteBuffer;
 import io.undertow.server.HttpServerExchange;
 
+import java.nio.ByteBuffer;
+
 /**
  * This handler is special middleware handler, and it is used to inject response interceptors in the request/response
  * chain to modify/transform the response before calling the next middleware handler.
@@ -54,4 +57,21 @@ public interface ResponseInterceptor extends Interceptor {
     default PooledByteBuffer[] getBuffer(HttpServerExchange exchange) {
         return exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
     }
+
+    /**
+     * A default interface method to replace the response body in the exchange attachment. The buffers are grown up to
+     * the ModifiableContentSinkConduit.MAX_BUFFERS when the body is larger than the original response.
+     * @param exchange HttpServerExchange
+     * @param body the new response body
+     * @return the number of bytes transferred
+     */
+    default int setBuffer(HttpServerExchange exchange, ByteBuffer body) {
+        var dest = getBuffer(exchange);
+        var grown = BuffersUtils.ensureCapacity(dest, body.remaining(), ModifiableContentSinkConduit.MAX_BUFFERS, exchange);
+
+        if (grown != dest)
+            exchange.putAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY, grown);
+
+        return BuffersUtils.transfer(body, grown, exchange);
+    }
 }
@@ -1,10 +1,12 @@
 package com.networknt.handler;
 
+import com.networknt.handler.conduit.ContentCodec;
 import com.networknt.handler.conduit.ContentStreamSinkConduit;
 import com.networknt.handler.conduit.ModifiableContentSinkConduit;
 import com.networknt.service.SingletonServiceFactory;
 import com.networknt.utility.ModuleRegistry;
 import io.undertow.Handlers;
+import io.undertow.server.ConduitWrapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.util.AttachmentKey;
@@ -15,8 +17,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.conduits.StreamSinkConduit;
 
-import java.util.Arrays;
-
 /**
  * This is a middleware handle that is responsible for injecting the SinkConduit in order to update
  * the response content for interceptor handlers to update the response before returning to client.
@@ -26,13 +26,17 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
 
     public static final AttachmentKey<HeaderMap> ORIGINAL_ACCEPT_ENCODINGS_KEY = AttachmentKey.create(HeaderMap.class);
 
-    private ResponseInterceptor[] interceptors = null;
+    private volatile ResponseInterceptor[] interceptors = null;
+    private volatile boolean requiredContent = false;
     private volatile HttpHandler next;
     private static ResponseInjectionConfig config;
 
+    /* the wrapper only captures the handler, so it is not created for each exchange. */
+    private final ConduitWrapper<StreamSinkConduit> wrapper = this::wrap;
+
     public ResponseInterceptorInjectionHandler() throws Exception {
         config = ResponseInjectionConfig.load();
-        interceptors = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
+        this.loadInterceptors();
         LOG.info("SinkConduitInjectorHandler is loaded!");
     }
 
@@ -73,6 +77,7 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     @Override
     public void reload() {
         config.reload();
+        this.loadInterceptors();
 
         if (LOG.isTraceEnabled())
             LOG.trace("response-injection.yml is reloaded");
@@ -81,29 +86,18 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     }
 
     /**
-     * if the ModifiableContentSinkConduit is set, set the Accept-Encoding
-     * header to identity this is required to avoid response interceptors
-     * dealing with compressed data
-     *
-     * @param exchange the exchange
+     * Resolve the interceptors from the service.yml once, so that the conduits of the exchanges don't look them up.
      */
-    private void forceIdentityEncodingForInterceptors(HttpServerExchange exchange) {
-
-        if (this.interceptorsRequireContent()) {
-            var before = new HeaderMap();
+    private void loadInterceptors() {
+        var beans = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
+        var required = false;
 
-            if (exchange.getRequestHeaders().contains(Headers.ACCEPT_ENCODING))
-                exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING).forEach((value) -> {
-                    before.add(Headers.ACCEPT_ENCODING, value);
-                });
+        if (beans != null)
+            for (var interceptor : beans)
+                required |= interceptor.isRequiredContent();
 
-            exchange.putAttachment(ORIGINAL_ACCEPT_ENCODINGS_KEY, before);
-
-            if (LOG.isDebugEnabled())
-                LOG.debug("{} setting encoding to identity because request involves response interceptors.", before);
-
-            exchange.getRequestHeaders().put(Headers.ACCEPT_ENCODING, "identity");
-        }
+        this.interceptors = beans;
+        this.requiredContent = required;
     }
 
     /**
@@ -115,29 +109,33 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
 
         // of the response buffering it if any interceptor resolvers the request
         // and requires the content from the backend
-        exchange.addResponseWrapper((ConduitFactory<StreamSinkConduit> factory, HttpServerExchange currentExchange) -> {
-            if (this.requiresContentSinkConduit(exchange)) {
-                var mcsc = new ModifiableContentSinkConduit(factory.create(), currentExchange);
+        exchange.addResponseWrapper(this.wrapper);
 
-                if (LOG.isTraceEnabled())
-                    LOG.trace("created a ModifiableContentSinkConduit instance " + mcsc);
+        Handler.next(exchange, next);
+    }
 
-                return mcsc;
+    private StreamSinkConduit wrap(ConduitFactory<StreamSinkConduit> factory, HttpServerExchange exchange) {
+        var responseInterceptors = this.interceptors;
 
-            } else return new ContentStreamSinkConduit(factory.create(), currentExchange);
-        });
+        if (this.requiresContentSinkConduit(exchange)) {
+            var mcsc = new ModifiableContentSinkConduit(factory.create(), exchange, responseInterceptors);
 
-        Handler.next(exchange, next);
+            if (LOG.isTraceEnabled())
+                LOG.trace("created a ModifiableContentSinkConduit instance " + mcsc);
+
+            return mcsc;
+
+        } else return new ContentStreamSinkConduit(factory.create(), exchange, responseInterceptors);
     }
 
     private boolean isCompressed(HttpServerExchange exchange) {
 
         // check if the request has a header accept encoding with gzip and deflate.
-        var contentEncodings = exchange.getResponseHeaders().get(Headers.CONTENT_ENCODING_STRING);
+        var contentEncodings = exchange.getResponseHeaders().get(Headers.CONTENT_ENCODING);
 
         if (contentEncodings != null)
-            for (var values : contentEncodings)
-                if (this.hasCompressionFormat(values))
+            for (int i = 0; i < contentEncodings.size(); i++)
+                if (hasCompressionFormat(contentEncodings.get(i)))
                     return true;
 
         return false;
@@ -146,23 +144,54 @@ public class ResponseInterceptorInjectionHandler implements MiddlewareHandler {
     private boolean requiresContentSinkConduit(final HttpServerExchange exchange) {
         return this.interceptorsRequireContent()
                 && isAppliedBodyInjectionPathPrefix(exchange.getRequestPath())
-                && !isCompressed(exchange);
+                && (!isCompressed(exchange) || ContentCodec.decodableEncoding(exchange.getResponseHeaders().get(Headers.CONTENT_ENCODING)) != null);
     }
 
     private boolean isAppliedBodyInjectionPathPrefix(String requestPath) {
-        return config.getAppliedBodyInjectionPathPrefixes() != null
-                && config.getAppliedBodyInjectionPathPrefixes().stream().anyMatch(requestPath::startsWith);
+        return config.getAppliedBodyInjectionPathPrefixTrie().matches(requestPath);
+    }
+
+    /**
+     * Scans the comma separated codings of a Content-Encoding value in place, so that the header is not split.
+     *
+     * @param values the header value
+     * @return true if one of the codings is gzip, compress or deflate
+     */
+    static boolean hasCompressionFormat(String values) {
+        int start = 0;
+        final int length = values.length();
+
+        while (start < length) {
+            int end = values.indexOf(',', start);
+
+            if (end < 0)
+                end = length;
+
+            int from = start;
+            int to = end;
+
+            while (from < to && values.charAt(from) <= ' ')
+                from++;
+
+            while (to > from && values.charAt(to - 1) <= ' ')
+                to--;
+
+            if (isCoding(values, from, to, Headers.GZIP.toString())
+                    || isCoding(values, from, to, Headers.COMPRESS.toString())
+                    || isCoding(values, from, to, Headers.DEFLATE.toString()))
+                return true;
+
+            start = end + 1;
+        }
+
+        return false;
     }
 
-    private boolean hasCompressionFormat(String values) {
-        return Arrays.stream(values.split(",")).anyMatch(
-                (v) -> Headers.GZIP.toString().equals(v)
-                        || Headers.COMPRESS.toString().equals(v)
-                        || Headers.DEFLATE.toString().equals(v)
-        );
+    private static boolean isCoding(String values, int from, int to, String coding) {
+        return to - from == coding.length() && values.regionMatches(true, from, coding, 0, coding.length());
     }
 
     private boolean interceptorsRequireContent() {
-        return interceptors != null && Arrays.stream(interceptors).anyMatch(ri -> ri.isRequiredContent());
+        return this.requiredContent;
     }
 }
@@ -0,0 +1,507 @@
+package com.networknt.handler.conduit;
+
+import com.networknt.utility.Constants;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.util.HeaderValues;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decodes a gzip or deflate response body into pooled buffers as it is written, so that the response interceptors
+ * can work on the content of a compressed response, and encodes the buffered content again for the client.
+ *
+ * The content is inflated from each write of the response into the pooled buffers without waiting for the whole
+ * compressed body, and the buffer array is doubled as the content grows up to the maxBuffers. The deflate coding
+ * is the zlib format of RFC 1950 and the gzip coding is the format of RFC 1952 with a single member. As some servers
+ * send the raw deflate data of RFC 1951 as the deflate coding, it is inflated without the zlib wrapper when the first
+ * two bytes are not a zlib header.
+ */
+public final class ContentCodec {
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /* the states of the decoder in the order of the gzip format. */
+    private static final int HEADER = 0;
+    private static final int EXTRA_LENGTH = 1;
+    private static final int EXTRA = 2;
+    private static final int NAME = 3;
+    private static final int COMMENT = 4;
+    private static final int HEADER_CRC = 5;
+    private static final int BODY = 6;
+    private static final int TRAILER = 7;
+    private static final int DONE = 8;
+    private static final int ZLIB_HEADER = 9;
+
+    private final String encoding;
+    private final boolean gzip;
+    private Inflater inflater;
+    private final CRC32 crc = new CRC32();
+    private final Output output;
+
+    private int state;
+    private int count;
+    private int flags;
+    private int extraLength;
+    private long trailer;
+    private final byte[] zlibHeader = new byte[2];
+    private boolean received;
+
+    /**
+     * @param encoding the gzip or deflate content coding of the response
+     * @param pool the pool of the buffers of the content
+     * @param maxBuffers the max number of the buffers of the content
+     */
+    ContentCodec(String encoding, ByteBufferPool pool, int maxBuffers) {
+        this.encoding = encoding;
+        this.gzip = Constants.ENCODE_GZIP.equals(encoding);
+        this.inflater = new Inflater(this.gzip);
+        this.output = new Output(pool, maxBuffers);
+        this.state = this.gzip ? HEADER : ZLIB_HEADER;
+    }
+
+    /**
+     * The content coding that can be decoded, only a single gzip or deflate coding is supported.
+     *
+     * @param contentEncoding the Content-Encoding header of the response
+     * @return gzip or deflate, or null if the content is not encoded or the coding is not supported.
+     */
+    public static String decodableEncoding(HeaderValues contentEncoding) {
+        if (contentEncoding == null || contentEncoding.size() != 1)
+            return null;
+
+        var value = contentEncoding.getFirst().trim();
+
+        if (value.equalsIgnoreCase(Constants.ENCODE_GZIP))
+            return Constants.ENCODE_GZIP;
+
+        if (value.equalsIgnoreCase(Constants.ENCODE_DEFLATE))
+            return Constants.ENCODE_DEFLATE;
+
+        return null;
+    }
+
+    /**
+     * Negotiate the content coding of the response to the client with the Accept-Encoding of the request. The
+     * coding of the backend response is preferred, so the client gets the same encoding as it does without the
+     * response interceptors.
+     *
+     * @param acceptEncoding the Accept-Encoding header of the request
+     * @param preferred the coding of the backend response
+     * @return gzip or deflate, or null if the response is sent without encoding.
+     */
+    public static String negotiate(HeaderValues acceptEncoding, String preferred) {
+        if (acceptEncoding == null)
+            return null;
+
+        var other = Constants.ENCODE_GZIP.equals(preferred) ? Constants.ENCODE_DEFLATE : Constants.ENCODE_GZIP;
+        var otherAccepted = false;
+
+        for (int i = 0; i < acceptEncoding.size(); i++) {
+            for (var coding : acceptEncoding.get(i).split(",")) {
+                var name = coding;
+                var accepted = true;
+                int semicolon = coding.indexOf(';');
+
+                if (semicolon >= 0) {
+                    name = coding.substring(0, semicolon);
+                    accepted = isAccepted(coding.substring(semicolon + 1));
+                }
+
+                name = name.trim();
+
+                if (accepted && (name.equalsIgnoreCase(preferred) || name.equals("*")))
+                    return preferred;
+
+                if (accepted && name.equalsIgnoreCase(other))
+                    otherAccepted = true;
+            }
+        }
+
+        return otherAccepted ? other : null;
+    }
+
+    private static boolean isAccepted(String parameters) {
+        for (var parameter : parameters.split(";")) {
+            var pair = parameter.trim();
+
+            if (pair.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(pair.substring(2).trim()) > 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Inflate the compressed data into the buffers of the content. The whole src is consumed, and the data after
+     * the end of the compressed stream is ignored.
+     *
+     * @param src the compressed data
+     * @throws IOException if the data is not in the format of the coding or the content exceeds the max buffers
+     */
+    void decode(ByteBuffer src) throws IOException {
+        if (src.hasRemaining())
+            this.received = true;
+
+        while (src.hasRemaining() && this.state != DONE) {
+
+            if (this.state == BODY)
+                this.inflate(src);
+
+            else if (this.state == TRAILER)
+                this.readTrailer(src);
+
+            else if (this.state == ZLIB_HEADER)
+                this.readZlibHeader(src);
+
+            else this.readHeader(src.get() & 0xff);
+        }
+
+        src.position(src.limit());
+    }
+
+    /**
+     * @return true if any compressed data has been written, false for the response without a body such as the
+     * response of a HEAD request or a 204 or 304.
+     */
+    boolean hasContent() {
+        return received;
+    }
+
+    /**
+     * Ends the decoding when the whole compressed body has been written. The response without a body has empty
+     * content.
+     *
+     * @return the buffers of the content
+     * @throws IOException if the compressed stream is not complete
+     */
+    PooledByteBuffer[] finish() throws IOException {
+        this.inflater.end();
+
+        if (this.state != DONE && this.received) {
+            this.output.release();
+            throw new ZipException("Unexpected end of the " + this.encoding + " response content");
+        }
+
+        return this.output.buffers();
+    }
+
+    /**
+     * Release the inflater and the buffers when the response is not completed.
+     */
+    void release() {
+        this.inflater.end();
+        this.output.release();
+    }
+
+    /**
+     * Deflate the content into new pooled buffers with the coding. Each buffer of the content is released as
+     * soon as it is compressed.
+     *
+     * @param srcs the buffers of the content
+     * @param encoding gzip or deflate
+     * @param pool the pool of the buffers
+     * @param maxBuffers the max number of the buffers of the compressed content
+     * @return the buffers of the compressed content
+     * @throws IOException if the compressed content exceeds the max buffers
+     */
+    static PooledByteBuffer[] encode(PooledByteBuffer[] srcs, String encoding, ByteBufferPool pool, int maxBuffers) throws IOException {
+        var gzip = Constants.ENCODE_GZIP.equals(encoding);
+        // the content is compressed on the IO thread for each response, and JSON compresses well at the fastest level.
+        var deflater = new Deflater(Deflater.BEST_SPEED, gzip);
+        var crc = new CRC32();
+        var output = new Output(pool, maxBuffers);
+        long size = 0;
+
+        try {
+
+            if (gzip)
+                output.put(GZIP_HEADER);
+
+            for (int i = 0; i < srcs.length; i++) {
+
+                if (srcs[i] == null)
+                    continue;
+
+                var src = srcs[i].getBuffer();
+                size += src.remaining();
+
+                if (gzip)
+                    crc.update(src.duplicate());
+
+                deflater.setInput(src);
+
+                while (!deflater.needsInput()) {
+                    var out = output.begin();
+                    deflater.deflate(out);
+                    output.end(out);
+                }
+
+                srcs[i].close();
+                srcs[i] = null;
+            }
+
+            deflater.finish();
+
+            while (!deflater.finished()) {
+                var out = output.begin();
+                deflater.deflate(out);
+                output.end(out);
+            }
+
+            if (gzip)
+                output.put(new byte[] {
+                        (byte) crc.getValue(), (byte) (crc.getValue() >> 8), (byte) (crc.getValue() >> 16), (byte) (crc.getValue() >> 24),
+                        (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)});
+
+            return output.buffers();
+
+        } catch (IOException | RuntimeException e) {
+            output.release();
+            throw e;
+
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void readHeader(int b) throws IOException {
+        switch (this.state) {
+            case HEADER:
+                if ((this.count == 0 && b != 0x1f) || (this.count == 1 && b != 0x8b) || (this.count == 2 && b != Deflater.DEFLATED))
+                    throw new ZipException("Not in GZIP format");
+
+                if (this.count == 3)
+                    this.flags = b;
+
+                if (++this.count == GZIP_HEADER_SIZE)
+                    this.next(HEADER);
+
+                break;
+
+            case EXTRA_LENGTH:
+                this.extraLength |= b << (8 * this.count);
+
+                if (++this.count == 2)
+                    this.next(this.extraLength > 0 ? EXTRA_LENGTH : EXTRA);
+
+                break;
+
+            case EXTRA:
+                if (++this.count == this.extraLength)
+                    this.next(EXTRA);
+
+                break;
+
+            case NAME:
+            case COMMENT:
+                if (b == 0)
+                    this.next(this.state);
+
+                break;
+
+            case HEADER_CRC:
+                if (++this.count == 2)
+                    this.next(HEADER_CRC);
+
+                break;
+
+            default:
+                throw new IllegalStateException("Unexpected state " + this.state);
+        }
+    }
+
+    /**
+     * Move to the next optional field of the gzip header that is in the flags, or to the body.
+     *
+     * @param current the state of the field that is read
+     */
+    private void next(int current) {
+        this.count = 0;
+
+        if (current == EXTRA_LENGTH)
+            this.state = EXTRA;
+
+        else if (current < EXTRA_LENGTH && (this.flags & FEXTRA) != 0)
+            this.state = EXTRA_LENGTH;
+
+        else if (current < NAME && (this.flags & FNAME) != 0)
+            this.state = NAME;
+
+        else if (current < COMMENT && (this.flags & FCOMMENT) != 0)
+            this.state = COMMENT;
+
+        else if (current < HEADER_CRC && (this.flags & FHCRC) != 0)
+            this.state = HEADER_CRC;
+
+        else this.state = BODY;
+    }
+
+    private void inflate(ByteBuffer src) throws IOException {
+        this.inflater.setInput(src);
+
+        try {
+            boolean full;
+
+            // the inflater may hold more output when the input is consumed and the output buffer is full.
+            do {
+                if (this.inflater.needsDictionary())
+                    throw new ZipException("The preset dictionary of the " + this.encoding + " content is not supported");
+
+                var out = this.output.begin();
+                int start = out.position();
+                int space = out.remaining();
+                int inflated = this.inflater.inflate(out);
+
+                if (this.gzip && inflated > 0)
+                    this.crc.update(out.duplicate().flip().position(start));
+
+                this.output.end(out);
+                full = inflated == space;
+
+            } while (!this.inflater.finished() && (full || !this.inflater.needsInput()));
+
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+
+        if (this.inflater.finished())
+            this.state = this.gzip ? TRAILER : DONE;
+    }
+
+    /**
+     * Read the first two bytes of the deflate coding, and inflate the raw deflate data if they are not a zlib header.
+     */
+    private void readZlibHeader(ByteBuffer src) throws IOException {
+        while (src.hasRemaining() && this.count < this.zlibHeader.length)
+            this.zlibHeader[this.count++] = src.get();
+
+        if (this.count < this.zlibHeader.length)
+            return;
+
+        int cmf = this.zlibHeader[0] & 0xff;
+        int flg = this.zlibHeader[1] & 0xff;
+
+        // the compression method is deflate with a window up to 32K, and the check bits make the header a multiple of 31.
+        if ((cmf & 0x0f) != Deflater.DEFLATED || (cmf >> 4) > 7 || ((cmf << 8) | flg) % 31 != 0) {
+            this.inflater.end();
+            this.inflater = new Inflater(true);
+        }
+
+        this.count = 0;
+        this.state = BODY;
+        this.inflate(ByteBuffer.wrap(this.zlibHeader));
+    }
+
+    private void readTrailer(ByteBuffer src) throws IOException {
+        while (src.hasRemaining() && this.count < GZIP_TRAILER_SIZE)
+            this.trailer |= (long) (src.get() & 0xff) << (8 * this.count++);
+
+        if (this.count == GZIP_TRAILER_SIZE) {
+
+            if ((this.trailer & 0xffffffffL) != this.crc.getValue()
+                    || (this.trailer >>> 32) != (this.inflater.getBytesWritten() & 0xffffffffL))
+                throw new ZipException("Corrupt GZIP trailer");
+
+            this.state = DONE;
+        }
+    }
+
+    /**
+     * The pooled buffers that the content is appended to. The buffers are ready to be read when the content is not
+     * being appended, with the content from the position 0 to the limit.
+     */
+    private static final class Output {
+        private static final int INITIAL_BUFFERS = 4;
+
+        private final ByteBufferPool pool;
+        private final int maxBuffers;
+        private PooledByteBuffer[] buffers = new PooledByteBuffer[0];
+        private int count;
+
+        Output(ByteBufferPool pool, int maxBuffers) {
+            this.pool = pool;
+            this.maxBuffers = maxBuffers;
+        }
+
+        /**
+         * @return the buffer with the room to append to, with the position at the end of its content.
+         * @throws IOException if the content exceeds the max buffers
+         */
+        ByteBuffer begin() throws IOException {
+
+            if (this.count == 0 || this.buffers[this.count - 1].getBuffer().limit() == this.buffers[this.count - 1].getBuffer().capacity()) {
+
+                if (this.count == this.buffers.length) {
+
+                    if (this.count >= this.maxBuffers)
+                        throw new IOException("Response content exceeded " + this.maxBuffers + " buffers limit");
+
+                    this.buffers = Arrays.copyOf(this.buffers, Math.min(this.maxBuffers, Math.max(INITIAL_BUFFERS, this.count * 2)));
+                }
+
+                var pooled = this.pool.allocate();
+                pooled.getBuffer().clear().flip();
+                this.buffers[this.count++] = pooled;
+            }
+
+            var buffer = this.buffers[this.count - 1].getBuffer();
+            buffer.position(buffer.limit()).limit(buffer.capacity());
+            return buffer;
+        }
+
+        void end(ByteBuffer buffer) {
+            buffer.flip();
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+
+            while (offset < bytes.length) {
+                var out = this.begin();
+                int length = Math.min(out.remaining(), bytes.length - offset);
+                out.put(bytes, offset, length);
+                this.end(out);
+                offset += length;
+            }
+        }
+
+        PooledByteBuffer[] buffers() {
+            return this.buffers;
+        }
+
+        void release() {
+            for (int i = 0; i < this.count; i++) {
+
+                if (this.buffers[i] != null) {
+                    this.buffers[i].close();
+                    this.buffers[i] = null;
+                }
+            }
+
+            this.count = 0;
+        }
+    }
+}
@@ -28,11 +28,21 @@ public class ContentStreamSinkConduit extends AbstractStreamSinkConduit<StreamSi
      * @param exchange
      */
     public ContentStreamSinkConduit(StreamSinkConduit next, HttpServerExchange exchange) {
+        // load the interceptors from the service.yml
+        this(next, exchange, SingletonServiceFactory.getBeans(ResponseInterceptor.class));
+    }
+
+    /**
+     * Construct a new instance with the interceptors that are resolved by the caller once for all the exchanges.
+     *
+     * @param next         the delegate conduit
+     * @param exchange     the current exchange
+     * @param interceptors the response interceptors
+     */
+    public ContentStreamSinkConduit(StreamSinkConduit next, HttpServerExchange exchange, ResponseInterceptor[] interceptors) {
         super(next);
         this._next = next;
-
-        // load the interceptors from the service.yml
-        interceptors = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
+        this.interceptors = interceptors;
 
         try {
 
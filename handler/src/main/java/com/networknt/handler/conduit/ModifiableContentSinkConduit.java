@@ -11,11 +11,12 @@ import io.undertow.util.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.IoUtils;
-import org.xnio.XnioWorker;
 import org.xnio.channels.StreamSourceChannel;
 import org.xnio.conduits.*;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -25,6 +26,12 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
 
     static final Logger LOG = LoggerFactory.getLogger(ModifiableContentSinkConduit.class);
 
+    /* the buffers are attached on the first write, so the empty response doesn't allocate the buffer array. */
+    private static final PooledByteBuffer[] EMPTY_BUFFERS = new PooledByteBuffer[0];
+
+    /* ServerFixedLengthStreamSinkConduit.reset(long, HttpServerExchange) to update the length of the response. */
+    private static final MethodHandle RESET_LENGTH = resetLengthHandle();
+
     private final HttpServerExchange exchange;
 
     private final ResponseInterceptor[] interceptors;
@@ -33,6 +40,17 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
 
     private final Object lock = new Object();
 
+    /* the buffered response that is being written to the next conduit after the interceptors are executed. */
+    private PooledByteBuffer[] pendingBuffers;
+
+    private int pendingIndex;
+
+    /* the gzip or deflate coding of the backend response that is decoded for the interceptors. */
+    private final String contentEncoding;
+
+    /* decodes the compressed response as it is written, until the writes are terminated. */
+    private ContentCodec codec;
+
     /**
      * Construct a new instance.
      *
@@ -40,11 +58,26 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
      * @param exchange
      */
     public ModifiableContentSinkConduit(StreamSinkConduit next, HttpServerExchange exchange) {
+        // load the interceptors from the service.yml
+        this(next, exchange, SingletonServiceFactory.getBeans(ResponseInterceptor.class));
+    }
+
+    /**
+     * Construct a new instance with the interceptors that are resolved by the caller once for all the exchanges.
+     *
+     * @param next         the delegate conduit to set
+     * @param exchange     the current exchange
+     * @param interceptors the response interceptors
+     */
+    public ModifiableContentSinkConduit(StreamSinkConduit next, HttpServerExchange exchange, ResponseInterceptor[] interceptors) {
         super(next);
         this.exchange = exchange;
+        this.interceptors = interceptors;
+        this.contentEncoding = ContentCodec.decodableEncoding(exchange.getResponseHeaders().get(Headers.CONTENT_ENCODING));
+
+        if (this.contentEncoding != null)
+            this.codec = new ContentCodec(this.contentEncoding, exchange.getConnection().getByteBufferPool(), MAX_BUFFERS);
 
-        // load the interceptors from the service.yml
-        this.interceptors = SingletonServiceFactory.getBeans(ResponseInterceptor.class);
         resetBufferPool(exchange);
     }
 
@@ -63,19 +96,32 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
                 if (oldBuffer != null)
                     oldBuffer.close();
 
-        exchange.putAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY, new PooledByteBuffer[MAX_BUFFERS]);
+        exchange.putAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY, EMPTY_BUFFERS);
     }
 
     @Override
     public int write(ByteBuffer src) throws IOException {
-        return BuffersUtils.append(src, exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY), exchange);
+
+        if (this.codec != null) {
+            int length = src.remaining();
+            this.codec.decode(src);
+            return length;
+        }
+
+        var dests = exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
+        var grown = BuffersUtils.ensureCapacity(dests, BuffersUtils.remaining(dests) + src.remaining(), MAX_BUFFERS, exchange);
+
+        if (grown != dests)
+            exchange.putAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY, grown);
+
+        return BuffersUtils.append(src, grown, exchange);
     }
 
     @Override
     public long write(ByteBuffer[] dsts, int offs, int len) throws IOException {
 
-        for (int i = offs; i < len; ++i) {
-            var srcBuffer = dsts[offs + i];
+        for (int i = offs; i < offs + len; ++i) {
+            var srcBuffer = dsts[i];
 
             if (srcBuffer.hasRemaining())
                 return write(srcBuffer);
@@ -119,6 +165,9 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
             if (LOG.isTraceEnabled())
                 LOG.trace("terminating writes with interceptors length = " + (this.interceptors.length));
 
+            if (this.codec != null)
+                this.decodeContent();
+
             try {
 
                 for (var interceptor : this.interceptors) {
@@ -139,6 +188,9 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
 
             var dests = this.exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
 
+            if (this.contentEncoding != null && BuffersUtils.remaining(dests) > 0)
+                dests = this.encodeContent(dests);
+
             if (LOG.isTraceEnabled())
                 LOG.trace("Next conduit is: {}", next.getClass().getName());
 
@@ -146,146 +198,124 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
             if (this.exchange.getResponseHeaders().get(Headers.CONTENT_LENGTH) != null)
                 this.updateContentLength(this.exchange, dests);
 
-            this.writeToNextConduit(dests);
+            this.pendingBuffers = dests;
+            this.pendingIndex = 0;
+            this.writeToNextConduit();
         }
     }
 
-    /**
-     * Writes to the next conduit.
-     * We track the position of the buffer after writing because of cases where the conduit does not consume everything.
-     * e.g. When transfer is chunked.
-     *
-     * @param responseDataPooledBuffers - pooled response buffers (after modification)
-     * @throws IOException - throws IO exception when writing to next conduits buffers.
-     */
-    private void writeToNextConduit(final PooledByteBuffer[] responseDataPooledBuffers) throws IOException {
+    @Override
+    public boolean flush() throws IOException {
 
-        /* http2 uses StreamSinkChannelWrappingConduit. */
-        if (!(this.next instanceof StreamSinkChannelWrappingConduit))
-            this.http1Write(responseDataPooledBuffers);
+        /* the buffered response is written as the next conduit becomes writable again. */
+        if (this.pendingBuffers != null && !this.writeToNextConduit())
+            return false;
 
-        else this.http2Write(responseDataPooledBuffers);
+        return next.flush();
     }
 
-    private void http1Write(final PooledByteBuffer[] buffers) throws IOException {
-
-        for (var buffer : buffers) {
-
-            if (buffer == null)
-                break;
+    @Override
+    public void truncateWrites() throws IOException {
 
-            if (LOG.isTraceEnabled())
-                LOG.trace("buffer position {} and buffer limit {}", buffer.getBuffer().position(), buffer.getBuffer().limit());
+        if (this.codec != null) {
+            this.codec.release();
+            this.codec = null;
+        }
 
-            while (buffer.getBuffer().position() < buffer.getBuffer().limit()) {
+        this.releasePendingBuffers();
+        next.truncateWrites();
+    }
 
-                if (LOG.isTraceEnabled())
-                    LOG.trace("Before write buffer position: {}", buffer.getBuffer().position());
+    /**
+     * Writes the buffered response to the next conduit without blocking, and returns false when the next conduit
+     * does not accept more data, e.g. when an HTTP/2 stream is out of its flow control window. The caller that
+     * terminated the writes keeps calling flush() as the channel becomes writable, and each call continues from
+     * the current buffer. Every buffer is released as soon as it is written, and the writes of the next conduit are
+     * terminated after the last one.
+     *
+     * @return true if the whole response has been written to the next conduit.
+     * @throws IOException - throws IO exception when writing to next conduits buffers.
+     */
+    private boolean writeToNextConduit() throws IOException {
+        final var buffers = this.pendingBuffers;
 
-                next.write(buffer.getBuffer());
+        while (this.pendingIndex < buffers.length && buffers[this.pendingIndex] != null) {
+            var buffer = buffers[this.pendingIndex].getBuffer();
 
-                if (LOG.isTraceEnabled())
-                    LOG.trace("After write buffer position: {}", buffer.getBuffer().position());
+            if (LOG.isTraceEnabled())
+                LOG.trace("[{}] buffer position {} and buffer limit {}", this.pendingIndex, buffer.position(), buffer.limit());
 
-            }
+            /* the conduit may not consume everything, e.g. when the transfer is chunked or the client is slow. */
+            while (buffer.hasRemaining())
+                if (next.write(buffer) == 0)
+                    return false;
 
+            buffers[this.pendingIndex].close();
+            buffers[this.pendingIndex++] = null;
         }
 
-        next.terminateWrites();
-
+        if (LOG.isTraceEnabled())
+            LOG.trace("Terminating writes...");
 
+        this.pendingBuffers = null;
+        next.terminateWrites();
+        return true;
     }
 
-    private void http2Write(final PooledByteBuffer[] buffers) {
-        final var ioThread = next.getWriteThread();
-        final var workerThread = next.getWorker();
-
-        if (ioThread == Thread.currentThread())
-            this.executeHttp2WriteThread(workerThread, buffers);
-
-        else throw new IllegalStateException("Conduit should not be called in a non IO-thread...");
+    /**
+     * Attaches the decoded content of the compressed response for the interceptors, and removes the
+     * Content-Encoding header as the interceptors see the content that is not encoded.
+     *
+     * @throws IOException if the compressed response is not complete.
+     */
+    private void decodeContent() throws IOException {
+        var codec = this.codec;
+        this.codec = null;
+        this.exchange.putAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY, codec.finish());
+
+        /* the response without a body keeps its Content-Encoding, it is only encoded if an interceptor adds content. */
+        if (codec.hasContent())
+            this.exchange.getResponseHeaders().remove(Headers.CONTENT_ENCODING);
     }
 
-    private void executeHttp2WriteThread(XnioWorker workerThread, final PooledByteBuffer[] buffers) {
-        workerThread.execute(() -> {
-
-            try {
-                int index = 0;
-                long totalWritten = 0;
-
-                for (var buffer : buffers) {
-
-                    if (buffer == null || buffer.getBuffer() == null)
-                        break;
-
-                    var written = 0;
-
-                    if (LOG.isTraceEnabled())
-                        LOG.trace("[{}] Before-Write: current pass: '{}' bytes, total: '{}' bytes, buffer size: '{}' bytes", index, written, totalWritten, buffer.getBuffer().limit());
-
-                    var lastWrite = this.doWrite(buffers, buffer, written, index);
-
-                    totalWritten += written;
-
-                    if (LOG.isTraceEnabled())
-                        LOG.trace("[{}] After-Write: current pass: '{}' bytes, total: '{}' bytes, buffer size: '{}' bytes", index, written, totalWritten, buffer.getBuffer().limit());
-
-                    buffer.close();
-                    index++;
+    /**
+     * Compresses the content after the interceptors with the coding that is accepted by the client, the coding of
+     * the backend response if possible. The content is sent without encoding if the client accepts neither gzip
+     * nor deflate.
+     *
+     * @param dests - the buffered response data after the interceptors.
+     * @return the buffers to write to the next conduit.
+     * @throws IOException if the compressed content exceeds the max buffers.
+     */
+    private PooledByteBuffer[] encodeContent(PooledByteBuffer[] dests) throws IOException {
+        var encoding = ContentCodec.negotiate(this.exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING), this.contentEncoding);
 
-                    if (lastWrite)
-                        break;
-                }
+        if (LOG.isDebugEnabled())
+            LOG.debug("The {} response is decoded for the interceptors and encoded with {}", this.contentEncoding, encoding);
 
-                if (LOG.isTraceEnabled())
-                    LOG.trace("Terminating writes...");
+        if (encoding == null) {
+            this.exchange.getResponseHeaders().remove(Headers.CONTENT_ENCODING);
+            return dests;
+        }
 
-                next.terminateWrites();
-            } catch (IOException e) {
-                throw new RuntimeException("Failed to execute conduit writes on Worker Thread. " + e.getMessage(), e);
-            }
-        });
+        var encoded = ContentCodec.encode(dests, encoding, this.exchange.getConnection().getByteBufferPool(), MAX_BUFFERS);
+        this.exchange.putAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY, encoded);
+        this.exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, encoding);
+        return encoded;
     }
 
-    private boolean doWrite(PooledByteBuffer[] buffers, PooledByteBuffer buffer, int written, int index) throws IOException {
-        boolean lastWrite = false;
-        while (buffer.getBuffer().position() < buffer.getBuffer().limit()) {
-            long res;
-
-            if (this.isLastWrite(buffers, index)) {
-
-                if (LOG.isTraceEnabled())
-                    LOG.trace("Final write occurred...");
-
-                res = next.write(buffer.getBuffer());
-                lastWrite = true;
-
-            } else res = next.write(buffer.getBuffer());
-
-            written += res;
+    private void releasePendingBuffers() {
+        final var buffers = this.pendingBuffers;
 
-            if (this.isBufferConsumed(buffer, res, index))
-                break;
+        if (buffers == null)
+            return;
 
-            next.awaitWritable();
+        for (int i = this.pendingIndex; i < buffers.length && buffers[i] != null; i++) {
+            buffers[i].close();
+            buffers[i] = null;
         }
-        return lastWrite;
-    }
-
-    private boolean isBufferConsumed(PooledByteBuffer buffer, long res, int index) {
-
-        if (LOG.isTraceEnabled())
-            LOG.trace("[{}] Checking if the buffer was fully consumed...", index);
-
-        return !(res == 0L) && (buffer.getBuffer().position() >= buffer.getBuffer().limit());
-    }
 
-    private boolean isLastWrite(PooledByteBuffer[] buffers, int index) {
-
-        if (LOG.isTraceEnabled())
-            LOG.trace("[{}] Checking if this is the last write....", index);
-
-        return buffers[index + 1] == null || buffers[index + 1].getBuffer() == null;
+        this.pendingBuffers = null;
     }
 
     private boolean isWritingResponse() {
@@ -314,25 +344,15 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
         // need also to update length of ServerFixedLengthStreamSinkConduit.
         // Should we do this for anything that extends AbstractFixedLengthStreamSinkConduit?
         if (this.next instanceof ServerFixedLengthStreamSinkConduit) {
-            Method m;
 
             if (LOG.isTraceEnabled())
                 LOG.trace("The next conduit is ServerFixedLengthStreamSinkConduit and reset the length.");
 
-            try {
-                m = ServerFixedLengthStreamSinkConduit.class.getDeclaredMethod("reset", long.class, HttpServerExchange.class);
-                m.setAccessible(true);
-
-            } catch (NoSuchMethodException | SecurityException ex) {
-
-                if (LOG.isErrorEnabled())
-                    LOG.error("could not find ServerFixedLengthStreamSinkConduit.reset method", ex);
-
-                throw new RuntimeException("could not find ServerFixedLengthStreamSinkConduit.reset method", ex);
-            }
+            if (RESET_LENGTH == null)
+                throw new RuntimeException("could not find ServerFixedLengthStreamSinkConduit.reset method");
 
             try {
-                m.invoke(next, length, exchange);
+                RESET_LENGTH.invokeExact((ServerFixedLengthStreamSinkConduit) this.next, length, exchange);
 
                 if (LOG.isTraceEnabled())
                     LOG.trace("reset ServerFixedLengthStreamSinkConduit length = " + length);
@@ -340,9 +360,9 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
             } catch (Throwable ex) {
 
                 if (LOG.isErrorEnabled())
-                    LOG.error("could not access BUFFERED_REQUEST_DATA field", ex);
+                    LOG.error("could not reset ServerFixedLengthStreamSinkConduit length", ex);
 
-                throw new RuntimeException("could not access BUFFERED_REQUEST_DATA field", ex);
+                throw new RuntimeException("could not reset ServerFixedLengthStreamSinkConduit length", ex);
             }
 
         } else if (LOG.isWarnEnabled())
@@ -350,4 +370,24 @@ public class ModifiableContentSinkConduit extends AbstractStreamSinkConduit<Stre
 
     }
 
+    /**
+     * Resolves the private reset method of the ServerFixedLengthStreamSinkConduit once, so that updating the
+     * content length doesn't look up the method and check the access for each response.
+     *
+     * @return the method handle or null if the method is not found.
+     */
+    private static MethodHandle resetLengthHandle() {
+        try {
+            Method m = ServerFixedLengthStreamSinkConduit.class.getDeclaredMethod("reset", long.class, HttpServerExchange.class);
+            m.setAccessible(true);
+            return MethodHandles.lookup().unreflect(m);
+
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException ex) {
+
+            if (LOG.isErrorEnabled())
+                LOG.error("could not find ServerFixedLengthStreamSinkConduit.reset method", ex);
+
+            return null;
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package com.networknt.handler;
+
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.DefaultByteBufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class BuffersUtilsTest {
+    private static final ByteBufferPool POOL = new DefaultByteBufferPool(true, 16 * 1024);
+
+    @Test
+    public void testToStringAcrossBuffers() throws Exception {
+        // the multibyte characters are split across the boundaries of the 16KB buffers.
+        var body = "{\"name\":\"" + "é中".repeat(10000) + "\"}";
+        var buffers = buffer(body.getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals(body.getBytes(StandardCharsets.UTF_8).length, BuffersUtils.remaining(buffers));
+        Assert.assertEquals(body, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
+        // the content can be read again.
+        Assert.assertEquals(body, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
+        Assert.assertEquals(body.getBytes(StandardCharsets.UTF_8).length, BuffersUtils.toByteBuffer(buffers).remaining());
+        close(buffers);
+    }
+
+    @Test
+    public void testInputStream() throws Exception {
+        var bytes = new byte[40000];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) i;
+        var buffers = buffer(bytes);
+        try (InputStream is = BuffersUtils.asInputStream(buffers)) {
+            Assert.assertEquals(bytes.length, is.available());
+            Assert.assertEquals(0, is.read());
+            Assert.assertEquals(10, is.skip(10));
+            var read = is.readAllBytes();
+            Assert.assertEquals(bytes.length - 11, read.length);
+            Assert.assertEquals(bytes[11], read[0]);
+            Assert.assertEquals(bytes[bytes.length - 1], read[read.length - 1]);
+            Assert.assertEquals(-1, is.read());
+        }
+        // the positions of the pooled buffers are not changed.
+        Assert.assertEquals(bytes.length, BuffersUtils.remaining(buffers));
+        close(buffers);
+    }
+
+    @Test
+    public void testReaderAndReadOnlyBuffers() throws Exception {
+        var body = "{\"a\":\"é\"}";
+        var buffers = buffer(body.getBytes(StandardCharsets.UTF_8));
+        try (Reader reader = BuffersUtils.asReader(buffers, StandardCharsets.UTF_8)) {
+            var chars = new char[64];
+            int n = reader.read(chars);
+            Assert.assertEquals(body, new String(chars, 0, n));
+        }
+        ByteBuffer[] views = BuffersUtils.asReadOnlyBuffers(buffers);
+        Assert.assertEquals(1, views.length);
+        Assert.assertTrue(views[0].isReadOnly());
+        Assert.assertEquals(body.getBytes(StandardCharsets.UTF_8).length, views[0].remaining());
+        close(buffers);
+    }
+
+    /**
+     * The heap allocated by toString for a small body, which was 16KB * maxBuffers before the content was copied
+     * into a buffer of its own size.
+     */
+    @Test
+    public void testToStringAllocation() throws Exception {
+        var body = "{\"id\":1,\"name\":\"" + "x".repeat(170) + "\"}";
+        var buffers = buffer(body.getBytes(StandardCharsets.UTF_8));
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int loop = 10000;
+        for (int i = 0; i < loop; i++) BuffersUtils.toString(buffers, StandardCharsets.UTF_8);
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < loop; i++) BuffersUtils.toString(buffers, StandardCharsets.UTF_8);
+        long perCall = (threadMXBean.getThreadAllocatedBytes(threadId) - start) / loop;
+        System.out.println("toString of a " + body.length() + " bytes body allocates " + perCall + " bytes");
+        Assert.assertTrue(perCall < 1024);
+        close(buffers);
+    }
+
+    private static PooledByteBuffer[] buffer(byte[] bytes) {
+        var buffers = new PooledByteBuffer[BuffersUtils.config.getMaxBuffers()];
+        var src = ByteBuffer.wrap(bytes);
+        for (int i = 0; src.hasRemaining(); i++) {
+            buffers[i] = POOL.allocate();
+            var dst = buffers[i].getBuffer();
+            int n = Math.min(dst.remaining(), src.remaining());
+            dst.put(src.slice().limit(n));
+            src.position(src.position() + n);
+            dst.flip();
+        }
+        return buffers;
+    }
+
+    private static void close(PooledByteBuffer[] buffers) {
+        for (PooledByteBuffer buffer : buffers)
+            if (buffer != null) buffer.close();
+    }
+}
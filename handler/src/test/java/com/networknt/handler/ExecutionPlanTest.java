@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.handler;
+
+import com.networknt.handler.sample.SampleHttpHandler1;
+import com.networknt.handler.sample.SampleHttpHandler2;
+import com.networknt.handler.sample.SampleHttpHandler3;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.AttachmentKey;
+import io.undertow.util.Methods;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ExecutionPlanTest {
+    private static final AttachmentKey<ExecutionPlan.Cursor> CURSOR = AttachmentKey.create(ExecutionPlan.Cursor.class);
+
+    @Test
+    public void testStartAndWalkPlan() {
+        Handler.init();
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.setRequestMethod(Methods.GET);
+        exchange.setRequestPath("/test");
+        Assert.assertTrue(Handler.start(exchange));
+        Assert.assertTrue(Handler.getNext(exchange) instanceof SampleHttpHandler2);
+        Assert.assertTrue(Handler.getNext(exchange) instanceof SampleHttpHandler1);
+        Assert.assertTrue(Handler.getNext(exchange) instanceof SampleHttpHandler3);
+        Assert.assertNull(Handler.getNext(exchange));
+    }
+
+    @Test
+    public void testStartDefaultHandlers() {
+        Handler.init();
+        HttpServerExchange exchange = new HttpServerExchange(null);
+        exchange.setRequestMethod(Methods.GET);
+        exchange.setRequestPath("/unknown");
+        Assert.assertFalse(Handler.start(exchange));
+        Assert.assertTrue(Handler.startDefaultHandlers(exchange));
+        Assert.assertTrue(Handler.getNext(exchange) instanceof SampleHttpHandler3);
+        Assert.assertNull(Handler.getNext(exchange));
+    }
+
+    @Test
+    public void testReloadKeepsHandlerInstances() {
+        Handler.init();
+        HttpHandler third = Handler.getHandlers().get("third");
+        HttpServerExchange inFlight = new HttpServerExchange(null);
+        inFlight.setRequestMethod(Methods.GET);
+        inFlight.setRequestPath("/test");
+        Assert.assertTrue(Handler.start(inFlight));
+        Handler.getNext(inFlight);
+
+        Handler.reload();
+        Assert.assertSame(third, Handler.getHandlers().get("third"));
+        // the request in flight continues with the plan it has started with.
+        Assert.assertTrue(Handler.getNext(inFlight) instanceof SampleHttpHandler1);
+        Assert.assertSame(third, Handler.getNext(inFlight));
+        Assert.assertNull(Handler.getNext(inFlight));
+    }
+
+    @Test
+    public void testReloadDropsRemovedHandlers() {
+        Handler.init();
+        // a handler that was in the config before the reload.
+        Handler.getHandlers().put("removed", new SampleHttpHandler1());
+        Handler.reload();
+        Assert.assertFalse(Handler.getHandlers().containsKey("removed"));
+        Assert.assertNotNull(Handler.getHandlers().get("third"));
+    }
+
+    @Test
+    public void testReloadRecreatesChangedHandlers() {
+        Handler.init();
+        HttpHandler third = Handler.getHandlers().get("third");
+        // the handler was defined with other parameters before the reload.
+        Handler.maps.definitions.put("third", Arrays.asList("com.networknt.handler.sample.SampleHttpHandler3@third", "changed"));
+        Handler.reload();
+        Assert.assertNotSame(third, Handler.getHandlers().get("third"));
+    }
+
+    @Test
+    public void testFailedConfigKeepsCurrentPlans() throws Exception {
+        Handler.init();
+        HttpHandler third = Handler.getHandlers().get("third");
+        try {
+            Handler.setConfig("invalid-method");
+            Assert.fail();
+        } catch (Exception e) {
+            // the current handlers and plans are still used.
+            Assert.assertSame(third, Handler.getHandlers().get("third"));
+            HttpServerExchange exchange = new HttpServerExchange(null);
+            exchange.setRequestMethod(Methods.GET);
+            exchange.setRequestPath("/test");
+            Assert.assertTrue(Handler.start(exchange));
+        } finally {
+            Handler.setConfig("handler");
+        }
+    }
+
+    @Ignore
+    @Test
+    public void testDispatchPerf() {
+        AttachmentKey<String> chainId = AttachmentKey.create(String.class);
+        AttachmentKey<Integer> chainSeq = AttachmentKey.create(Integer.class);
+        HttpHandler noop = exchange -> {};
+        int loop = 1000000;
+        for (int size : new int[]{5, 10, 20}) {
+            List<HttpHandler> chain = new ArrayList<>();
+            for (int i = 0; i < size; i++) chain.add(noop);
+            Map<String, List<HttpHandler>> listById = new HashMap<>();
+            listById.put("123456789", chain);
+            ExecutionPlan plan = new ExecutionPlan("123456789", chain);
+            HttpServerExchange exchange = new HttpServerExchange(null);
+
+            // the chain id and boxed sequence lookups before the plans were compiled.
+            long start = System.currentTimeMillis();
+            int count = 0;
+            for (int i = 0; i < loop; i++) {
+                exchange.putAttachment(chainId, "123456789");
+                exchange.putAttachment(chainSeq, 0);
+                while (true) {
+                    List<HttpHandler> handlers = listById.get(exchange.getAttachment(chainId));
+                    Integer seq = exchange.getAttachment(chainSeq);
+                    if (seq >= handlers.size()) break;
+                    exchange.putAttachment(chainSeq, seq + 1);
+                    if (handlers.get(seq) != null) count++;
+                }
+            }
+            System.out.println("Chain of " + size + " by id and sequence " + (System.currentTimeMillis() - start));
+            Assert.assertEquals(loop * size, count);
+
+            start = System.currentTimeMillis();
+            count = 0;
+            for (int i = 0; i < loop; i++) {
+                exchange.putAttachment(CURSOR, new ExecutionPlan.Cursor(plan));
+                while (exchange.getAttachment(CURSOR).next() != null) count++;
+            }
+            System.out.println("Chain of " + size + " by execution plan " + (System.currentTimeMillis() - start));
+            Assert.assertEquals(loop * size, count);
+        }
+    }
+}
@@ -49,7 +49,7 @@ public class HandlerTest {
     @Test
     public void validConfig_init_handlersCreated() {
     	Handler.init();
-        Map<String, List<HttpHandler>> handlers = Handler.handlerListById;
+        Map<String, List<HttpHandler>> handlers = Handler.maps.handlerListById;
         Assert.assertEquals(1, handlers.get("third").size());
         Assert.assertEquals(2, handlers.get("secondBeforeFirst").size());
     }
@@ -84,7 +84,7 @@ public class HandlerTest {
         ));
         Handler.init();
 
-        Map<HttpString, PathTemplateMatcher<String>> methodToMatcher = Handler.methodToMatcherMap;
+        Map<HttpString, PathTemplateMatcher<String>> methodToMatcher = Handler.maps.methodToMatcherMap;
 
         PathTemplateMatcher<String> getMatcher = methodToMatcher.get(Methods.GET);
         PathTemplateMatcher.PathMatchResult<String> getFirst = getMatcher.match("/my-api/first");
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.handler;
+
+import ch.qos.logback.classic.Level;
+import io.undertow.Undertow;
+import io.undertow.util.Headers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnio.Options;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Measure the bytes that are allocated by the server threads for a 4KB JSON response that is buffered for the
+ * response interceptors on /v1/pets, and for the same response that is streamed on /v2/pets. The large JSON
+ * response on /v1/pets/large is compressed by the backend handler when the client accepts gzip, and the throughput
+ * and the bytes from the backend are compared with the same response without encoding.
+ */
+public class ResponseInterceptorInjectionHandlerTest {
+    private static final int PORT = 7444;
+    private static final int WARMUP = 5000;
+    private static final int REQUESTS = 5000;
+    private static final int LARGE_SIZE = 4 * 1024 * 1024;
+    private static final int LARGE_REQUESTS = 30;
+
+    private static byte[] json;
+    private static byte[] largeJson;
+    private static byte[] largeGzip;
+    private static Undertow server;
+    private static Level rootLevel;
+    private static Level networkntLevel;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // the trace logging of every response would be measured.
+        rootLevel = logger(Logger.ROOT_LOGGER_NAME).getLevel();
+        networkntLevel = logger("com.networknt").getLevel();
+        logger(Logger.ROOT_LOGGER_NAME).setLevel(Level.INFO);
+        logger("com.networknt").setLevel(Level.INFO);
+
+        json = json(4000);
+        largeJson = json(LARGE_SIZE);
+        largeGzip = gzip(largeJson);
+
+        var handler = new ResponseInterceptorInjectionHandler();
+        handler.setNext(exchange -> {
+            var body = json;
+            if (exchange.getRequestPath().endsWith("/large")) {
+                var acceptEncoding = exchange.getRequestHeaders().getFirst(Headers.ACCEPT_ENCODING);
+                var gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+                if (gzip) exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, "gzip");
+                body = gzip ? largeGzip : largeJson;
+            }
+            exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+            exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, body.length);
+            exchange.getResponseSender().send(ByteBuffer.wrap(body));
+        });
+        server = Undertow.builder()
+                .setIoThreads(1)
+                .setWorkerOption(Options.WORKER_TASK_CORE_THREADS, 1)
+                .addHttpListener(PORT, "localhost")
+                .setHandler(handler)
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) server.stop();
+        logger(Logger.ROOT_LOGGER_NAME).setLevel(rootLevel);
+        logger("com.networknt").setLevel(networkntLevel);
+    }
+
+    private static ch.qos.logback.classic.Logger logger(String name) {
+        return (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(name);
+    }
+
+    @Test
+    public void testCompressionFormat() {
+        Assert.assertTrue(ResponseInterceptorInjectionHandler.hasCompressionFormat("gzip"));
+        Assert.assertTrue(ResponseInterceptorInjectionHandler.hasCompressionFormat("br, deflate"));
+        Assert.assertTrue(ResponseInterceptorInjectionHandler.hasCompressionFormat(" COMPRESS "));
+        Assert.assertFalse(ResponseInterceptorInjectionHandler.hasCompressionFormat("identity"));
+        Assert.assertFalse(ResponseInterceptorInjectionHandler.hasCompressionFormat("gzipped, br"));
+        Assert.assertFalse(ResponseInterceptorInjectionHandler.hasCompressionFormat(""));
+    }
+
+    @Test
+    public void testAllocationPerResponse() throws Exception {
+        var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        send(client, "/v1/pets", WARMUP);
+        send(client, "/v2/pets", WARMUP);
+
+        long buffered = allocated(client, "/v1/pets");
+        long streamed = allocated(client, "/v2/pets");
+        System.out.println(String.format("%d bytes response allocates %d bytes buffered for interceptors and %d bytes streamed",
+                json.length, buffered, streamed));
+        // the array of the buffers was preallocated with 1024 entries, which is 4KB alone.
+        Assert.assertTrue(buffered - streamed < 4096);
+    }
+
+    @Test
+    public void testLargeCompressedResponse() throws Exception {
+        var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        for (int i = 0; i < 5; i++) {
+            sendLarge(client, "gzip");
+            sendLarge(client, "identity");
+        }
+
+        long start = System.nanoTime();
+        long gzipBytes = 0;
+        for (int i = 0; i < LARGE_REQUESTS; i++) gzipBytes += sendLarge(client, "gzip");
+        double gzipRate = LARGE_REQUESTS * 1e9 / (System.nanoTime() - start);
+
+        start = System.nanoTime();
+        long identityBytes = 0;
+        for (int i = 0; i < LARGE_REQUESTS; i++) identityBytes += sendLarge(client, "identity");
+        double identityRate = LARGE_REQUESTS * 1e9 / (System.nanoTime() - start);
+
+        System.out.println(String.format("%d bytes JSON with interceptors: gzip %.1f responses/s %d bytes each, identity %.1f responses/s %d bytes each",
+                largeJson.length, gzipRate, gzipBytes / LARGE_REQUESTS, identityRate, identityBytes / LARGE_REQUESTS));
+        // the backend and the client transfer the compressed response.
+        Assert.assertTrue(gzipBytes * 5 < identityBytes);
+    }
+
+    /**
+     * @return the bytes of the response body that are received by the client.
+     */
+    private static int sendLarge(HttpClient client, String acceptEncoding) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/v1/pets/large"))
+                .header(Headers.ACCEPT_ENCODING_STRING, acceptEncoding)
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        Assert.assertEquals(200, response.statusCode());
+        Assert.assertEquals("true", response.headers().firstValue("X-Intercepted").orElse(null));
+        Assert.assertEquals(response.body().length, Integer.parseInt(response.headers().firstValue(Headers.CONTENT_LENGTH_STRING).orElse("-1")));
+        var body = response.body();
+        if ("gzip".equals(acceptEncoding)) {
+            Assert.assertEquals("gzip", response.headers().firstValue(Headers.CONTENT_ENCODING_STRING).orElse(null));
+            body = new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes();
+        } else {
+            Assert.assertFalse(response.headers().firstValue(Headers.CONTENT_ENCODING_STRING).isPresent());
+        }
+        Assert.assertArrayEquals(largeJson, body);
+        return response.body().length;
+    }
+
+    private static byte[] json(int size) {
+        var sb = new StringBuilder("[");
+        for (int i = 0; sb.length() < size; i++) sb.append("{\"id\":").append(i).append(",\"name\":\"pet").append(i).append("\",\"tag\":\"dog\"},");
+        sb.setLength(sb.length() - 1);
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static long allocated(HttpClient client, String path) throws Exception {
+        long before = serverAllocatedBytes();
+        send(client, path, REQUESTS);
+        return (serverAllocatedBytes() - before) / REQUESTS;
+    }
+
+    private static void send(HttpClient client, String path, int count) throws Exception {
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build();
+        for (int i = 0; i < count; i++) {
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertArrayEquals(json, response.body());
+            // the interceptors are executed for the streamed response as well.
+            Assert.assertEquals("true", response.headers().firstValue("X-Intercepted").orElse(null));
+        }
+    }
+
+    private static long serverAllocatedBytes() {
+        var threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var ids = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().startsWith("XNIO-"))
+                .mapToLong(Thread::getId)
+                .toArray();
+        return Arrays.stream(threadBean.getThreadAllocatedBytes(ids)).sum();
+    }
+}
@@ -0,0 +1,199 @@
+package com.networknt.handler.conduit;
+
+import com.networknt.handler.BuffersUtils;
+import io.undertow.connector.ByteBufferPool;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.server.DefaultByteBufferPool;
+import io.undertow.util.HeaderMap;
+import io.undertow.util.Headers;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+public class ContentCodecTest {
+    private static final ByteBufferPool POOL = new DefaultByteBufferPool(true, 16 * 1024);
+    private static final String JSON = json(200000);
+
+    @Test
+    public void testDecodeGzipInChunks() throws Exception {
+        var compressed = gzip(JSON.getBytes(StandardCharsets.UTF_8));
+        // the header, the body and the trailer are split across the writes.
+        for (int chunk : new int[] {1, 7, 4096, compressed.length}) {
+            var buffers = decode("gzip", compressed, chunk);
+            Assert.assertEquals(JSON, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
+            close(buffers);
+        }
+    }
+
+    @Test
+    public void testDecodeGzipOptionalHeaderFields() throws Exception {
+        var body = gzip(JSON.getBytes(StandardCharsets.UTF_8));
+        var out = new ByteArrayOutputStream();
+        // FHCRC, FEXTRA, FNAME and FCOMMENT are set in the flags.
+        out.write(new byte[] {0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 3});
+        out.write(new byte[] {3, 0, 'a', 'b', 'c'});
+        out.write("pets.json\0".getBytes(StandardCharsets.ISO_8859_1));
+        out.write("comment\0".getBytes(StandardCharsets.ISO_8859_1));
+        out.write(new byte[] {0, 0});
+        out.write(body, 10, body.length - 10);
+        var buffers = decode("gzip", out.toByteArray(), 3);
+        Assert.assertEquals(JSON, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
+        close(buffers);
+    }
+
+    @Test
+    public void testDecodeDeflate() throws Exception {
+        var out = new ByteArrayOutputStream();
+        try (var deflater = new DeflaterOutputStream(out)) {
+            deflater.write(JSON.getBytes(StandardCharsets.UTF_8));
+        }
+        var buffers = decode("deflate", out.toByteArray(), 1000);
+        Assert.assertEquals(JSON, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
+        close(buffers);
+    }
+
+    @Test
+    public void testDecodeRawDeflate() throws Exception {
+        var out = new ByteArrayOutputStream();
+        // the raw deflate data without the zlib header and the adler32 trailer.
+        try (var deflater = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, true))) {
+            deflater.write(JSON.getBytes(StandardCharsets.UTF_8));
+        }
+        var compressed = out.toByteArray();
+        for (int chunk : new int[] {1, 1000, compressed.length}) {
+            var buffers = decode("deflate", compressed, chunk);
+            Assert.assertEquals(JSON, BuffersUtils.toString(buffers, StandardCharsets.UTF_8));
+            close(buffers);
+        }
+    }
+
+    @Test
+    public void testEmptyBody() throws Exception {
+        // the response of a HEAD request or a 204 or 304 has the Content-Encoding but no body.
+        for (var encoding : new String[] {"gzip", "deflate"}) {
+            var codec = new ContentCodec(encoding, POOL, 16);
+            codec.decode(ByteBuffer.allocate(0));
+            Assert.assertFalse(codec.hasContent());
+            Assert.assertEquals(0, BuffersUtils.remaining(codec.finish()));
+        }
+    }
+
+    @Test
+    public void testCorruptOrTruncatedGzip() throws Exception {
+        var compressed = gzip(JSON.getBytes(StandardCharsets.UTF_8));
+        compressed[compressed.length - 8] ^= 1;
+        try {
+            decode("gzip", compressed, 4096);
+            Assert.fail();
+        } catch (ZipException e) {
+            Assert.assertEquals("Corrupt GZIP trailer", e.getMessage());
+        }
+
+        var truncated = new byte[compressed.length / 2];
+        System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+        try {
+            decode("gzip", truncated, 4096);
+            Assert.fail();
+        } catch (ZipException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Unexpected end"));
+        }
+    }
+
+    @Test
+    public void testEncode() throws Exception {
+        for (var encoding : new String[] {"gzip", "deflate"}) {
+            var buffers = ContentCodec.encode(buffers(JSON.getBytes(StandardCharsets.UTF_8)), encoding, POOL, 1024);
+            var compressed = BuffersUtils.toByteArray(buffers);
+            close(buffers);
+            InputStream in = "gzip".equals(encoding) ? new GZIPInputStream(new java.io.ByteArrayInputStream(compressed))
+                    : new InflaterInputStream(new java.io.ByteArrayInputStream(compressed));
+            Assert.assertEquals(JSON, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testMaxBuffers() throws Exception {
+        var codec = new ContentCodec("gzip", POOL, 4);
+        try {
+            // 200KB of content doesn't fit in four 16KB buffers.
+            codec.decode(ByteBuffer.wrap(gzip(JSON.getBytes(StandardCharsets.UTF_8))));
+            Assert.fail();
+        } catch (IOException e) {
+            codec.release();
+        }
+    }
+
+    @Test
+    public void testNegotiate() {
+        Assert.assertEquals("gzip", ContentCodec.negotiate(accept("gzip, deflate, br"), "gzip"));
+        Assert.assertEquals("deflate", ContentCodec.negotiate(accept("gzip, deflate"), "deflate"));
+        Assert.assertEquals("deflate", ContentCodec.negotiate(accept("gzip;q=0, deflate;q=0.5"), "gzip"));
+        Assert.assertEquals("gzip", ContentCodec.negotiate(accept("*"), "gzip"));
+        Assert.assertNull(ContentCodec.negotiate(accept("identity"), "gzip"));
+        Assert.assertNull(ContentCodec.negotiate(null, "gzip"));
+
+        var headers = new HeaderMap();
+        headers.put(Headers.CONTENT_ENCODING, " GZIP ");
+        Assert.assertEquals("gzip", ContentCodec.decodableEncoding(headers.get(Headers.CONTENT_ENCODING)));
+        headers.put(Headers.CONTENT_ENCODING, "br");
+        Assert.assertNull(ContentCodec.decodableEncoding(headers.get(Headers.CONTENT_ENCODING)));
+    }
+
+    private static PooledByteBuffer[] decode(String encoding, byte[] compressed, int chunk) throws IOException {
+        var codec = new ContentCodec(encoding, POOL, 1024);
+        for (int offset = 0; offset < compressed.length; offset += chunk) {
+            var src = ByteBuffer.wrap(compressed, offset, Math.min(chunk, compressed.length - offset));
+            codec.decode(src);
+            Assert.assertFalse(src.hasRemaining());
+        }
+        return codec.finish();
+    }
+
+    private static io.undertow.util.HeaderValues accept(String value) {
+        var headers = new HeaderMap();
+        headers.put(Headers.ACCEPT_ENCODING, value);
+        return headers.get(Headers.ACCEPT_ENCODING);
+    }
+
+    static String json(int size) {
+        var sb = new StringBuilder("[");
+        for (int i = 0; sb.length() < size; i++)
+            sb.append("{\"id\":").append(i).append(",\"name\":\"pet").append(i).append("\",\"tag\":\"").append(i % 3 == 0 ? "dog" : "cat").append("\"},");
+        sb.setLength(sb.length() - 1);
+        return sb.append(']').toString();
+    }
+
+    static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static PooledByteBuffer[] buffers(byte[] bytes) {
+        var buffers = new PooledByteBuffer[bytes.length / POOL.getBufferSize() + 1];
+        for (int i = 0, offset = 0; offset < bytes.length; i++) {
+            buffers[i] = POOL.allocate();
+            int length = Math.min(buffers[i].getBuffer().remaining(), bytes.length - offset);
+            buffers[i].getBuffer().put(bytes, offset, length).flip();
+            offset += length;
+        }
+        return buffers;
+    }
+
+    private static void close(PooledByteBuffer[] buffers) {
+        for (var buffer : buffers) if (buffer != null) buffer.close();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.handler.conduit;
+
+import com.networknt.config.Config;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xnio.Options;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Send the responses buffered by the ModifiableContentSinkConduit to the HTTP/2 clients that read them slowly, so
+ * the writes are held by the flow control of the clients, and sample the busy worker threads of the server.
+ */
+public class ModifiableContentSinkConduitTest {
+    private static final int PORT = 7443;
+    private static final int CLIENTS = 8;
+    private static final int RESPONSE_SIZE = 1024 * 1024;
+    private static final int READ_SIZE = 16 * 1024;
+    private static final long READ_INTERVAL = 20;
+
+    private static final byte[] body = new byte[RESPONSE_SIZE];
+    private static final AtomicInteger started = new AtomicInteger();
+    private static Undertow server;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        // the client sends the window updates of the stream as the response is read.
+        System.setProperty("jdk.httpclient.windowsize", String.valueOf(READ_SIZE * 4));
+        System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+        Arrays.fill(body, (byte) 'a');
+        server = Undertow.builder()
+                .setServerOption(UndertowOptions.ENABLE_HTTP2, true)
+                .setWorkerOption(Options.WORKER_TASK_CORE_THREADS, CLIENTS * 2)
+                .setWorkerOption(Options.WORKER_TASK_MAX_THREADS, CLIENTS * 2)
+                .addHttpsListener(PORT, "localhost", createSSLContext())
+                .setHandler(exchange -> {
+                    exchange.addResponseWrapper((factory, currentExchange) -> new ModifiableContentSinkConduit(factory.create(), currentExchange));
+                    exchange.getResponseSender().send(ByteBuffer.wrap(body));
+                })
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void testSlowClients() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        List<CompletableFuture<Integer>> reads = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            reads.add(CompletableFuture.supplyAsync(ModifiableContentSinkConduitTest::readSlowly, executor));
+        }
+        int busy = 0;
+        int samples = 0;
+        while (!CompletableFuture.allOf(reads.toArray(new CompletableFuture[0])).isDone()) {
+            Thread.sleep(50);
+            // the TLS handshakes are delegated to the worker threads, so only sample when all the responses are started.
+            if (started.get() == CLIENTS) {
+                busy = Math.max(busy, server.getWorker().getMXBean().getBusyWorkerThreadCount());
+                samples++;
+            }
+        }
+        System.out.println(String.format("%d slow clients read %d bytes each, max busy worker threads %d in %d samples", CLIENTS, RESPONSE_SIZE, busy, samples));
+        executor.shutdown();
+        for (CompletableFuture<Integer> read : reads) Assert.assertEquals(RESPONSE_SIZE, (int) read.get());
+        // the responses are written on the IO threads when the clients are ready.
+        Assert.assertTrue(samples > 0);
+        Assert.assertEquals(0, busy);
+    }
+
+    private static int readSlowly() {
+        try {
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).sslContext(trustAllContext()).build();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("https://localhost:" + PORT + "/v1/pets")).build();
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            Assert.assertEquals(HttpClient.Version.HTTP_2, response.version());
+            Assert.assertEquals("true", response.headers().firstValue("X-Intercepted").orElse(null));
+            started.incrementAndGet();
+            int total = 0;
+            byte[] buffer = new byte[READ_SIZE];
+            try (InputStream in = response.body()) {
+                int read;
+                while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                    total += read;
+                    TimeUnit.MILLISECONDS.sleep(READ_INTERVAL);
+                }
+            }
+            return total;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static SSLContext createSSLContext() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        try (InputStream stream = Config.getInstance().getInputStreamFromFile("server.keystore")) {
+            keyStore.load(stream, "password".toCharArray());
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, "password".toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+        return sslContext;
+    }
+
+    private static SSLContext trustAllContext() throws Exception {
+        SSLContext sslContext = SSLContext.getInstance("TLSv1.2");
+        sslContext.init(null, new TrustManager[] {new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return sslContext;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.handler.conduit;
+
+import com.networknt.handler.MiddlewareHandler;
+import com.networknt.handler.ResponseInterceptor;
+import io.undertow.Undertow;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * An interceptor replaces the buffered response with the setBuffer, and the new body is larger than
+ * the original response or the original response is empty. The response that is written in several chunks is
+ * buffered in the free space of the last buffer before the next buffer is allocated, and the compressed response
+ * without a body is passed through.
+ */
+public class ResponseBodyTransferTest {
+    private static final int PORT = 7445;
+    private static final String LARGE_BODY = "{\"pets\":\"" + "x".repeat(100 * 1024) + "\"}";
+    private static final String[] CHUNKS = {"a".repeat(100), "b".repeat(100), "c".repeat(100)};
+
+    private static Undertow server;
+    /* the remaining bytes of the buffers when the chunks are intercepted, the headers are already sent by the flush. */
+    private static volatile String buffers;
+
+    @BeforeClass
+    public static void setUp() {
+        ResponseInterceptor[] interceptors = {new ReplaceBodyInterceptor()};
+        server = Undertow.builder()
+                .addHttpListener(PORT, "localhost")
+                .setHandler(exchange -> {
+                    exchange.addResponseWrapper((factory, currentExchange) -> new ModifiableContentSinkConduit(factory.create(), currentExchange, interceptors));
+                    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                    if (exchange.getRequestPath().equals("/empty")) {
+                        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, 0);
+                        exchange.endExchange();
+                    } else if (exchange.getRequestPath().equals("/no-content")) {
+                        exchange.getResponseHeaders().put(Headers.CONTENT_ENCODING, "gzip");
+                        exchange.setStatusCode(204);
+                        exchange.endExchange();
+                    } else if (exchange.getRequestPath().equals("/chunks")) {
+                        exchange.dispatch(() -> {
+                            exchange.startBlocking();
+                            try (var out = exchange.getOutputStream()) {
+                                for (var chunk : CHUNKS) {
+                                    out.write(chunk.getBytes(StandardCharsets.UTF_8));
+                                    out.flush();
+                                }
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            exchange.endExchange();
+                        });
+                    } else {
+                        exchange.getResponseSender().send("{}");
+                    }
+                })
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    public void testLargerBody() throws Exception {
+        var response = send("/small");
+        Assert.assertEquals(LARGE_BODY, response.body());
+        Assert.assertEquals(String.valueOf(LARGE_BODY.length()), response.headers().firstValue(Headers.CONTENT_LENGTH_STRING).orElse(null));
+    }
+
+    @Test
+    public void testEmptyResponse() throws Exception {
+        var response = send("/empty");
+        Assert.assertEquals(LARGE_BODY, response.body());
+        Assert.assertEquals(String.valueOf(LARGE_BODY.length()), response.headers().firstValue(Headers.CONTENT_LENGTH_STRING).orElse(null));
+    }
+
+    @Test
+    public void testMultipleWrites() throws Exception {
+        var response = send("/chunks");
+        Assert.assertEquals(String.join("", CHUNKS), response.body());
+        // the three writes are appended to the same buffer.
+        Assert.assertEquals("300", buffers);
+    }
+
+    @Test
+    public void testCompressedResponseWithoutBody() throws Exception {
+        var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + "/no-content")).build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(204, response.statusCode());
+        Assert.assertEquals("gzip", response.headers().firstValue(Headers.CONTENT_ENCODING_STRING).orElse(null));
+        Assert.assertEquals("", response.body());
+    }
+
+    private static HttpResponse<String> send(String path) throws Exception {
+        var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        var request = HttpRequest.newBuilder(URI.create("http://localhost:" + PORT + path)).build();
+        var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        Assert.assertEquals(200, response.statusCode());
+        return response;
+    }
+
+    private static class ReplaceBodyInterceptor implements ResponseInterceptor {
+        private volatile HttpHandler next;
+
+        @Override
+        public HttpHandler getNext() {
+            return next;
+        }
+
+        @Override
+        public MiddlewareHandler setNext(HttpHandler next) {
+            this.next = next;
+            return this;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void register() {
+        }
+
+        @Override
+        public boolean isRequiredContent() {
+            return true;
+        }
+
+        @Override
+        public void handleRequest(HttpServerExchange exchange) {
+            if (exchange.getRequestPath().equals("/no-content")) {
+                return;
+            }
+            if (exchange.getRequestPath().equals("/chunks")) {
+                buffers = Arrays.stream(getBuffer(exchange))
+                        .filter(Objects::nonNull)
+                        .map(buffer -> String.valueOf(buffer.getBuffer().remaining()))
+                        .collect(Collectors.joining(","));
+                return;
+            }
+            setBuffer(exchange, ByteBuffer.wrap(LARGE_BODY.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
 import com.networknt.config.JsonMapper;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,7 @@ public class HeaderConfig {
     List<String> responseRemoveList;
     Map<String, Object> responseUpdateMap;
     Map<String, Object> pathPrefixHeader;
+    PathPrefixTrie<Object> pathPrefixHeaderTrie = PathPrefixTrie.empty();
     private Config config;
     private Map<String, Object> mappedConfig;
 
@@ -76,6 +78,14 @@ public class HeaderConfig {
 
     public void setPathPrefixHeader(Map<String, Object> pathPrefixHeader) {
         this.pathPrefixHeader = pathPrefixHeader;
+        this.pathPrefixHeaderTrie = PathPrefixTrie.of(pathPrefixHeader);
+    }
+
+    /**
+     * @return the trie of the path prefixes in the pathPrefixHeader that is rebuilt when the config is loaded.
+     */
+    public PathPrefixTrie<Object> getPathPrefixHeaderTrie() {
+        return pathPrefixHeaderTrie;
     }
 
     private void setConfigData() {
@@ -269,5 +279,6 @@ public class HeaderConfig {
                 }
             }
         }
+        pathPrefixHeaderTrie = PathPrefixTrie.of(pathPrefixHeader);
     }
 }
@@ -156,7 +156,7 @@ public class ExternalServiceHandler implements MiddlewareHandler {
                         request = builder.DELETE().build();
                     } else if(method.equalsIgnoreCase("POST")) {
                         // if body handler is in the chain before this handler, we should have it in the exchange attachment.
-                        String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+                        String bodyString = BuffersUtils.getRequestBodyString(exchange);
                         if(bodyString == null) {
                             if(logger.isTraceEnabled()) logger.trace("The request bodyString is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
                             // check if there is a stream body in the exchange.
@@ -175,7 +175,7 @@ public class ExternalServiceHandler implements MiddlewareHandler {
                             request = builder.POST(HttpRequest.BodyPublishers.ofString(bodyString)).build();
                         }
                     } else if(method.equalsIgnoreCase("PUT")) {
-                        String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+                        String bodyString = BuffersUtils.getRequestBodyString(exchange);
                         if(bodyString == null) {
                             if(logger.isTraceEnabled()) logger.trace("The request bodyString is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
                             PooledByteBuffer[] buffer = exchange.getAttachment(AttachmentConstants.BUFFERED_REQUEST_DATA_KEY);
@@ -193,7 +193,7 @@ public class ExternalServiceHandler implements MiddlewareHandler {
                             request = builder.PUT(HttpRequest.BodyPublishers.ofString(bodyString)).build();
                         }
                     } else if(method.equalsIgnoreCase("PATCH")) {
-                        String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+                        String bodyString = BuffersUtils.getRequestBodyString(exchange);
                         if(bodyString == null) {
                             if(logger.isTraceEnabled()) logger.trace("The request bodyString is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
                             PooledByteBuffer[] buffer = exchange.getAttachment(AttachmentConstants.BUFFERED_REQUEST_DATA_KEY);
@@ -8,6 +8,7 @@ import com.networknt.client.ssl.TLSConfig;
 import com.networknt.config.Config;
 import com.networknt.config.JsonMapper;
 import com.networknt.config.TlsUtil;
+import com.networknt.handler.BuffersUtils;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.handler.config.UrlRewriteRule;
@@ -258,7 +259,7 @@ public class MrasHandler implements MiddlewareHandler {
             }
             request = builder.build();
         } else if(method.equalsIgnoreCase("POST")) {
-            String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+            String bodyString = BuffersUtils.getRequestBodyString(exchange);
             if(bodyString == null && logger.isDebugEnabled()) logger.debug("The request body is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
             HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(new URI(serviceHost + requestPath))
@@ -270,7 +271,7 @@ public class MrasHandler implements MiddlewareHandler {
             }
             request = builder.build();
         } else if(method.equalsIgnoreCase("PUT")) {
-            String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+            String bodyString = BuffersUtils.getRequestBodyString(exchange);
             if(bodyString == null && logger.isDebugEnabled()) logger.debug("The request body is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
             HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(new URI(serviceHost + requestPath))
@@ -282,7 +283,7 @@ public class MrasHandler implements MiddlewareHandler {
             }
             request = builder.build();
         } else if(method.equalsIgnoreCase("PATCH")) {
-            String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+            String bodyString = BuffersUtils.getRequestBodyString(exchange);
             if(bodyString == null && logger.isDebugEnabled()) logger.debug("The request body is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
             HttpRequest.Builder builder = HttpRequest.newBuilder()
                     .uri(new URI(serviceHost + requestPath))
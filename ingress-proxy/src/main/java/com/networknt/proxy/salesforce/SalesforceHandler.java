@@ -8,6 +8,7 @@ import com.networknt.client.ssl.TLSConfig;
 import com.networknt.config.Config;
 import com.networknt.config.JsonMapper;
 import com.networknt.config.TlsUtil;
+import com.networknt.handler.BuffersUtils;
 import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.handler.config.UrlRewriteRule;
@@ -405,7 +406,7 @@ public class SalesforceHandler implements MiddlewareHandler {
                     .build();
 
         } else if(method.equalsIgnoreCase("POST")) {
-            String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+            String bodyString = BuffersUtils.getRequestBodyString(exchange);
             if(bodyString == null) {
                 if(logger.isTraceEnabled()) logger.trace("The request body is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
             } else {
@@ -417,7 +418,7 @@ public class SalesforceHandler implements MiddlewareHandler {
                     .POST(bodyString == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(bodyString))
                     .build();
         } else if(method.equalsIgnoreCase("PUT")) {
-            String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+            String bodyString = BuffersUtils.getRequestBodyString(exchange);
             if(bodyString == null) {
                 if(logger.isTraceEnabled()) logger.trace("The request body is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
             } else {
@@ -429,7 +430,7 @@ public class SalesforceHandler implements MiddlewareHandler {
                     .PUT(bodyString == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(bodyString))
                     .build();
         } else if(method.equalsIgnoreCase("PATCH")) {
-            String bodyString = exchange.getAttachment(AttachmentConstants.REQUEST_BODY_STRING);
+            String bodyString = BuffersUtils.getRequestBodyString(exchange);
             if(bodyString == null) {
                 if(logger.isTraceEnabled()) logger.trace("The request body is null and the request path might be missing in request-injection.appliedBodyInjectionPathPrefixes.");
             } else {
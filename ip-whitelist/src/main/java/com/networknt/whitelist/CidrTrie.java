@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.whitelist;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable Patricia trie of the IP rules of a path prefix for one address family that finds the first rule in
+ * the config that matches an address.
+ *
+ * Each exact, wildcard or slash rule with a contiguous mask is a CIDR range in the trie, and the node of the range
+ * keeps the position of its first rule in the list. The lookup walks the bits of the address from the root once and
+ * takes the smallest position of the ranges on the way, so it visits at most 32 or 128 bits regardless the number of
+ * the rules. A wildcard with a non-contiguous mask like 10.*.1.* can't be a range in the trie, and these rules are
+ * checked one by one only when they are before the rule that is found in the trie.
+ */
+final class CidrTrie {
+    private final int length;
+    private final WhitelistHandler.PeerMatch[] rules;
+    private final Node root;
+    private final int[] others;
+
+    /**
+     * Build the trie of the rules in the order of the config.
+     *
+     * @param rules the rules of the address family
+     * @param length the number of bytes of the address, 4 for IPv4 and 16 for IPv6
+     */
+    CidrTrie(List<WhitelistHandler.PeerMatch> rules, int length) {
+        this.length = length;
+        this.rules = rules.toArray(new WhitelistHandler.PeerMatch[0]);
+        this.root = new Node(new byte[length], 0);
+        List<Integer> others = new ArrayList<>();
+        for (int i = 0; i < this.rules.length; i++) {
+            byte[] mask = this.rules[i].getMask();
+            byte[] prefix = this.rules[i].getPrefix();
+            if (mask.length != length || prefix.length != length || !inMask(prefix, mask)) {
+                // the rule doesn't match any address of the family.
+                continue;
+            }
+            int bits = prefixLength(mask);
+            if (bits < 0) {
+                others.add(i);
+            } else {
+                insert(prefix, bits, i);
+            }
+        }
+        this.others = others.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @param address the address of the peer
+     * @return the first rule that matches the address, or null if no rule matches it
+     */
+    WhitelistHandler.PeerMatch match(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (bytes == null || bytes.length != length) return null;
+        int first = Integer.MAX_VALUE;
+        Node node = root;
+        int from = 0;
+        while (node != null && matches(node.key, from, node.bits, bytes)) {
+            if (node.rule < first) first = node.rule;
+            if (node.bits == length * 8) break;
+            from = node.bits;
+            node = bit(bytes, from) == 0 ? node.zero : node.one;
+        }
+        for (int i : others) {
+            if (i >= first) break;
+            if (rules[i].matches(address)) return rules[i];
+        }
+        return first == Integer.MAX_VALUE ? null : rules[first];
+    }
+
+    private void insert(byte[] prefix, int bits, int rule) {
+        Node node = root;
+        while (true) {
+            if (node.bits == bits) {
+                // only the first rule of the same range is used.
+                if (rule < node.rule) node.rule = rule;
+                return;
+            }
+            int b = bit(prefix, node.bits);
+            Node child = b == 0 ? node.zero : node.one;
+            Node replace;
+            if (child == null) {
+                replace = new Node(truncate(prefix, bits), bits);
+                replace.rule = rule;
+            } else {
+                int common = commonLength(child.key, prefix, node.bits, Math.min(child.bits, bits));
+                if (common == child.bits) {
+                    node = child;
+                    continue;
+                }
+                // split the edge to the child at the first different bit or at the end of the new range.
+                replace = new Node(truncate(prefix, common), common);
+                replace.set(bit(child.key, common), child);
+                if (common == bits) {
+                    replace.rule = rule;
+                } else {
+                    Node leaf = new Node(truncate(prefix, bits), bits);
+                    leaf.rule = rule;
+                    replace.set(bit(prefix, common), leaf);
+                }
+            }
+            node.set(b, replace);
+            return;
+        }
+    }
+
+    /**
+     * @return the number of the leading ones of the mask, or -1 if the mask is not contiguous
+     */
+    private static int prefixLength(byte[] mask) {
+        int bits = 0;
+        while (bits < mask.length * 8 && bit(mask, bits) == 1) bits++;
+        for (int i = bits; i < mask.length * 8; i++) {
+            if (bit(mask, i) == 1) return -1;
+        }
+        return bits;
+    }
+
+    /**
+     * The rule compares the masked address with the prefix, so a prefix with a bit outside the mask never matches.
+     */
+    private static boolean inMask(byte[] prefix, byte[] mask) {
+        for (int i = 0; i < prefix.length; i++) {
+            if ((prefix[i] & ~mask[i]) != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compare the bits of the key and the address from the end of the parent to the end of the node.
+     */
+    private static boolean matches(byte[] key, int from, int to, byte[] address) {
+        int i = from >>> 3;
+        int end = to >>> 3;
+        for (; i < end; i++) {
+            if (key[i] != address[i]) return false;
+        }
+        int rest = to & 7;
+        if (rest == 0) return true;
+        int mask = (0xFF << (8 - rest)) & 0xFF;
+        return ((key[end] ^ address[end]) & mask) == 0;
+    }
+
+    private static int commonLength(byte[] a, byte[] b, int from, int to) {
+        int i = from;
+        while (i < to && bit(a, i) == bit(b, i)) i++;
+        return i;
+    }
+
+    private static byte[] truncate(byte[] prefix, int bits) {
+        byte[] key = new byte[prefix.length];
+        int full = bits >>> 3;
+        System.arraycopy(prefix, 0, key, 0, full);
+        int rest = bits & 7;
+        if (rest != 0) key[full] = (byte) (prefix[full] & (0xFF << (8 - rest)));
+        return key;
+    }
+
+    private static int bit(byte[] bytes, int index) {
+        return (bytes[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    private static final class Node {
+        final byte[] key;
+        final int bits;
+        int rule = Integer.MAX_VALUE;
+        Node zero;
+        Node one;
+
+        Node(byte[] key, int bits) {
+            this.key = key;
+            this.bits = bits;
+        }
+
+        void set(int bit, Node child) {
+            if (bit == 0) zero = child; else one = child;
+        }
+    }
+}
@@ -16,12 +16,15 @@
 
 package com.networknt.whitelist;
 
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.List;
 
 public class IpAcl {
     private List<WhitelistHandler.PeerMatch> ipv6acl = new ArrayList<>();
     private List<WhitelistHandler.PeerMatch> ipv4acl = new ArrayList<>();
+    private volatile CidrTrie ipv6Trie;
+    private volatile CidrTrie ipv4Trie;
 
     public List<WhitelistHandler.PeerMatch> getIpv6acl() {
         return ipv6acl;
@@ -29,6 +32,7 @@ public class IpAcl {
 
     public void setIpv6acl(List<WhitelistHandler.PeerMatch> ipv6acl) {
         this.ipv6acl = ipv6acl;
+        this.ipv6Trie = null;
     }
 
     public List<WhitelistHandler.PeerMatch> getIpv4acl() {
@@ -37,5 +41,35 @@ public class IpAcl {
 
     public void setIpv4acl(List<WhitelistHandler.PeerMatch> ipv4acl) {
         this.ipv4acl = ipv4acl;
+        this.ipv4Trie = null;
+    }
+
+    /**
+     * Build the tries of the rules. It is called by the config after all the rules of the path prefix are added, so
+     * that the first request doesn't build them.
+     */
+    void build() {
+        ipv4Trie = new CidrTrie(ipv4acl, 4);
+        ipv6Trie = new CidrTrie(ipv6acl, 16);
+    }
+
+    /**
+     * @param address the IPv4 address of the peer
+     * @return the first rule in the ipv4acl that matches the address or null
+     */
+    WhitelistHandler.PeerMatch matchIpv4(InetAddress address) {
+        CidrTrie trie = ipv4Trie;
+        if (trie == null) ipv4Trie = trie = new CidrTrie(ipv4acl, 4);
+        return trie.match(address);
+    }
+
+    /**
+     * @param address the IPv6 address of the peer
+     * @return the first rule in the ipv6acl that matches the address or null
+     */
+    WhitelistHandler.PeerMatch matchIpv6(InetAddress address) {
+        CidrTrie trie = ipv6Trie;
+        if (trie == null) ipv6Trie = trie = new CidrTrie(ipv6acl, 16);
+        return trie.match(address);
     }
 }
@@ -22,6 +22,7 @@ package com.networknt.whitelist;
 import com.networknt.config.Config;
 import com.networknt.config.ConfigException;
 import com.networknt.config.JsonMapper;
+import com.networknt.utility.PathPrefixTrie;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnio.Bits;
@@ -72,6 +73,7 @@ public class WhitelistConfig {
     boolean enabled;
     boolean defaultAllow;
     Map<String, IpAcl> prefixAcl = new HashMap<>();
+    volatile PathPrefixTrie<IpAcl> prefixAclTrie = PathPrefixTrie.empty();
     private Config config;
     private Map<String, Object> mappedConfig;
 
@@ -124,6 +126,13 @@ public class WhitelistConfig {
         return prefixAcl;
     }
 
+    /**
+     * @return the trie of the path prefixes in the prefixAcl that is rebuilt when the paths are set.
+     */
+    public PathPrefixTrie<IpAcl> getPrefixAclTrie() {
+        return prefixAclTrie;
+    }
+
     public Map<String, Object> getMappedConfig() {
         return mappedConfig;
     }
@@ -165,33 +174,44 @@ public class WhitelistConfig {
         }
     }
 
+    /**
+     * Build the rules and the tries of all the paths and then swap them in, so that a request during the reload
+     * uses either the old rules or the new rules of a path prefix.
+     *
+     * @param paths a map of the path prefix and the list of the IP patterns
+     */
     public void setPaths(Map<String, Object> paths) {
+        Map<String, IpAcl> acl = new HashMap<>();
         for(Map.Entry<String, Object> entry: paths.entrySet()) {
+            IpAcl ipAcl = acl.computeIfAbsent(entry.getKey(), k -> new IpAcl());
             for(String peer: (List<String>)entry.getValue()) {
-                addRule(entry.getKey(), peer, !this.defaultAllow);
+                addRule(ipAcl, peer, !this.defaultAllow);
             }
         }
+        acl.values().forEach(IpAcl::build);
+        prefixAcl = acl;
+        prefixAclTrie = PathPrefixTrie.of(acl);
     }
 
-    private void addRule(final String pathPrefix, final String peer, final boolean deny) {
+    private void addRule(final IpAcl ipAcl, final String peer, final boolean deny) {
         if (IP4_EXACT.matcher(peer).matches()) {
-            addIpV4ExactMatch(pathPrefix, peer, deny);
+            addIpV4ExactMatch(ipAcl, peer, deny);
         } else if (IP4_WILDCARD.matcher(peer).matches()) {
-            addIpV4WildcardMatch(pathPrefix, peer, deny);
+            addIpV4WildcardMatch(ipAcl, peer, deny);
         } else if (IP4_SLASH.matcher(peer).matches()) {
-            addIpV4SlashPrefix(pathPrefix, peer, deny);
+            addIpV4SlashPrefix(ipAcl, peer, deny);
         } else if (IP6_EXACT.matcher(peer).matches()) {
-            addIpV6ExactMatch(pathPrefix, peer, deny);
+            addIpV6ExactMatch(ipAcl, peer, deny);
         } else if (IP6_WILDCARD.matcher(peer).matches()) {
-            addIpV6WildcardMatch(pathPrefix, peer, deny);
+            addIpV6WildcardMatch(ipAcl, peer, deny);
         } else if (IP6_SLASH.matcher(peer).matches()) {
-            addIpV6SlashPrefix(pathPrefix, peer, deny);
+            addIpV6SlashPrefix(ipAcl, peer, deny);
         } else {
             throw new RuntimeException("InvalidIpPattern:" + peer);
         }
     }
 
-    private void addIpV6SlashPrefix(final String pathPrefix, final String peer, final boolean deny) {
+    private void addIpV6SlashPrefix(final IpAcl ipAcl, final String peer, final boolean deny) {
         String[] components = peer.split("\\/");
         String[] parts = components[0].split("\\:");
         int maskLen = Integer.parseInt(components[1]);
@@ -217,15 +237,10 @@ public class WhitelistConfig {
                 break;
             }
         }
-        IpAcl ipAcl = prefixAcl.get(pathPrefix);
-        if(ipAcl == null) {
-            ipAcl = new IpAcl();
-            prefixAcl.put(pathPrefix, ipAcl);
-        }
         ipAcl.getIpv6acl().add(new WhitelistHandler.PrefixIpV6PeerMatch(deny, peer, mask, pattern));
     }
 
-    private void addIpV4SlashPrefix(final String pathPrefix, final String peer, final boolean deny) {
+    private void addIpV4SlashPrefix(final IpAcl ipAcl, final String peer, final boolean deny) {
         String[] components = peer.split("\\/");
         String[] parts = components[0].split("\\.");
         int maskLen = Integer.parseInt(components[1]);
@@ -237,15 +252,10 @@ public class WhitelistConfig {
             int no = Integer.parseInt(part);
             prefix |= no;
         }
-        IpAcl ipAcl = prefixAcl.get(pathPrefix);
-        if(ipAcl == null) {
-            ipAcl = new IpAcl();
-            prefixAcl.put(pathPrefix, ipAcl);
-        }
         ipAcl.getIpv4acl().add(new WhitelistHandler.PrefixIpV4PeerMatch(deny, peer, mask, prefix));
     }
 
-    private void addIpV6WildcardMatch(final String pathPrefix, final String peer, final boolean deny) {
+    private void addIpV6WildcardMatch(final IpAcl ipAcl, final String peer, final boolean deny) {
         byte[] pattern = new byte[16];
         byte[] mask = new byte[16];
         String[] parts = peer.split("\\:");
@@ -259,15 +269,10 @@ public class WhitelistConfig {
                 mask[i * 2 + 1] = (byte) (0xFF);
             }
         }
-        IpAcl ipAcl = prefixAcl.get(pathPrefix);
-        if(ipAcl == null) {
-            ipAcl = new IpAcl();
-            prefixAcl.put(pathPrefix, ipAcl);
-        }
         ipAcl.getIpv6acl().add(new WhitelistHandler.PrefixIpV6PeerMatch(deny, peer, mask, pattern));
     }
 
-    private void addIpV4WildcardMatch(final String pathPrefix, final String peer, final boolean deny) {
+    private void addIpV4WildcardMatch(final IpAcl ipAcl, final String peer, final boolean deny) {
         String[] parts = peer.split("\\.");
         int mask = 0;
         int prefix = 0;
@@ -281,15 +286,10 @@ public class WhitelistConfig {
                 prefix |= no;
             }
         }
-        IpAcl ipAcl = prefixAcl.get(pathPrefix);
-        if(ipAcl == null) {
-            ipAcl = new IpAcl();
-            prefixAcl.put(pathPrefix, ipAcl);
-        }
         ipAcl.getIpv4acl().add(new WhitelistHandler.PrefixIpV4PeerMatch(deny, peer, mask, prefix));
     }
 
-    private void addIpV6ExactMatch(final String pathPrefix, final String peer, final boolean deny) {
+    private void addIpV6ExactMatch(final IpAcl ipAcl, final String peer, final boolean deny) {
         byte[] bytes = new byte[16];
         String[] parts = peer.split("\\:");
         assert parts.length == 8;
@@ -298,22 +298,12 @@ public class WhitelistConfig {
             bytes[i * 2] = (byte) (val >> 8);
             bytes[i * 2 + 1] = (byte) (val & 0xFF);
         }
-        IpAcl ipAcl = prefixAcl.get(pathPrefix);
-        if(ipAcl == null) {
-            ipAcl = new IpAcl();
-            prefixAcl.put(pathPrefix, ipAcl);
-        }
         ipAcl.getIpv6acl().add(new WhitelistHandler.ExactIpV6PeerMatch(deny, peer, bytes));
     }
 
-    private void addIpV4ExactMatch(final String pathPrefix, final String peer, final boolean deny) {
+    private void addIpV4ExactMatch(final IpAcl ipAcl, final String peer, final boolean deny) {
         String[] parts = peer.split("\\.");
         byte[] bytes = {(byte) Integer.parseInt(parts[0]), (byte) Integer.parseInt(parts[1]), (byte) Integer.parseInt(parts[2]), (byte) Integer.parseInt(parts[3])};
-        IpAcl ipAcl = prefixAcl.get(pathPrefix);
-        if(ipAcl == null) {
-            ipAcl = new IpAcl();
-            prefixAcl.put(pathPrefix, ipAcl);
-        }
         ipAcl.getIpv4acl().add(new WhitelistHandler.ExactIpV4PeerMatch(deny, peer, bytes));
     }
 
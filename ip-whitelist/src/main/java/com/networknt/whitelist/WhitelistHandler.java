@@ -31,7 +31,6 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
-import java.util.Map;
 
 public class WhitelistHandler implements MiddlewareHandler {
     private static final Logger logger = LoggerFactory.getLogger(WhitelistHandler.class);
@@ -103,12 +102,7 @@ public class WhitelistHandler implements MiddlewareHandler {
     }
 
     IpAcl findIpAcl(String reqPath) {
-        for(Map.Entry<String, IpAcl> entry: config.getPrefixAcl().entrySet()) {
-            if(reqPath.startsWith(entry.getKey())) {
-                return entry.getValue();
-            }
-        }
-        return null;
+        return config.getPrefixAclTrie().match(reqPath);
     }
     boolean isAllowed(InetAddress address, String reqPath) {
         boolean isWhitelisted = false;
@@ -116,11 +110,10 @@ public class WhitelistHandler implements MiddlewareHandler {
             IpAcl ipAcl = findIpAcl(reqPath);
             if(ipAcl != null) {
                 if(logger.isTraceEnabled()) logger.trace("IPv4 address and found a prefix entry for the request path");
-                for (PeerMatch rule : ipAcl.getIpv4acl()) {
-                    if (rule.matches(address)) {
-                        if(logger.isTraceEnabled()) logger.trace("Found matched rule for address and rule isAllow {}", !rule.isDeny());
-                        return !rule.isDeny();
-                    }
+                PeerMatch rule = ipAcl.matchIpv4(address);
+                if (rule != null) {
+                    if(logger.isTraceEnabled()) logger.trace("Found matched rule for address and rule isAllow {}", !rule.isDeny());
+                    return !rule.isDeny();
                 }
                 // the path is defined but the IP is not in the list. Will allow if defaultAllow is false and will reject is defaultAllow is true
                 return !config.defaultAllow;
@@ -129,11 +122,10 @@ public class WhitelistHandler implements MiddlewareHandler {
             IpAcl ipAcl = findIpAcl(reqPath);
             if(ipAcl != null) {
                 if(logger.isTraceEnabled()) logger.trace("IPv6 address {} and found a prefix entry for the request path {}", address, reqPath);
-                for (PeerMatch rule : ipAcl.getIpv6acl()) {
-                    if (rule.matches(address)) {
-                        if(logger.isTraceEnabled()) logger.trace("Found matched rule for address and rule isAllow {}", !rule.isDeny());
-                        return !rule.isDeny();
-                    }
+                PeerMatch rule = ipAcl.matchIpv6(address);
+                if (rule != null) {
+                    if(logger.isTraceEnabled()) logger.trace("Found matched rule for address and rule isAllow {}", !rule.isDeny());
+                    return !rule.isDeny();
                 }
                 // the path is defined but the IP is not in the list. Will allow if defaultAllow is false and will reject is defaultAllow is true
                 return !config.defaultAllow;
@@ -157,6 +149,16 @@ public class WhitelistHandler implements MiddlewareHandler {
 
         abstract boolean matches(final InetAddress address);
 
+        /**
+         * @return the mask of the address bytes that are compared with the prefix
+         */
+        abstract byte[] getMask();
+
+        /**
+         * @return the address bytes of the rule after the mask is applied
+         */
+        abstract byte[] getPrefix();
+
         boolean isDeny() {
             return deny;
         }
@@ -183,6 +185,18 @@ public class WhitelistHandler implements MiddlewareHandler {
         boolean matches(final InetAddress address) {
             return Arrays.equals(address.getAddress(), this.address);
         }
+
+        @Override
+        byte[] getMask() {
+            byte[] mask = new byte[address.length];
+            Arrays.fill(mask, (byte) 0xFF);
+            return mask;
+        }
+
+        @Override
+        byte[] getPrefix() {
+            return address;
+        }
     }
 
     static class ExactIpV6PeerMatch extends WhitelistHandler.PeerMatch {
@@ -198,6 +212,18 @@ public class WhitelistHandler implements MiddlewareHandler {
         boolean matches(final InetAddress address) {
             return Arrays.equals(address.getAddress(), this.address);
         }
+
+        @Override
+        byte[] getMask() {
+            byte[] mask = new byte[address.length];
+            Arrays.fill(mask, (byte) 0xFF);
+            return mask;
+        }
+
+        @Override
+        byte[] getPrefix() {
+            return address;
+        }
     }
 
     static class PrefixIpV4PeerMatch extends WhitelistHandler.PeerMatch {
@@ -220,6 +246,20 @@ public class WhitelistHandler implements MiddlewareHandler {
             int addressInt = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
             return (addressInt & mask) == prefix;
         }
+
+        @Override
+        byte[] getMask() {
+            return toBytes(mask);
+        }
+
+        @Override
+        byte[] getPrefix() {
+            return toBytes(prefix);
+        }
+
+        private static byte[] toBytes(int value) {
+            return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
     }
 
     static class PrefixIpV6PeerMatch extends WhitelistHandler.PeerMatch {
@@ -250,5 +290,15 @@ public class WhitelistHandler implements MiddlewareHandler {
             }
             return true;
         }
+
+        @Override
+        byte[] getMask() {
+            return mask;
+        }
+
+        @Override
+        byte[] getPrefix() {
+            return prefix;
+        }
     }
 }
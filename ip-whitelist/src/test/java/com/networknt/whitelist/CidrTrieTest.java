@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.whitelist;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class CidrTrieTest {
+    @Test
+    public void testFirstMatch() throws Exception {
+        List<WhitelistHandler.PeerMatch> rules = new ArrayList<>();
+        rules.add(slashV4(true, 10, 10, 1, 0, 24));
+        rules.add(slashV4(false, 10, 10, 0, 0, 16));
+        rules.add(exactV4(true, 10, 10, 2, 1));
+        // a non-contiguous wildcard 10.*.3.*
+        rules.add(new WhitelistHandler.PrefixIpV4PeerMatch(false, "10.*.3.*", 0xFF00FF00, 0x0A000300));
+        rules.add(slashV4(true, 0, 0, 0, 0, 0));
+        CidrTrie trie = new CidrTrie(rules, 4);
+        Assert.assertSame(rules.get(0), trie.match(v4(10, 10, 1, 5)));
+        Assert.assertSame(rules.get(1), trie.match(v4(10, 10, 2, 1)));
+        Assert.assertSame(rules.get(1), trie.match(v4(10, 10, 3, 1)));
+        Assert.assertSame(rules.get(3), trie.match(v4(10, 11, 3, 1)));
+        Assert.assertSame(rules.get(4), trie.match(v4(192, 168, 0, 1)));
+        Assert.assertNull(new CidrTrie(rules, 16).match(v4(10, 10, 1, 5)));
+        Assert.assertNull(new CidrTrie(new ArrayList<>(), 4).match(v4(10, 10, 1, 5)));
+    }
+
+    @Test
+    public void testRandomIpV4Rules() throws Exception {
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            List<WhitelistHandler.PeerMatch> rules = new ArrayList<>();
+            int count = 1 + random.nextInt(300);
+            for (int i = 0; i < count; i++) rules.add(randomV4Rule(random));
+            assertSameMatch(random, rules, 4);
+        }
+    }
+
+    @Test
+    public void testRandomIpV6Rules() throws Exception {
+        Random random = new Random(2);
+        for (int round = 0; round < 50; round++) {
+            List<WhitelistHandler.PeerMatch> rules = new ArrayList<>();
+            int count = 1 + random.nextInt(300);
+            for (int i = 0; i < count; i++) rules.add(randomV6Rule(random));
+            assertSameMatch(random, rules, 16);
+        }
+    }
+
+    /**
+     * Compare the lookup of the trie with the linear scan of the rules in the IpAcl for 10k CIDR ranges.
+     */
+    @Ignore
+    @Test
+    public void testLookupPerformance() throws Exception {
+        Random random = new Random(3);
+        for (int length : new int[] {4, 16}) {
+            List<WhitelistHandler.PeerMatch> rules = new ArrayList<>();
+            while (rules.size() < 10000) {
+                WhitelistHandler.PeerMatch rule = length == 4 ? randomV4Rule(random) : randomV6Rule(random);
+                if (rule instanceof WhitelistHandler.PrefixIpV4PeerMatch || rule instanceof WhitelistHandler.PrefixIpV6PeerMatch) {
+                    if (!rule.toString().contains("*")) rules.add(rule);
+                }
+            }
+            long start = System.nanoTime();
+            CidrTrie trie = new CidrTrie(rules, length);
+            long build = System.nanoTime() - start;
+            InetAddress[] addresses = new InetAddress[1024];
+            for (int i = 0; i < addresses.length; i++) addresses[i] = randomAddress(random, rules, length);
+
+            int linearLoop = 20000;
+            int trieLoop = 2000000;
+            long linear = 0;
+            long trieTime = 0;
+            int found = 0;
+            for (int run = 0; run < 3; run++) {
+                start = System.nanoTime();
+                for (int i = 0; i < linearLoop; i++) if (linearMatch(rules, addresses[i & 1023]) != null) found++;
+                linear = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < trieLoop; i++) if (trie.match(addresses[i & 1023]) != null) found++;
+                trieTime = System.nanoTime() - start;
+            }
+            Assert.assertTrue(found > 0);
+            System.out.println(String.format("10000 IPv%d ranges: build %.1f ms, linear scan %.1f ns/op, trie %.1f ns/op",
+                    length == 4 ? 4 : 6, build / 1e6, (double) linear / linearLoop, (double) trieTime / trieLoop));
+        }
+    }
+
+    private static void assertSameMatch(Random random, List<WhitelistHandler.PeerMatch> rules, int length) throws Exception {
+        CidrTrie trie = new CidrTrie(rules, length);
+        for (int i = 0; i < 2000; i++) {
+            InetAddress address = randomAddress(random, rules, length);
+            Assert.assertSame(address.toString(), linearMatch(rules, address), trie.match(address));
+        }
+    }
+
+    private static WhitelistHandler.PeerMatch linearMatch(List<WhitelistHandler.PeerMatch> rules, InetAddress address) {
+        for (WhitelistHandler.PeerMatch rule : rules) {
+            if (rule.matches(address)) return rule;
+        }
+        return null;
+    }
+
+    /**
+     * An address that is close to the prefix of a random rule, so that most of the addresses match a few rules.
+     */
+    private static InetAddress randomAddress(Random random, List<WhitelistHandler.PeerMatch> rules, int length) throws Exception {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        if (random.nextInt(10) > 0) {
+            byte[] prefix = rules.get(random.nextInt(rules.size())).getPrefix();
+            int keep = random.nextInt(length * 8 + 1);
+            for (int i = 0; i < keep; i++) {
+                int bit = 0x80 >>> (i & 7);
+                bytes[i >>> 3] = (byte) ((bytes[i >>> 3] & ~bit) | (prefix[i >>> 3] & bit));
+            }
+        }
+        return InetAddress.getByAddress(bytes);
+    }
+
+    private static WhitelistHandler.PeerMatch randomV4Rule(Random random) {
+        byte[] bytes = new byte[4];
+        // a few networks, so that the ranges are nested.
+        bytes[0] = (byte) (10 + random.nextInt(4));
+        bytes[1] = (byte) random.nextInt(8);
+        bytes[2] = (byte) random.nextInt(256);
+        bytes[3] = (byte) random.nextInt(256);
+        boolean deny = random.nextBoolean();
+        int address = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        switch (random.nextInt(4)) {
+            case 0:
+                return new WhitelistHandler.ExactIpV4PeerMatch(deny, "exact", bytes);
+            case 1:
+                int mask = 0;
+                for (int i = 0; i < 4; i++) mask = (mask << 8) | (random.nextBoolean() ? 0xFF : 0);
+                return new WhitelistHandler.PrefixIpV4PeerMatch(deny, "*", mask, address & mask);
+            default:
+                int maskLen = 1 + random.nextInt(32);
+                int slash = -1 << (32 - maskLen);
+                // the prefix of a pattern like 10.0.0.1/24 has the bits outside the mask and it never matches.
+                return new WhitelistHandler.PrefixIpV4PeerMatch(deny, "slash", slash, random.nextInt(20) == 0 ? address : address & slash);
+        }
+    }
+
+    private static WhitelistHandler.PeerMatch randomV6Rule(Random random) {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        bytes[0] = (byte) 0xFE;
+        bytes[1] = (byte) (0x80 + random.nextInt(4));
+        boolean deny = random.nextBoolean();
+        byte[] mask = new byte[16];
+        switch (random.nextInt(4)) {
+            case 0:
+                return new WhitelistHandler.ExactIpV6PeerMatch(deny, "exact", bytes);
+            case 1:
+                for (int i = 0; i < 8; i++) {
+                    if (random.nextBoolean()) {
+                        mask[i * 2] = (byte) 0xFF;
+                        mask[i * 2 + 1] = (byte) 0xFF;
+                    }
+                }
+                return new WhitelistHandler.PrefixIpV6PeerMatch(deny, "*", mask, and(bytes, mask));
+            default:
+                int maskLen = 1 + random.nextInt(128);
+                for (int i = 0; i < maskLen; i++) mask[i >>> 3] |= (byte) (0x80 >>> (i & 7));
+                return new WhitelistHandler.PrefixIpV6PeerMatch(deny, "slash", mask, random.nextInt(20) == 0 ? bytes : and(bytes, mask));
+        }
+    }
+
+    private static byte[] and(byte[] bytes, byte[] mask) {
+        byte[] result = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) result[i] = (byte) (bytes[i] & mask[i]);
+        return result;
+    }
+
+    private static WhitelistHandler.PeerMatch exactV4(boolean deny, int a, int b, int c, int d) {
+        return new WhitelistHandler.ExactIpV4PeerMatch(deny, a + "." + b + "." + c + "." + d, new byte[] {(byte) a, (byte) b, (byte) c, (byte) d});
+    }
+
+    private static WhitelistHandler.PeerMatch slashV4(boolean deny, int a, int b, int c, int d, int maskLen) {
+        int mask = maskLen == 0 ? 0 : -1 << (32 - maskLen);
+        int prefix = (a << 24) | (b << 16) | (c << 8) | d;
+        return new WhitelistHandler.PrefixIpV4PeerMatch(deny, a + "." + b + "." + c + "." + d + "/" + maskLen, mask, prefix);
+    }
+
+    private static InetAddress v4(int a, int b, int c, int d) throws Exception {
+        return InetAddress.getByAddress(new byte[] {(byte) a, (byte) b, (byte) c, (byte) d});
+    }
+}
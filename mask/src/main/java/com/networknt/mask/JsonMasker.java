@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.mask;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SegmentedStringWriter;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mask a JSON document in a single pass over the tokens of the parser. The tokens are copied to the generator, and
+ * the values that are found by the rules are replaced as they go, so the document is never built as a tree and the
+ * memory used only depends on the depth of the document.
+ *
+ * Only the simple json paths are supported. A path starts with $ and each segment selects one level of the document
+ * with a field name (.name or ['name']), an array index ([0]) or a wildcard (.* or [*]). A key with a path that uses
+ * deep scan, filters, slices or unions is masked with the JsonPath DocumentContext instead.
+ *
+ * The values are masked the same way as with the DocumentContext. A definite path masks a string or an integer, or
+ * each string in an array. A path with a wildcard masks the strings that it finds. The difference is that a path
+ * with a wildcard that also finds a value that is not a string still masks the strings, whereas the DocumentContext
+ * masks nothing and logs an error for such a path.
+ */
+class JsonMasker {
+    private static final int MAX_RULES = Long.SIZE;
+    private static final int INITIAL_DEPTH = 16;
+    private static final int WILDCARD_INDEX = -1;
+
+    private final MaskRules.JsonRule[] rules;
+    private final Segment[][] segments;
+    // the rules with a path without any wildcard.
+    private final long definite;
+    private final long all;
+
+    private JsonMasker(List<MaskRules.JsonRule> rules, List<Segment[]> segments) {
+        this.rules = rules.toArray(new MaskRules.JsonRule[0]);
+        this.segments = segments.toArray(new Segment[0][]);
+        long definiteRules = 0;
+        for (int i = 0; i < this.segments.length; i++) {
+            boolean isDefinite = true;
+            for (Segment segment : this.segments[i]) {
+                if (segment.isWildcard()) isDefinite = false;
+            }
+            if (isDefinite) definiteRules |= 1L << i;
+        }
+        this.definite = definiteRules;
+        this.all = this.rules.length == MAX_RULES ? -1L : (1L << this.rules.length) - 1;
+    }
+
+    /**
+     * @param rules the json rules of a key
+     * @return the masker of the rules, or null if a path of the rules is not supported.
+     */
+    static JsonMasker compile(List<MaskRules.JsonRule> rules) {
+        if (rules.size() > MAX_RULES) return null;
+        List<Segment[]> segments = new ArrayList<>();
+        for (MaskRules.JsonRule rule : rules) {
+            Segment[] path = parse(rule.path);
+            if (path == null || path.length == 0) return null;
+            segments.add(path);
+        }
+        return new JsonMasker(rules, segments);
+    }
+
+    /**
+     * Mask the document of the parser.
+     *
+     * @param factory the factory of the generator
+     * @param parser the parser of the document
+     * @return the masked document
+     * @throws IOException if the document is not valid
+     */
+    String mask(JsonFactory factory, JsonParser parser) throws IOException {
+        SegmentedStringWriter writer = new SegmentedStringWriter(new BufferRecycler());
+        try (JsonGenerator generator = factory.createGenerator(writer)) {
+            if (parser.nextToken() == null) throw new IOException("The json document is empty.");
+            copy(parser, generator);
+        }
+        return writer.getAndClear();
+    }
+
+    private void copy(JsonParser parser, JsonGenerator generator) throws IOException {
+        // the rules that have matched the path of the container at each depth, and the rules that have matched an
+        // array as a whole to mask its strings.
+        long[] alive = new long[INITIAL_DEPTH];
+        long[] elements = new long[INITIAL_DEPTH];
+        int[] indexes = new int[INITIAL_DEPTH];
+        boolean[] isArray = new boolean[INITIAL_DEPTH];
+        int depth = 0;
+        String name = null;
+        JsonToken token = parser.currentToken();
+        do {
+            if (token == JsonToken.FIELD_NAME) {
+                name = parser.getCurrentName();
+                generator.writeFieldName(name);
+                continue;
+            }
+            if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                depth--;
+                generator.copyCurrentEvent(parser);
+                continue;
+            }
+            // a value at the level of depth in the document. The root matches the $ of all the rules.
+            long matched;
+            long inherited = 0;
+            if (depth == 0) {
+                matched = all;
+            } else {
+                int level = depth - 1;
+                int index = isArray[level] ? indexes[level]++ : WILDCARD_INDEX;
+                matched = match(alive[level], level, isArray[level] ? null : name, index);
+                if (isArray[level]) inherited = elements[level];
+            }
+            // the rules whose path ends at this value.
+            long complete = depth == 0 ? 0 : complete(matched, depth);
+            long next = matched & ~complete;
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                boolean array = token == JsonToken.START_ARRAY;
+                long arrayRules = array ? complete & definite : 0;
+                if (next == 0 && arrayRules == 0) {
+                    generator.copyCurrentStructure(parser);
+                    continue;
+                }
+                if (depth == alive.length) {
+                    alive = Arrays.copyOf(alive, depth * 2);
+                    elements = Arrays.copyOf(elements, depth * 2);
+                    indexes = Arrays.copyOf(indexes, depth * 2);
+                    isArray = Arrays.copyOf(isArray, depth * 2);
+                }
+                alive[depth] = next;
+                elements[depth] = arrayRules;
+                indexes[depth] = 0;
+                isArray[depth] = array;
+                depth++;
+                generator.copyCurrentEvent(parser);
+            } else {
+                long apply;
+                if (token == JsonToken.VALUE_STRING) {
+                    apply = complete | inherited;
+                } else if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+                    apply = complete & definite;
+                } else {
+                    apply = 0;
+                }
+                if (apply == 0) {
+                    generator.copyCurrentEvent(parser);
+                } else {
+                    String value = parser.getText();
+                    for (int i = 0; i < rules.length; i++) {
+                        if ((apply & (1L << i)) != 0) value = Mask.replaceWithMask(value, Mask.MASK_REPLACEMENT_CHAR.charAt(0), rules[i].regex);
+                    }
+                    generator.writeString(value);
+                }
+            }
+        } while (depth > 0 && (token = parser.nextToken()) != null);
+    }
+
+    private long match(long candidates, int level, String name, int index) {
+        long matched = 0;
+        while (candidates != 0) {
+            int i = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            Segment[] path = segments[i];
+            if (level < path.length && path[level].matches(name, index)) matched |= 1L << i;
+        }
+        return matched;
+    }
+
+    private long complete(long matched, int length) {
+        long complete = 0;
+        while (matched != 0) {
+            int i = Long.numberOfTrailingZeros(matched);
+            matched &= matched - 1;
+            if (segments[i].length == length) complete |= 1L << i;
+        }
+        return complete;
+    }
+
+    /**
+     * Parse a simple json path into the segments after the $.
+     *
+     * @param path the json path
+     * @return the segments, or null if the path is not simple
+     */
+    static Segment[] parse(String path) {
+        if (path == null || !path.startsWith("$")) return null;
+        List<Segment> segments = new ArrayList<>();
+        int i = 1;
+        int length = path.length();
+        while (i < length) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                i++;
+                if (i >= length || path.charAt(i) == '.') return null;
+                // $.list.[*] is the same as $.list[*]
+                if (path.charAt(i) == '[') continue;
+                if (path.charAt(i) == '*') {
+                    segments.add(Segment.WILDCARD);
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < length && path.charAt(i) != '.' && path.charAt(i) != '[') i++;
+                String name = path.substring(start, i);
+                if (!isPlainName(name)) return null;
+                segments.add(new Segment(name, WILDCARD_INDEX));
+            } else if (c == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0) return null;
+                String selector = path.substring(i + 1, end).trim();
+                i = end + 1;
+                if (selector.equals("*")) {
+                    segments.add(Segment.WILDCARD);
+                } else if (selector.length() >= 2 && (selector.charAt(0) == '\'' || selector.charAt(0) == '"')
+                        && selector.charAt(selector.length() - 1) == selector.charAt(0)) {
+                    String name = selector.substring(1, selector.length() - 1);
+                    if (name.indexOf('\'') >= 0 || name.indexOf('"') >= 0 || name.indexOf(',') >= 0) return null;
+                    segments.add(new Segment(name, WILDCARD_INDEX));
+                } else if (!selector.isEmpty() && selector.chars().allMatch(Character::isDigit)) {
+                    segments.add(new Segment(null, Integer.parseInt(selector)));
+                } else {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return segments.toArray(new Segment[0]);
+    }
+
+    private static boolean isPlainName(String name) {
+        if (name.isEmpty()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '*' || c == '?' || c == '(' || c == ')' || c == '@' || c == ',' || c == ':' || c == '\'' || c == '"' || c == ' ') return false;
+        }
+        return true;
+    }
+
+    /**
+     * A segment of a simple json path. It is a field name, an array index or a wildcard.
+     */
+    static final class Segment {
+        static final Segment WILDCARD = new Segment(null, WILDCARD_INDEX);
+
+        final String name;
+        final int index;
+
+        Segment(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        boolean isWildcard() {
+            return name == null && index == WILDCARD_INDEX;
+        }
+
+        /**
+         * @param name the field name of the value, or null if the value is an element of an array
+         * @param index the index of the value in an array
+         * @return true if the value is selected by the segment
+         */
+        boolean matches(String name, int index) {
+            if (isWildcard()) return true;
+            if (this.name != null) return this.name.equals(name);
+            return name == null && this.index == index;
+        }
+    }
+}
@@ -16,7 +16,8 @@
 
 package com.networknt.mask;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.jayway.jsonpath.*;
 import com.networknt.config.Config;
 import com.networknt.utility.ModuleRegistry;
@@ -25,9 +26,9 @@ import org.owasp.encoder.Encode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -38,8 +39,6 @@ import java.util.regex.Pattern;
  */
 public class Mask {
 
-    static Map<String, Pattern> patternCache = new ConcurrentHashMap<>();
-
     private static final String MASK_CONFIG = "mask";
     public static final String MASK_REPLACEMENT_CHAR = "*";
     public static final String MASK_TYPE_STRING = "string";
@@ -48,10 +47,24 @@ public class Mask {
 
     static final Logger logger = LoggerFactory.getLogger(Mask.class);
     private static Map<String, Object> config;
+    // the rules of the config compiled by key. It is replaced as a whole when the config is reloaded.
+    private static volatile MaskRules rules;
 
     static {
         config = Config.getInstance().getJsonMapConfigNoCache(MASK_CONFIG);
+        rules = new MaskRules(config);
+        ModuleRegistry.registerModule(Mask.class.getName(), config, null);
+    }
+
+    /**
+     * Reload the mask.yml and compile the rules again.
+     */
+    public static void reload() {
+        Map<String, Object> newConfig = Config.getInstance().getJsonMapConfigNoCache(MASK_CONFIG);
+        rules = new MaskRules(newConfig);
+        config = newConfig;
         ModuleRegistry.registerModule(Mask.class.getName(), config, null);
+        if(logger.isInfoEnabled()) logger.info("Mask is reloaded.");
     }
 
     /**
@@ -66,14 +79,10 @@ public class Mask {
         if(input == null)
             return null;
         String output = input;
-        Map<String, Object> stringConfig = (Map<String, Object>) config.get(MASK_TYPE_STRING);
-        if (stringConfig != null) {
-            Map<String, Object> keyConfig = (Map<String, Object>) stringConfig.get(key);
-            if (keyConfig != null) {
-                Set<String> patterns = keyConfig.keySet();
-                for (String pattern : patterns) {
-                    output = output.replaceAll(pattern, (String) keyConfig.get(pattern));
-                }
+        List<MaskRules.StringRule> stringRules = rules.string(key);
+        if (stringRules != null) {
+            for (MaskRules.StringRule rule : stringRules) {
+                output = rule.pattern.matcher(output).replaceAll(rule.replacement);
             }
         }
         return output;
@@ -89,53 +98,43 @@ public class Mask {
      * @return String Masked result
      */
     public static String maskRegex(String input, String key, String name) {
-        Map<String, Object> regexConfig = (Map<String, Object>) config.get(MASK_TYPE_REGEX);
-        if (regexConfig != null) {
-            Map<String, Object> keyConfig = (Map<String, Object>) regexConfig.get(key);
-            if (keyConfig != null) {
-                String regex = (String) keyConfig.get(name);
-                if (regex != null && regex.length() > 0) {
-                    return replaceWithMask(input, MASK_REPLACEMENT_CHAR.charAt(0), regex);
-                }
-            }
+        MaskRules.RegexRule rule = rules.regex(key, name);
+        if (rule != null && !rule.isEmpty()) {
+            return replaceWithMask(input, MASK_REPLACEMENT_CHAR.charAt(0), rule);
         }
         return input;
     }
 
-    private static String replaceWithMask(String stringToBeMasked, char maskingChar, String regex) {
+    static String replaceWithMask(String stringToBeMasked, char maskingChar, MaskRules.RegexRule rule) {
         if (stringToBeMasked == null || stringToBeMasked.length() == 0)
             return stringToBeMasked;
+        if (rule.pattern == null) {
+            // the regex is empty or invalid.
+            return StringUtils.rightPad("", stringToBeMasked.length(), maskingChar);
+        }
         String replacementString = "";
-        String padGroup;
-        if (!StringUtils.isEmpty(regex)) {
-            try {
-                Pattern pattern = patternCache.get(regex);
-                if (pattern == null) {
-                    pattern = Pattern.compile(regex);
-                    patternCache.put(regex, pattern);
-                }
-                Matcher matcher = pattern.matcher(stringToBeMasked);
-                if (matcher.matches()) {
-                    String currentGroup;
-                    for (int i = 0; i < matcher.groupCount(); i++) {
-                        currentGroup = matcher.group(i + 1);
-                        padGroup = StringUtils.rightPad("", currentGroup.length(), maskingChar);
-                        stringToBeMasked = StringUtils.replace(stringToBeMasked, currentGroup, padGroup, 1);
-                    }
-                    replacementString = stringToBeMasked;
+        Matcher matcher = rule.pattern.matcher(stringToBeMasked);
+        if (matcher.matches()) {
+            String currentGroup;
+            String padGroup;
+            for (int i = 0; i < matcher.groupCount(); i++) {
+                currentGroup = matcher.group(i + 1);
+                if (currentGroup == null) {
+                    // an optional group that is not matched.
+                    return StringUtils.rightPad("", stringToBeMasked.length(), maskingChar);
                 }
-            } catch (Exception e) {
-                replacementString = StringUtils.rightPad("", stringToBeMasked.length(), maskingChar);
+                padGroup = StringUtils.rightPad("", currentGroup.length(), maskingChar);
+                stringToBeMasked = StringUtils.replace(stringToBeMasked, currentGroup, padGroup, 1);
             }
-        } else {
-            replacementString = StringUtils.rightPad("", stringToBeMasked.length(), maskingChar);
+            replacementString = stringToBeMasked;
         }
         return replacementString;
     }
 
 
     /**
-     * Replace values in JSON using json path
+     * Replace values in JSON using json path. If all the json paths of the key are simple, the tokens are masked in a
+     * single pass without building the document in memory.
      * @param input String The source of the string that needs to be masked
      * @param key String The key maps to a list of json path for masking
      * @return String Masked result
@@ -143,12 +142,22 @@ public class Mask {
     public static String maskJson(String input, String key) {
         if(input == null)
             return null;
+        JsonMasker masker = rules.jsonMasker(key);
+        if (masker != null) {
+            JsonFactory factory = Config.getInstance().getMapper().getFactory();
+            try (JsonParser parser = factory.createParser(input)) {
+                return masker.mask(factory, parser);
+            } catch (IOException e) {
+                throw new InvalidJsonException(e);
+            }
+        }
         DocumentContext ctx = JsonPath.parse(input);
         return maskJson(ctx, key);
     }
 
     /**
-     * Replace values in JSON using json path
+     * Replace values in JSON using json path. If all the json paths of the key are simple, the stream is masked as
+     * it is read without building the document in memory.
      * @param input InputStream inputStream of json that needs to be masked
      * @param key String The key maps to a list of json path for masking
      * @return String Masked result
@@ -156,6 +165,15 @@ public class Mask {
     public static String maskJson(InputStream input, String key) {
         if(input == null)
             return null;
+        JsonMasker masker = rules.jsonMasker(key);
+        if (masker != null) {
+            JsonFactory factory = Config.getInstance().getMapper().getFactory();
+            try (JsonParser parser = factory.createParser(input)) {
+                return masker.mask(factory, parser);
+            } catch (IOException e) {
+                throw new InvalidJsonException(e);
+            }
+        }
         DocumentContext ctx = JsonPath.parse(input);
         return maskJson(ctx, key);
     }
@@ -173,83 +191,71 @@ public class Mask {
         return maskJson(ctx, key);
     }
 
+    /**
+     * Replace values in JSON using json path. All the rules of the key are applied to the parsed document, and it
+     * is only serialized once at the end.
+     * @param ctx DocumentContext The parsed json that needs to be masked
+     * @param key String The key maps to a list of json path for masking
+     * @return String Masked result
+     */
     public static String maskJson(DocumentContext ctx, String key) {
         if(ctx == null)
             return null;
-        Map<String, Object> jsonConfig = (Map<String, Object>) config.get(MASK_TYPE_JSON);
-        if (jsonConfig != null) {
-            Map<String, Object> patternMap = (Map<String, Object>) jsonConfig.get(key);
-            if (patternMap != null) {
-                JsonNode configNode = Config.getInstance().getMapper().valueToTree(patternMap);
-                Iterator<Map.Entry<String, JsonNode>> iterator = configNode.fields();
-                while (iterator.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = iterator.next();
-                    applyMask(entry, ctx);
-                }
-                return ctx.jsonString();
-            } else {
-                logger.warn("mask.json doesn't contain the key {} ", Encode.forJava(key));
+        List<MaskRules.JsonRule> jsonRules = rules.json(key);
+        if (jsonRules != null) {
+            for (MaskRules.JsonRule rule : jsonRules) {
+                applyMask(rule, ctx);
             }
+        } else if (config != null && config.get(MASK_TYPE_JSON) != null) {
+            logger.warn("mask.json doesn't contain the key {} ", Encode.forJava(key));
         }
         return ctx.jsonString();
     }
 
-    private static void applyMask(Map.Entry<String, JsonNode> entry, DocumentContext ctx) {
+    private static void applyMask(MaskRules.JsonRule rule, DocumentContext ctx) {
         Object value;
-        String jsonPath = entry.getKey();
         try {
-            value = ctx.read(jsonPath);
+            value = ctx.read(rule.jsonPath);
             if (!(value instanceof String || value instanceof Integer || value instanceof List<?>)) {
-                logger.error("The value specified by path {} cannot be masked", jsonPath);
+                logger.error("The value specified by path {} cannot be masked", rule.path);
             } else {
                 if (!(value instanceof List<?>)) {
-                    ctx.set(jsonPath, replaceWithMask(value.toString(), MASK_REPLACEMENT_CHAR.charAt(0), entry.getValue().asText()));
-                } else if(value instanceof List<?>){
-                    for(Object ele : (List)value) {
+                    ctx.set(rule.jsonPath, replaceWithMask(value.toString(), MASK_REPLACEMENT_CHAR.charAt(0), rule.regex));
+                } else {
+                    for(Object ele : (List<?>)value) {
                         if(!(ele instanceof String)) {
-                            logger.error("json path: {} is incorrect, cannot mask an object", jsonPath);
+                            logger.error("json path: {} is incorrect, cannot mask an object", rule.path);
                             return;
                         }
                     }
-                    maskList(ctx, jsonPath, entry.getValue().asText());
+                    maskList(ctx, rule);
                 }
             }
         } catch (PathNotFoundException e) {
-            logger.warn("JsonPath {} could not be found.", jsonPath);
+            logger.warn("JsonPath {} could not be found.", rule.path);
         }
     }
-    private static void maskList(DocumentContext ctx, String jsonPath, String expression) {
-        ctx.configuration().addOptions(Option.AS_PATH_LIST);
-        Configuration conf = Configuration.builder().options(Option.AS_PATH_LIST).build();
-        DocumentContext context = JsonPath.using(conf).parse(ctx.jsonString());
-        List<String> pathList = context.read(jsonPath);
-        /**
-         * when reach here, ctx.read(jsonPath) should only give us a list of strings so that we can replace with MASK_REPLACEMENT_CHAR
-         * list of values can belongs to a same path or different paths, we should treat differently.
-         * two situations:
-         * an array contains multiple String values like: "list": ["ab", "cd", "ef]
-         * or single value belongs to different paths.
-         */
-        if(pathList != null && pathList.size() == 1) {
-            String path = pathList.get(0);
-            // the value might be a string or a list
-            Object readValues = ctx.read(path);
-            List values = new ArrayList();
-            if(readValues instanceof String){
-                values.add(readValues);
-            } else {
-                values = ctx.read(path);
-            }
-            List maskedValue = new ArrayList();
-            //mask each value in the list of the same path
-            values.forEach(o -> maskedValue.add(replaceWithMask(o.toString(), MASK_REPLACEMENT_CHAR.charAt(0), expression)));
-            ctx.set(path, maskedValue.size() == 1 ? maskedValue.get(0) : maskedValue);
-        } else {
-            for (String path : Optional.ofNullable(pathList).orElse(Collections.emptyList())) {
-                Object value = ctx.read(path);
-                ctx.set(path, replaceWithMask(value.toString(), MASK_REPLACEMENT_CHAR.charAt(0), expression));
+
+    /**
+     * when reach here, ctx.read(jsonPath) should only give us a list of strings so that we can replace with MASK_REPLACEMENT_CHAR
+     * list of values can belongs to a same path or different paths. The values are mapped in place on the parsed
+     * document, so the document is not serialized and parsed again to find the paths of the values.
+     * two situations:
+     * an array contains multiple String values like: "list": ["ab", "cd", "ef]
+     * or single value belongs to different paths.
+     */
+    private static void maskList(DocumentContext ctx, MaskRules.JsonRule rule) {
+        ctx.map(rule.jsonPath, (value, configuration) -> {
+            if (value instanceof List<?>) {
+                // the value of a path is a list of strings.
+                List<Object> maskedValue = new ArrayList<>();
+                for (Object o : (List<?>) value) {
+                    maskedValue.add(replaceWithMask(o.toString(), MASK_REPLACEMENT_CHAR.charAt(0), rule.regex));
+                }
+                return maskedValue;
             }
-        }
+            return value == null ? null : replaceWithMask(value.toString(), MASK_REPLACEMENT_CHAR.charAt(0), rule.regex);
+        });
     }
 
     /**
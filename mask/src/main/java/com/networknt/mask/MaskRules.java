@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.mask;
+
+import com.jayway.jsonpath.InvalidPathException;
+import com.jayway.jsonpath.JsonPath;
+import com.networknt.utility.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The rules in mask.yml compiled by key. The regular expressions and the json paths are compiled once when the
+ * config is loaded, so masking a value only runs the matchers.
+ *
+ * A regex that cannot be compiled in the regex and json sections is kept as a rule without a pattern, which masks
+ * the whole value as the invalid regex did before it was compiled in advance. A string rule or a json path that
+ * cannot be compiled is logged and skipped.
+ */
+class MaskRules {
+    private static final Logger logger = LoggerFactory.getLogger(MaskRules.class);
+
+    private final Map<String, List<StringRule>> stringRules;
+    private final Map<String, Map<String, RegexRule>> regexRules;
+    private final Map<String, List<JsonRule>> jsonRules;
+    private final Map<String, JsonMasker> jsonMaskers;
+
+    @SuppressWarnings("unchecked")
+    MaskRules(Map<String, Object> config) {
+        Map<String, List<StringRule>> strings = new HashMap<>();
+        Map<String, Map<String, RegexRule>> regexes = new HashMap<>();
+        Map<String, List<JsonRule>> jsons = new HashMap<>();
+        Map<String, JsonMasker> maskers = new HashMap<>();
+        if (config != null) {
+            forEachKey(config.get(Mask.MASK_TYPE_STRING), (key, keyConfig) -> {
+                List<StringRule> rules = new ArrayList<>();
+                keyConfig.forEach((regex, replacement) -> {
+                    try {
+                        rules.add(new StringRule(Pattern.compile(regex), (String) replacement));
+                    } catch (PatternSyntaxException e) {
+                        logger.error("Invalid mask string pattern " + regex + " for key " + key, e);
+                    }
+                });
+                strings.put(key, Collections.unmodifiableList(rules));
+            });
+            forEachKey(config.get(Mask.MASK_TYPE_REGEX), (key, keyConfig) -> {
+                Map<String, RegexRule> rules = new HashMap<>();
+                keyConfig.forEach((name, regex) -> rules.put(name, new RegexRule((String) regex)));
+                regexes.put(key, Collections.unmodifiableMap(rules));
+            });
+            forEachKey(config.get(Mask.MASK_TYPE_JSON), (key, keyConfig) -> {
+                List<JsonRule> rules = new ArrayList<>();
+                keyConfig.forEach((path, regex) -> {
+                    try {
+                        rules.add(new JsonRule(path, JsonPath.compile(path), new RegexRule(regex == null ? null : regex.toString())));
+                    } catch (InvalidPathException e) {
+                        logger.error("Invalid mask json path " + path + " for key " + key, e);
+                    }
+                });
+                jsons.put(key, Collections.unmodifiableList(rules));
+                JsonMasker masker = JsonMasker.compile(rules);
+                if (masker != null) {
+                    maskers.put(key, masker);
+                } else if (logger.isDebugEnabled()) {
+                    logger.debug("The json paths of the key " + key + " are masked with the DocumentContext.");
+                }
+            });
+        }
+        this.stringRules = strings;
+        this.regexRules = regexes;
+        this.jsonRules = jsons;
+        this.jsonMaskers = maskers;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void forEachKey(Object section, BiConsumer<String, Map<String, Object>> consumer) {
+        if (section instanceof Map) {
+            ((Map<String, Object>) section).forEach((key, keyConfig) -> {
+                if (keyConfig instanceof Map) consumer.accept(key, (Map<String, Object>) keyConfig);
+            });
+        }
+    }
+
+    /**
+     * @param key the key in the string section
+     * @return the rules of the key, or null if the key is not configured
+     */
+    List<StringRule> string(String key) {
+        return stringRules.get(key);
+    }
+
+    /**
+     * @param key the key in the regex section
+     * @param name the name in the key
+     * @return the rule of the name, or null if the name is not configured
+     */
+    RegexRule regex(String key, String name) {
+        Map<String, RegexRule> rules = regexRules.get(key);
+        return rules == null ? null : rules.get(name);
+    }
+
+    /**
+     * @param key the key in the json section
+     * @return the rules of the key, or null if the key is not configured
+     */
+    List<JsonRule> json(String key) {
+        return jsonRules.get(key);
+    }
+
+    /**
+     * @param key the key in the json section
+     * @return the streaming masker of the key, or null if the key is not configured or it has a path that is not simple
+     */
+    JsonMasker jsonMasker(String key) {
+        return jsonMaskers.get(key);
+    }
+
+    /**
+     * A pattern replaced with a replacement that may refer to the groups of the pattern.
+     */
+    static final class StringRule {
+        final Pattern pattern;
+        final String replacement;
+
+        StringRule(Pattern pattern, String replacement) {
+            this.pattern = pattern;
+            this.replacement = replacement;
+        }
+    }
+
+    /**
+     * A regex whose groups are replaced with the mask character. A value is masked entirely if the regex is empty
+     * or invalid, and it is replaced with an empty string if it does not match the regex.
+     */
+    static final class RegexRule {
+        final String regex;
+        final Pattern pattern;
+
+        RegexRule(String regex) {
+            this.regex = regex;
+            Pattern compiled = null;
+            if (!StringUtils.isEmpty(regex)) {
+                try {
+                    compiled = Pattern.compile(regex);
+                } catch (PatternSyntaxException e) {
+                    logger.error("Invalid mask regex " + regex + ". The values are masked entirely.", e);
+                }
+            }
+            this.pattern = compiled;
+        }
+
+        boolean isEmpty() {
+            return regex == null || regex.isEmpty();
+        }
+    }
+
+    /**
+     * A json path and the regex to mask the values that are found by the path.
+     */
+    static final class JsonRule {
+        final String path;
+        final JsonPath jsonPath;
+        final RegexRule regex;
+
+        JsonRule(String path, JsonPath jsonPath, RegexRule regex) {
+            this.path = path;
+            this.jsonPath = jsonPath;
+            this.regex = regex;
+        }
+    }
+}
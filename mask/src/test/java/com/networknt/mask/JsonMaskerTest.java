@@ -0,0 +1,116 @@
+package com.networknt.mask;
+
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidJsonException;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.jayway.jsonpath.spi.mapper.MappingProvider;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+public class JsonMaskerTest {
+
+    @BeforeClass
+    public static void runOnceBeforeClass() {
+        Configuration.setDefaults(new Configuration.Defaults() {
+            private final JsonProvider jsonProvider = new JacksonJsonProvider();
+            private final MappingProvider mappingProvider = new JacksonMappingProvider();
+
+            @Override
+            public JsonProvider jsonProvider() {
+                return jsonProvider;
+            }
+
+            @Override
+            public MappingProvider mappingProvider() {
+                return mappingProvider;
+            }
+
+            @Override
+            public Set<Option> options() {
+                return EnumSet.noneOf(Option.class);
+            }
+        });
+    }
+
+    @Test
+    public void testParseSimplePaths() {
+        Assert.assertEquals(4, JsonMasker.parse("$.product[*].item[0]").length);
+        Assert.assertEquals(3, JsonMasker.parse("$.list.[*].creditCardNumber").length);
+        Assert.assertEquals(2, JsonMasker.parse("$['contact'].*").length);
+        Assert.assertEquals("phone", JsonMasker.parse("$.contact.phone")[1].name);
+        Assert.assertNull(JsonMasker.parse("$..email"));
+        Assert.assertNull(JsonMasker.parse("$.list[?(@.name == 'Steve')].name"));
+        Assert.assertNull(JsonMasker.parse("$.list[0:2]"));
+        Assert.assertNull(JsonMasker.parse("$.list[0,1]"));
+        Assert.assertNull(JsonMasker.parse("$.list.length()"));
+    }
+
+    @Test
+    public void testComplexPathIsNotStreamed() {
+        MaskRules rules = new MaskRules(Map.of(Mask.MASK_TYPE_JSON, Map.of(
+                "simple", Map.of("$.contact.email", "(.*)"),
+                "deep", Map.of("$..email", "(.*)"))));
+        Assert.assertNotNull(rules.jsonMasker("simple"));
+        Assert.assertNull(rules.jsonMasker("deep"));
+    }
+
+    /**
+     * The streaming masker gives the same result as the DocumentContext for the keys in the mask.yml.
+     */
+    @Test
+    public void testSameAsDocumentContext() {
+        String test2 = "{\"name\":\"Steve\",\"list\":[{\"name\":\"Nick\"},{\"name\":\"Wen\",\"accounts\":[\"1\",\"2\",\"3\"]},"
+                + "{\"name\":\"Steve\",\"accounts\":[\"4\",\"5\",\"666666\"]},\"secret1\",\"secret2\"],"
+                + "\"list1\":[\"1\",\"333\",\"55555\"],\"password\":\"secret\"}";
+        assertSame(test2, "test2");
+        assertSame("{\"name\":\"Steve\",\"contact\":{\"phone\":\"416-111-1111\"},\"password\":\"secret\"}", "test1");
+        assertSame("{\"name\":\"Steve\",\"contact\":{\"phone\":4161111},\"password\":12345}", "test1");
+        assertSame("{\"name\":\"Steve\",\"list\":[{\"name\":\"Josh\",\"creditCardNumber\":\"4586996854721123\"}],\"password\":\"secret\"}", "testIssue942");
+        String order = "{\"customer\":{\"email\":\"steve@example.com\"},\"shipping\":{\"email\":\"ship@example.com\",\"zip\":12345},"
+                + "\"product\":[{\"item\":[{\"name\":\"pen\",\"price\":1.5},{\"name\":\"ink\",\"price\":2}]},{\"item\":[]}],\"total\":3.5}";
+        assertSame(order, "requestBody");
+        assertSame("{\"product\":[{\"item\":[{\"name\":\"pen\"},{\"name\":\"ink\"}]}]}", "responseBody");
+        // a key that is not configured is not masked.
+        assertSame(order, "unknown");
+    }
+
+    @Test
+    public void testInputStream() {
+        String input = "{\"name\":\"Steve\",\"contact\":{\"phone\":\"416-111-1111\"},\"password\":\"secret\"}";
+        String output = Mask.maskJson(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), "test1");
+        Assert.assertEquals("{\"name\":\"Steve\",\"contact\":{\"phone\":\"************\"},\"password\":\"******\"}", output);
+    }
+
+    @Test
+    public void testDeepDocument() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 100; i++) sb.append("{\"contact\":");
+        sb.append("{\"phone\":\"416\"}");
+        for (int i = 0; i < 100; i++) sb.append('}');
+        Assert.assertEquals(sb.toString(), Mask.maskJson(sb.toString(), "test1"));
+        Assert.assertEquals("[1,2,{\"password\":\"secret\"}]", Mask.maskJson("[1,2,{\"password\":\"secret\"}]", "test1"));
+        Assert.assertEquals("\"secret\"", Mask.maskJson("\"secret\"", "test1"));
+    }
+
+    @Test(expected = InvalidJsonException.class)
+    public void testInvalidJson() {
+        Mask.maskJson("{\"password\":\"secret\"", "test1");
+    }
+
+    private static void assertSame(String input, String key) {
+        String streamed = Mask.maskJson(input, key);
+        String parsed = Mask.maskJson(JsonPath.parse(input), key);
+        Assert.assertEquals(parsed, streamed);
+    }
+}
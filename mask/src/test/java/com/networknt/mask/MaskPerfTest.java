@@ -0,0 +1,153 @@
+package com.networknt.mask;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import com.jayway.jsonpath.spi.json.JacksonJsonProvider;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import com.jayway.jsonpath.spi.mapper.MappingProvider;
+import com.networknt.config.Config;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Compare the masking with the compiled rules to the masking that compiled the regex and converted the json rules
+ * for every call, and serialized and parsed the document again for each json path that matched a list. The json
+ * is masked with the DocumentContext and with the streaming masker of the simple paths.
+ */
+public class MaskPerfTest {
+
+    @BeforeClass
+    public static void runOnceBeforeClass() {
+        Configuration.setDefaults(new Configuration.Defaults() {
+            private final JsonProvider jsonProvider = new JacksonJsonProvider();
+            private final MappingProvider mappingProvider = new JacksonMappingProvider();
+
+            @Override
+            public JsonProvider jsonProvider() {
+                return jsonProvider;
+            }
+
+            @Override
+            public MappingProvider mappingProvider() {
+                return mappingProvider;
+            }
+
+            @Override
+            public Set<Option> options() {
+                return EnumSet.noneOf(Option.class);
+            }
+        });
+    }
+
+    @Test
+    public void testSameResult() throws Exception {
+        String body = body(20);
+        Assert.assertEquals(legacyMaskJson(body, "requestBody"), Mask.maskJson(body, "requestBody"));
+        String uri = "/v1/customer?sin=123456789&password=secret&number=1234567890123456&page=1";
+        Assert.assertEquals(legacyMaskString(uri, "uri"), Mask.maskString(uri, "uri"));
+    }
+
+    @Ignore
+    @Test
+    public void testMaskPerf() throws Exception {
+        String uri = "/v1/customer?sin=123456789&password=secret&number=1234567890123456&page=1";
+        measure("maskString uri legacy", 200000, () -> legacyMaskString(uri, "uri"));
+        measure("maskString uri compiled", 200000, () -> Mask.maskString(uri, "uri"));
+        for (int items : new int[]{5, 200}) {
+            String body = body(items);
+            int loop = 2000000 / body.length();
+            measure("maskJson " + body.length() / 1024 + "KB legacy", loop, () -> legacyMaskJson(body, "requestBody"));
+            measure("maskJson " + body.length() / 1024 + "KB document context", loop, () -> Mask.maskJson(JsonPath.parse(body), "requestBody"));
+            measure("maskJson " + body.length() / 1024 + "KB streaming", loop, () -> Mask.maskJson(body, "requestBody"));
+        }
+    }
+
+    private static void measure(String name, int loop, Callable<String> task) throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // warm up before the measurement.
+        for (int i = 0; i < loop; i++) task.call();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < loop; i++) task.call();
+        long elapsed = System.nanoTime() - start;
+        allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+        System.out.println(name + " " + elapsed / loop / 1000.0 + " us/op " + allocated / loop / 1024 + " KB/op");
+    }
+
+    /**
+     * An order with the contact emails and a list of products with the items to mask.
+     */
+    private static String body(int items) {
+        StringBuilder sb = new StringBuilder("{\"customer\":{\"id\":\"C1001\",\"name\":\"Steve\",\"email\":\"steve@example.com\"},");
+        sb.append("\"shipping\":{\"street\":\"1 Main St\",\"city\":\"Toronto\",\"email\":\"ship@example.com\"},\"product\":[");
+        for (int p = 0; p < 4; p++) {
+            if (p > 0) sb.append(',');
+            sb.append("{\"sku\":\"P").append(p).append("\",\"item\":[");
+            for (int i = 0; i < items; i++) {
+                if (i > 0) sb.append(',');
+                sb.append("{\"name\":\"item name ").append(i).append("\",\"price\":").append(i * 10 + 0.99)
+                        .append(",\"description\":\"a realistic description of the item with some words\"}");
+            }
+            sb.append("]}");
+        }
+        return sb.append("],\"total\":1234.56}").toString();
+    }
+
+    private static String legacyMaskString(String input, String key) {
+        Map<String, Object> config = Config.getInstance().getJsonMapConfig("mask");
+        Map<String, Object> keyConfig = (Map<String, Object>) ((Map<String, Object>) config.get("string")).get(key);
+        String output = input;
+        for (String pattern : keyConfig.keySet()) {
+            output = output.replaceAll(pattern, (String) keyConfig.get(pattern));
+        }
+        return output;
+    }
+
+    private static String legacyMaskJson(String input, String key) {
+        Map<String, Object> config = Config.getInstance().getJsonMapConfig("mask");
+        DocumentContext ctx = JsonPath.parse(input);
+        Map<String, Object> patternMap = (Map<String, Object>) ((Map<String, Object>) config.get("json")).get(key);
+        JsonNode configNode = Config.getInstance().getMapper().valueToTree(patternMap);
+        Iterator<Map.Entry<String, JsonNode>> iterator = configNode.fields();
+        while (iterator.hasNext()) {
+            Map.Entry<String, JsonNode> entry = iterator.next();
+            String jsonPath = entry.getKey();
+            Object value = ctx.read(jsonPath);
+            if (value instanceof List) {
+                Configuration conf = Configuration.builder().options(Option.AS_PATH_LIST).build();
+                List<String> pathList = JsonPath.using(conf).parse(ctx.jsonString()).read(jsonPath);
+                for (String path : pathList) {
+                    ctx.set(path, legacyReplace(ctx.read(path).toString(), entry.getValue().asText()));
+                }
+            } else {
+                ctx.set(jsonPath, legacyReplace(value.toString(), entry.getValue().asText()));
+            }
+        }
+        return ctx.jsonString();
+    }
+
+    private static String legacyReplace(String value, String regex) {
+        java.util.regex.Matcher matcher = java.util.regex.Pattern.compile(regex).matcher(value);
+        if (!matcher.matches()) return "";
+        for (int i = 0; i < matcher.groupCount(); i++) {
+            String group = matcher.group(i + 1);
+            value = value.replaceFirst(java.util.regex.Pattern.quote(group), "*".repeat(group.length()));
+        }
+        return value;
+    }
+}
@@ -3,10 +3,8 @@ package com.networknt.metrics;
 
 import java.net.InetAddress;
 import java.net.MalformedURLException;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.networknt.config.JsonMapper;
@@ -19,15 +17,12 @@ import com.networknt.handler.Handler;
 import com.networknt.handler.MiddlewareHandler;
 import com.networknt.httpstring.AttachmentConstants;
 import com.networknt.server.Server;
-import com.networknt.utility.Constants;
 import com.networknt.utility.ModuleRegistry;
 import com.networknt.utility.Util;
 import io.dropwizard.metrics.broadcom.APMEPAgentSender;
 
 import io.dropwizard.metrics.Clock;
 import io.dropwizard.metrics.MetricFilter;
-import io.dropwizard.metrics.MetricName;
-import io.dropwizard.metrics.MetricRegistry;
 import io.undertow.Handlers;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
@@ -89,43 +84,11 @@ public class APMMetricsHandler extends AbstractMetricsHandler {
             Map<String, Object> auditInfo = exchange1.getAttachment(AttachmentConstants.AUDIT_INFO);
             if(logger.isTraceEnabled()) logger.trace("auditInfo = " + auditInfo);
             if (auditInfo != null && !auditInfo.isEmpty()) {
-                Map<String, String> tags = new HashMap<>();
-                tags.put("endpoint", (String) auditInfo.get(Constants.ENDPOINT_STRING));
-                String clientId = auditInfo.get(Constants.CLIENT_ID_STRING) != null ? (String) auditInfo.get(Constants.CLIENT_ID_STRING) : "unknown";
-                if(logger.isTraceEnabled()) logger.trace("clientId = " + clientId);
-                tags.put("clientId", clientId);
-                // scope client id will only be available if two token is used. For example, authorization code flow.
-                if (config.isSendScopeClientId()) {
-                    tags.put("scopeClientId", auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) != null ? (String) auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) : "unknown");
-                }
-                // caller id is the calling serviceId that is passed from the caller. It is not always available but some organizations enforce it.
-                if (config.isSendCallerId()) {
-                    tags.put("callerId", auditInfo.get(Constants.CALLER_ID_STRING) != null ? (String) auditInfo.get(Constants.CALLER_ID_STRING) : "unknown");
-                }
-                if (config.isSendIssuer()) {
-                    String issuer = (String) auditInfo.get(Constants.ISSUER_CLAIMS);
-                    if (issuer != null) {
-                        // we need to send issuer as a tag. Do we need to apply regex to extract only a part of the issuer?
-                        if(config.getIssuerRegex() != null) {
-                            Matcher matcher = pattern.matcher(issuer);
-                            if (matcher.find()) {
-                                String iss = matcher.group(1);
-                                if(logger.isTraceEnabled()) logger.trace("Extracted issuer {} from Original issuer {] is sent.", iss, issuer);
-                                tags.put("issuer", iss != null ? iss : "unknown");
-                            }
-                        } else {
-                            if(logger.isTraceEnabled()) logger.trace("Original issuer {} is sent.", issuer);
-                            tags.put("issuer", issuer);
-                        }
-                    }
-                }
-                MetricName metricName = new MetricName("response_time");
-                metricName = metricName.tagged(commonTags);
-                metricName = metricName.tagged(tags);
+                MetricHandleCache.Handles handles = resolveHandles(MetricHandleCache.RESPONSE_TIME, auditInfo, null);
                 long time = Clock.defaultClock().getTick() - startTime;
-                registry.getOrAdd(metricName, MetricRegistry.MetricBuilder.TIMERS).update(time, TimeUnit.NANOSECONDS);
-                if(logger.isTraceEnabled()) logger.trace("metricName = " + metricName  + " commonTags = " + JsonMapper.toJson(commonTags) + " tags = " + JsonMapper.toJson(tags));
-                incCounterForStatusCode(exchange1.getStatusCode(), commonTags, tags);
+                handles.timer().update(time, TimeUnit.NANOSECONDS);
+                if(logger.isTraceEnabled()) logger.trace("commonTags = " + JsonMapper.toJson(commonTags) + " tags = " + JsonMapper.toJson(handles.tags()));
+                handles.count(exchange1.getStatusCode());
             } else {
                 // when we reach here, it will be in light-gateway so no specification is loaded on the server and also the security verification is failed.
                 // we need to come up with the endpoint at last to ensure we have some meaningful metrics info populated.
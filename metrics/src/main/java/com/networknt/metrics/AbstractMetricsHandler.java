@@ -29,6 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -53,6 +54,12 @@ public abstract class AbstractMetricsHandler implements MiddlewareHandler {
     // The structure that collect all the metrics entries. Even others will be using this structure to inject.
     public static final MetricRegistry registry = new MetricRegistry();
     public Map<String, String> commonTags = new HashMap<>();
+    static final String UNKNOWN = "unknown";
+    // the value of an issuer in the issuerTags if the issuerRegex does not match it.
+    private static final String NO_ISSUER_TAG = new String("");
+    private static final int MAX_ISSUER_TAGS = 1000;
+    private final Map<String, String> issuerTags = new ConcurrentHashMap<>();
+    private volatile MetricHandleCache handleCache;
 
     public AbstractMetricsHandler() {
     }
@@ -97,63 +104,100 @@ public abstract class AbstractMetricsHandler implements MiddlewareHandler {
     public void injectMetrics(HttpServerExchange httpServerExchange, long startTime, String metricsName, String endpoint) {
         Map<String, Object> auditInfo = httpServerExchange.getAttachment(AttachmentConstants.AUDIT_INFO);
         if(logger.isTraceEnabled()) logger.trace("auditInfo = " + auditInfo);
-        Map<String, String> tags = new HashMap<>();
+        MetricHandleCache.Handles handles = resolveHandles(metricsName, auditInfo, endpoint);
+        long time = System.nanoTime() - startTime;
+        handles.timer().update(time, TimeUnit.NANOSECONDS);
+        if(logger.isTraceEnabled()) logger.trace("metricsName = " + metricsName  + " commonTags = " + JsonMapper.toJson(commonTags) + " tags = " + JsonMapper.toJson(handles.tags()));
+        // the metrics handler will collect the status code metrics and increase the counter. Here we don't want to increase it again.
+        // incCounterForStatusCode(httpServerExchange.getStatusCode(), commonTags, tags);
+    }
+
+    /**
+     * Resolve the timer and the counters of a metric with the tags from the auditInfo that are enabled in the
+     * metrics.yml. The handles are cached by the values of the tags, so nothing is allocated once a combination
+     * of the tags has been seen.
+     *
+     * @param metricsName the name of the timer.
+     * @param auditInfo   the auditInfo of the exchange. It is null if the handler is called anonymously.
+     * @param endpoint    the endpoint that overrides the one in the auditInfo. It is optional.
+     * @return the handles of the metric.
+     */
+    MetricHandleCache.Handles resolveHandles(String metricsName, Map<String, Object> auditInfo, String endpoint) {
         if (auditInfo != null) {
             // for external handlers, the endpoint must be unknown in the auditInfo. If that is the case, use the endpoint passed in.
-            if (endpoint != null) {
-                tags.put(Constants.ENDPOINT_STRING, endpoint);
-            } else {
-                tags.put(Constants.ENDPOINT_STRING, (String) auditInfo.get(Constants.ENDPOINT_STRING));
+            if (endpoint == null) {
+                endpoint = (String) auditInfo.get(Constants.ENDPOINT_STRING);
             }
-            String clientId = auditInfo.get(Constants.CLIENT_ID_STRING) != null ? (String) auditInfo.get(Constants.CLIENT_ID_STRING) : "unknown";
+            String clientId = auditInfo.get(Constants.CLIENT_ID_STRING) != null ? (String) auditInfo.get(Constants.CLIENT_ID_STRING) : UNKNOWN;
             if(logger.isTraceEnabled()) logger.trace("clientId = " + clientId);
-            tags.put("clientId", clientId);
             // scope client id will only be available if two token is used. For example, authorization code flow.
+            String scopeClientId = null;
             if (config.isSendScopeClientId()) {
-                tags.put("scopeClientId", auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) != null ? (String) auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) : "unknown");
+                scopeClientId = auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) != null ? (String) auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) : UNKNOWN;
             }
             // caller id is the calling serviceId that is passed from the caller. It is not always available but some organizations enforce it.
+            String callerId = null;
             if (config.isSendCallerId()) {
-                tags.put("callerId", auditInfo.get(Constants.CALLER_ID_STRING) != null ? (String) auditInfo.get(Constants.CALLER_ID_STRING) : "unknown");
+                callerId = auditInfo.get(Constants.CALLER_ID_STRING) != null ? (String) auditInfo.get(Constants.CALLER_ID_STRING) : UNKNOWN;
             }
+            String issuer = null;
             if (config.isSendIssuer()) {
-                String issuer = (String) auditInfo.get(Constants.ISSUER_CLAIMS);
-                if (issuer != null) {
-                    // we need to send issuer as a tag. Do we need to apply regex to extract only a part of the issuer?
-                    if(config.getIssuerRegex() != null) {
-                        Matcher matcher = pattern.matcher(issuer);
-                        if (matcher.find()) {
-                            String iss = matcher.group(1);
-                            if(logger.isTraceEnabled()) logger.trace("Extracted issuer {} from Original issuer {] is sent.", iss, issuer);
-                            tags.put("issuer", iss != null ? iss : "unknown");
-                        }
-                    } else {
-                        if(logger.isTraceEnabled()) logger.trace("Original issuer {} is sent.", issuer);
-                        tags.put("issuer", issuer);
-                    }
-                }
+                issuer = issuerTag((String) auditInfo.get(Constants.ISSUER_CLAIMS));
             }
+            return handleCache().get(metricsName, endpoint, clientId, scopeClientId, callerId, issuer);
         } else {
             // for MRAS and Salesforce handlers that do not have auditInfo in the exchange as they may be called anonymously.
-            tags.put(Constants.ENDPOINT_STRING, endpoint == null ? "unknown" : endpoint);
-            tags.put("clientId", "unknown");
-            if (config.isSendScopeClientId()) {
-                tags.put("scopeClientId", "unknown");
-            }
-            if (config.isSendCallerId()) {
-                tags.put("callerId", "unknown");
+            return handleCache().get(metricsName, endpoint == null ? UNKNOWN : endpoint, UNKNOWN,
+                    config.isSendScopeClientId() ? UNKNOWN : null,
+                    config.isSendCallerId() ? UNKNOWN : null,
+                    config.isSendIssuer() ? UNKNOWN : null);
+        }
+    }
+
+    /**
+     * Get the cache of the metric handles. It is created on the first use as the common tags are only populated
+     * when the first request is handled.
+     *
+     * @return MetricHandleCache
+     */
+    MetricHandleCache handleCache() {
+        MetricHandleCache cache = handleCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = handleCache;
+                if (cache == null) {
+                    handleCache = cache = new MetricHandleCache(registry, commonTags);
+                }
             }
-            if (config.isSendIssuer()) {
-                tags.put("issuer", "unknown");
+        }
+        return cache;
+    }
+
+    /**
+     * Get the issuer tag of an issuer. If the issuerRegex is configured, the tag is extracted from the issuer with it.
+     * There are only a few issuers, so the tags are cached to avoid matching the regex for every request.
+     *
+     * @param issuer the issuer in the token
+     * @return the issuer tag, or null if there is no tag for the issuer
+     */
+    private String issuerTag(String issuer) {
+        if (issuer == null) return null;
+        if (config.getIssuerRegex() == null) {
+            if(logger.isTraceEnabled()) logger.trace("Original issuer {} is sent.", issuer);
+            return issuer;
+        }
+        String tag = issuerTags.get(issuer);
+        if (tag == null) {
+            // we need to send issuer as a tag. Do we need to apply regex to extract only a part of the issuer?
+            tag = NO_ISSUER_TAG;
+            Matcher matcher = pattern.matcher(issuer);
+            if (matcher.find()) {
+                String iss = matcher.group(1);
+                if(logger.isTraceEnabled()) logger.trace("Extracted issuer {} from Original issuer {} is sent.", iss, issuer);
+                tag = iss != null ? iss : UNKNOWN;
             }
+            if (issuerTags.size() < MAX_ISSUER_TAGS) issuerTags.put(issuer, tag);
         }
-        MetricName metricName = new MetricName(metricsName);
-        metricName = metricName.tagged(commonTags);
-        metricName = metricName.tagged(tags);
-        long time = System.nanoTime() - startTime;
-        registry.getOrAdd(metricName, MetricRegistry.MetricBuilder.TIMERS).update(time, TimeUnit.NANOSECONDS);
-        if(logger.isTraceEnabled()) logger.trace("metricName = " + metricName  + " commonTags = " + JsonMapper.toJson(commonTags) + " tags = " + JsonMapper.toJson(tags));
-        // the metrics handler will collect the status code metrics and increase the counter. Here we don't want to increase it again.
-        // incCounterForStatusCode(httpServerExchange.getStatusCode(), commonTags, tags);
+        return tag == NO_ISSUER_TAG ? null : tag;
     }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.metrics;
+
+import io.dropwizard.metrics.Counter;
+import io.dropwizard.metrics.MetricName;
+import io.dropwizard.metrics.MetricRegistry;
+import io.dropwizard.metrics.MetricRegistryListener;
+import io.dropwizard.metrics.Timer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The timers and counters of a metrics handler resolved by their tags. The MetricName and the tag maps of a metric
+ * are only built the first time a combination of the tags is seen. After that, a lookup reuses a key of the thread
+ * and it returns the same Timer and Counter objects, so recording the metrics of a request allocates nothing.
+ *
+ * The metrics are never removed from the registry by the reporters, which reset the counters instead. If a metric is
+ * removed, all the handles are resolved again.
+ */
+class MetricHandleCache {
+    static final String RESPONSE_TIME = "response_time";
+    private static final String[] COUNTER_NAMES = {"request", "success", "auth_error", "request_error", "server_error"};
+    private static final int REQUEST = 0;
+    private static final int SUCCESS = 1;
+    private static final int AUTH_ERROR = 2;
+    private static final int REQUEST_ERROR = 3;
+    private static final int SERVER_ERROR = 4;
+
+    private final MetricRegistry registry;
+    private final Map<String, String> commonTags;
+    private final Map<Key, Handles> handles = new ConcurrentHashMap<>();
+    private final ThreadLocal<Key> probe = ThreadLocal.withInitial(Key::new);
+
+    /**
+     * @param registry the registry of the metrics
+     * @param commonTags the tags of all the metrics. They must be populated before the first lookup.
+     */
+    MetricHandleCache(MetricRegistry registry, Map<String, String> commonTags) {
+        this.registry = registry;
+        this.commonTags = commonTags;
+        registry.addListener(new MetricRegistryListener.Base() {
+            @Override
+            public void onCounterRemoved(MetricName name) {
+                handles.clear();
+            }
+
+            @Override
+            public void onTimerRemoved(MetricName name) {
+                handles.clear();
+            }
+        });
+    }
+
+    /**
+     * Get the handles of a metric. The endpoint tag is always added, and the other tags are only added if they are
+     * not null.
+     *
+     * @param name the name of the timer
+     * @param endpoint the endpoint tag
+     * @param clientId the clientId tag
+     * @param scopeClientId the scopeClientId tag
+     * @param callerId the callerId tag
+     * @param issuer the issuer tag
+     * @return Handles
+     */
+    Handles get(String name, String endpoint, String clientId, String scopeClientId, String callerId, String issuer) {
+        Key key = probe.get().set(name, endpoint, clientId, scopeClientId, callerId, issuer);
+        Handles cached = handles.get(key);
+        return cached != null ? cached : handles.computeIfAbsent(key.copy(), this::create);
+    }
+
+    int size() {
+        return handles.size();
+    }
+
+    private Handles create(Key key) {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("endpoint", key.endpoint);
+        if (key.clientId != null) tags.put("clientId", key.clientId);
+        if (key.scopeClientId != null) tags.put("scopeClientId", key.scopeClientId);
+        if (key.callerId != null) tags.put("callerId", key.callerId);
+        if (key.issuer != null) tags.put("issuer", key.issuer);
+        return new Handles(key.name, tags);
+    }
+
+    /**
+     * The timer and the status code counters of a combination of tags. The counters are registered on the first
+     * use so that only the counters of the status codes that have happened are reported.
+     */
+    final class Handles {
+        private final Map<String, String> tags;
+        private final Timer timer;
+        private final AtomicReferenceArray<Counter> counters = new AtomicReferenceArray<>(COUNTER_NAMES.length);
+
+        private Handles(String name, Map<String, String> tags) {
+            this.tags = tags;
+            this.timer = registry.getOrAdd(new MetricName(name).tagged(commonTags).tagged(tags), MetricRegistry.MetricBuilder.TIMERS);
+        }
+
+        Timer timer() {
+            return timer;
+        }
+
+        Map<String, String> tags() {
+            return tags;
+        }
+
+        /**
+         * Increase the request counter and the counter of the class of the status code.
+         *
+         * @param statusCode the status code of the response
+         */
+        void count(int statusCode) {
+            counter(REQUEST).inc();
+            if (statusCode >= 200 && statusCode < 400) {
+                counter(SUCCESS).inc();
+            } else if (statusCode == 401 || statusCode == 403) {
+                counter(AUTH_ERROR).inc();
+            } else if (statusCode >= 400 && statusCode < 500) {
+                counter(REQUEST_ERROR).inc();
+            } else if (statusCode >= 500) {
+                counter(SERVER_ERROR).inc();
+            }
+        }
+
+        private Counter counter(int index) {
+            Counter counter = counters.get(index);
+            if (counter == null) {
+                // the registry returns the same counter if two threads get here at the same time.
+                counter = registry.getOrAdd(new MetricName(COUNTER_NAMES[index]).tagged(commonTags).tagged(tags), MetricRegistry.MetricBuilder.COUNTERS);
+                counters.set(index, counter);
+            }
+            return counter;
+        }
+    }
+
+    private static final class Key {
+        private String name;
+        private String endpoint;
+        private String clientId;
+        private String scopeClientId;
+        private String callerId;
+        private String issuer;
+        private int hash;
+
+        Key set(String name, String endpoint, String clientId, String scopeClientId, String callerId, String issuer) {
+            this.name = name;
+            this.endpoint = endpoint;
+            this.clientId = clientId;
+            this.scopeClientId = scopeClientId;
+            this.callerId = callerId;
+            this.issuer = issuer;
+            int h = Objects.hashCode(name);
+            h = 31 * h + Objects.hashCode(endpoint);
+            h = 31 * h + Objects.hashCode(clientId);
+            h = 31 * h + Objects.hashCode(scopeClientId);
+            h = 31 * h + Objects.hashCode(callerId);
+            this.hash = 31 * h + Objects.hashCode(issuer);
+            return this;
+        }
+
+        Key copy() {
+            return new Key().set(name, endpoint, clientId, scopeClientId, callerId, issuer);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && Objects.equals(name, key.name) && Objects.equals(endpoint, key.endpoint)
+                    && Objects.equals(clientId, key.clientId) && Objects.equals(scopeClientId, key.scopeClientId)
+                    && Objects.equals(callerId, key.callerId) && Objects.equals(issuer, key.issuer);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
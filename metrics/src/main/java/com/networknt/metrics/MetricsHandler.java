@@ -10,8 +10,6 @@ import com.networknt.utility.ModuleRegistry;
 import com.networknt.utility.Util;
 import io.dropwizard.metrics.Clock;
 import io.dropwizard.metrics.MetricFilter;
-import io.dropwizard.metrics.MetricName;
-import io.dropwizard.metrics.MetricRegistry;
 import io.dropwizard.metrics.influxdb.InfluxDbHttpSender;
 import io.dropwizard.metrics.influxdb.InfluxDbReporter;
 import io.undertow.Handlers;
@@ -21,7 +19,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -87,17 +84,15 @@ public class MetricsHandler extends AbstractMetricsHandler {
             try {
                 Map<String, Object> auditInfo = exchange1.getAttachment(AttachmentConstants.AUDIT_INFO);
                 if(auditInfo != null && !auditInfo.isEmpty()) {
-                    Map<String, String> tags = new HashMap<>();
-                    tags.put("endpoint", (String)auditInfo.get(Constants.ENDPOINT_STRING));
-                    tags.put("clientId", auditInfo.get(Constants.CLIENT_ID_STRING) != null ? (String)auditInfo.get(Constants.CLIENT_ID_STRING) : "unknown");
-                    tags.put("scopeClientId", auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) != null ? (String)auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) : "unknown");
-                    tags.put("callerId", auditInfo.get(Constants.CALLER_ID_STRING) != null ? (String)auditInfo.get(Constants.CALLER_ID_STRING) : "unknown");
+                    MetricHandleCache.Handles handles = handleCache().get(MetricHandleCache.RESPONSE_TIME,
+                            (String)auditInfo.get(Constants.ENDPOINT_STRING),
+                            auditInfo.get(Constants.CLIENT_ID_STRING) != null ? (String)auditInfo.get(Constants.CLIENT_ID_STRING) : UNKNOWN,
+                            auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) != null ? (String)auditInfo.get(Constants.SCOPE_CLIENT_ID_STRING) : UNKNOWN,
+                            auditInfo.get(Constants.CALLER_ID_STRING) != null ? (String)auditInfo.get(Constants.CALLER_ID_STRING) : UNKNOWN,
+                            null);
                     long time = Clock.defaultClock().getTick() - startTime;
-                    MetricName metricName = new MetricName("response_time");
-                    metricName = metricName.tagged(commonTags);
-                    metricName = metricName.tagged(tags);
-                    registry.getOrAdd(metricName, MetricRegistry.MetricBuilder.TIMERS).update(time, TimeUnit.NANOSECONDS);
-                    incCounterForStatusCode(exchange1.getStatusCode(), commonTags, tags);
+                    handles.timer().update(time, TimeUnit.NANOSECONDS);
+                    handles.count(exchange1.getStatusCode());
                 } else {
                     // when we reach here, it will be in light-gateway so no specification is loaded on the server and also the security verification is failed.
                     // we need to come up with the endpoint at last to ensure we have some meaningful metrics info populated.
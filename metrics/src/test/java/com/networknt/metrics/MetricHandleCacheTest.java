@@ -0,0 +1,115 @@
+package com.networknt.metrics;
+
+import io.dropwizard.metrics.MetricName;
+import io.dropwizard.metrics.MetricRegistry;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class MetricHandleCacheTest {
+    private static final Map<String, String> COMMON_TAGS = Map.of("api", "petstore", "env", "dev", "host", "localhost");
+
+    @Test
+    public void testSameMetricNames() {
+        MetricRegistry registry = new MetricRegistry();
+        MetricHandleCache cache = new MetricHandleCache(registry, COMMON_TAGS);
+        MetricHandleCache.Handles handles = cache.get(MetricHandleCache.RESPONSE_TIME, "/v1/pets@get", "client1", "unknown", "unknown", null);
+        handles.timer().update(10, TimeUnit.MILLISECONDS);
+        handles.count(200);
+        handles.count(302);
+        handles.count(401);
+        handles.count(404);
+        handles.count(503);
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put("endpoint", "/v1/pets@get");
+        tags.put("clientId", "client1");
+        tags.put("scopeClientId", "unknown");
+        tags.put("callerId", "unknown");
+        Assert.assertEquals(1, registry.getTimers().get(name(MetricHandleCache.RESPONSE_TIME, tags)).getCount());
+        Assert.assertEquals(5, registry.getCounters().get(name("request", tags)).getCount());
+        Assert.assertEquals(2, registry.getCounters().get(name("success", tags)).getCount());
+        Assert.assertEquals(1, registry.getCounters().get(name("auth_error", tags)).getCount());
+        Assert.assertEquals(1, registry.getCounters().get(name("request_error", tags)).getCount());
+        Assert.assertEquals(1, registry.getCounters().get(name("server_error", tags)).getCount());
+    }
+
+    @Test
+    public void testHandlesAreReused() {
+        MetricRegistry registry = new MetricRegistry();
+        MetricHandleCache cache = new MetricHandleCache(registry, COMMON_TAGS);
+        MetricHandleCache.Handles handles = cache.get("response_time", "/v1/pets@get", "client1", null, null, null);
+        // the tags from the auditInfo are different string objects for each request.
+        Assert.assertSame(handles, cache.get(new String("response_time"), new String("/v1/pets@get"), new String("client1"), null, null, null));
+        Assert.assertNotSame(handles, cache.get("response_time", "/v1/pets@get", "client1", "unknown", null, null));
+        Assert.assertEquals(2, cache.size());
+        // only the counters that have been used are registered.
+        handles.count(200);
+        Assert.assertEquals(2, registry.getCounters().size());
+        // the handles are resolved again when a metric is removed from the registry.
+        registry.remove(name("response_time", handles.tags()));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    /**
+     * Compare the heap allocated by the exchange complete listener with the tags map and MetricName built for every
+     * request, and with the cached handles.
+     */
+    @Ignore
+    @Test
+    public void testListenerAllocation() {
+        MetricRegistry registry = new MetricRegistry();
+        MetricHandleCache cache = new MetricHandleCache(registry, COMMON_TAGS);
+        Map<String, Object> auditInfo = new HashMap<>();
+        auditInfo.put("endpoint", "/v1/pets@get");
+        auditInfo.put("clientId", "client1");
+        int loop = 200000;
+        Runnable tagged = () -> {
+            Map<String, String> tags = new HashMap<>();
+            tags.put("endpoint", (String) auditInfo.get("endpoint"));
+            tags.put("clientId", auditInfo.get("clientId") != null ? (String) auditInfo.get("clientId") : "unknown");
+            tags.put("scopeClientId", auditInfo.get("scopeClientId") != null ? (String) auditInfo.get("scopeClientId") : "unknown");
+            tags.put("callerId", auditInfo.get("callerId") != null ? (String) auditInfo.get("callerId") : "unknown");
+            registry.getOrAdd(name(MetricHandleCache.RESPONSE_TIME, tags), MetricRegistry.MetricBuilder.TIMERS).update(1000, TimeUnit.NANOSECONDS);
+            registry.getOrAdd(name("request", tags), MetricRegistry.MetricBuilder.COUNTERS).inc();
+            registry.getOrAdd(name("success", tags), MetricRegistry.MetricBuilder.COUNTERS).inc();
+        };
+        Runnable cached = () -> {
+            MetricHandleCache.Handles handles = cache.get(MetricHandleCache.RESPONSE_TIME,
+                    (String) auditInfo.get("endpoint"),
+                    auditInfo.get("clientId") != null ? (String) auditInfo.get("clientId") : "unknown",
+                    auditInfo.get("scopeClientId") != null ? (String) auditInfo.get("scopeClientId") : "unknown",
+                    auditInfo.get("callerId") != null ? (String) auditInfo.get("callerId") : "unknown",
+                    null);
+            handles.timer().update(1000, TimeUnit.NANOSECONDS);
+            handles.count(200);
+        };
+        long[] taggedResult = measure(loop, tagged);
+        long[] cachedResult = measure(loop, cached);
+        System.out.println("tagged " + taggedResult[0] + " ns/op " + taggedResult[1] + " bytes/op");
+        System.out.println("cached " + cachedResult[0] + " ns/op " + cachedResult[1] + " bytes/op");
+        Assert.assertTrue(cachedResult[1] < taggedResult[1]);
+    }
+
+    private static long[] measure(int loop, Runnable task) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // warm up before the measurement.
+        for (int i = 0; i < loop; i++) task.run();
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < loop; i++) task.run();
+        long elapsed = System.nanoTime() - start;
+        allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocated;
+        return new long[]{elapsed / loop, allocated / loop};
+    }
+
+    private static MetricName name(String name, Map<String, String> tags) {
+        return new MetricName(name).tagged(COMMON_TAGS).tagged(tags);
+    }
+}
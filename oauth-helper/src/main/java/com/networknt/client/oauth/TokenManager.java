@@ -1,8 +1,6 @@
 package com.networknt.client.oauth;
 
 import com.networknt.client.ClientConfig;
-import com.networknt.client.oauth.cache.ICacheStrategy;
-import com.networknt.client.oauth.cache.LongestExpireCacheStrategy;
 import com.networknt.monad.Failure;
 import com.networknt.monad.Result;
 import com.networknt.status.Status;
@@ -14,7 +12,7 @@ import java.util.*;
 /**
  * This class is a singleton to manage ALL tokens.
  * This TokenManager provides a simple method to consumer to get a token.
- * It manages caches based on different cache strategies underneath.
+ * It manages the cache with a TokenRefresher underneath, which renews the tokens in the background before they expire.
  */
 public class TokenManager {
     private Logger logger = LoggerFactory.getLogger(TokenManager.class);
@@ -23,7 +21,7 @@ public class TokenManager {
     private static volatile TokenManager INSTANCE;
     private static int CAPACITY = 200;
 
-    private ICacheStrategy cacheStrategy;
+    private TokenRefresher tokenRefresher;
 
     private TokenManager() {
         //set CAPACITY based on config
@@ -36,7 +34,7 @@ public class TokenManager {
                 }
             }
         }
-        cacheStrategy = new LongestExpireCacheStrategy(CAPACITY);
+        tokenRefresher = new TokenRefresher(CAPACITY);
     }
 
     public static TokenManager getInstance() {
@@ -54,37 +52,18 @@ public class TokenManager {
      * get a Jwt with a provided Key (Key is either scope or a service id inputted by user, for caching usage):
      * 1.if a token is cached with provided key
      *      - if the token is expired, renew it right away.
-     *      - if the token is almost expired, use this token and renew it silently.
+     *      - if the token is almost expired, use this token and renew it in the background if it is not being renewed.
      *      - if the token is not almost expired, just use this token.
      * 2.if a token is not cached with provided key
      *      - get a new jwt from oauth server
-     * 3.after getting the valid token, cache that token no matter if it's already cached or not. The strategy should determine how to cache it.
+     * 3.the cached token is renewed in the background before it is almost expired as long as it is used.
+     * The concurrent requests for the same token are coalesced into one request to the oauth server.
      * @param key either based on scope or service id
      * @param ccConfig a map of target auth server client credentials config
      * @return a Jwt if successful, otherwise return error Status.
      */
     public Result<Jwt> getJwt(Jwt.Key key, Map<String, Object> ccConfig) {
-        Jwt cachedJwt = getJwt(cacheStrategy, key);
-        if(ccConfig != null) cachedJwt.setCcConfig(ccConfig);
-        Result<Jwt> result = OauthHelper.populateCCToken(cachedJwt);
-        //update JWT
-        if (result.isSuccess()) {
-            cacheStrategy.cacheJwt(key, result.getResult());
-        }
-        return result;
-    }
-
-    /**
-     * cache jwt if not exist
-     */
-    private synchronized Jwt getJwt(ICacheStrategy cacheStrategy, Jwt.Key key) {
-        Jwt result = cacheStrategy.getCachedJwt(key);
-        if(result == null) {
-            //cache an empty JWT first.
-            result = new Jwt(key);
-            cacheStrategy.cacheJwt(key, result);
-        }
-        return result;
+        return tokenRefresher.getJwt(key, ccConfig);
     }
 
     /**
@@ -102,13 +81,9 @@ public class TokenManager {
         if(ClientConfig.get().isMultipleAuthServers()) {
             if(logger.isTraceEnabled()) logger.trace("requestPath = " + requestPath + " scopes = " + scopes + " serviceId = " + serviceId);
             // Get the target serviceId based on the request path.
-            Map<String, String> pathPrefixServices = ClientConfig.get().getPathPrefixServices();
-            // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-            for(Map.Entry<String, String> entry: pathPrefixServices.entrySet()) {
-                if(requestPath.startsWith(entry.getKey())) {
-                    serviceId = entry.getValue();
-                }
-            }
+            // lookup the serviceId based on the longest prefix of the full path in the prefix mapping.
+            String prefixServiceId = ClientConfig.get().getPathPrefixServicesTrie().match(requestPath);
+            if(prefixServiceId != null) serviceId = prefixServiceId;
             if(logger.isTraceEnabled()) logger.trace("serviceId = " + serviceId);
             // based on the serviceId, we can find the configuration of the auth server from the client credentials
             Map<String, Object> clientCredentials = (Map<String, Object>)ClientConfig.get().getTokenConfig().get(ClientConfig.CLIENT_CREDENTIALS);
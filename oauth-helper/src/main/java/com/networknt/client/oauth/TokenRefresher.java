@@ -0,0 +1,225 @@
+package com.networknt.client.oauth;
+
+import com.networknt.client.ClientConfig;
+import com.networknt.monad.Failure;
+import com.networknt.monad.Result;
+import com.networknt.monad.Success;
+import com.networknt.status.Status;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client credentials token cache that renews the tokens ahead of the expiry in the background.
+ *
+ * Each token is identified by its Jwt.Key and it is renewed on a scheduler tokenRenewBeforeExpired before it expires,
+ * so the requests keep using the token that is still valid and don't wait for the OAuth 2.0 provider. The concurrent
+ * renewals of the same token are coalesced into one request to the provider, and only the requests that arrive when
+ * there is no valid token wait for it. When the provider returns an error, the renewal is retried with an exponential
+ * back off from the expiredRefreshRetryDelay or earlyRefreshRetryDelay with a random jitter, and the requests without
+ * a valid token get the error until the next retry.
+ *
+ * A token that is not used until its renewal is due is not renewed any more, and it is renewed again when it is used.
+ */
+public class TokenRefresher {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRefresher.class);
+    private static final String ESTABLISH_CONNECTION_ERROR = "ERR10053";
+    // the max exponent of the back off from the retry delay.
+    private static final int MAX_BACKOFF_SHIFT = 5;
+
+    private final int capacity;
+    private final long tokenRenewBeforeExpired;
+    private final long expiredRefreshRetryDelay;
+    private final long earlyRefreshRetryDelay;
+    private final Map<Jwt.Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+
+    /**
+     * Create a refresher with the renew and retry settings in the token section of the client.yml.
+     *
+     * @param capacity the max number of tokens
+     */
+    public TokenRefresher(int capacity) {
+        this(capacity, tokenConfigValue(ClientConfig.TOKEN_RENEW_BEFORE_EXPIRED), tokenConfigValue(ClientConfig.EXPIRED_REFRESH_RETRY_DELAY),
+                tokenConfigValue(ClientConfig.EARLY_REFRESH_RETRY_DELAY));
+    }
+
+    TokenRefresher(int capacity, long tokenRenewBeforeExpired, long expiredRefreshRetryDelay, long earlyRefreshRetryDelay) {
+        this.capacity = capacity;
+        this.tokenRenewBeforeExpired = tokenRenewBeforeExpired;
+        this.expiredRefreshRetryDelay = expiredRefreshRetryDelay;
+        this.earlyRefreshRetryDelay = earlyRefreshRetryDelay;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemon("token-refresher-scheduler"));
+        this.executor = Executors.newCachedThreadPool(daemon("token-refresher"));
+    }
+
+    /**
+     * Get the token of the key. A valid token is returned at once, even if it is being renewed. Otherwise, the caller
+     * waits for the token that is being retrieved.
+     *
+     * @param key either based on scope or service id
+     * @param ccConfig a map of target auth server client credentials config or null for the default one
+     * @return a Jwt if successful, otherwise return error Status.
+     */
+    public Result<Jwt> getJwt(Jwt.Key key, Map<String, Object> ccConfig) {
+        Entry entry = entries.get(key);
+        if(entry == null) entry = newEntry(key);
+        if(!entry.accessed) entry.accessed = true;
+        if(ccConfig != null && entry.ccConfig != ccConfig) entry.ccConfig = ccConfig;
+        long now = System.currentTimeMillis();
+        Jwt jwt = entry.jwt;
+        if(jwt != null && jwt.getExpire() > now) {
+            // the token is not renewed ahead if it was not used when the renewal was due, and a failed renewal
+            // is retried by the scheduler.
+            if(jwt.getExpire() - now < tokenRenewBeforeExpired && now >= entry.retryTime) refresh(entry);
+            return Success.of(jwt);
+        }
+        Result<Jwt> failure = entry.failure;
+        if(failure != null && now < entry.retryTime) {
+            if(logger.isTraceEnabled()) logger.trace("The token is not available and it will be retried in {}ms.", entry.retryTime - now);
+            return failure;
+        }
+        return refresh(entry).join();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Entry newEntry(Jwt.Key key) {
+        if(entries.size() >= capacity) evict();
+        return entries.computeIfAbsent(key, Entry::new);
+    }
+
+    /**
+     * Remove the token that expires first, like the LongestExpireCacheStrategy.
+     */
+    private void evict() {
+        Entry first = null;
+        for (Entry entry : entries.values()) {
+            if(first == null || expire(entry) < expire(first)) first = entry;
+        }
+        if(first != null && entries.remove(first.key, first)) {
+            synchronized (first) {
+                if(first.scheduled != null) first.scheduled.cancel(false);
+            }
+        }
+    }
+
+    private static long expire(Entry entry) {
+        Jwt jwt = entry.jwt;
+        return jwt == null ? 0 : jwt.getExpire();
+    }
+
+    /**
+     * Start to retrieve the token of the entry if it is not being retrieved.
+     *
+     * @return the future of the token that is being retrieved
+     */
+    private CompletableFuture<Result<Jwt>> refresh(Entry entry) {
+        synchronized (entry) {
+            if(entry.inflight == null) {
+                CompletableFuture<Result<Jwt>> future = new CompletableFuture<>();
+                entry.inflight = future;
+                executor.execute(() -> retrieve(entry, future));
+            }
+            return entry.inflight;
+        }
+    }
+
+    private void retrieve(Entry entry, CompletableFuture<Result<Jwt>> future) {
+        Jwt jwt = new Jwt(entry.key);
+        if(entry.ccConfig != null) jwt.setCcConfig(entry.ccConfig);
+        Result<Jwt> result;
+        try {
+            // a new Jwt is expired, so the token is retrieved synchronously on this thread.
+            result = OauthHelper.populateCCToken(jwt);
+        } catch (Throwable e) {
+            logger.error("Failed to retrieve the client credentials token", e);
+            result = Failure.of(new Status(ESTABLISH_CONNECTION_ERROR, String.valueOf(jwt.getCcConfig())));
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entry) {
+            entry.inflight = null;
+            long delay;
+            if(result.isSuccess()) {
+                entry.jwt = result.getResult();
+                entry.failure = null;
+                entry.failures = 0;
+                entry.retryTime = 0;
+                delay = Math.max(entry.jwt.getExpire() - tokenRenewBeforeExpired - now, 0);
+                if(logger.isDebugEnabled()) logger.debug("The token is retrieved and it will be renewed in {}ms.", delay);
+            } else {
+                Jwt current = entry.jwt;
+                boolean valid = current != null && current.getExpire() > now;
+                long base = valid ? earlyRefreshRetryDelay : expiredRefreshRetryDelay;
+                delay = base << Math.min(entry.failures++, MAX_BACKOFF_SHIFT);
+                // retry before the current token expires at the latest.
+                if(valid) delay = Math.min(delay, current.getExpire() - now);
+                delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+                entry.failure = result;
+                entry.retryTime = now + delay;
+                logger.error("Failed to renew the token with status {} and it will be retried in {}ms.", result.getError(), delay);
+            }
+            if(entry.scheduled != null) entry.scheduled.cancel(false);
+            if(entries.get(entry.key) == entry) {
+                entry.scheduled = scheduler.schedule(() -> renew(entry), delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        future.complete(result);
+    }
+
+    private void renew(Entry entry) {
+        if(!entry.accessed) {
+            if(logger.isDebugEnabled()) logger.debug("The token is not used since it is retrieved and it is not renewed.");
+            return;
+        }
+        entry.accessed = false;
+        refresh(entry);
+    }
+
+    private static long tokenConfigValue(String name) {
+        Map<String, Object> tokenConfig = ClientConfig.get().getTokenConfig();
+        Object value = tokenConfig == null ? null : tokenConfig.get(name);
+        return value == null ? 0 : ((Number)value).longValue();
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The token of a key and the state of its renewal. The renewal state is guarded by the entry.
+     */
+    private static class Entry {
+        final Jwt.Key key;
+        volatile Map<String, Object> ccConfig;
+        volatile Jwt jwt;
+        volatile Result<Jwt> failure;
+        volatile long retryTime;
+        // if the token is used since the last renewal.
+        volatile boolean accessed;
+        int failures;
+        CompletableFuture<Result<Jwt>> inflight;
+        ScheduledFuture<?> scheduled;
+
+        Entry(Jwt.Key key) {
+            this.key = key;
+        }
+    }
+}
@@ -38,6 +38,10 @@ public class LimitConfig {
     private static final String CLIENT_ID_KEY = "clientIdKeyResolver";
     private static final String USER_ID_KEY = "userIdKeyResolver";
     private static final String ADDRESS_KEY = "addressKeyResolver";
+    private static final String ENGINE = "engine";
+    private static final String KEY_CACHE_SIZE = "keyCacheSize";
+    private static final String KEY_IDLE_TIMEOUT = "keyIdleTimeout";
+    private static final String LEASE_PERCENT = "leasePercent";
     private static final String RATE_LIMIT = "rateLimit";
     private static final String SERVER = "server";
     private static final String ADDRESS = "address";
@@ -53,6 +57,10 @@ public class LimitConfig {
     String clientIdKeyResolver;
     String addressKeyResolver;
     String userIdKeyResolver;
+    String engine;
+    int keyCacheSize;
+    int keyIdleTimeout;
+    int leasePercent;
 
     LimitKey key;
     List<LimitQuota> rateLimit;
@@ -150,6 +158,38 @@ public class LimitConfig {
         this.userIdKeyResolver = userIdKeyResolver;
     }
 
+    public String getEngine() {
+        return engine;
+    }
+
+    public void setEngine(String engine) {
+        this.engine = engine;
+    }
+
+    public int getKeyCacheSize() {
+        return keyCacheSize;
+    }
+
+    public void setKeyCacheSize(int keyCacheSize) {
+        this.keyCacheSize = keyCacheSize;
+    }
+
+    public int getKeyIdleTimeout() {
+        return keyIdleTimeout;
+    }
+
+    public void setKeyIdleTimeout(int keyIdleTimeout) {
+        this.keyIdleTimeout = keyIdleTimeout;
+    }
+
+    public int getLeasePercent() {
+        return leasePercent;
+    }
+
+    public void setLeasePercent(int leasePercent) {
+        this.leasePercent = leasePercent;
+    }
+
     public LimitKey getKey() {
         return key;
     }
@@ -223,6 +263,26 @@ public class LimitConfig {
         if(object != null) setAddressKeyResolver((String) object);
         object = getMappedConfig().get(USER_ID_KEY);
         if(object != null) setUserIdKeyResolver((String) object);
+        object = getMappedConfig().get(ENGINE);
+        if(object != null) setEngine((String) object);
+        object = getMappedConfig().get(KEY_CACHE_SIZE);
+        if(object != null) {
+            keyCacheSize = Config.loadIntegerValue(KEY_CACHE_SIZE, object);
+        } else {
+            keyCacheSize = 100000;
+        }
+        object = getMappedConfig().get(KEY_IDLE_TIMEOUT);
+        if(object != null) {
+            keyIdleTimeout = Config.loadIntegerValue(KEY_IDLE_TIMEOUT, object);
+        } else {
+            keyIdleTimeout = 3600;
+        }
+        object = getMappedConfig().get(LEASE_PERCENT);
+        if(object != null) {
+            leasePercent = Config.loadIntegerValue(LEASE_PERCENT, object);
+        } else {
+            leasePercent = 10;
+        }
     }
 
     private void setRateLimitConfig() {
@@ -30,6 +30,9 @@ import io.undertow.util.HttpString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * A handler which limits the maximum number of concurrent requests.  Requests beyond the limit will
  * be queued with limited size of queue. If the queue is full, then request will be dropped.
@@ -104,7 +107,7 @@ public class LimitHandler implements MiddlewareHandler {
 
     @Override
     public void register() {
-        ModuleRegistry.registerModule(LimitHandler.class.getName(), config.getMappedConfig(), null);
+        ModuleRegistry.registerModule(LimitHandler.class.getName(), getRegistryConfig(), null);
     }
 
     @Override
@@ -116,7 +119,19 @@ public class LimitHandler implements MiddlewareHandler {
             logger.error("Failed to recreate RateLimiter with reloaded config.", e);
         }
         // after reload, we need to update the config in the module registry to ensure that server info returns the latest configuration.
-        ModuleRegistry.registerModule(LimitHandler.class.getName(), config.getMappedConfig(), null);
+        ModuleRegistry.registerModule(LimitHandler.class.getName(), getRegistryConfig(), null);
         if(logger.isInfoEnabled()) logger.info("LimitHandler is reloaded.");
     }
+
+    /**
+     * The registered config is shown in the server info. The key store of the rate limiter is added so that the
+     * number of keys, evictions and the memory footprint are part of it.
+     *
+     * @return Map of the config with the key store
+     */
+    private Map<String, Object> getRegistryConfig() {
+        Map<String, Object> registryConfig = new HashMap<>(config.getMappedConfig());
+        registryConfig.put("keyStore", rateLimiter.getKeyStore());
+        return registryConfig;
+    }
 }
@@ -0,0 +1,91 @@
+package com.networknt.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.networknt.limit.engine.RateLimitCounter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Keeps the rate limit counters of the RateLimiter by key. The keys defined in the limit.yml are kept as
+ * long as the RateLimiter. All other keys are resolved from the requests, for example, the remote address
+ * of an Internet facing gateway. They are kept in a cache that is bounded by the keyCacheSize and evicts
+ * the keys that have been idle for longer than the keyIdleTimeout.
+ *
+ * The statistics of the store are registered with the LimitHandler so that they are part of the server info.
+ */
+public class LimitKeyStore {
+    // estimated bytes of a cache entry, the key string and the counter array without the counters.
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Map<String, RateLimitCounter[]> configuredKeys = new ConcurrentHashMap<>();
+    private final Cache<String, RateLimitCounter[]> requestKeys;
+    private final long maximumSize;
+
+    LimitKeyStore(long maximumSize, long idleTimeoutInSeconds) {
+        this.maximumSize = maximumSize;
+        this.requestKeys = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleTimeoutInSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    void putConfigured(String key, RateLimitCounter[] counters) {
+        configuredKeys.put(key, counters);
+    }
+
+    RateLimitCounter[] getConfigured(String key) {
+        return configuredKeys.get(key);
+    }
+
+    RateLimitCounter[] getOrCreate(String key, Function<String, RateLimitCounter[]> factory) {
+        RateLimitCounter[] counters = requestKeys.getIfPresent(key);
+        return counters != null ? counters : requestKeys.get(key, factory);
+    }
+
+    /**
+     * Run the pending evictions of the cache. It is exposed for testing only.
+     */
+    void cleanUp() {
+        requestKeys.cleanUp();
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public int getConfiguredKeyCount() {
+        return configuredKeys.size();
+    }
+
+    public long getKeyCount() {
+        return requestKeys.estimatedSize();
+    }
+
+    public long getEvictionCount() {
+        return requestKeys.stats().evictionCount();
+    }
+
+    /**
+     * @return the estimated number of bytes held by all the keys and counters in the store.
+     */
+    public long getMemoryFootprint() {
+        long footprint = footprint(configuredKeys);
+        return footprint + footprint(requestKeys.asMap());
+    }
+
+    private static long footprint(Map<String, RateLimitCounter[]> map) {
+        long footprint = 0;
+        for (Map.Entry<String, RateLimitCounter[]> entry : map.entrySet()) {
+            footprint += ENTRY_OVERHEAD + 2L * entry.getKey().length() + (long) entry.getValue().length * Long.BYTES;
+            for (RateLimitCounter counter : entry.getValue()) {
+                footprint += counter.footprint();
+            }
+        }
+        return footprint;
+    }
+}
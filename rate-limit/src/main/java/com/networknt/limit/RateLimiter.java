@@ -1,39 +1,44 @@
 package com.networknt.limit;
 
 import com.networknt.exception.FrameworkException;
+import com.networknt.limit.engine.RateLimitCounter;
+import com.networknt.limit.engine.RateLimitEngine;
 import com.networknt.limit.key.KeyResolver;
 import com.networknt.status.Status;
 import com.networknt.utility.Constants;
+import com.networknt.utility.PathPrefixTrie;
 
 import io.undertow.server.HttpServerExchange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *  Rate limit logic for light-4j framework. The config will define in the limit.yml config file.
  *
  * By default Rate limit will handle on the server(service) level. But framework support client and address level limitation
  *
+ * The counting for each key and quota is delegated to the RateLimitEngine configured in the limit.yml.
+ *
  * @author Gavin Chen
  */
 public class RateLimiter {
     private static final String LIMIT_KEY_NOT_FOUND = "ERR10073";
+    private static final String DEFAULT_ENGINE = "com.networknt.limit.engine.SlidingWindowEngine";
+    private static final RateLimitResponse ALLOWED = new RateLimitResponse(true, null);
     protected LimitConfig config;
 
-    private Map<String, Map<Long, AtomicLong>> serverTimeMap = new ConcurrentHashMap<>();
-
-    private Map<String, Map<TimeUnit, Map<Long, AtomicLong>>> directTimeMap = new ConcurrentHashMap<>();
+    private final LimitKeyStore keyStore;
+    // the path prefixes of the server key that are compiled when the config is loaded.
+    private final PathPrefixTrie<String> serverPrefixes;
     private static final Logger logger = LoggerFactory.getLogger(RateLimiter.class);
     static final String ADDRESS_TYPE = "address";
     static final String CLIENT_TYPE = "client";
     static final String USER_TYPE = "user";
 
+    private final RateLimitEngine engine;
     private KeyResolver clientIdKeyResolver;
     private KeyResolver addressKeyResolver;
     private KeyResolver userIdKeyResolver;
@@ -46,20 +51,24 @@ public class RateLimiter {
      */
     public RateLimiter(LimitConfig config) throws Exception {
         this.config = config;
+        String engineClass = this.config.getEngine()==null? DEFAULT_ENGINE:this.config.getEngine();
+        engine = (RateLimitEngine)Class.forName(engineClass).getDeclaredConstructor().newInstance();
+        engine.init(config);
+        // a key resolved from the requests must be kept for at least the longest window of its quotas.
+        long idleTimeout = config.getKeyIdleTimeout();
+        for (LimitQuota limitQuota : config.getRateLimit()) {
+            idleTimeout = Math.max(idleTimeout, limitQuota.getUnit().toSeconds(1));
+        }
+        keyStore = new LimitKeyStore(config.getKeyCacheSize(), idleTimeout);
+        serverPrefixes = config.getServer() == null ? PathPrefixTrie.empty() : PathPrefixTrie.of(config.getServer().keySet());
         if (LimitKey.SERVER.equals(config.getKey())) {
             if (this.config.getServer()!=null && !this.config.getServer().isEmpty()) {
-                this.config.getServer().forEach((k,v)->serverTimeMap.put(k, new ConcurrentHashMap<>()));
+                this.config.getServer().forEach((k,v)->keyStore.putConfigured(k, newCounters(k, Collections.singletonList(v))));
             }
         } else if (LimitKey.ADDRESS.equals(config.getKey())) {
             if (this.config.getAddress()!=null) {
                 if (this.config.getAddress().getDirectMaps()!=null && !this.config.getAddress().getDirectMaps().isEmpty()) {
-                    this.config.getAddress().getDirectMaps().forEach((k,v)->{
-                        Map<TimeUnit, Map<Long, AtomicLong>> directMap = new ConcurrentHashMap<>();
-                        v.forEach(i->{
-                            directMap.put(i.getUnit(), new ConcurrentHashMap<>());
-                        });
-                        directTimeMap.put(k, directMap);
-                    });
+                    this.config.getAddress().getDirectMaps().forEach((k,v)->keyStore.putConfigured(k, newCounters(k, v)));
                 }
             }
             String addressKey = this.config.getAddressKeyResolver()==null? "com.networknt.limit.key.RemoteAddressKeyResolver":this.config.getAddressKeyResolver();
@@ -67,13 +76,7 @@ public class RateLimiter {
         } else if (LimitKey.CLIENT.equals(config.getKey())) {
             if (this.config.getClient()!=null) {
                 if (this.config.getClient().getDirectMaps()!=null && !this.config.getClient().getDirectMaps().isEmpty()) {
-                    this.config.getClient().getDirectMaps().forEach((k,v)->{
-                        Map<TimeUnit, Map<Long, AtomicLong>> directMap = new ConcurrentHashMap<>();
-                        v.forEach(i->{
-                            directMap.put(i.getUnit(), new ConcurrentHashMap<>());
-                        });
-                        directTimeMap.put(k, directMap);
-                    });
+                    this.config.getClient().getDirectMaps().forEach((k,v)->keyStore.putConfigured(k, newCounters(k, v)));
                 }
             }
             String clientIdKey = this.config.getClientIdKeyResolver()==null? "com.networknt.limit.key.JwtClientIdKeyResolver":this.config.getClientIdKeyResolver();
@@ -81,13 +84,7 @@ public class RateLimiter {
         } else if (LimitKey.USER.equals(config.getKey())) {
             if (this.config.getUser()!=null) {
                 if (this.config.getUser().getDirectMaps()!=null && !this.config.getUser().getDirectMaps().isEmpty()) {
-                    this.config.getUser().getDirectMaps().forEach((k,v)->{
-                        Map<TimeUnit, Map<Long, AtomicLong>> directMap = new ConcurrentHashMap<>();
-                        v.forEach(i->{
-                            directMap.put(i.getUnit(), new ConcurrentHashMap<>());
-                        });
-                        directTimeMap.put(k, directMap);
-                    });
+                    this.config.getUser().getDirectMaps().forEach((k,v)->keyStore.putConfigured(k, newCounters(k, v)));
                 }
             }
             String userIdKey = this.config.getUserIdKeyResolver()==null? "com.networknt.limit.key.JwtUserIdKeyResolver":this.config.getUserIdKeyResolver();
@@ -139,83 +136,35 @@ public class RateLimiter {
      * @return RateLimitResponse response
      */
     protected RateLimitResponse isAllowDirect(String directKey, String path, String type) {
-        long currentTimeWindow = Instant.now().getEpochSecond();
-        Map<TimeUnit, Map<Long, AtomicLong>> localTimeMap;
+        long currentTimeWindow = System.currentTimeMillis() / 1000;
 
         String keyWithPath = directKey + LimitConfig.SEPARATE_KEY + path;
-        List<LimitQuota> rateLimit;
-        String mapKey = directKey;
+        LimitConfig.RateLimitSet rateLimitSet;
         if (ADDRESS_TYPE.equalsIgnoreCase(type)) {
-            if (config.getAddress() != null && config.getAddress().directMaps.containsKey(keyWithPath)) {
-                rateLimit = config.getAddress().directMaps.get(keyWithPath);
-                mapKey = keyWithPath;
-            } else if (config.getAddress() != null && config.getAddress().directMaps.containsKey(directKey)) {
-                rateLimit = config.getAddress().directMaps.get(directKey);
-            } else {
-                rateLimit = config.rateLimit;
-                Map<TimeUnit, Map<Long, AtomicLong>> directMap = new ConcurrentHashMap<>();
-
-                this.config.getRateLimit().forEach(i->{
-                    directMap.put(i.getUnit(), new ConcurrentHashMap<>());
-                });
-                directTimeMap.put(mapKey, directMap);
-            }
+            rateLimitSet = config.getAddress();
         } else if(CLIENT_TYPE.equalsIgnoreCase(type)) {
-            if (config.getClient() != null && config.getClient().directMaps.containsKey(keyWithPath)) {
-                rateLimit = config.getClient().directMaps.get(keyWithPath);
-                mapKey = keyWithPath;
-            } else if (config.getClient() != null && config.getClient().directMaps.containsKey(directKey)) {
-                rateLimit = config.getClient().directMaps.get(directKey);
-            } else {
-                rateLimit = config.rateLimit;
-                Map<TimeUnit, Map<Long, AtomicLong>> directMap = new ConcurrentHashMap<>();
-                synchronized(this) {
-                    this.config.getRateLimit().forEach(i->{
-                        directMap.put(i.getUnit(), new ConcurrentHashMap<>());
-                    });
-                    directTimeMap.put(mapKey, directMap);
-                }
-            }
+            rateLimitSet = config.getClient();
         } else {
-            if (config.getUser() != null && config.getUser().directMaps.containsKey(keyWithPath)) {
-                rateLimit = config.getUser().directMaps.get(keyWithPath);
-                mapKey = keyWithPath;
-            } else if (config.getUser() != null && config.getUser().directMaps.containsKey(directKey)) {
-                rateLimit = config.getUser().directMaps.get(directKey);
-            } else {
-                rateLimit = config.rateLimit;
-                Map<TimeUnit, Map<Long, AtomicLong>> directMap = new ConcurrentHashMap<>();
-                synchronized(this) {
-                    this.config.getRateLimit().forEach(i->{
-                        directMap.put(i.getUnit(), new ConcurrentHashMap<>());
-                    });
-                    directTimeMap.put(mapKey, directMap);
-                }
-            }
+            rateLimitSet = config.getUser();
         }
-        localTimeMap = directTimeMap.get(mapKey);
-        synchronized(this) {
-            for (LimitQuota limitQuota: rateLimit) {
-                Map<Long, AtomicLong> timeMap =  localTimeMap.get(limitQuota.getUnit());
-                if (timeMap.isEmpty()) {
-                    timeMap.put(currentTimeWindow, new AtomicLong(1L));
-                    return new RateLimitResponse(true, null);
-                } else {
-                    Long countInOverallTime = removeOldEntriesForUser(currentTimeWindow, timeMap, limitQuota.unit);
-                    if (countInOverallTime < limitQuota.value) {
-                        //Handle new time windows
-                        Long newCount = timeMap.getOrDefault(currentTimeWindow, new AtomicLong(0)).longValue() + 1;
-                        timeMap.put(currentTimeWindow, new AtomicLong(newCount));
-                        logger.debug("CurrentTimeWindow:" + currentTimeWindow +" Result:true "+ " Count:"+countInOverallTime);
-                        return new RateLimitResponse(true, null);
-                    } else {
-                        String reset = getRateLimitReset(currentTimeWindow, timeMap, limitQuota);
-                        return new RateLimitResponse(false, buildHeaders(countInOverallTime, limitQuota, reset));
-                    }
-                }
-            }
+        List<LimitQuota> rateLimit;
+        RateLimitCounter[] counters = null;
+        String mapKey = directKey;
+        if (rateLimitSet != null && rateLimitSet.directMaps.containsKey(keyWithPath)) {
+            rateLimit = rateLimitSet.directMaps.get(keyWithPath);
+            mapKey = keyWithPath;
+            counters = keyStore.getConfigured(keyWithPath);
+        } else if (rateLimitSet != null && rateLimitSet.directMaps.containsKey(directKey)) {
+            rateLimit = rateLimitSet.directMaps.get(directKey);
+            counters = keyStore.getConfigured(directKey);
+        } else {
+            rateLimit = config.rateLimit;
+        }
+        if (counters == null) {
+            // the key is not defined in the config of the current limit key, so it is resolved from the request.
+            counters = keyStore.getOrCreate(mapKey, k -> newCounters(k, rateLimit));
         }
-        return null;
+        return isAllow(currentTimeWindow, counters, rateLimit);
     }
 
     /**
@@ -224,79 +173,58 @@ public class RateLimiter {
      * @return RateLimitResponse rate limit response
      */
     public RateLimitResponse isAllowByServer(String path) {
-        long currentTimeWindow = Instant.now().getEpochSecond();
-        Map<Long, AtomicLong> timeMap = lookupServerTimeMap(path);
-        if(timeMap == null) {
-            timeMap = new ConcurrentHashMap<>();
-            synchronized(this) {
-                serverTimeMap.put(path, timeMap);
-            }
-        }
-        LimitQuota limitQuota = config.getServer() != null ? lookupLimitQuota(path) : null;
-        if(limitQuota == null) {
-            limitQuota = this.config.getRateLimit().get(0);
-        }
-        synchronized(this) {
-            if (timeMap.isEmpty()) {
-                timeMap.put(currentTimeWindow, new AtomicLong(1L));
-            } else {
-                Long countInOverallTime = removeOldEntriesForUser(currentTimeWindow, timeMap, limitQuota.unit);
-                if (countInOverallTime < limitQuota.value) {
-                    //Handle new time windows
-                    Long newCount = timeMap.getOrDefault(currentTimeWindow, new AtomicLong(0)).longValue() + 1;
-                    timeMap.put(currentTimeWindow, new AtomicLong(newCount));
-                    logger.debug("CurrentTimeWindow:" + currentTimeWindow +" Result:true "+ " Count:"+countInOverallTime);
-                    return new RateLimitResponse(true, null);
-                } else {
-                    String reset = getRateLimitReset(currentTimeWindow, timeMap, limitQuota);
-                    return new RateLimitResponse(false, buildHeaders(countInOverallTime, limitQuota, reset));
-                }
-            }
+        long currentTimeWindow = System.currentTimeMillis() / 1000;
+        String prefix = serverPrefixes.match(path);
+        List<LimitQuota> rateLimit;
+        RateLimitCounter[] counters;
+        if(prefix == null) {
+            rateLimit = Collections.singletonList(this.config.getRateLimit().get(0));
+            counters = keyStore.getOrCreate(path, k -> newCounters(k, rateLimit));
+        } else {
+            rateLimit = Collections.singletonList(this.config.getServer().get(prefix));
+            counters = keyStore.getConfigured(prefix);
         }
-        return new RateLimitResponse(true, null);
+        return isAllow(currentTimeWindow, counters, rateLimit);
     }
 
-    private Map<Long, AtomicLong> lookupServerTimeMap(String path) {
-        String prefix = null;
-        for(String s: serverTimeMap.keySet()) {
-            if(path.startsWith(s)) {
-                prefix = s;
-                break;
+    /**
+     * Count the request against all the quotas of the key. If one of the quotas is reached, the request
+     * is given back to the quotas that have counted it already.
+     */
+    private RateLimitResponse isAllow(long currentTimeWindow, RateLimitCounter[] counters, List<LimitQuota> rateLimit) {
+        for (int i = 0; i < counters.length; i++) {
+            if (!counters[i].tryAcquire(currentTimeWindow)) {
+                for (int j = 0; j < i; j++) {
+                    counters[j].release(currentTimeWindow);
+                }
+                LimitQuota limitQuota = rateLimit.get(i);
+                long countInOverallTime = counters[i].count(currentTimeWindow);
+                String reset = getRateLimitReset(currentTimeWindow, counters[i], limitQuota);
+                return new RateLimitResponse(false, buildHeaders(countInOverallTime, limitQuota, reset));
             }
         }
-        if(prefix == null) {
-            return null;
-        } else {
-            return serverTimeMap.get(prefix);
-        }
+        if(logger.isDebugEnabled()) logger.debug("CurrentTimeWindow:" + currentTimeWindow +" Result:true");
+        return ALLOWED;
+    }
 
+    public LimitKeyStore getKeyStore() {
+        return keyStore;
     }
 
-    private LimitQuota lookupLimitQuota(String path) {
-        String prefix = null;
-        for(String s: this.config.getServer().keySet()) {
-            if(path.startsWith(s)) {
-                prefix = s;
-                break;
-            }
-        }
-        if(prefix == null) {
-            return null;
-        } else {
-            return this.config.getServer().get(prefix);
+    private RateLimitCounter[] newCounters(String key, List<LimitQuota> rateLimit) {
+        RateLimitCounter[] counters = new RateLimitCounter[rateLimit.size()];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = engine.newCounter(key, rateLimit.get(i));
         }
+        return counters;
     }
 
-    private String getRateLimitReset(Long currentTimeWindow, Map<Long, AtomicLong> timeMap,  LimitQuota limitQuota) {
-        String res = null;
+    private String getRateLimitReset(long currentTimeWindow, RateLimitCounter counter, LimitQuota limitQuota) {
         if (TimeUnit.SECONDS.equals(limitQuota.unit)){
-            res = "1s";
+            return "1s";
         } else {
-            Optional<Long> firstKey = timeMap.keySet().stream().findFirst();
-            long reset = getWindow(limitQuota.unit) + firstKey.get() - currentTimeWindow;
-            res = reset + "s";
+            return counter.reset(currentTimeWindow) + "s";
         }
-        return res;
     }
 
     private Map<String, String> buildHeaders(Long countInOverallTime, LimitQuota limitQuota, String reset) {
@@ -309,31 +237,4 @@ public class RateLimiter {
 
         return headers;
     }
-
-    private  long removeOldEntriesForUser( long currentTimeWindow, Map<Long, AtomicLong> timeWindowVSCountMap, TimeUnit unit)
-    {
-        List <Long> oldEntriesToBeDeleted=new ArrayList<>();
-        long overallCount=0L;
-        for (Long timeWindow : timeWindowVSCountMap.keySet()) {
-            //Mark old entries (Entries older than the oldest valid time window within the time limit) for deletion
-            if ((currentTimeWindow - timeWindow) >= getWindow(unit))
-                oldEntriesToBeDeleted.add(timeWindow);
-            else
-                overallCount+=timeWindowVSCountMap.get(timeWindow).longValue();
-        }
-        timeWindowVSCountMap.keySet().removeAll(oldEntriesToBeDeleted);
-        return overallCount;
-    }
-
-    private int getWindow(TimeUnit unit) {
-        if (TimeUnit.DAYS.equals(unit)) {
-            return 24*60*60;
-        } else if (TimeUnit.HOURS.equals(unit)) {
-            return 60*60;
-        } else if (TimeUnit.MINUTES.equals(unit)) {
-            return 60;
-        } else {
-            return 1;
-        }
-    }
 }
@@ -0,0 +1,27 @@
+package com.networknt.limit.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A quota store within the JVM. It is used to coordinate the nodes of a cluster that are simulated in one JVM
+ * for testing and as the default when there is no shared store configured, in which case the LeaseEngine only
+ * enforces the quota for the local node.
+ */
+public class InMemoryQuotaStore implements QuotaStore {
+    private final Map<String, Map<Long, Long>> usage = new ConcurrentHashMap<>();
+
+    @Override
+    public long lease(String key, long window, long limit, long requested) {
+        Map<Long, Long> windows = usage.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        long[] granted = new long[1];
+        windows.compute(window, (w, used) -> {
+            long current = used == null ? 0 : used;
+            granted[0] = Math.max(0, Math.min(requested, limit - current));
+            return current + granted[0];
+        });
+        // only the current and the prefetched next window are leased, so the older windows can be removed.
+        windows.keySet().removeIf(w -> w < window - 1);
+        return granted[0];
+    }
+}
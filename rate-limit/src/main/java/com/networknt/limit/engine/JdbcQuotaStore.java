@@ -0,0 +1,123 @@
+package com.networknt.limit.engine;
+
+import com.networknt.service.SingletonServiceFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A quota store that shares the quotas between the nodes of a cluster in a database table. The data source is
+ * the javax.sql.DataSource defined in the service.yml, for example, with one of the data sources in the
+ * data-source module. The table must be created in advance.
+ *
+ * <pre>
+ * CREATE TABLE rate_limit_lease (
+ *   limit_key VARCHAR(512) NOT NULL,
+ *   time_window BIGINT NOT NULL,
+ *   used BIGINT NOT NULL,
+ *   PRIMARY KEY (limit_key, time_window)
+ * );
+ * </pre>
+ *
+ * The used tokens of a window are updated with a compare-and-set on the previous value so that the store only
+ * relies on the primary key and single row updates which are available on all the databases.
+ */
+public class JdbcQuotaStore implements QuotaStore {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcQuotaStore.class);
+    private static final String SELECT = "SELECT used FROM rate_limit_lease WHERE limit_key = ? AND time_window = ?";
+    private static final String INSERT = "INSERT INTO rate_limit_lease (limit_key, time_window, used) VALUES (?, ?, ?)";
+    private static final String UPDATE = "UPDATE rate_limit_lease SET used = ? WHERE limit_key = ? AND time_window = ? AND used = ?";
+    private static final String DELETE = "DELETE FROM rate_limit_lease WHERE limit_key = ? AND time_window < ?";
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final DataSource dataSource;
+
+    public JdbcQuotaStore() {
+        this(SingletonServiceFactory.getBean(DataSource.class));
+    }
+
+    public JdbcQuotaStore(DataSource dataSource) {
+        if(dataSource == null) {
+            throw new IllegalArgumentException("javax.sql.DataSource is not defined in the service.yml");
+        }
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public long lease(String key, long window, long limit, long requested) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            for (int i = 0; i < MAX_ATTEMPTS; i++) {
+                Long used = selectUsed(connection, key, window);
+                if (used == null) {
+                    long granted = Math.min(requested, limit);
+                    if (insert(connection, key, window, granted)) {
+                        // the first lease of a new window removes the windows that cannot be leased anymore.
+                        delete(connection, key, window - 1);
+                        return granted;
+                    }
+                } else {
+                    long granted = Math.min(requested, limit - used);
+                    if (granted <= 0) {
+                        return 0;
+                    }
+                    if (update(connection, key, window, used, used + granted)) {
+                        return granted;
+                    }
+                }
+            }
+            if(logger.isDebugEnabled()) logger.debug("Failed to lease tokens for " + key + " after " + MAX_ATTEMPTS + " attempts.");
+        } catch (SQLException e) {
+            logger.error("Failed to lease tokens for " + key, e);
+        }
+        return 0;
+    }
+
+    private Long selectUsed(Connection connection, String key, long window) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT)) {
+            statement.setString(1, key);
+            statement.setLong(2, window);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : null;
+            }
+        }
+    }
+
+    private boolean insert(Connection connection, String key, long window, long used) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            statement.setString(1, key);
+            statement.setLong(2, window);
+            statement.setLong(3, used);
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            // another node has inserted the row of the window. the SQL state class 23 is the integrity constraint violation.
+            if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    private boolean update(Connection connection, String key, long window, long used, long newUsed) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+            statement.setLong(1, newUsed);
+            statement.setString(2, key);
+            statement.setLong(3, window);
+            statement.setLong(4, used);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    private void delete(Connection connection, String key, long window) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(DELETE)) {
+            statement.setString(1, key);
+            statement.setLong(2, window);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.networknt.limit.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The counter of the LeaseEngine. It holds the tokens leased from the QuotaStore for the current window and
+ * the tokens prefetched for the next window. A request is counted with a compare-and-set on the tokens of the
+ * window, and only moving to a new window replaces the window.
+ *
+ * When the tokens of the current window fall to half of a lease, one lease for the current window and one
+ * for the next window are requested on the executor. While the lease is in flight, the remaining tokens are
+ * still used. The store is never called on the request thread. A new key or a window that is not prefetched
+ * has nothing leased yet, so its requests are counted against a local reserve of half a lease until the first
+ * lease is completed, and the tokens granted by the lease pay the reserve back. If the store has no more tokens
+ * for the window by then, the reserve is not paid back, so a node might accept up to the reserve more than the
+ * quota in such a window.
+ */
+public class LeaseCounter implements RateLimitCounter {
+    private static final Logger logger = LoggerFactory.getLogger(LeaseCounter.class);
+
+    private final String key;
+    private final long limit;
+    private final int windowSeconds;
+    private final long leaseSize;
+    private final long reserve;
+    private final QuotaStore store;
+    private final Executor executor;
+    private final AtomicReference<Window> current = new AtomicReference<>(new Window(0));
+    private final AtomicReference<Window> next = new AtomicReference<>(new Window(0));
+    private final AtomicBoolean leasing = new AtomicBoolean();
+    // the last window in which the store has no more tokens to lease.
+    private volatile long exhaustedWindow;
+
+    public LeaseCounter(String key, long limit, TimeUnit unit, long leaseSize, QuotaStore store, Executor executor) {
+        this.key = key;
+        this.limit = limit;
+        this.windowSeconds = SlidingWindowCounter.getWindow(unit);
+        this.leaseSize = leaseSize;
+        this.reserve = Math.max(1, leaseSize / 2);
+        this.store = store;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean tryAcquire(long now) {
+        long window = now / windowSeconds;
+        while (true) {
+            Window state = current.get();
+            if (state.index > window) {
+                // another thread has moved to a newer window. count the request in that window.
+                window = state.index;
+                continue;
+            }
+            if (state.index < window) {
+                // a new window starts with the tokens prefetched for it if there are any.
+                Window prefetched = next.get();
+                Window started = prefetched.index == window ? prefetched : new Window(window);
+                current.compareAndSet(state, started);
+                continue;
+            }
+            long tokens = state.tokens.get();
+            if (tokens <= floorOf(state)) {
+                lease(window);
+                // the lease might be completed by the executor in the meantime.
+                if (state.tokens.get() > floorOf(state)) {
+                    continue;
+                }
+                return false;
+            }
+            if (state.tokens.compareAndSet(tokens, tokens - 1)) {
+                if (tokens - 1 <= leaseSize / 2) {
+                    lease(window);
+                }
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(long now) {
+        Window state = current.get();
+        if (state.index == now / windowSeconds) {
+            state.tokens.incrementAndGet();
+        }
+    }
+
+    @Override
+    public long count(long now) {
+        Window state = current.get();
+        long tokens = state.index == now / windowSeconds ? Math.max(0, state.tokens.get()) : 0;
+        // the requests counted by the cluster are not known locally, so all but the leased tokens are counted.
+        return limit - tokens;
+    }
+
+    @Override
+    public long reset(long now) {
+        return (now / windowSeconds + 1) * windowSeconds - now;
+    }
+
+    @Override
+    public long footprint() {
+        return 192 + 2L * key.length();
+    }
+
+    private void lease(long window) {
+        if (exhaustedWindow == window || !leasing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    long granted = store.lease(key, window, limit, leaseSize);
+                    if (granted == 0) {
+                        exhaustedWindow = window;
+                    }
+                    add(current, window, granted);
+                    if (next.get().index != window + 1) {
+                        long prefetched = store.lease(key, window + 1, limit, leaseSize);
+                        // the next window might have started while the lease was in flight.
+                        if (!add(current, window + 1, prefetched)) {
+                            Window leased = new Window(window + 1);
+                            leased.add(prefetched);
+                            next.set(leased);
+                        }
+                    }
+                } catch (Throwable e) {
+                    logger.error("Failed to lease tokens for " + key, e);
+                } finally {
+                    leasing.set(false);
+                }
+            });
+        } catch (Throwable e) {
+            leasing.set(false);
+            logger.error("Failed to submit the lease for " + key, e);
+        }
+    }
+
+    private long floorOf(Window state) {
+        return state.leased ? 0 : -reserve;
+    }
+
+    private static boolean add(AtomicReference<Window> holder, long window, long tokens) {
+        Window state = holder.get();
+        if (state.index != window) {
+            return false;
+        }
+        state.add(tokens);
+        return true;
+    }
+
+    /**
+     * The tokens of a time window. They are negative while the reserve is used before the first lease.
+     */
+    private static class Window {
+        final long index;
+        final AtomicLong tokens = new AtomicLong();
+        volatile boolean leased;
+
+        Window(long index) {
+            this.index = index;
+        }
+
+        void add(long leased) {
+            tokens.addAndGet(leased);
+            this.leased = true;
+        }
+    }
+}
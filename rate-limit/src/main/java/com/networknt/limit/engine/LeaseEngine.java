@@ -0,0 +1,77 @@
+package com.networknt.limit.engine;
+
+import com.networknt.limit.LimitConfig;
+import com.networknt.limit.LimitQuota;
+import com.networknt.service.SingletonServiceFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The engine that enforces the quotas across all the nodes of a cluster. Each node leases a batch of tokens
+ * for the current time window from a shared QuotaStore and decides locally for each request. The batch is
+ * refilled asynchronously before it is used up, so there is no remote call on the request path.
+ *
+ * The quotas are enforced in fixed time windows that are aligned to the epoch across the nodes. The tokens
+ * leased by a node but not used within the window are not given to the other nodes, so the cluster might
+ * accept fewer requests than the quota. It only accepts more when the store runs out of tokens while a node
+ * is still counting a new window against its local reserve, see LeaseCounter. The leasePercent in the limit.yml
+ * balances between the number of calls to the store and the tokens that might be wasted.
+ *
+ * The leases of all the counters are run on a small pool of daemon threads with a bounded queue. If the store
+ * is too slow for the queue, the lease is not submitted and it is requested again by a later request.
+ */
+public class LeaseEngine implements RateLimitEngine {
+    private static final Logger logger = LoggerFactory.getLogger(LeaseEngine.class);
+    private static final int LEASE_THREADS = 4;
+    private static final int LEASE_QUEUE_SIZE = 1024;
+    private static final ExecutorService leaseExecutor = newLeaseExecutor();
+
+    private QuotaStore store;
+    private int leasePercent;
+    private final Executor executor;
+
+    public LeaseEngine() {
+        this.executor = leaseExecutor;
+    }
+
+    public LeaseEngine(QuotaStore store, int leasePercent, Executor executor) {
+        this.store = store;
+        this.leasePercent = leasePercent;
+        this.executor = executor;
+    }
+
+    @Override
+    public void init(LimitConfig config) {
+        leasePercent = config.getLeasePercent();
+        if(store == null) {
+            store = SingletonServiceFactory.getBean(QuotaStore.class);
+            if(store == null) {
+                logger.warn("QuotaStore is not configured in service.yml and the quotas are only enforced on this node.");
+                store = new InMemoryQuotaStore();
+            }
+        }
+    }
+
+    private static ExecutorService newLeaseExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LEASE_THREADS, LEASE_THREADS, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(LEASE_QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, "rate-limit-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public RateLimitCounter newCounter(String key, LimitQuota quota) {
+        long leaseSize = Math.max(1, (long) quota.getValue() * leasePercent / 100);
+        return new LeaseCounter(key + "#" + quota.getUnit(), quota.getValue(), quota.getUnit(), leaseSize, store, executor);
+    }
+}
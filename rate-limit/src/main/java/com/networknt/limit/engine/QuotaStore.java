@@ -0,0 +1,22 @@
+package com.networknt.limit.engine;
+
+/**
+ * The shared store of the cluster wide quotas for the LeaseEngine. Each node leases a batch of tokens of a
+ * quota for a fixed time window from the store and counts the requests locally against the batch, so that
+ * the store is only accessed once per batch instead of once per request.
+ *
+ * The implementation is defined in the service.yml and the InMemoryQuotaStore is used if it is not defined.
+ */
+public interface QuotaStore {
+    /**
+     * Lease up to the requested number of tokens of the quota for the time window. The total number of tokens
+     * granted to all the nodes for a key and window must not exceed the limit.
+     *
+     * @param key the rate limit key with the time unit of the quota
+     * @param window the index of the fixed time window since the epoch
+     * @param limit the quota for the time window
+     * @param requested the number of tokens requested
+     * @return the number of tokens granted, which is zero if the quota of the window is used up.
+     */
+    long lease(String key, long window, long limit, long requested);
+}
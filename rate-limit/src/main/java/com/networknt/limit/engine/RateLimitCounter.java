@@ -0,0 +1,41 @@
+package com.networknt.limit.engine;
+
+/**
+ * The counting state of a quota for one rate limit key. All methods take the current time in epoch
+ * seconds so that the caller reads the clock once for all the quotas of a request. The methods are
+ * called concurrently from the IO and worker threads and implementations must be thread safe.
+ */
+public interface RateLimitCounter {
+    /**
+     * Try to count a request within the quota.
+     *
+     * @param now current time in epoch seconds
+     * @return true if the request is counted and false if the quota is reached.
+     */
+    boolean tryAcquire(long now);
+
+    /**
+     * Give back a request that was counted by tryAcquire. It is called when another quota of the same
+     * key rejects the request so that the rejected request is not counted against this quota.
+     *
+     * @param now current time in epoch seconds
+     */
+    void release(long now);
+
+    /**
+     * @param now current time in epoch seconds
+     * @return the number of requests counted in the current window.
+     */
+    long count(long now);
+
+    /**
+     * @param now current time in epoch seconds
+     * @return the number of seconds until the next request can be counted.
+     */
+    long reset(long now);
+
+    /**
+     * @return the approximate number of bytes held by the counter.
+     */
+    long footprint();
+}
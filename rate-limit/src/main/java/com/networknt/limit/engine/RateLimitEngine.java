@@ -0,0 +1,29 @@
+package com.networknt.limit.engine;
+
+import com.networknt.limit.LimitConfig;
+import com.networknt.limit.LimitQuota;
+
+/**
+ * The engine is responsible for the counting behind the RateLimiter. The RateLimiter resolves the key
+ * and the quotas from the limit.yml and the engine creates a counter for each key and quota so that the
+ * counting algorithm can be replaced without changing the config semantics. The implementation class
+ * is configured with the engine property in the limit.yml and it must have a default constructor.
+ */
+public interface RateLimitEngine {
+    /**
+     * Initialize the engine with the limit config before any counter is created.
+     *
+     * @param config the limit config
+     */
+    default void init(LimitConfig config) {
+    }
+
+    /**
+     * Create a counter that enforces the quota for a single rate limit key.
+     *
+     * @param key the rate limit key, for example, the server path prefix or the client id
+     * @param quota the limit quota for the key
+     * @return RateLimitCounter
+     */
+    RateLimitCounter newCounter(String key, LimitQuota quota);
+}
@@ -0,0 +1,151 @@
+package com.networknt.limit.engine;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free sliding window counter backed by a ring buffer of time buckets. Each bucket is a single
+ * long that packs the time slot of the bucket in the high 32 bits and the count in the low 32 bits, so
+ * that a stale bucket is recycled and counted in the same compare-and-set without allocating anything.
+ *
+ * The window is divided into at most 60 buckets. For a second or minute window, a bucket is one second
+ * and the window slides exactly like the previous per second map. For an hour or day window, a bucket is
+ * one or twenty-four minutes and the oldest bucket expires as a whole.
+ *
+ * A bucket keeps the low 32 bits of its slot, and the age of a bucket is the difference of the slots modulo
+ * 2^32, so the slots are not limited by the range of an int. A bucket that is not touched for 2^31 slots,
+ * which is 68 years for one second buckets, would be taken for a recent one.
+ *
+ * All the requests of a slot are counted into its bucket with a compare-and-set that is retried after the
+ * other buckets are summed, so the threads that see the same slot never exceed the quota. The compare-and-set
+ * doesn't cover the other buckets though. At a slot boundary, a thread that still sees the previous slot and
+ * a thread that sees the next one can both pass on the same sum, so the quota is exceeded by at most one
+ * request per thread that counts the key concurrently across the boundary. Each thread also counts the
+ * buckets that are newer than its own slot, so the overshoot doesn't grow beyond that.
+ */
+public class SlidingWindowCounter implements RateLimitCounter {
+    static final int MAX_BUCKETS = 60;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final long limit;
+    private final int bucketSeconds;
+    private final int bucketCount;
+    private final AtomicLongArray buckets;
+
+    public SlidingWindowCounter(long limit, TimeUnit unit) {
+        int windowSeconds = getWindow(unit);
+        this.limit = limit;
+        this.bucketSeconds = Math.max(1, windowSeconds / MAX_BUCKETS);
+        this.bucketCount = windowSeconds / bucketSeconds;
+        this.buckets = new AtomicLongArray(bucketCount);
+    }
+
+    @Override
+    public boolean tryAcquire(long now) {
+        long slot = now / bucketSeconds;
+        int index = (int) (slot % bucketCount);
+        while (true) {
+            long current = buckets.get(index);
+            int age = ageOf(current, slot);
+            if (age < 0 && countOf(current) > 0) {
+                // another thread has moved the bucket to a newer slot. count the request in that slot. an empty
+                // bucket is taken whatever its slot is, as the slot of a bucket that is never used is zero.
+                return tryAcquire(now - (long) age * bucketSeconds);
+            }
+            long count = age == 0 ? countOf(current) : 0;
+            if (sumOthers(slot, index) + count >= limit) {
+                return false;
+            }
+            if (buckets.compareAndSet(index, current, pack(slot, count + 1))) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void release(long now) {
+        long slot = now / bucketSeconds;
+        int index = (int) (slot % bucketCount);
+        while (true) {
+            long current = buckets.get(index);
+            long count = countOf(current);
+            if (ageOf(current, slot) != 0 || count == 0 || buckets.compareAndSet(index, current, pack(slot, count - 1))) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public long count(long now) {
+        long slot = now / bucketSeconds;
+        int index = (int) (slot % bucketCount);
+        long current = buckets.get(index);
+        return sumOthers(slot, index) + (ageOf(current, slot) == 0 ? countOf(current) : 0);
+    }
+
+    @Override
+    public long reset(long now) {
+        long slot = now / bucketSeconds;
+        int oldest = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            long bucket = buckets.get(i);
+            int age = ageOf(bucket, slot);
+            if (age >= 0 && age < bucketCount && countOf(bucket) > 0 && age > oldest) {
+                oldest = age;
+            }
+        }
+        // the oldest bucket with a count drops out of the window when its slot plus the window has passed.
+        long expire = (slot - oldest + bucketCount) * bucketSeconds;
+        return Math.max(1, expire - now);
+    }
+
+    @Override
+    public long footprint() {
+        // object headers and fields of the counter and the array plus the buckets.
+        return 56 + (long) bucketCount * Long.BYTES;
+    }
+
+    /**
+     * Sum the buckets in the window of the slot other than its own bucket, including the buckets of the newer
+     * slots that are counted by the threads that have moved on.
+     */
+    private long sumOthers(long slot, int index) {
+        long sum = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            if (i == index) continue;
+            long bucket = buckets.get(i);
+            int age = ageOf(bucket, slot);
+            if (age > -bucketCount && age < bucketCount) {
+                sum += countOf(bucket);
+            }
+        }
+        return sum;
+    }
+
+    private static long pack(long slot, long count) {
+        return (slot << 32) | (count & COUNT_MASK);
+    }
+
+    /**
+     * @return the slots from the slot of the bucket to the given slot, which is negative for a newer bucket
+     */
+    private static int ageOf(long bucket, long slot) {
+        return (int) (slot - (bucket >>> 32));
+    }
+
+    private static long countOf(long bucket) {
+        return bucket & COUNT_MASK;
+    }
+
+    static int getWindow(TimeUnit unit) {
+        if (TimeUnit.DAYS.equals(unit)) {
+            return 24*60*60;
+        } else if (TimeUnit.HOURS.equals(unit)) {
+            return 60*60;
+        } else if (TimeUnit.MINUTES.equals(unit)) {
+            return 60;
+        } else {
+            return 1;
+        }
+    }
+}
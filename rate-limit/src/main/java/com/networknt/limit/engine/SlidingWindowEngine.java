@@ -0,0 +1,15 @@
+package com.networknt.limit.engine;
+
+import com.networknt.limit.LimitQuota;
+
+/**
+ * The default engine that counts requests in a sliding window of time buckets. The counters are lock
+ * free so that the requests from different threads only contend on the bucket of the current time.
+ */
+public class SlidingWindowEngine implements RateLimitEngine {
+
+    @Override
+    public RateLimitCounter newCounter(String key, LimitQuota quota) {
+        return new SlidingWindowCounter(quota.getValue(), quota.getUnit());
+    }
+}
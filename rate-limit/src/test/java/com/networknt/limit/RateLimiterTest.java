@@ -11,6 +11,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class RateLimiterTest {
@@ -135,4 +136,35 @@ public class RateLimiterTest {
         return rateLimiterAddress.isAllowDirect(address, "/v1/address", RateLimiter.ADDRESS_TYPE);
     }
 
+    @Test
+    public void testKeyStoreEvictsRequestKeys() throws Exception {
+        LimitConfig config = LimitConfig.load();
+        config.setKey(LimitKey.ADDRESS);
+        config.setKeyCacheSize(100);
+        RateLimiter limiter = new RateLimiter(config);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(limiter.isAllowDirect("10.0.0." + i, "/v1/address", RateLimiter.ADDRESS_TYPE).isAllow());
+        }
+        LimitKeyStore keyStore = limiter.getKeyStore();
+        keyStore.cleanUp();
+        Assert.assertTrue(keyStore.getKeyCount() <= 100);
+        Assert.assertTrue(keyStore.getEvictionCount() >= 900);
+        Assert.assertEquals(4, keyStore.getConfiguredKeyCount());
+        Assert.assertTrue(keyStore.getMemoryFootprint() > 0);
+    }
+
+    @Test
+    public void testRequestKeyIsLimited() throws Exception {
+        LimitConfig config = LimitConfig.load();
+        config.setKey(LimitKey.ADDRESS);
+        config.setRateLimit(Collections.singletonList(new LimitQuota(10, TimeUnit.MINUTES)));
+        RateLimiter limiter = new RateLimiter(config);
+        int rejects = 0;
+        for (int i = 0; i < 12; i++) {
+            if (!limiter.isAllowDirect("10.0.0.1", "/v1/address", RateLimiter.ADDRESS_TYPE).isAllow()) rejects++;
+        }
+        // the default rateLimit applies to the address that is not in the config.
+        Assert.assertEquals(2, rejects);
+    }
+
 }
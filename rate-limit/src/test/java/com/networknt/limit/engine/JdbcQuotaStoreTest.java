@@ -0,0 +1,60 @@
+package com.networknt.limit.engine;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class JdbcQuotaStoreTest {
+    private static JdbcDataSource dataSource;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:limit;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE rate_limit_lease (limit_key VARCHAR(512) NOT NULL, time_window BIGINT NOT NULL, used BIGINT NOT NULL, PRIMARY KEY (limit_key, time_window))");
+        }
+    }
+
+    @Test
+    public void testLease() {
+        QuotaStore store = new JdbcQuotaStore(dataSource);
+        Assert.assertEquals(40, store.lease("lease#SECONDS", 1, 100, 40));
+        Assert.assertEquals(40, store.lease("lease#SECONDS", 1, 100, 40));
+        Assert.assertEquals(20, store.lease("lease#SECONDS", 1, 100, 40));
+        Assert.assertEquals(0, store.lease("lease#SECONDS", 1, 100, 40));
+        Assert.assertEquals(40, store.lease("lease#SECONDS", 2, 100, 40));
+    }
+
+    @Test
+    public void testConcurrentLease() throws Exception {
+        QuotaStore store = new JdbcQuotaStore(dataSource);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            tasks.add(() -> {
+                long granted = 0;
+                for (int j = 0; j < 50; j++) {
+                    granted += store.lease("concurrent#MINUTES", 10, 1000, 10);
+                }
+                return granted;
+            });
+        }
+        long total = 0;
+        for (Future<Long> future : executorService.invokeAll(tasks)) {
+            total += future.get();
+        }
+        executorService.shutdown();
+        Assert.assertTrue(total <= 1000);
+    }
+}
@@ -0,0 +1,152 @@
+package com.networknt.limit.engine;
+
+import com.networknt.limit.LimitQuota;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulate the nodes of a cluster in one JVM that share an InMemoryQuotaStore.
+ */
+public class LeaseEngineTest {
+    private static final long NOW = 1700000000L;
+
+    @Test
+    public void testNodesShareQuota() {
+        QuotaStore store = new InMemoryQuotaStore();
+        int nodes = 8;
+        List<RateLimitCounter> counters = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            LeaseEngine engine = new LeaseEngine(store, 10, Runnable::run);
+            counters.add(engine.newCounter("/v1/address", new LimitQuota(1000, TimeUnit.MINUTES)));
+        }
+        int allowed = 0;
+        for (int i = 0; i < 2000; i++) {
+            if (counters.get(i % nodes).tryAcquire(NOW)) allowed++;
+        }
+        System.out.println("Allowed " + allowed + " of the quota 1000 by " + nodes + " nodes");
+        // the tokens leased by a node but not used are the only drift from the quota.
+        Assert.assertTrue(allowed <= 1000);
+        Assert.assertTrue(allowed >= 1000 - nodes * 100);
+        // the quota is available again in the next window.
+        Assert.assertTrue(counters.get(0).tryAcquire(NOW + 60));
+    }
+
+    @Test
+    public void testPrefetchedNextWindow() {
+        QuotaStore store = new InMemoryQuotaStore();
+        RateLimitCounter counter = new LeaseEngine(store, 10, Runnable::run).newCounter("client", new LimitQuota(100, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(counter.tryAcquire(NOW));
+        }
+        Assert.assertFalse(counter.tryAcquire(NOW));
+        Assert.assertEquals(100, counter.count(NOW));
+        Assert.assertEquals(1, counter.reset(NOW));
+        // the first request of the next window uses the tokens prefetched in the previous window.
+        Assert.assertTrue(counter.tryAcquire(NOW + 1));
+    }
+
+    @Test
+    public void testReleaseReturnsToken() {
+        RateLimitCounter counter = new LeaseEngine(new InMemoryQuotaStore(), 100, Runnable::run).newCounter("user", new LimitQuota(1, TimeUnit.HOURS));
+        Assert.assertTrue(counter.tryAcquire(NOW));
+        Assert.assertFalse(counter.tryAcquire(NOW));
+        counter.release(NOW);
+        Assert.assertTrue(counter.tryAcquire(NOW));
+    }
+
+    @Test
+    public void testFirstRequestWithAsyncLease() throws Exception {
+        CountDownLatch storeReady = new CountDownLatch(1);
+        QuotaStore memory = new InMemoryQuotaStore();
+        // a slow store that holds the leases until the latch is released.
+        QuotaStore slowStore = (key, window, limit, requested) -> {
+            try {
+                storeReady.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return memory.lease(key, window, limit, requested);
+        };
+        ExecutorService leaseExecutor = Executors.newSingleThreadExecutor();
+        try {
+            LeaseEngine engine = new LeaseEngine(slowStore, 10, leaseExecutor);
+            RateLimitCounter counter = engine.newCounter("fresh", new LimitQuota(100, TimeUnit.SECONDS));
+            // the first requests of a new key are counted against the reserve of half a lease without waiting for the store.
+            for (int i = 0; i < 5; i++) {
+                Assert.assertTrue(counter.tryAcquire(NOW));
+            }
+            Assert.assertFalse(counter.tryAcquire(NOW));
+            Assert.assertTrue(engine.newCounter("other", new LimitQuota(1, TimeUnit.SECONDS)).tryAcquire(NOW));
+            storeReady.countDown();
+            // the lease of 10 tokens pays back the reserve of 5.
+            long end = System.currentTimeMillis() + 1000;
+            while (counter.count(NOW) == 100 && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(95, counter.count(NOW));
+            Assert.assertTrue(counter.tryAcquire(NOW));
+        } finally {
+            leaseExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWindowBeyondInt() {
+        RateLimitCounter counter = new LeaseEngine(new InMemoryQuotaStore(), 10, Runnable::run).newCounter("client", new LimitQuota(10, TimeUnit.SECONDS));
+        long now = 1L << 33;
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(counter.tryAcquire(now));
+        }
+        Assert.assertFalse(counter.tryAcquire(now));
+        Assert.assertTrue(counter.tryAcquire(now + 1));
+    }
+
+    @Test
+    public void testDriftWithAsyncLease() throws Exception {
+        QuotaStore store = new InMemoryQuotaStore();
+        int nodes = 4;
+        int quota = 2000;
+        ExecutorService leaseExecutor = Executors.newFixedThreadPool(2);
+        List<RateLimitCounter> counters = new ArrayList<>();
+        for (int i = 0; i < nodes; i++) {
+            counters.add(new LeaseEngine(store, 5, leaseExecutor).newCounter("server", new LimitQuota(quota, TimeUnit.SECONDS)));
+        }
+        Map<Long, LongAdder> allowedByWindow = new ConcurrentHashMap<>();
+        long end = System.currentTimeMillis() + 2500;
+        ExecutorService nodeExecutor = Executors.newFixedThreadPool(nodes);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (RateLimitCounter counter : counters) {
+            tasks.add(() -> {
+                while (System.currentTimeMillis() < end) {
+                    long now = System.currentTimeMillis() / 1000;
+                    if (counter.tryAcquire(now)) {
+                        allowedByWindow.computeIfAbsent(now, k -> new LongAdder()).increment();
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Object> future : nodeExecutor.invokeAll(tasks)) {
+            future.get();
+        }
+        nodeExecutor.shutdown();
+        leaseExecutor.shutdown();
+        for (Map.Entry<Long, LongAdder> entry : allowedByWindow.entrySet()) {
+            long allowed = entry.getValue().sum();
+            System.out.println("Window " + entry.getKey() + " allowed " + allowed + " drift " + (allowed - quota) * 100 / quota + "%");
+            Assert.assertTrue(allowed <= quota);
+        }
+    }
+}
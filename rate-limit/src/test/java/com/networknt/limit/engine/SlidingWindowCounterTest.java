@@ -0,0 +1,193 @@
+package com.networknt.limit.engine;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class SlidingWindowCounterTest {
+    private static final long NOW = 1700000000L;
+
+    @Test
+    public void testSecondWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(counter.tryAcquire(NOW));
+        }
+        Assert.assertFalse(counter.tryAcquire(NOW));
+        Assert.assertEquals(10, counter.count(NOW));
+        // a new second starts a new window.
+        Assert.assertTrue(counter.tryAcquire(NOW + 1));
+        Assert.assertEquals(1, counter.count(NOW + 1));
+    }
+
+    @Test
+    public void testMinuteWindowSlides() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(10, TimeUnit.MINUTES);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(counter.tryAcquire(NOW));
+        }
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(counter.tryAcquire(NOW + 30));
+        }
+        Assert.assertFalse(counter.tryAcquire(NOW + 59));
+        Assert.assertEquals(30, counter.reset(NOW + 30));
+        // the first five requests drop out of the window after 60 seconds.
+        Assert.assertEquals(5, counter.count(NOW + 60));
+        Assert.assertTrue(counter.tryAcquire(NOW + 60));
+    }
+
+    @Test
+    public void testDayWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(2, TimeUnit.DAYS);
+        Assert.assertTrue(counter.tryAcquire(NOW));
+        Assert.assertTrue(counter.tryAcquire(NOW + 3600));
+        Assert.assertFalse(counter.tryAcquire(NOW + 7200));
+        Assert.assertTrue(counter.tryAcquire(NOW + 24 * 3600 + 1440));
+    }
+
+    @Test
+    public void testRelease() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1, TimeUnit.SECONDS);
+        Assert.assertTrue(counter.tryAcquire(NOW));
+        Assert.assertFalse(counter.tryAcquire(NOW));
+        counter.release(NOW);
+        Assert.assertTrue(counter.tryAcquire(NOW));
+    }
+
+    @Test
+    public void testStaleTimeDoesNotResetBucket() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(2, TimeUnit.SECONDS);
+        Assert.assertTrue(counter.tryAcquire(NOW + 1));
+        Assert.assertTrue(counter.tryAcquire(NOW));
+        Assert.assertFalse(counter.tryAcquire(NOW + 1));
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        SlidingWindowCounter counter = new SlidingWindowCounter(1000, TimeUnit.MINUTES);
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            tasks.add(() -> {
+                int acquired = 0;
+                for (int i = 0; i < 1000; i++) {
+                    if (counter.tryAcquire(NOW)) acquired++;
+                }
+                return acquired;
+            });
+        }
+        int total = 0;
+        for (Future<Integer> future : executorService.invokeAll(tasks)) {
+            total += future.get();
+        }
+        executorService.shutdown();
+        Assert.assertEquals(1000, total);
+    }
+
+    @Test
+    public void testSlotBeyondInt() {
+        // the slots cross the range of an int and the 32 bits that the bucket keeps.
+        long now = 0xFFFFFFFFL - 30;
+        SlidingWindowCounter counter = new SlidingWindowCounter(10, TimeUnit.MINUTES);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(counter.tryAcquire(now));
+        }
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(counter.tryAcquire(now + 40));
+        }
+        Assert.assertFalse(counter.tryAcquire(now + 59));
+        Assert.assertEquals(10, counter.count(now + 59));
+        // the requests of the first slot leave the window.
+        Assert.assertTrue(counter.tryAcquire(now + 60));
+        Assert.assertEquals(6, counter.count(now + 60));
+    }
+
+    /**
+     * Half of the threads count in a slot and the other half in the next one, so the sums of the other buckets
+     * race with the compare-and-set. The quota is exceeded by at most one request per thread.
+     */
+    @Test
+    public void testConcurrentAcquireAcrossSlots() throws Exception {
+        int threads = 8;
+        int limit = 100;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                SlidingWindowCounter counter = new SlidingWindowCounter(limit, TimeUnit.MINUTES);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Callable<Integer>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    long now = NOW + (t & 1);
+                    tasks.add(() -> {
+                        start.await();
+                        int acquired = 0;
+                        for (int i = 0; i < limit; i++) {
+                            if (counter.tryAcquire(now)) acquired++;
+                        }
+                        return acquired;
+                    });
+                }
+                List<Future<Integer>> futures = new ArrayList<>();
+                for (Callable<Integer> task : tasks) {
+                    futures.add(executorService.submit(task));
+                }
+                start.countDown();
+                int total = 0;
+                for (Future<Integer> future : futures) {
+                    total += future.get();
+                }
+                Assert.assertTrue("round " + round + " acquired " + total, total >= limit && total <= limit + threads - 1);
+                Assert.assertEquals(total, counter.count(NOW + 1));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Ignore
+    @Test
+    public void testContentionPerf() throws Exception {
+        int loop = 1000000;
+        // warm up before the measurement.
+        SlidingWindowCounter warmup = new SlidingWindowCounter(Integer.MAX_VALUE, TimeUnit.MINUTES);
+        run(2, loop, () -> warmup.tryAcquire(System.currentTimeMillis() / 1000));
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            SlidingWindowCounter counter = new SlidingWindowCounter(Integer.MAX_VALUE, TimeUnit.MINUTES);
+            Object lock = new Object();
+            System.out.println("Lock free " + threads + " threads " + run(threads, loop, () -> counter.tryAcquire(System.currentTimeMillis() / 1000)));
+            SlidingWindowCounter synchronizedCounter = new SlidingWindowCounter(Integer.MAX_VALUE, TimeUnit.MINUTES);
+            System.out.println("Synchronized " + threads + " threads " + run(threads, loop, () -> {
+                synchronized (lock) {
+                    synchronizedCounter.tryAcquire(System.currentTimeMillis() / 1000);
+                }
+            }));
+        }
+    }
+
+    private long run(int threads, int loop, Runnable task) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < loop / threads; i++) task.run();
+                return null;
+            });
+        }
+        long start = System.currentTimeMillis();
+        for (Future<Object> future : executorService.invokeAll(tasks)) {
+            future.get();
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        executorService.shutdown();
+        return elapsed;
+    }
+}
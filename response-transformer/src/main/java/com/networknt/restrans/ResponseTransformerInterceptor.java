@@ -185,8 +185,7 @@ public class ResponseTransformerInterceptor implements ResponseInterceptor {
                             responseBody = (String) result.get(RESPONSE_BODY);
                             if (responseBody != null) {
                                 // copy transformed buffer to the attachment
-                                var dest = exchange.getAttachment(AttachmentConstants.BUFFERED_RESPONSE_DATA_KEY);
-                                BuffersUtils.transfer(ByteBuffer.wrap(responseBody.getBytes()), dest, exchange);
+                                setBuffer(exchange, ByteBuffer.wrap(responseBody.getBytes()));
                             }
                             break;
                     }
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.ReservedClaimNames;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cache of the verified JWT claims. The entries are keyed by a 128-bit digest of the path prefix and the token
+ * instead of the token itself, and each entry expires when the token expires. If a list of claims is configured with
+ * jwtCacheClaims in the security.yml, only these claims and the exp are kept in the cache.
+ *
+ * The statistics of the cache are registered with the module registry so that they are part of the server info.
+ */
+public class JwtClaimsCache {
+    // the default time to live of a token without a valid exp claim.
+    private static final long DEFAULT_EXPIRY_IN_MINUTES = 15;
+    private static final ThreadLocal<Digester> DIGESTER = ThreadLocal.withInitial(Digester::new);
+
+    private final Cache<Key, JwtClaims> cache;
+    private final List<String> claimNames;
+    private final long maximumSize;
+
+    public JwtClaimsCache(long maximumSize, int clockSkewInSeconds, List<String> claimNames) {
+        this.maximumSize = maximumSize;
+        this.claimNames = claimNames == null || claimNames.isEmpty() ? null : claimNames;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ExpirationTimeExpiry(clockSkewInSeconds))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Compute the cache key of a token. The key is computed once for each verification and used for both the lookup
+     * and the put of the claims.
+     *
+     * @param pathPrefix the path prefix of the request or null
+     * @param jwt the JWT token
+     * @return Key
+     */
+    public Key key(String pathPrefix, String jwt) {
+        return DIGESTER.get().digest(pathPrefix, jwt);
+    }
+
+    public JwtClaims get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Put the verified claims into the cache.
+     *
+     * @param key the key of the token
+     * @param claims the verified claims
+     * @return the claims in the cache, which is a projection if jwtCacheClaims is configured.
+     */
+    public JwtClaims put(Key key, JwtClaims claims) {
+        JwtClaims cached = project(claims);
+        cache.put(key, cached);
+        return cached;
+    }
+
+    private JwtClaims project(JwtClaims claims) {
+        if (claimNames == null) return claims;
+        JwtClaims projection = new JwtClaims();
+        Object exp = claims.getClaimValue(ReservedClaimNames.EXPIRATION_TIME);
+        if (exp != null) projection.setClaim(ReservedClaimNames.EXPIRATION_TIME, exp);
+        for (String name : claimNames) {
+            Object value = claims.getClaimValue(name);
+            if (value != null) projection.setClaim(name, value);
+        }
+        return projection;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public List<String> getClaimNames() {
+        return claimNames;
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    /**
+     * Run the pending evictions of the cache. It is exposed for testing only.
+     */
+    void cleanUp() {
+        cache.cleanUp();
+    }
+
+    /**
+     * The 128-bit digest of a token. SHA-256 is used instead of a faster non-cryptographic hash because the tokens
+     * are chosen by the callers, and a collision would return the claims of another token without verification.
+     */
+    public static final class Key {
+        private final long high;
+        private final long low;
+
+        Key(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return high == key.high && low == key.low;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (low ^ (low >>> 32));
+        }
+    }
+
+    /**
+     * A MessageDigest and a reusable buffer for each thread so that computing a key only allocates the key itself.
+     */
+    private static final class Digester {
+        private final MessageDigest digest;
+        private final byte[] hash = new byte[32];
+        private byte[] buffer = new byte[2048];
+
+        Digester() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+
+        Key digest(String pathPrefix, String jwt) {
+            if (pathPrefix != null) {
+                update(pathPrefix);
+                digest.update((byte) ':');
+            }
+            update(jwt);
+            try {
+                digest.digest(hash, 0, hash.length);
+            } catch (DigestException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Key(toLong(hash, 0), toLong(hash, 8));
+        }
+
+        private void update(String s) {
+            int length = s.length();
+            if (length > buffer.length) buffer = new byte[Math.max(length, buffer.length * 2)];
+            for (int i = 0; i < length; i++) {
+                char c = s.charAt(i);
+                // a JWT is base64url encoded and it is ASCII. Any other string is digested as UTF-8.
+                if (c > 0x7F) {
+                    digest.update(s.getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                buffer[i] = (byte) c;
+            }
+            digest.update(buffer, 0, length);
+        }
+
+        private static long toLong(byte[] bytes, int offset) {
+            long value = 0;
+            for (int i = offset; i < offset + 8; i++) {
+                value = (value << 8) | (bytes[i] & 0xFF);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Expire each entry when the token expires with the allowed clock skew. The claims are only cached after the
+     * verification, so the expiration time is never changed by a read.
+     */
+    private static final class ExpirationTimeExpiry implements Expiry<Key, JwtClaims> {
+        private final long clockSkewInMillis;
+
+        ExpirationTimeExpiry(int clockSkewInSeconds) {
+            this.clockSkewInMillis = TimeUnit.SECONDS.toMillis(clockSkewInSeconds);
+        }
+
+        @Override
+        public long expireAfterCreate(Key key, JwtClaims claims, long currentTime) {
+            try {
+                NumericDate exp = claims.getExpirationTime();
+                if (exp != null) {
+                    long timeToLive = exp.getValueInMillis() + clockSkewInMillis - System.currentTimeMillis();
+                    return TimeUnit.MILLISECONDS.toNanos(Math.max(timeToLive, 0));
+                }
+            } catch (MalformedClaimException e) {
+                // the token is verified before it is cached, fall back to the default expiry.
+            }
+            return TimeUnit.MINUTES.toNanos(DEFAULT_EXPIRY_IN_MINUTES);
+        }
+
+        @Override
+        public long expireAfterUpdate(Key key, JwtClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Key key, JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
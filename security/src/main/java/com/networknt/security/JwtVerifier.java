@@ -29,6 +29,7 @@ import com.networknt.exception.ClientException;
 import com.networknt.exception.ExpiredTokenException;
 import com.networknt.status.Status;
 import com.networknt.utility.FingerPrintUtil;
+import com.networknt.utility.ModuleRegistry;
 import org.jose4j.jwk.JsonWebKey;
 import org.jose4j.jwk.JsonWebKeySet;
 import org.jose4j.jwt.JwtClaims;
@@ -52,6 +53,10 @@ import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.regex.Pattern;
@@ -77,7 +82,17 @@ public class JwtVerifier extends TokenVerifier {
 
     public static final String KID = "kid";
     public static final String SECURITY_CONFIG = "security";
-    private static final int CACHE_EXPIRED_IN_MINUTES = 15;
+    // the consumers are rebuilt periodically, independent of the claims cache that expires with each token.
+    private static final int CONSUMER_CACHE_EXPIRED_IN_MINUTES = 15;
+    private static final int CONSUMER_CACHE_SIZE = 1000;
+
+    // the first pass only parses the JOSE header and the claims so that the kid is available to find the key.
+    // A built JwtConsumer is thread safe and this one is shared by all the verifiers.
+    private static final JwtConsumer PARSE_CONSUMER = new JwtConsumerBuilder()
+            .setSkipAllValidators()
+            .setDisableRequireSignature()
+            .setSkipSignatureVerification()
+            .build();
 
     public static final String JWT_KEY_RESOLVER_X509CERT = "X509Certificate";
     public static final String JWT_KEY_RESOLVER_JWKS = "JsonWebKeySet";
@@ -88,25 +103,40 @@ public class JwtVerifier extends TokenVerifier {
     Boolean enableRelaxedKeyValidation;
     Boolean bootstrapFromKeyService;
 
-    static Cache<String, JwtClaims> cache;
+    static JwtClaimsCache cache;
     static Map<String, X509Certificate> certMap;
     static Map<String, List<JsonWebKey>> jwksMap;
+    // the auth servers that the jwksMap is loaded from by serviceId, and SINGLE_AUTH_SERVER for the key section.
+    static Map<String, Map<String, Object>> jwkServers = new ConcurrentHashMap<>();
+    private static final String SINGLE_AUTH_SERVER = "";
+    private static final SingleFlight<String, List<JsonWebKey>> jwkFetches = new SingleFlight<>();
+    private static ScheduledExecutorService jwkRefreshExecutor;
+    private static ScheduledFuture<?> jwkRefreshTask;
     static String audience;  // this is the audience from the client.yml with single oauth provider.
     static Map<String, String> audienceMap; // this is the audience map from the client.yml with multiple oauth providers.
     static List<String> fingerPrints;
 
+    // the signature verification consumers by the key resolver, so that they are built once per kid and auth server.
+    // a consumer is rebuilt after the expiry or when the JWK of the auth server is refreshed with changed keys.
+    final Cache<String, JwtConsumer> consumerCache = Caffeine.newBuilder()
+            .maximumSize(CONSUMER_CACHE_SIZE)
+            .expireAfterWrite(CONSUMER_CACHE_EXPIRED_IN_MINUTES, TimeUnit.MINUTES)
+            .build();
+    // the consumer caches of all the verifiers, so that a refresh of the shared JWK reaches each of them.
+    private static final Set<Cache<String, JwtConsumer>> consumerCaches = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
     public JwtVerifier(SecurityConfig config) {
         this.config = config;
         this.secondsOfAllowedClockSkew = config.getClockSkewInSeconds();
         this.bootstrapFromKeyService = config.isBootstrapFromKeyService();
         this.enableRelaxedKeyValidation = config.isEnableRelaxedKeyValidation();
         this.enableJwtCache = config.isEnableJwtCache();
+        consumerCaches.add(consumerCache);
         if (Boolean.TRUE.equals(enableJwtCache)) {
-            cache = Caffeine.newBuilder()
-                    .maximumSize(config.getJwtCacheFullSize())
-                    // assuming that the clock screw time is less than 5 minutes
-                    .expireAfterWrite(CACHE_EXPIRED_IN_MINUTES, TimeUnit.MINUTES)
-                    .build();
+            cache = new JwtClaimsCache(config.getJwtCacheFullSize(), secondsOfAllowedClockSkew, config.getJwtCacheClaims());
+            Map<String, Object> cacheInfo = new HashMap<>();
+            cacheInfo.put("stats", cache);
+            ModuleRegistry.registerModule(JwtClaimsCache.class.getName(), cacheInfo, null);
         }
         // init getting JWK during the initialization. The other part is in the resolver for OAuth 2.0 provider to
         // rotate keys when the first token is received with the new kid.
@@ -116,13 +146,70 @@ public class JwtVerifier extends TokenVerifier {
 
         // if KeyResolver is jwk and bootstrap from jwk is true, load jwk during server startup.
         if(logger.isTraceEnabled()) logger.trace("keyResolver = " + keyResolver + " bootstrapFromKeyService = " + bootstrapFromKeyService);
+        jwkServers = new ConcurrentHashMap<>();
         if (JWT_KEY_RESOLVER_JWKS.equals(keyResolver) && bootstrapFromKeyService) {
             jwksMap = getJsonWebKeyMap();
         } else {
-            jwksMap = new HashMap<>();
+            jwksMap = new ConcurrentHashMap<>();
+        }
+        if (JWT_KEY_RESOLVER_JWKS.equals(keyResolver)) {
+            scheduleJwkRefresh(config.getJwkRefreshIntervalInSeconds());
+        }
+    }
+
+    /**
+     * Refresh the JWK of the loaded auth servers periodically, so that the new keys published ahead of a key rotation
+     * are in the jwksMap before the first token signed by them arrives. Only the last created verifier is refreshed.
+     *
+     * @param intervalInSeconds the refresh interval, 0 to disable the refresh.
+     */
+    private void scheduleJwkRefresh(int intervalInSeconds) {
+        synchronized (JwtVerifier.class) {
+            if (jwkRefreshTask != null) {
+                jwkRefreshTask.cancel(false);
+                jwkRefreshTask = null;
+            }
+            if (intervalInSeconds <= 0) return;
+            if (jwkRefreshExecutor == null) {
+                jwkRefreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "jwk-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            jwkRefreshTask = jwkRefreshExecutor.scheduleWithFixedDelay(this::refreshJwk, intervalInSeconds, intervalInSeconds, TimeUnit.SECONDS);
         }
     }
 
+    /**
+     * Reload the JWK of all the auth servers that have been loaded. If an auth server cannot be reached, the cached
+     * keys are kept and used until the next successful refresh.
+     */
+    void refreshJwk() {
+        for (Map.Entry<String, Map<String, Object>> entry : jwkServers.entrySet()) {
+            String serviceId = SINGLE_AUTH_SERVER.equals(entry.getKey()) ? null : entry.getKey();
+            try {
+                List<JsonWebKey> jwkList = retrieveJwk(null, serviceId == null ? null : entry.getValue());
+                if (jwkList == null || jwkList.isEmpty()) {
+                    logger.warn("Failed to refresh JWK for serviceId {}, the cached keys are used.", serviceId);
+                } else if (cacheJwkList(jwkList, serviceId)) {
+                    // the consumers of all the verifiers might have the previous keys of the kid.
+                    invalidateConsumers();
+                }
+            } catch (Exception e) {
+                logger.error("Failed to refresh JWK for serviceId " + serviceId + ", the cached keys are used.", e);
+            }
+        }
+    }
+
+
+    private static void invalidateConsumers() {
+        synchronized (consumerCaches) {
+            for (Cache<String, JwtConsumer> consumers : consumerCaches) {
+                consumers.invalidateAll();
+            }
+        }
+    }
 
     /**
      * Caches cert.
@@ -196,7 +283,7 @@ public class JwtVerifier extends TokenVerifier {
      */
     public JwtClaims verifyJwt(String jwt, boolean ignoreExpiry, boolean isToken, String pathPrefix, String requestPath, List<String> jwkServiceIds) throws InvalidJwtException, ExpiredTokenException {
         if(logger.isTraceEnabled()) logger.trace("verifyJwt is called with ignoreExpiry = " + ignoreExpiry + " isToken = " + isToken + " pathPrefix = " + pathPrefix + " requestPath = " + requestPath + " jwkServiceIds = " + jwkServiceIds);
-        return verifyJwt(jwt, ignoreExpiry, isToken, pathPrefix, requestPath, jwkServiceIds, this::getKeyResolver);
+        return verifyJwt(jwt, ignoreExpiry, pathPrefix, requestPath, jwkServiceIds, this::getConsumer);
     }
 
     /**
@@ -212,7 +299,7 @@ public class JwtVerifier extends TokenVerifier {
      */
     public JwtClaims verifyJwt(String jwt, boolean ignoreExpiry, boolean isToken) throws InvalidJwtException, ExpiredTokenException {
         if(logger.isTraceEnabled()) logger.trace("verifyJwt is called with ignoreExpiry = " + ignoreExpiry + " isToken = " + isToken);
-        return verifyJwt(jwt, ignoreExpiry, isToken, null, null, null, this::getKeyResolver);
+        return verifyJwt(jwt, ignoreExpiry, null, null, null, this::getConsumer);
     }
 
     /**
@@ -236,14 +323,30 @@ public class JwtVerifier extends TokenVerifier {
      */
     public JwtClaims verifyJwt(String jwt, boolean ignoreExpiry, boolean isToken, String pathPrefix, String requestPath, List<String> jwkServiceIds, BiFunction<String, Object, VerificationKeyResolver> getKeyResolver)
             throws InvalidJwtException, ExpiredTokenException {
+        return verifyJwt(jwt, ignoreExpiry, pathPrefix, requestPath, jwkServiceIds, (kid, requestPathOrJwkServiceIds) -> buildConsumer(getKeyResolver.apply(kid, requestPathOrJwkServiceIds)));
+    }
+
+    /**
+     * Parse the token once and verify the signature of the parsed structure with the consumer of the kid.
+     *
+     * @param jwt           String of Json web token
+     * @param ignoreExpiry  If true, don't verify if the token is expired.
+     * @param pathPrefix    pathPrefix for the jwt token cache key
+     * @param requestPath   the request path that used to find the right auth server config
+     * @param jwkServiceIds a list of jwk serviceIds defined in the client.yml to retrieve jwk.
+     * @param getConsumer   How to get the JwtConsumer that verifies the signature for the kid
+     * @return JwtClaims object
+     * @throws InvalidJwtException   InvalidJwtException
+     * @throws ExpiredTokenException ExpiredTokenException
+     */
+    private JwtClaims verifyJwt(String jwt, boolean ignoreExpiry, String pathPrefix, String requestPath, List<String> jwkServiceIds, BiFunction<String, Object, JwtConsumer> getConsumer)
+            throws InvalidJwtException, ExpiredTokenException {
         JwtClaims claims;
+        JwtClaimsCache.Key cacheKey = null;
 
         if (Boolean.TRUE.equals(enableJwtCache)) {
-            if(pathPrefix != null) {
-                claims = cache.getIfPresent(pathPrefix + ":" + jwt);
-            } else {
-                claims = cache.getIfPresent(jwt);
-            }
+            cacheKey = cache.key(pathPrefix, jwt);
+            claims = cache.get(cacheKey);
             if (claims != null) {
 
                 checkExpiry(ignoreExpiry, claims, secondsOfAllowedClockSkew, null);
@@ -253,20 +356,8 @@ public class JwtVerifier extends TokenVerifier {
             }
         }
 
-
-        JwtConsumer consumer;
-        JwtConsumerBuilder pKeyBuilder = new JwtConsumerBuilder()
-                .setSkipAllValidators()
-                .setDisableRequireSignature()
-                .setSkipSignatureVerification();
-
-        if (this.enableRelaxedKeyValidation) {
-            pKeyBuilder.setRelaxVerificationKeyValidation();
-        }
-
-        consumer = pKeyBuilder.build();
-
-        JwtContext jwtContext = consumer.process(jwt);
+        // the token is decoded and parsed only once here, the signature is verified on the parsed structure later.
+        JwtContext jwtContext = PARSE_CONSUMER.process(jwt);
         claims = jwtContext.getJwtClaims();
         JsonWebStructure structure = jwtContext.getJoseObjects().get(0);
         // need this kid to load public key certificate for signature verification
@@ -279,32 +370,66 @@ public class JwtVerifier extends TokenVerifier {
         // validate the audience against the configured audience.
         validateAudience(claims, requestPath, jwkServiceIds, jwtContext);
 
+        // Validate the signature and the claims of the parsed JWT
+        JwtConsumer consumer = getConsumer.apply(kid, jwkServiceIds != null ? jwkServiceIds : requestPath);
+        consumer.processContext(jwtContext);
+        if (Boolean.TRUE.equals(enableJwtCache)) {
+            // return the cached claims so that a hit and a miss return the same claims.
+            claims = cache.put(cacheKey, claims);
+            if(cache.getSize() > config.getJwtCacheFullSize()) {
+                logger.warn("JWT cache exceeds the size limit " + config.getJwtCacheFullSize());
+            }
+        }
+        return claims;
+    }
+
+    /**
+     * Get the cached JwtConsumer that verifies the tokens signed with the kid. The consumer is cached by the kid
+     * and the auth server that the request path or jwkServiceIds are resolved to, so that it is only built when
+     * a kid is seen for the first time or the cached consumer is expired.
+     *
+     * @param kid         key id from the JWT token
+     * @param requestPathOrJwkServiceIds the request path or jwkServiceIds of incoming request used to identify the serviceId to get the JWK.
+     * @return JwtConsumer
+     */
+    private JwtConsumer getConsumer(String kid, Object requestPathOrJwkServiceIds) {
+        String consumerKey = getConsumerKey(kid, requestPathOrJwkServiceIds);
+        JwtConsumer consumer = consumerCache.getIfPresent(consumerKey);
+        if (consumer == null) {
+            VerificationKeyResolver resolver = getKeyResolver(kid, requestPathOrJwkServiceIds);
+            consumer = buildConsumer(resolver);
+            // a consumer without a resolver cannot verify anything and it is not cached.
+            if (resolver != null) {
+                consumerCache.put(consumerKey, consumer);
+            }
+        }
+        return consumer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private String getConsumerKey(String kid, Object requestPathOrJwkServiceIds) {
+        // the certificates are looked up by kid only.
+        if (requestPathOrJwkServiceIds == null || (certMap != null && certMap.get(kid) != null)) {
+            return String.valueOf(kid);
+        }
+        if (requestPathOrJwkServiceIds instanceof String) {
+            String serviceId = getServiceIdByRequestPath(ClientConfig.get(), (String) requestPathOrJwkServiceIds);
+            return serviceId == null ? String.valueOf(kid) : serviceId + ":" + kid;
+        }
+        return String.join(",", (List<String>) requestPathOrJwkServiceIds) + ":" + kid;
+    }
+
+    private JwtConsumer buildConsumer(VerificationKeyResolver resolver) {
         JwtConsumerBuilder jwtBuilder = new JwtConsumerBuilder()
                 .setRequireExpirationTime()
                 .setAllowedClockSkewInSeconds(315360000) // use seconds of 10 years to skip expiration validation as we need skip it in some cases.
                 .setSkipDefaultAudienceValidation()
-                .setVerificationKeyResolver(getKeyResolver.apply(kid, jwkServiceIds != null ? jwkServiceIds : requestPath));
+                .setVerificationKeyResolver(resolver);
 
         if (this.enableRelaxedKeyValidation) {
             jwtBuilder.setRelaxVerificationKeyValidation();
         }
-
-        consumer = jwtBuilder.build();
-
-        // Validate the JWT and process it to the Claims
-        jwtContext = consumer.process(jwt);
-        claims = jwtContext.getJwtClaims();
-        if (Boolean.TRUE.equals(enableJwtCache)) {
-            if(pathPrefix != null) {
-                cache.put(pathPrefix + ":" + jwt, claims);
-            } else {
-                cache.put(jwt, claims);
-            }
-            if(cache.estimatedSize() > config.getJwtCacheFullSize()) {
-                logger.warn("JWT cache exceeds the size limit " + config.getJwtCacheFullSize());
-            }
-        }
-        return claims;
+        return jwtBuilder.build();
     }
 
     /**
@@ -476,23 +601,8 @@ public class JwtVerifier extends TokenVerifier {
                 }
 
                 if (jwkList == null) {
-                    jwkList = getJsonWebKeySetForToken(kid, requestPathOrJwkServiceIds);
-                    if (jwkList == null || jwkList.isEmpty()) {
-                        throw new RuntimeException("no JWK for kid: " + kid);
-                    }
-                    if(requestPathOrJwkServiceIds == null) {
-                        // single jwk setup and kid is the key for the jwk cache.
-                        cacheJwkList(jwkList, null);
-                    } else if(requestPathOrJwkServiceIds instanceof String) {
-                        // a single request path is passed in.
-                        String serviceId = getServiceIdByRequestPath(clientConfig, (String)requestPathOrJwkServiceIds);
-                        cacheJwkList(jwkList, serviceId);
-                    } else if(requestPathOrJwkServiceIds instanceof List) {
-                        // called with a list of serviceIds from the UnifiedSecurityHandler.
-                        for(String serviceId: (List<String>)requestPathOrJwkServiceIds) {
-                            cacheJwkList(jwkList, serviceId);
-                        }
-                    }
+                    // all the concurrent requests with the same new kid wait for one call to the auth server.
+                    jwkList = jwkFetches.execute(getConsumerKey(kid, requestPathOrJwkServiceIds), () -> loadJsonWebKeySetForToken(kid, requestPathOrJwkServiceIds));
                 }
                 logger.debug("Got Json web key set from local cache");
                 return new JwksVerificationKeyResolver(jwkList);
@@ -503,16 +613,59 @@ public class JwtVerifier extends TokenVerifier {
         }
     }
 
-    private void cacheJwkList(List<JsonWebKey> jwkList, String serviceId) {
+    @SuppressWarnings("unchecked")
+    private List<JsonWebKey> loadJsonWebKeySetForToken(String kid, Object requestPathOrJwkServiceIds) {
+        List<JsonWebKey> jwkList = getJsonWebKeySetForToken(kid, requestPathOrJwkServiceIds);
+        if (jwkList == null || jwkList.isEmpty()) {
+            throw new RuntimeException("no JWK for kid: " + kid);
+        }
+        if(requestPathOrJwkServiceIds == null) {
+            // single jwk setup and kid is the key for the jwk cache.
+            cacheJwkList(jwkList, null);
+        } else if(requestPathOrJwkServiceIds instanceof String) {
+            // a single request path is passed in.
+            String serviceId = getServiceIdByRequestPath(ClientConfig.get(), (String)requestPathOrJwkServiceIds);
+            cacheJwkList(jwkList, serviceId);
+        } else if(requestPathOrJwkServiceIds instanceof List) {
+            // called with a list of serviceIds from the UnifiedSecurityHandler.
+            for(String serviceId: (List<String>)requestPathOrJwkServiceIds) {
+                cacheJwkList(jwkList, serviceId);
+            }
+        }
+        return jwkList;
+    }
+
+    /**
+     * Cache the jwkList by the kid of each key.
+     *
+     * @param jwkList the list of JsonWebKey
+     * @param serviceId the serviceId of the auth server or null for the single auth server
+     * @return true if any of the kids is new or its key is changed.
+     */
+    private boolean cacheJwkList(List<JsonWebKey> jwkList, String serviceId) {
+        boolean changed = false;
         for (JsonWebKey jwk : jwkList) {
+            List<JsonWebKey> previous;
             if(serviceId != null) {
                 if(logger.isTraceEnabled()) logger.trace("cache the jwkList with serviceId {} kid {} and key {}", serviceId, jwk.getKeyId(), serviceId + ":" + jwk.getKeyId());
-                jwksMap.put(serviceId + ":" + jwk.getKeyId(), jwkList);
+                previous = jwksMap.put(serviceId + ":" + jwk.getKeyId(), jwkList);
             } else {
                 if(logger.isTraceEnabled()) logger.trace("cache the jwkList with kid and only kid as key", jwk.getKeyId());
-                jwksMap.put(jwk.getKeyId(), jwkList);
+                previous = jwksMap.put(jwk.getKeyId(), jwkList);
+            }
+            if (!changed && (previous == null || !toJson(previous).equals(toJson(jwkList)))) {
+                changed = true;
             }
         }
+        return changed;
+    }
+
+    private static List<String> toJson(List<JsonWebKey> jwkList) {
+        List<String> json = new ArrayList<>(jwkList.size());
+        for (JsonWebKey jwk : jwkList) {
+            json.add(jwk.toJson());
+        }
+        return json;
     }
     private String getServiceIdByRequestPath(ClientConfig clientConfig, String requestPath) {
         Map<String, String> pathPrefixServices = clientConfig.getPathPrefixServices();
@@ -520,13 +673,8 @@ public class JwtVerifier extends TokenVerifier {
             if (pathPrefixServices == null || pathPrefixServices.size() == 0) {
                 throw new ConfigException("pathPrefixServices property is missing or has an empty value in client.yml");
             }
-            // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-            String serviceId = null;
-            for (Map.Entry<String, String> entry : pathPrefixServices.entrySet()) {
-                if (requestPath.startsWith(entry.getKey())) {
-                    serviceId = entry.getValue();
-                }
-            }
+            // lookup the serviceId based on the longest prefix of the full path in the prefix mapping.
+            String serviceId = clientConfig.getPathPrefixServicesTrie().match(requestPath);
             if (serviceId == null) {
                 throw new ConfigException("serviceId cannot be identified in client.yml with the requestPath = " + requestPath);
             }
@@ -547,7 +695,7 @@ public class JwtVerifier extends TokenVerifier {
     private Map<String, List<JsonWebKey>> getJsonWebKeyMap() {
         // the jwk indicator will ensure that the kid is not concat to the uri for path parameter.
         // the kid is not needed to get JWK. We need to figure out only one jwk server or multiple.
-        jwksMap = new HashMap<>();
+        jwksMap = new ConcurrentHashMap<>();
         ClientConfig clientConfig = ClientConfig.get();
         Map<String, Object> tokenConfig = clientConfig.getTokenConfig();
         Map<String, Object> keyConfig = (Map<String, Object>) tokenConfig.get(ClientConfig.KEY);
@@ -571,6 +719,7 @@ public class JwtVerifier extends TokenVerifier {
                         if (logger.isTraceEnabled()) logger.trace("audience {} is mapped to serviceId {}", audience, serviceId);
                         audienceMap.put(serviceId, audience);
                     }
+                    jwkServers.put(serviceId, authServerConfig);
                     // get the jwk from the auth server.
                     TokenKeyRequest keyRequest = new TokenKeyRequest(null, true, authServerConfig);
                     try {
@@ -608,6 +757,7 @@ public class JwtVerifier extends TokenVerifier {
             // get audience from the key config
             audience = (String) keyConfig.get(ClientConfig.AUDIENCE);
             if(logger.isTraceEnabled()) logger.trace("A single audience {} is configured in client.yml", audience);
+            jwkServers.put(SINGLE_AUTH_SERVER, Collections.emptyMap());
             // there is only one jwk server.
             TokenKeyRequest keyRequest = new TokenKeyRequest(null, true, null);
             try {
@@ -672,30 +822,29 @@ public class JwtVerifier extends TokenVerifier {
                 if (pathPrefixServices == null || pathPrefixServices.size() == 0) {
                     throw new ConfigException("pathPrefixServices property is missing or has an empty value in client.yml");
                 }
-                // lookup the serviceId based on the full path and the prefix mapping by iteration here.
-                String serviceId = null;
-                for (Map.Entry<String, String> entry : pathPrefixServices.entrySet()) {
-                    if (requestPath.startsWith(entry.getKey())) {
-                        serviceId = entry.getValue();
-                    }
-                }
+                // lookup the serviceId based on the longest prefix of the full path in the prefix mapping.
+                String serviceId = clientConfig.getPathPrefixServicesTrie().match(requestPath);
                 if (serviceId == null) {
                     throw new ConfigException("serviceId cannot be identified in client.yml with the requestPath = " + requestPath);
                 }
                 config = getJwkConfig(clientConfig, serviceId);
+                jwkServers.put(serviceId, config);
                 jwks = retrieveJwk(kid, config);
             } else if (requestPathOrJwkServiceIds instanceof List) {
                 List<String> jwkServiceIds = (List<String>)requestPathOrJwkServiceIds;
                 jwks = new ArrayList<>();
                 for(String serviceId: jwkServiceIds) {
                     config = getJwkConfig(clientConfig, serviceId);
-                    jwks.addAll(retrieveJwk(kid, config));
+                    jwkServers.put(serviceId, config);
+                    List<JsonWebKey> serviceJwks = retrieveJwk(kid, config);
+                    if (serviceJwks != null) jwks.addAll(serviceJwks);
                 }
             } else {
                 throw new ConfigException("requestPathOrJwkServiceIds must be a string or a list of strings");
             }
         } else {
             // get the jwk from the key section in the client.yml token key.
+            jwkServers.put(SINGLE_AUTH_SERVER, Collections.emptyMap());
             jwks = retrieveJwk(kid, null);
         }
         return jwks;
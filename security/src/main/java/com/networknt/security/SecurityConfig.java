@@ -37,7 +37,9 @@ public class SecurityConfig {
     private static final String LOG_CLIENT_USER_SCOPE = "logClientUserScope";
     private static final String ENABLE_JWT_CACHE = "enableJwtCache";
     private static final String JWT_CACHE_FULL_SIZE = "jwtCacheFullSize";
+    private static final String JWT_CACHE_CLAIMS = "jwtCacheClaims";
     private static final String BOOTSTRAP_FROM_KEY_SERVICE = "bootstrapFromKeyService";
+    private static final String JWK_REFRESH_INTERVAL_IN_SECONDS = "jwkRefreshIntervalInSeconds";
     private static final String IGNORE_JWT_EXPIRY = "ignoreJwtExpiry";
     private static final String PROVIDER_ID = "providerId";
     private static final String ENABLE_H2C = "enableH2c";
@@ -63,7 +65,9 @@ public class SecurityConfig {
     private boolean logClientUserScope;
     private boolean enableJwtCache;
     private int jwtCacheFullSize;
+    private List<String> jwtCacheClaims;
     private boolean bootstrapFromKeyService;
+    private int jwkRefreshIntervalInSeconds;
     private boolean ignoreJwtExpiry;
     private String providerId;
     private boolean enableH2c;
@@ -80,6 +84,7 @@ public class SecurityConfig {
         setCertificate();
         setConfigData();
         setSkipPathPrefixes();
+        setJwtCacheClaims();
         setPassThroughClaims();
     }
 
@@ -92,6 +97,7 @@ public class SecurityConfig {
         setCertificate();
         setConfigData();
         setSkipPathPrefixes();
+        setJwtCacheClaims();
         setPassThroughClaims();
     }
 
@@ -155,6 +161,14 @@ public class SecurityConfig {
     public int getJwtCacheFullSize() {
         return jwtCacheFullSize;
     }
+    public List<String> getJwtCacheClaims() {
+        return jwtCacheClaims;
+    }
+
+    public int getJwkRefreshIntervalInSeconds() {
+        return jwkRefreshIntervalInSeconds;
+    }
+
     public boolean isBootstrapFromKeyService() {
         return bootstrapFromKeyService;
     }
@@ -225,6 +239,8 @@ public class SecurityConfig {
             if(object != null ) jwtCacheFullSize = Config.loadIntegerValue(JWT_CACHE_FULL_SIZE, object);
             object = getMappedConfig().get(BOOTSTRAP_FROM_KEY_SERVICE);
             if(object != null) bootstrapFromKeyService = Config.loadBooleanValue(BOOTSTRAP_FROM_KEY_SERVICE, object);
+            object = getMappedConfig().get(JWK_REFRESH_INTERVAL_IN_SECONDS);
+            if(object != null) jwkRefreshIntervalInSeconds = Config.loadIntegerValue(JWK_REFRESH_INTERVAL_IN_SECONDS, object);
             object = getMappedConfig().get(IGNORE_JWT_EXPIRY);
             if(object != null) ignoreJwtExpiry = Config.loadBooleanValue(IGNORE_JWT_EXPIRY, object);
             object = getMappedConfig().get(PROVIDER_ID);
@@ -268,6 +284,36 @@ public class SecurityConfig {
         }
     }
 
+    private void setJwtCacheClaims() {
+        jwtCacheClaims = null;
+        if (mappedConfig != null && mappedConfig.get(JWT_CACHE_CLAIMS) != null) {
+            Object object = mappedConfig.get(JWT_CACHE_CLAIMS);
+            if(object instanceof String) {
+                String s = ((String)object).trim();
+                if(logger.isTraceEnabled()) logger.trace("s = " + s);
+                if(s.isEmpty()) return;
+                if(s.startsWith("[")) {
+                    // json format
+                    try {
+                        jwtCacheClaims = Config.getInstance().getMapper().readValue(s, new TypeReference<List<String>>() {});
+                    } catch (Exception e) {
+                        throw new ConfigException("could not parse the jwtCacheClaims json with a list of strings.");
+                    }
+                } else {
+                    // comma separated
+                    jwtCacheClaims = Arrays.asList(s.split("\\s*,\\s*"));
+                }
+            } else if (object instanceof List) {
+                jwtCacheClaims = new ArrayList<>();
+                for(Object item : (List)object) {
+                    jwtCacheClaims.add((String)item);
+                }
+            } else {
+                throw new ConfigException("jwtCacheClaims must be a string or a list of strings.");
+            }
+        }
+    }
+
     private void setPassThroughClaims() {
         if(mappedConfig != null && mappedConfig.get(PASS_THROUGH_CLAIMS) != null) {
             Object obj = mappedConfig.get(PASS_THROUGH_CLAIMS);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+public class JwtClaimsCacheTest {
+
+    @Test
+    public void testKey() throws Exception {
+        JwtClaimsCache cache = new JwtClaimsCache(100, 60, null);
+        String jwt = JwtIssuer.getJwt(ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user"));
+        Assert.assertEquals(cache.key(null, jwt), cache.key(null, jwt));
+        Assert.assertEquals(cache.key("/v1/pets", jwt), cache.key("/v1/pets", jwt));
+        Assert.assertNotEquals(cache.key(null, jwt), cache.key("/v1/pets", jwt));
+        Assert.assertNotEquals(cache.key("/v1/pets", jwt), cache.key("/v2/pets", jwt));
+        Assert.assertNotEquals(cache.key(null, jwt), cache.key(null, jwt.substring(1)));
+        // the tokens that are not ASCII are digested as UTF-8.
+        Assert.assertNotEquals(cache.key(null, "š"), cache.key(null, "a"));
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        JwtClaimsCache cache = new JwtClaimsCache(100, 60, null);
+        JwtClaims claims = ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user");
+        JwtClaimsCache.Key key = cache.key(null, JwtIssuer.getJwt(claims));
+        Assert.assertNull(cache.get(key));
+        Assert.assertSame(claims, cache.put(key, claims));
+        Assert.assertSame(claims, cache.get(key));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testExpireWithToken() {
+        JwtClaimsCache cache = new JwtClaimsCache(100, 0, null);
+        JwtClaims expired = new JwtClaims();
+        expired.setExpirationTime(NumericDate.fromSeconds(NumericDate.now().getValue() - 10));
+        JwtClaimsCache.Key expiredKey = cache.key(null, "expired");
+        cache.put(expiredKey, expired);
+        JwtClaims valid = new JwtClaims();
+        valid.setExpirationTimeMinutesInTheFuture(10);
+        JwtClaimsCache.Key validKey = cache.key(null, "valid");
+        cache.put(validKey, valid);
+        cache.cleanUp();
+        Assert.assertNull(cache.get(expiredKey));
+        Assert.assertSame(valid, cache.get(validKey));
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        JwtClaimsCache cache = new JwtClaimsCache(100, 60, Arrays.asList("user_id", "scope", "cid"));
+        JwtClaims claims = ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user");
+        JwtClaimsCache.Key key = cache.key(null, JwtIssuer.getJwt(claims));
+        JwtClaims cached = cache.put(key, claims);
+        Assert.assertSame(cached, cache.get(key));
+        Assert.assertEquals("steve", cached.getStringClaimValue("user_id"));
+        Assert.assertEquals(Arrays.asList("write:pets", "read:pets"), cached.getStringListClaimValue("scope"));
+        Assert.assertEquals(claims.getExpirationTime(), cached.getExpirationTime());
+        Assert.assertFalse(cached.hasClaim("user_type"));
+        Assert.assertFalse(cached.hasClaim("cid"));
+    }
+
+    /**
+     * Compare the allocation of a hit and the retained heap of an entry with the previous cache that was keyed by
+     * the path prefix and the token.
+     */
+    @Ignore
+    @Test
+    public void testHitAllocationPerf() throws Exception {
+        int loop = 100000;
+        JwtClaims claims = ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user");
+        String jwt = JwtIssuer.getJwt(claims);
+        String pathPrefix = "/v1/pets";
+
+        Cache<String, JwtClaims> stringCache = Caffeine.newBuilder().maximumSize(100).expireAfterWrite(15, TimeUnit.MINUTES).build();
+        stringCache.put(pathPrefix + ":" + jwt, claims);
+        JwtClaimsCache digestCache = new JwtClaimsCache(100, 60, null);
+        digestCache.put(digestCache.key(pathPrefix, jwt), claims);
+        for (int i = 0; i < loop; i++) {
+            stringCache.getIfPresent(pathPrefix + ":" + jwt);
+            digestCache.get(digestCache.key(pathPrefix, jwt));
+        }
+
+        long allocated = allocatedBytes();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < loop; i++) {
+            Assert.assertNotNull(stringCache.getIfPresent(pathPrefix + ":" + jwt));
+        }
+        System.out.println("Token key hit " + (System.currentTimeMillis() - start) + "ms " + (allocatedBytes() - allocated) / loop + " bytes/hit, key retains " + (pathPrefix.length() + jwt.length() + 41) + " bytes");
+        allocated = allocatedBytes();
+        start = System.currentTimeMillis();
+        for (int i = 0; i < loop; i++) {
+            Assert.assertNotNull(digestCache.get(digestCache.key(pathPrefix, jwt)));
+        }
+        System.out.println("Digest key hit " + (System.currentTimeMillis() - start) + "ms " + (allocatedBytes() - allocated) / loop + " bytes/hit, key retains 32 bytes");
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
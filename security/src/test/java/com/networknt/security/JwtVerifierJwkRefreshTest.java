@@ -0,0 +1,172 @@
+package com.networknt.security;
+
+import com.networknt.client.ClientConfig;
+import io.undertow.Undertow;
+import io.undertow.UndertowOptions;
+import io.undertow.server.handlers.BlockingHandler;
+import io.undertow.server.handlers.PathHandler;
+import io.undertow.util.Headers;
+import org.jose4j.jwt.JwtClaims;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Verify the tokens against a local stub JWKS endpoint that is slow, rotates the keys and goes down.
+ */
+public class JwtVerifierJwkRefreshTest extends JwtVerifierJwkBase {
+    private static final String SERVER_KEY_STORE = "server.keystore";
+    private static final String SERVER_TRUST_STORE = "server.truststore";
+    private static final String CLIENT_CONFIG_NAME = "client-single-auth";
+    private static final long JWKS_DELAY = 300;
+    private static final int THREADS = 16;
+
+    private static final AtomicReference<String> jwks = new AtomicReference<>();
+    private static final AtomicInteger fetches = new AtomicInteger();
+    private static final AtomicBoolean down = new AtomicBoolean();
+    private static Undertow server;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        ClientConfig.get(CLIENT_CONFIG_NAME);
+        Undertow.Builder builder = Undertow.builder();
+        builder.addHttpsListener(7773, "localhost", createSSLContext(loadKeyStore(SERVER_KEY_STORE), loadKeyStore(SERVER_TRUST_STORE), false));
+        builder.setServerOption(UndertowOptions.ENABLE_HTTP2, true);
+        server = builder
+                .setHandler(new PathHandler().addExactPath("/oauth2/key", new BlockingHandler(exchange -> {
+                    fetches.incrementAndGet();
+                    // the round trip to the auth server.
+                    Thread.sleep(JWKS_DELAY);
+                    if (down.get()) {
+                        exchange.setStatusCode(503);
+                        exchange.endExchange();
+                        return;
+                    }
+                    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+                    exchange.getResponseSender().send(jwks.get());
+                })))
+                .build();
+        server.start();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        if (server != null) {
+            server.stop();
+            server = null;
+        }
+        ClientConfig.get(ClientConfig.CONFIG_NAME);
+    }
+
+    @Before
+    public void setUp() {
+        jwks.set(keySet("111"));
+        fetches.set(0);
+        down.set(false);
+    }
+
+    @Test
+    public void testConcurrentMissesAreCoalesced() throws Exception {
+        JwtVerifier jwtVerifier = new JwtVerifier(SecurityConfig.load(JwtVerifier.SECURITY_CONFIG));
+        List<Long> latencies = verifyConcurrently(jwtVerifier, "111");
+        Assert.assertEquals(1, fetches.get());
+        System.out.println("New kid without refresh p99 " + percentile(latencies, 99) + "ms max " + percentile(latencies, 100) + "ms");
+    }
+
+    @Test
+    public void testRotationWithRefresh() throws Exception {
+        JwtVerifier jwtVerifier = new JwtVerifier(SecurityConfig.load(JwtVerifier.SECURITY_CONFIG));
+        verifyConcurrently(jwtVerifier, "111");
+        Assert.assertEquals(1, fetches.get());
+
+        // the auth server publishes the next key ahead of the rotation, and it is picked up by the refresh.
+        jwks.set(keySet("111", "112"));
+        jwtVerifier.refreshJwk();
+        Assert.assertEquals(2, fetches.get());
+        List<Long> latencies = verifyConcurrently(jwtVerifier, "112");
+        Assert.assertEquals(2, fetches.get());
+        System.out.println("Rotated kid with refresh p99 " + percentile(latencies, 99) + "ms max " + percentile(latencies, 100) + "ms");
+        Assert.assertTrue(percentile(latencies, 100) < JWKS_DELAY);
+    }
+
+    @Test
+    public void testRefreshInvalidatesAllVerifiers() throws Exception {
+        JwtVerifier first = new JwtVerifier(SecurityConfig.load(JwtVerifier.SECURITY_CONFIG));
+        verifyConcurrently(first, "111");
+        JwtVerifier second = new JwtVerifier(SecurityConfig.load(JwtVerifier.SECURITY_CONFIG));
+        verifyConcurrently(second, "111");
+        Assert.assertEquals(1, first.consumerCache.estimatedSize());
+        Assert.assertEquals(1, second.consumerCache.estimatedSize());
+
+        // the refresh of the last created verifier changes the shared keys of both.
+        jwks.set(keySet("111", "112"));
+        second.refreshJwk();
+        Assert.assertEquals(0, first.consumerCache.estimatedSize());
+        Assert.assertEquals(0, second.consumerCache.estimatedSize());
+        verifyConcurrently(first, "112");
+    }
+
+    @Test
+    public void testServeStaleKeysWhenDown() throws Exception {
+        JwtVerifier jwtVerifier = new JwtVerifier(SecurityConfig.load(JwtVerifier.SECURITY_CONFIG));
+        verifyConcurrently(jwtVerifier, "111");
+        down.set(true);
+        jwtVerifier.refreshJwk();
+        Assert.assertEquals(2, fetches.get());
+        List<Long> latencies = verifyConcurrently(jwtVerifier, "111");
+        Assert.assertEquals(2, fetches.get());
+        Assert.assertTrue(percentile(latencies, 100) < JWKS_DELAY);
+    }
+
+    private static List<Long> verifyConcurrently(JwtVerifier jwtVerifier, String kid) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            // each token is different so that the claims cache is not used.
+            String jwt = getJwt(getTestClaims(), kid);
+            tasks.add(() -> {
+                long start = System.currentTimeMillis();
+                JwtClaims claims = jwtVerifier.verifyJwt(jwt, false, true);
+                Assert.assertEquals("steve", claims.getStringClaimValue("user_id"));
+                return System.currentTimeMillis() - start;
+            });
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (Future<Long> future : executorService.invokeAll(tasks)) {
+            latencies.add(future.get());
+        }
+        executorService.shutdown();
+        return latencies;
+    }
+
+    private static long percentile(List<Long> latencies, int percentile) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    // all the kids share the public key of the primary.jks that signs the test tokens.
+    private static String keySet(String... kids) {
+        String key = JwtVerifierSingleJwkTest.jsonWebKeySetJson111;
+        String jwk = key.substring(key.indexOf('[') + 1, key.lastIndexOf(']'));
+        List<String> keys = new ArrayList<>();
+        for (String kid : kids) {
+            keys.add(jwk.replace("\"kid\":\"111\"", "\"kid\":\"" + kid + "\""));
+        }
+        return "{\"keys\":[" + String.join(",", keys) + "]}";
+    }
+}
@@ -16,19 +16,32 @@
 
 package com.networknt.security;
 
+import ch.qos.logback.classic.Level;
 import com.networknt.config.Config;
 import com.networknt.utility.Constants;
+import org.jose4j.jwk.EcJwkGenerator;
+import org.jose4j.jwk.EllipticCurveJsonWebKey;
 import org.jose4j.jwk.JsonWebKey;
 import org.jose4j.jwk.JsonWebKeySet;
 import org.jose4j.jwk.PublicJsonWebKey;
 import org.jose4j.jws.AlgorithmIdentifiers;
 import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.EllipticCurves;
 import org.jose4j.keys.resolvers.JwksVerificationKeyResolver;
+import org.jose4j.keys.resolvers.VerificationKeyResolver;
+import org.jose4j.keys.resolvers.X509VerificationKeyResolver;
 import org.jose4j.lang.JoseException;
 import org.junit.Assert;
+import org.junit.Ignore;
 import org.junit.Test;
+import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -40,6 +53,7 @@ public class JwtVerifierTest {
     static final String CONFIG_NAME_OPENAPI = "openapi-security-no-default-jwtcertificate";
 
     static final String CONFIG_RELAXED_VERIFICATION = "security-relaxedVerification";
+    static final String CONFIG_JWKS = "security";
     @Test
     public void testReadCertificate() {
         SecurityConfig config = SecurityConfig.load(CONFIG_NAME);
@@ -262,6 +276,115 @@ public class JwtVerifierTest {
         System.out.println("jwtClaims = " + claims);
     }
 
+    @Test
+    public void testVerifyEs256ByCachedConsumer() throws Exception {
+        EllipticCurveJsonWebKey jwk = EcJwkGenerator.generateJwk(EllipticCurves.P256);
+        jwk.setKeyId("es256");
+        String jwt = getEs256Jwt(jwk, "steve");
+        JwtVerifier jwtVerifier = new JwtVerifier(SecurityConfig.load(CONFIG_JWKS));
+        JwtVerifier.jwksMap.put("es256", Collections.singletonList(jwk));
+        jwtVerifier.enableJwtCache = false;
+        JwtClaims claims = jwtVerifier.verifyJwt(jwt, false, true);
+        Assert.assertEquals("steve", claims.getStringClaimValue(Constants.USER_ID_STRING));
+        // the second token with the same kid is verified by the same consumer.
+        claims = jwtVerifier.verifyJwt(getEs256Jwt(jwk, "eric"), false, true);
+        Assert.assertEquals("eric", claims.getStringClaimValue(Constants.USER_ID_STRING));
+        Assert.assertEquals(1, jwtVerifier.consumerCache.estimatedSize());
+
+        // a token signed by another key with the same kid must fail the signature verification.
+        EllipticCurveJsonWebKey other = EcJwkGenerator.generateJwk(EllipticCurves.P256);
+        other.setKeyId("es256");
+        try {
+            jwtVerifier.verifyJwt(getEs256Jwt(other, "steve"), false, true);
+            Assert.fail("The signature verification should fail");
+        } catch (InvalidJwtException e) {
+            Assert.assertTrue(e.getMessage().contains("signature"));
+        }
+    }
+
+    /**
+     * Compare the previous verification that builds two consumers and parses the token twice with the single pass
+     * verification of the JwtVerifier for RS256 and ES256 tokens. The claims cache is disabled so that every call
+     * does the full verification.
+     */
+    @Ignore
+    @Test
+    public void testVerifyPerf() throws Exception {
+        EllipticCurveJsonWebKey ecJwk = EcJwkGenerator.generateJwk(EllipticCurves.P256);
+        ecJwk.setKeyId("es256");
+        JwtVerifier jwtVerifier = new JwtVerifier(SecurityConfig.load(CONFIG_JWKS));
+        JwtVerifier.jwksMap.put("es256", Collections.singletonList(ecJwk));
+        jwtVerifier.enableJwtCache = false;
+
+        X509Certificate certificate = JwtVerifier.certMap.get("100");
+        Map<String, VerificationKeyResolver> resolvers = new HashMap<>();
+        X509VerificationKeyResolver x509Resolver = new X509VerificationKeyResolver(certificate);
+        x509Resolver.setTryAllOnNoThumbHeader(true);
+        resolvers.put("100", x509Resolver);
+        resolvers.put("es256", new JwksVerificationKeyResolver(Collections.singletonList(ecJwk)));
+
+        String rs256 = JwtIssuer.getJwt(ClaimsUtil.getTestClaims("steve", "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user"));
+        String es256 = getEs256Jwt(ecJwk, "steve");
+        // the trace logging of the test configuration would dominate the measurement.
+        ch.qos.logback.classic.Logger logger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger(JwtVerifier.class);
+        Level level = logger.getLevel();
+        logger.setLevel(Level.INFO);
+        int loop = 2000;
+        for (String[] token : new String[][]{{"RS256", rs256}, {"ES256", es256}}) {
+            String jwt = token[1];
+            // warm up both paths before the measurement.
+            for (int i = 0; i < loop; i++) {
+                verifyTwoPass(jwt, resolvers);
+                jwtVerifier.verifyJwt(jwt, false, true);
+            }
+            long allocated = allocatedBytes();
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < loop; i++) {
+                verifyTwoPass(jwt, resolvers);
+            }
+            System.out.println(token[0] + " two pass " + (System.currentTimeMillis() - start) + "ms " + (allocatedBytes() - allocated) / loop + " bytes/token");
+            allocated = allocatedBytes();
+            start = System.currentTimeMillis();
+            for (int i = 0; i < loop; i++) {
+                Assert.assertNotNull(jwtVerifier.verifyJwt(jwt, false, true));
+            }
+            System.out.println(token[0] + " single pass " + (System.currentTimeMillis() - start) + "ms " + (allocatedBytes() - allocated) / loop + " bytes/token");
+        }
+        logger.setLevel(level);
+    }
+
+    // the verification before the single pass, two consumers are built and the token is parsed by both.
+    private static JwtClaims verifyTwoPass(String jwt, Map<String, VerificationKeyResolver> resolvers) throws Exception {
+        JwtConsumer consumer = new JwtConsumerBuilder()
+                .setSkipAllValidators()
+                .setDisableRequireSignature()
+                .setSkipSignatureVerification()
+                .build();
+        JwtContext jwtContext = consumer.process(jwt);
+        String kid = jwtContext.getJoseObjects().get(0).getKeyIdHeaderValue();
+        consumer = new JwtConsumerBuilder()
+                .setRequireExpirationTime()
+                .setAllowedClockSkewInSeconds(315360000)
+                .setSkipDefaultAudienceValidation()
+                .setVerificationKeyResolver(resolvers.get(kid))
+                .build();
+        return consumer.process(jwt).getJwtClaims();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static String getEs256Jwt(EllipticCurveJsonWebKey jwk, String userId) throws JoseException {
+        JwtClaims claims = ClaimsUtil.getTestClaims(userId, "EMPLOYEE", "f7d42348-c647-4efb-a52d-4c5787421e72", Arrays.asList("write:pets", "read:pets"), "user");
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setKey(jwk.getPrivateKey());
+        jws.setKeyIdHeaderValue(jwk.getKeyId());
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256);
+        return jws.getCompactSerialization();
+    }
+
     @Test
     public void testStringList() {
         List<String> ids = new ArrayList<>();
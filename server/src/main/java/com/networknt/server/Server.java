@@ -49,6 +49,8 @@ import java.net.InetAddress;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
 import java.security.UnrecoverableKeyException;
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
@@ -248,11 +250,19 @@ public class Server {
     static private boolean bind(HttpHandler handler, int port) {
         ServerConfig serverConfig = getServerConfig();
         try {
+            // set and validate server options
+            serverOptionInit();
+
             Undertow.Builder builder = Undertow.builder();
             if (serverConfig.enableHttps) {
                 int p = port < 0 ? serverConfig.getHttpsPort() : port;
                 sslContext = createSSLContext();
                 builder.addHttpsListener(p, serverConfig.getIp(), sslContext);
+                builder.setSocketOption(Options.SSL_ENABLED_PROTOCOLS, Sequence.of(split(serverConfig.getTlsVersions())));
+                List<String> cipherSuites = split(serverConfig.getTlsCipherSuites());
+                if (!cipherSuites.isEmpty()) {
+                    builder.setSocketOption(Options.SSL_ENABLED_CIPHER_SUITES, Sequence.of(cipherSuites));
+                }
                 currentHttpsPort = p;
             }
             if (serverConfig.enableHttp) {
@@ -273,9 +283,6 @@ public class Server {
                builder.setSocketOption(Options.SSL_CLIENT_AUTH_MODE, SslClientAuthMode.REQUIRED);
             }
 
-            // set and validate server options
-            serverOptionInit();
-
             server = builder.setBufferSize(serverConfig.getBufferSize()).setIoThreads(serverConfig.getIoThreads())
                     // above seems slightly faster in some configurations
                     .setSocketOption(Options.BACKLOG, serverConfig.getBacklog())
@@ -285,8 +292,6 @@ public class Server {
                     .setServerOption(UndertowOptions.ALWAYS_SET_DATE, serverConfig.isAlwaysSetDate())
                     .setServerOption(UndertowOptions.RECORD_REQUEST_START_TIME, false)
                     .setServerOption(UndertowOptions.ALLOW_UNESCAPED_CHARACTERS_IN_URL, serverConfig.isAllowUnescapedCharactersInUrl())
-                    // This is to overcome a bug in JDK 11.0.1, 11.0.2. For more info https://issues.jboss.org/browse/UNDERTOW-1422
-                    .setSocketOption(Options.SSL_ENABLED_PROTOCOLS, Sequence.of("TLSv1.2"))
                     .setServerOption(UndertowOptions.MAX_ENTITY_SIZE, serverConfig.getMaxTransferFileSize())
                     .setServerOption(UndertowOptions.MULTIPART_MAX_ENTITY_SIZE, 10*serverConfig.getMaxTransferFileSize())
                     .setHandler(Handlers.header(handler, Headers.SERVER_STRING, serverConfig.getServerString())).setWorkerThreads(serverConfig.getWorkerThreads()).build();
@@ -450,7 +455,15 @@ public class Server {
         return keyManagers;
     }
 
-    private static SSLContext createSSLContext() throws RuntimeException {
+    /**
+     * Create the SSLContext of the https listener with the sslProvider if it is available. The sessions of the
+     * server are cached with the sslSessionCacheSize and sslSessionTimeout so that the returning clients can
+     * resume their sessions with an abbreviated handshake.
+     *
+     * @return SSLContext
+     * @throws RuntimeException if the SSLContext cannot be created
+     */
+    static SSLContext createSSLContext() throws RuntimeException {
 
         try {
             String keyPass = getServerConfig().getKeyPass();
@@ -466,9 +479,15 @@ public class Server {
                 trustManagers = buildTrustManagers(null);
             }
 
-            SSLContext sslContext;
-            sslContext = SSLContext.getInstance("TLSv1.2");
+            // the enabled versions are set on the listener with the tlsVersions.
+            Provider provider = getSslProvider(getServerConfig().getSslProvider());
+            SSLContext sslContext = provider == null ? SSLContext.getInstance("TLS") : SSLContext.getInstance("TLS", provider);
             sslContext.init(keyManagers, trustManagers, null);
+            SSLSessionContext sessionContext = sslContext.getServerSessionContext();
+            if (sessionContext != null) {
+                sessionContext.setSessionCacheSize(getServerConfig().getSslSessionCacheSize());
+                sessionContext.setSessionTimeout(getServerConfig().getSslSessionTimeout());
+            }
             return sslContext;
         } catch (Exception e) {
             logger.error("Unable to create SSLContext", e);
@@ -477,6 +496,39 @@ public class Server {
     }
 
 
+    /**
+     * Get the JCE provider of the SSLContext by the name of a registered provider or the class name of a provider
+     * on the classpath.
+     *
+     * @param name the name or the class name of the provider
+     * @return the provider or null if it is not configured or available
+     */
+    static Provider getSslProvider(String name) {
+        if (name == null || name.trim().isEmpty()) return null;
+        Provider provider = Security.getProvider(name.trim());
+        if (provider != null) return provider;
+        try {
+            provider = (Provider) Class.forName(name.trim()).getDeclaredConstructor().newInstance();
+            logger.info("SSL provider " + provider.getName() + " is used for the https listener.");
+            return provider;
+        } catch (ClassNotFoundException e) {
+            logger.warn("SSL provider " + name + " is not on the classpath, the default provider is used.");
+        } catch (Exception e) {
+            logger.warn("SSL provider " + name + " cannot be created, the default provider is used.", e);
+        }
+        return null;
+    }
+
+    private static List<String> split(String value) {
+        List<String> values = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                if (!item.trim().isEmpty()) values.add(item.trim());
+            }
+        }
+        return values;
+    }
+
     // method used to merge status.yml and app-status.yml
     protected static void mergeStatusConfig() {
         Map<String, Object> appStatusConfig = Config.getInstance().getJsonMapConfigNoCache(STATUS_CONFIG_NAME[1]);
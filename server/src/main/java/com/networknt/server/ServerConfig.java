@@ -56,6 +56,11 @@ public class ServerConfig {
     String bootstrapStorePass;
     long maxTransferFileSize;
     boolean startOnRegistryFailure;
+    String tlsVersions;
+    String tlsCipherSuites;
+    int sslSessionCacheSize;
+    int sslSessionTimeout;
+    String sslProvider;
 
 	public ServerConfig() {
     }
@@ -343,4 +348,44 @@ public class ServerConfig {
     public void setStartOnRegistryFailure(boolean startOnRegistryFailure) {
         this.startOnRegistryFailure = startOnRegistryFailure;
     }
+
+    public String getTlsVersions() {
+        return tlsVersions;
+    }
+
+    public void setTlsVersions(String tlsVersions) {
+        this.tlsVersions = tlsVersions;
+    }
+
+    public String getTlsCipherSuites() {
+        return tlsCipherSuites;
+    }
+
+    public void setTlsCipherSuites(String tlsCipherSuites) {
+        this.tlsCipherSuites = tlsCipherSuites;
+    }
+
+    public int getSslSessionCacheSize() {
+        return sslSessionCacheSize;
+    }
+
+    public void setSslSessionCacheSize(int sslSessionCacheSize) {
+        this.sslSessionCacheSize = sslSessionCacheSize;
+    }
+
+    public int getSslSessionTimeout() {
+        return sslSessionTimeout;
+    }
+
+    public void setSslSessionTimeout(int sslSessionTimeout) {
+        this.sslSessionTimeout = sslSessionTimeout;
+    }
+
+    public String getSslProvider() {
+        return sslProvider;
+    }
+
+    public void setSslProvider(String sslProvider) {
+        this.sslProvider = sslProvider;
+    }
 }
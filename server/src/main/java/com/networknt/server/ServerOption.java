@@ -26,7 +26,10 @@ public enum ServerOption {
     ALWAYS_SET_DATE("alwaysSetDate"),
     MAX_TRANSFER_FILE_SIZE("maxTransferFileSize"),
     ALLOW_UNESCAPED_CHARACTERS_IN_URL("allowUnescapedCharactersInUrl"),
-    SHUTDOWN_TIMEOUT("shutdownTimeout");
+    SHUTDOWN_TIMEOUT("shutdownTimeout"),
+    TLS_VERSIONS("tlsVersions"),
+    SSL_SESSION_CACHE_SIZE("sslSessionCacheSize"),
+    SSL_SESSION_TIMEOUT("sslSessionTimeout");
 
     private final String value;
 
@@ -116,6 +119,25 @@ public enum ServerOption {
                     return false;
                 }
                 return true;
+            case TLS_VERSIONS:
+                if (value == null || value.toString().trim().equals("")) {
+                    serverConfig.setTlsVersions("TLSv1.3,TLSv1.2");
+                    return false;
+                }
+                return true;
+            case SSL_SESSION_CACHE_SIZE:
+                // 0 means that the number of cached sessions is unlimited.
+                if (value == null || (int) value < 0) {
+                    serverConfig.setSslSessionCacheSize(20480);
+                    return false;
+                }
+                return true;
+            case SSL_SESSION_TIMEOUT:
+                if (value == null || (int) value <= 0) {
+                    serverConfig.setSslSessionTimeout(86400);
+                    return false;
+                }
+                return true;
             default:
                 return true;
         }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.server;
+
+import com.networknt.config.Config;
+import io.undertow.Undertow;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.xnio.Options;
+import org.xnio.Sequence;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the handshakes per second of the https listener with the SSLContext of the server for each TLS version,
+ * with a new client session for each connection and with the client session resumed. Each connection sends one
+ * request, so that the session ticket of TLSv1.3 is received by the client before the connection is closed.
+ */
+public class TlsHandshakeTest {
+    private static final int PORT = 49590;
+    private static final long DURATION = TimeUnit.SECONDS.toMillis(2);
+
+    private static SSLContext serverContext;
+
+    @BeforeClass
+    public static void setUp() {
+        Config.getInstance().clear();
+        ServerOption.serverOptionInit(Config.getInstance().getJsonMapConfigNoCache(ServerConfig.CONFIG_NAME), Server.getServerConfig());
+        serverContext = Server.createSSLContext();
+    }
+
+    @Test
+    public void testSessionCacheConfig() {
+        Assert.assertEquals("TLSv1.3,TLSv1.2", Server.getServerConfig().getTlsVersions());
+        Assert.assertEquals(20480, serverContext.getServerSessionContext().getSessionCacheSize());
+        Assert.assertEquals(86400, serverContext.getServerSessionContext().getSessionTimeout());
+    }
+
+    @Test
+    public void testSslProvider() {
+        Assert.assertNull(Server.getSslProvider(null));
+        Assert.assertNull(Server.getSslProvider("org.conscrypt.NoSuchProvider"));
+        Assert.assertEquals("SunJSSE", Server.getSslProvider("SunJSSE").getName());
+    }
+
+    @Ignore
+    @Test
+    public void testHandshakeThroughput() throws Exception {
+        for (String version : new String[] {"TLSv1.2", "TLSv1.3"}) {
+            Undertow server = Undertow.builder()
+                    .addHttpsListener(PORT, "localhost", serverContext)
+                    .setSocketOption(Options.SSL_ENABLED_PROTOCOLS, Sequence.of(version))
+                    .setHandler(exchange -> exchange.getResponseSender().send("OK"))
+                    .build();
+            server.start();
+            try {
+                double full = handshakes(version, false);
+                double resumed = handshakes(version, true);
+                System.out.println(String.format("%s full %.0f/s resumed %.0f/s", version, full, resumed));
+                // the resumed handshake skips the certificate and the signature of the server.
+                Assert.assertTrue(resumed > full);
+            } finally {
+                server.stop();
+            }
+        }
+    }
+
+    private static double handshakes(String version, boolean resume) throws Exception {
+        SSLContext clientContext = null;
+        byte[] lastId = null;
+        int resumed = 0;
+        int count = 0;
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < DURATION) {
+            if (clientContext == null || !resume) {
+                clientContext = SSLContext.getInstance("TLS");
+                clientContext.init(null, Server.TRUST_ALL_CERTS, null);
+            }
+            try (SSLSocket socket = (SSLSocket) clientContext.getSocketFactory().createSocket("localhost", PORT)) {
+                socket.setEnabledProtocols(new String[] {version});
+                socket.setTcpNoDelay(true);
+                OutputStream out = socket.getOutputStream();
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                InputStream in = socket.getInputStream();
+                while (in.read() != -1) {
+                    // read the response until the server closes the connection.
+                }
+                Assert.assertEquals(version, socket.getSession().getProtocol());
+                byte[] id = socket.getSession().getId();
+                if (lastId != null && Arrays.equals(lastId, id)) resumed++;
+                lastId = id;
+            }
+            count++;
+        }
+        if (resume && "TLSv1.2".equals(version)) {
+            // the session id of TLSv1.2 is kept when the session is resumed.
+            Assert.assertEquals(count - 1, resumed);
+        }
+        return count * 1000.0 / (System.currentTimeMillis() - start);
+    }
+}
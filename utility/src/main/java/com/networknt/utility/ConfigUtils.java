@@ -13,24 +13,28 @@ public class ConfigUtils {
     public static final String DELIMITOR = "@";
     protected static final String INTERNAL_KEY_FORMAT = "%s %s";
 
+    private static volatile EndpointIndex endpointIndex;
+
+    /**
+     * Find the endpoint key with the path@method format in the mapping for the method and the longest path prefix of
+     * the searchKey. The keys of the mapping are compiled into a path prefix trie for each method when a new mapping
+     * is passed in, as the endpoint rules are replaced with a new map when they are loaded.
+     *
+     * @param method the lower case method of the request
+     * @param searchKey the request path
+     * @param mapping a map with the path@method keys
+     * @return the key of the mapping or null if it is not found
+     */
     public static String findServiceEntry(String method, String searchKey, Map<String, Object> mapping) {
         if(logger.isDebugEnabled()) logger.debug("findServiceEntry for " + searchKey + " and method: " + method);
-        if(logger.isDebugEnabled()) logger.debug("mapping size: " + mapping.size());
-        String result = null;
-        for (Map.Entry<String, Object> entry : mapping.entrySet()) {
-        	String[] tokens = StringUtils.trimToEmpty(entry.getKey()).split(DELIMITOR);
-            String ConfigPrefix = tokens[0];
-            String ConfigMethod = tokens[1];
-            if(logger.isDebugEnabled()) logger.debug("prefix: " + ConfigPrefix);
-            if(logger.isDebugEnabled()) logger.debug("method: " + ConfigMethod);
-            if(searchKey.startsWith(ConfigPrefix)) {
-                if((searchKey.length() == ConfigPrefix.length() || searchKey.charAt(ConfigPrefix.length()) == '/')
-                		&& method.equals(ConfigMethod)) {
-                    result = entry.getKey();
-                    break;
-                }
-            }
+        if(mapping == null) return null;
+        EndpointIndex index = endpointIndex;
+        if(index == null || index.mapping != mapping) {
+            index = new EndpointIndex(mapping);
+            endpointIndex = index;
         }
+        PathPrefixTrie<String> prefixes = index.methods.get(method);
+        String result = prefixes == null ? null : prefixes.match(searchKey);
         if(result == null) {
             if(logger.isDebugEnabled()) logger.debug("serviceEntry not found!");
         } else {
@@ -61,4 +65,26 @@ public class ConfigUtils {
         return String.format(INTERNAL_KEY_FORMAT, method, ConfigUtils.normalisePath(path));
     }
 
-}
\ No newline at end of file
+    /**
+     * The path prefix trie of each method in the endpoint mapping with the key of the mapping as the value.
+     */
+    private static final class EndpointIndex {
+        final Map<String, Object> mapping;
+        final Map<String, PathPrefixTrie<String>> methods = new HashMap<>();
+
+        EndpointIndex(Map<String, Object> mapping) {
+            this.mapping = mapping;
+            Map<String, Map<String, String>> keys = new HashMap<>();
+            for (String key : mapping.keySet()) {
+                String[] tokens = StringUtils.trimToEmpty(key).split(DELIMITOR);
+                if(tokens.length != 2) {
+                    logger.warn("Invalid endpoint {}", key);
+                    continue;
+                }
+                keys.computeIfAbsent(tokens[1], k -> new LinkedHashMap<>()).put(tokens[0], key);
+            }
+            if(logger.isDebugEnabled()) logger.debug("mapping size: " + mapping.size());
+            keys.forEach((method, prefixes) -> methods.put(method, PathPrefixTrie.of(prefixes)));
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.networknt.utility;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable radix trie of the path prefixes in the config files that finds the longest prefix of a request path.
+ *
+ * The prefixes are matched on the path segments, so the prefix /v1/pet matches /v1/pet and /v1/pet/1 but not
+ * /v1/pets. A prefix that ends with a slash matches all the paths under it, and the empty prefix matches all the
+ * paths. The lookup compares each character of the path at most once and doesn't allocate, so the cost doesn't
+ * grow with the number of the prefixes.
+ *
+ * The trie is built once when the config is loaded or reloaded, and it is safe to share it between the threads.
+ *
+ * @param <V> the type of the value of a prefix
+ */
+public final class PathPrefixTrie<V> {
+    private static final PathPrefixTrie<?> EMPTY = new PathPrefixTrie<>(new Node<>(""), 0);
+
+    private final Node<V> root;
+    private final int size;
+
+    private PathPrefixTrie(Node<V> root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param <V> the type of the value
+     * @return the trie without any prefix
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PathPrefixTrie<V> empty() {
+        return (PathPrefixTrie<V>) EMPTY;
+    }
+
+    /**
+     * Build the trie of the prefixes in the map. The null map is an empty trie.
+     *
+     * @param prefixes a map of the prefix and its value
+     * @param <V> the type of the value
+     * @return the trie
+     */
+    public static <V> PathPrefixTrie<V> of(Map<String, ? extends V> prefixes) {
+        if (prefixes == null || prefixes.isEmpty()) return empty();
+        Node<V> root = new Node<>("");
+        int size = 0;
+        for (Map.Entry<String, ? extends V> entry : prefixes.entrySet()) {
+            if (insert(root, entry.getKey(), entry.getValue())) size++;
+        }
+        return new PathPrefixTrie<>(root, size);
+    }
+
+    /**
+     * Build the trie of the prefixes with the prefix as the value. The null collection is an empty trie.
+     *
+     * @param prefixes a list of the prefixes
+     * @return the trie
+     */
+    public static PathPrefixTrie<String> of(Collection<String> prefixes) {
+        if (prefixes == null || prefixes.isEmpty()) return empty();
+        Node<String> root = new Node<>("");
+        int size = 0;
+        for (String prefix : prefixes) {
+            if (insert(root, prefix, prefix)) size++;
+        }
+        return new PathPrefixTrie<>(root, size);
+    }
+
+    /**
+     * Find the longest prefix of the path.
+     *
+     * @param path the request path
+     * @return the entry of the prefix and its value, or null if no prefix matches the path
+     */
+    public Map.Entry<String, V> matchEntry(String path) {
+        if (path == null) return null;
+        Node<V> node = root;
+        Map.Entry<String, V> match = null;
+        int i = 0;
+        int length = path.length();
+        while (true) {
+            if (node.entry != null && isBoundary(node.entry.getKey(), path, i)) match = node.entry;
+            if (i == length) return match;
+            Node<V> child = node.child(path.charAt(i));
+            if (child == null || !path.regionMatches(i, child.label, 0, child.label.length())) return match;
+            i += child.label.length();
+            node = child;
+        }
+    }
+
+    /**
+     * @param path the request path
+     * @return the value of the longest prefix of the path, or null if no prefix matches the path
+     */
+    public V match(String path) {
+        Map.Entry<String, V> entry = matchEntry(path);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * @param path the request path
+     * @return the longest prefix of the path, or null if no prefix matches the path
+     */
+    public String matchPrefix(String path) {
+        Map.Entry<String, V> entry = matchEntry(path);
+        return entry == null ? null : entry.getKey();
+    }
+
+    /**
+     * @param path the request path
+     * @return true if a prefix matches the path
+     */
+    public boolean matches(String path) {
+        return matchEntry(path) != null;
+    }
+
+    /**
+     * Visit all the prefixes of the path from the shortest to the longest for the handlers that apply the config of
+     * every matched prefix, so the config of the longest prefix is applied last.
+     *
+     * @param path the request path
+     * @param action the action for the prefix and its value
+     */
+    public void forEachMatch(String path, BiConsumer<String, ? super V> action) {
+        if (path == null) return;
+        Node<V> node = root;
+        int i = 0;
+        int length = path.length();
+        while (true) {
+            if (node.entry != null && isBoundary(node.entry.getKey(), path, i)) action.accept(node.entry.getKey(), node.entry.getValue());
+            if (i == length) return;
+            Node<V> child = node.child(path.charAt(i));
+            if (child == null || !path.regionMatches(i, child.label, 0, child.label.length())) return;
+            i += child.label.length();
+            node = child;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The prefix ends at a segment of the path when the path ends, the next character of the path is a slash or the
+     * prefix itself ends with a slash.
+     */
+    private static boolean isBoundary(String prefix, String path, int end) {
+        return end == path.length() || prefix.isEmpty() || prefix.charAt(prefix.length() - 1) == '/' || path.charAt(end) == '/';
+    }
+
+    /**
+     * Add the prefix to the trie, splitting the label of the node that shares a part of it. The first value of a
+     * duplicated prefix is kept.
+     *
+     * @return true if the prefix is added
+     */
+    private static <V> boolean insert(Node<V> root, String prefix, V value) {
+        if (prefix == null) return false;
+        Node<V> node = root;
+        int i = 0;
+        while (true) {
+            if (i == prefix.length()) {
+                if (node.entry != null) return false;
+                node.entry = new AbstractMap.SimpleImmutableEntry<>(prefix, value);
+                return true;
+            }
+            int index = node.indexOf(prefix.charAt(i));
+            if (index < 0) {
+                Node<V> leaf = new Node<>(prefix.substring(i));
+                leaf.entry = new AbstractMap.SimpleImmutableEntry<>(prefix, value);
+                node.add(leaf);
+                return true;
+            }
+            Node<V> child = node.children[index];
+            int common = 1;
+            while (common < child.label.length() && i + common < prefix.length() && child.label.charAt(common) == prefix.charAt(i + common)) common++;
+            if (common < child.label.length()) {
+                Node<V> split = new Node<>(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.add(child);
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            i += common;
+        }
+    }
+
+    /**
+     * A node of the trie with the characters of the edge from its parent. The children are sorted by the first
+     * character of their labels.
+     */
+    private static final class Node<V> {
+        private static final char[] NO_KEYS = new char[0];
+
+        String label;
+        Map.Entry<String, V> entry;
+        char[] keys = NO_KEYS;
+        @SuppressWarnings("unchecked")
+        Node<V>[] children = new Node[0];
+
+        Node(String label) {
+            this.label = label;
+        }
+
+        Node<V> child(char c) {
+            int index = indexOf(c);
+            return index < 0 ? null : children[index];
+        }
+
+        int indexOf(char c) {
+            char[] k = keys;
+            // most of the nodes of the path prefixes have a few children.
+            if (k.length < 8) {
+                for (int i = 0; i < k.length; i++) {
+                    if (k[i] == c) return i;
+                }
+                return -1;
+            }
+            int index = Arrays.binarySearch(k, c);
+            return index < 0 ? -1 : index;
+        }
+
+        void add(Node<V> child) {
+            char c = child.label.charAt(0);
+            int index = -Arrays.binarySearch(keys, c) - 1;
+            keys = insert(keys, index, c);
+            children = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, children, index + 1, children.length - index - 1);
+            children[index] = child;
+        }
+
+        private static char[] insert(char[] keys, int index, char c) {
+            char[] result = new char[keys.length + 1];
+            System.arraycopy(keys, 0, result, 0, index);
+            result[index] = c;
+            System.arraycopy(keys, index, result, index + 1, keys.length - index);
+            return result;
+        }
+    }
+}
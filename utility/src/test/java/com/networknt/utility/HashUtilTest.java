@@ -19,6 +19,8 @@ package com.networknt.utility;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Created by stevehu on 2016-12-23.
  */
@@ -49,4 +51,13 @@ public class HashUtilTest {
         String s = HashUtil.generateUUID();
         System.out.println("s = " + s);
     }
+
+    @Test
+    public void testMurmur3() {
+        long[] out = new long[2];
+        Assert.assertEquals(0xcbd8a7b341bd9b02L, HashUtil.murmur3("hello".getBytes(StandardCharsets.UTF_8), 0, out));
+        Assert.assertEquals(0xcbd8a7b341bd9b02L, out[0]);
+        Assert.assertEquals(0xe34bbc7bbc071b6cL, HashUtil.murmur3("The quick brown fox jumps over the lazy dog"));
+        Assert.assertEquals(0L, HashUtil.murmur3(""));
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2016 Network New Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.networknt.utility;
+
+import org.junit.Assert;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class PathPrefixTrieTest {
+    @Test
+    public void testLongestSegmentMatch() {
+        Map<String, String> prefixes = new LinkedHashMap<>();
+        prefixes.put("/v1", "v1");
+        prefixes.put("/v1/pets", "pets");
+        prefixes.put("/v1/pet", "pet");
+        prefixes.put("/v1/pets/", "pets-slash");
+        prefixes.put("/v2/", "v2");
+        PathPrefixTrie<String> trie = PathPrefixTrie.of(prefixes);
+        Assert.assertEquals(5, trie.size());
+        Assert.assertEquals("v1", trie.match("/v1"));
+        Assert.assertEquals("v1", trie.match("/v1/cats"));
+        Assert.assertEquals("pets", trie.match("/v1/pets"));
+        Assert.assertEquals("pets-slash", trie.match("/v1/pets/1"));
+        Assert.assertEquals("pet", trie.match("/v1/pet/1"));
+        // the prefix doesn't match a part of a segment.
+        Assert.assertEquals("v1", trie.match("/v1/petstore"));
+        Assert.assertNull(trie.match("/v10"));
+        Assert.assertEquals("v2", trie.match("/v2/pets"));
+        Assert.assertNull(trie.match("/v2"));
+        Assert.assertNull(trie.match(null));
+        Assert.assertEquals("/v1/pets", trie.matchPrefix("/v1/pets"));
+        Assert.assertEquals("/v1/pets/", trie.matchEntry("/v1/pets/1").getKey());
+        List<String> matched = new ArrayList<>();
+        trie.forEachMatch("/v1/pets/1", (prefix, value) -> matched.add(value));
+        Assert.assertEquals(Arrays.asList("v1", "pets", "pets-slash"), matched);
+    }
+
+    @Test
+    public void testEmptyAndRootPrefix() {
+        Assert.assertTrue(PathPrefixTrie.of((Map<String, String>) null).isEmpty());
+        Assert.assertFalse(PathPrefixTrie.<String>empty().matches("/v1"));
+        PathPrefixTrie<String> trie = PathPrefixTrie.of(Arrays.asList("/", "/v1/pets", "/v1/pets"));
+        Assert.assertEquals(2, trie.size());
+        Assert.assertEquals("/", trie.matchPrefix("/v1/cats"));
+        Assert.assertEquals("/v1/pets", trie.matchPrefix("/v1/pets/1"));
+        Assert.assertTrue(PathPrefixTrie.of(Arrays.asList("")).matches("/any"));
+    }
+
+    @Test
+    public void testRandomPrefixes() {
+        Random random = new Random(1);
+        for (int round = 0; round < 20; round++) {
+            List<String> prefixes = randomPrefixes(random, 1 + random.nextInt(200));
+            PathPrefixTrie<String> trie = PathPrefixTrie.of(prefixes);
+            for (int i = 0; i < 2000; i++) {
+                String path = randomPath(random);
+                Assert.assertEquals(path, linearMatch(prefixes, path), trie.matchPrefix(path));
+            }
+        }
+    }
+
+    /**
+     * Compare the lookup of the trie with the linear scan of the first prefix with startsWith for 10, 100 and 1000
+     * prefixes of the paths of a gateway.
+     */
+    @Ignore
+    @Test
+    public void testLookupPerformance() {
+        Random random = new Random(2);
+        for (int count : new int[] {10, 100, 1000}) {
+            List<String> prefixes = new ArrayList<>();
+            for (int i = 0; i < count; i++) prefixes.add("/v" + (i % 3 + 1) + "/service" + i + "/resource");
+            PathPrefixTrie<String> trie = PathPrefixTrie.of(prefixes);
+            String[] paths = new String[1024];
+            for (int i = 0; i < paths.length; i++) {
+                int n = random.nextInt(count * 2);
+                paths[i] = "/v" + (n % 3 + 1) + "/service" + n + "/resource/" + i;
+            }
+            int loop = 2000000;
+            long linear = 0;
+            long trieTime = 0;
+            int found = 0;
+            for (int run = 0; run < 3; run++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < loop; i++) if (firstStartsWith(prefixes, paths[i & 1023]) != null) found++;
+                linear = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < loop; i++) if (trie.matches(paths[i & 1023])) found--;
+                trieTime = System.nanoTime() - start;
+            }
+            Assert.assertEquals(0, found);
+            System.out.println(String.format("%d prefixes: linear scan %.1f ns/op, trie %.1f ns/op", count, (double) linear / loop, (double) trieTime / loop));
+        }
+    }
+
+    private static String firstStartsWith(List<String> prefixes, String path) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) return prefix;
+        }
+        return null;
+    }
+
+    private static String linearMatch(List<String> prefixes, String path) {
+        String match = null;
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix) && (path.length() == prefix.length() || prefix.isEmpty() || prefix.endsWith("/") || path.charAt(prefix.length()) == '/')) {
+                if (match == null || prefix.length() > match.length()) match = prefix;
+            }
+        }
+        return match;
+    }
+
+    private static List<String> randomPrefixes(Random random, int count) {
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String path = randomPath(random);
+            prefixes.add(path.substring(0, random.nextInt(path.length() + 1)));
+        }
+        return prefixes;
+    }
+
+    private static String randomPath(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int segments = 1 + random.nextInt(4);
+        for (int i = 0; i < segments; i++) {
+            sb.append('/');
+            int length = random.nextInt(3);
+            for (int j = 0; j < length; j++) sb.append((char) ('a' + random.nextInt(3)));
+        }
+        if (random.nextInt(4) == 0) sb.append('/');
+        return sb.toString();
+    }
+}